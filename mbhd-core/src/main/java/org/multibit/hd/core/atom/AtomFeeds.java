@@ -1,25 +1,82 @@
 package org.multibit.hd.core.atom;
 
+import com.google.common.base.Preconditions;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
-import org.multibit.commons.concurrent.SafeExecutors;
+import org.joda.time.DateTime;
+import org.multibit.hd.core.concurrent.ExecutorRegistry;
+import org.multibit.hd.core.concurrent.Workload;
+import org.multibit.hd.core.managers.InstallationManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import javax.xml.bind.JAXB;
-import java.io.InputStream;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.*;
+import java.net.HttpURLConnection;
 import java.net.URL;
 import java.net.URLConnection;
+import java.util.Properties;
 import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 
 /**
  * <p>Utilities to provide the following to application:</p>
  * <ul>
  * <li>Parsing Atom feeds</li>
+ * <li>Conditional fetching of the MultiBit.org Atom feed with a local copy</li>
  * </ul>
  *
  * @since 0.1.5
  */
 public class AtomFeeds {
 
+  private static final Logger log = LoggerFactory.getLogger(AtomFeeds.class);
+
+  /**
+   * The MultiBit.org Atom feed
+   */
+  public static final String MULTIBIT_ORG_FEED_URL = "https://multibit.org/atom.xml";
+
+  /**
+   * The name of the local copy of the feed in the application directory
+   */
+  public static final String FEED_CACHE_NAME = "atom-feed.xml";
+
+  /**
+   * The name of the file holding the ETag and Last-Modified of the local copy
+   */
+  public static final String FEED_CACHE_VALIDATORS_NAME = "atom-feed.properties";
+
+  /**
+   * The number of newest entries to read from the feed
+   */
+  public static final int MAXIMUM_ENTRIES = 10;
+
+  /**
+   * A local copy younger than this is used without contacting the server
+   */
+  private static final long MAXIMUM_CACHE_AGE_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+  private static final int TIMEOUT_MILLIS = 30000;
+
+  private static final String ATOM_NAMESPACE = "http://www.w3.org/2005/Atom";
+
+  private static final String ETAG_PROPERTY = "etag";
+  private static final String LAST_MODIFIED_PROPERTY = "lastModified";
+
+  /**
+   * Reused unmarshaller for the entries (guarded by the class lock since unmarshallers are not thread safe)
+   */
+  private static Unmarshaller entryUnmarshaller;
+
   /**
    * Utilities have private constructor
    */
@@ -28,26 +85,261 @@ public class AtomFeeds {
 
   /**
    * <p>Perform an asynchronous parse of the MultiBit.org Atom XML feed using JAXB</p>
+   * <p>The feed is only downloaded if it has changed since the local copy was made</p>
    *
    * @return A listenable future containing the result of the asynchronous read
    */
   public static ListenableFuture<AtomFeed> parseMultiBitOrgFeed() {
 
-    ListeningExecutorService executorService = SafeExecutors.newSingleThreadExecutor("atom-feed-check");
+    ListeningExecutorService executorService = ExecutorRegistry.INSTANCE.newSingleThreadExecutor("atom-feed-check", Workload.NETWORK);
 
     return executorService.submit(new Callable<AtomFeed>() {
       @Override
       public AtomFeed call() throws Exception {
 
-        URL url = new URL("https://multibit.org/atom.xml");
-        URLConnection connection = url.openConnection();
+        return fetchAtomFeed(
+          new URL(MULTIBIT_ORG_FEED_URL),
+          InstallationManager.getOrCreateApplicationDataDirectory(),
+          MAXIMUM_ENTRIES
+        );
+
+      }
+    });
 
-        try (InputStream is = connection.getInputStream()) {
-          return JAXB.unmarshal(is, AtomFeed.class);
+  }
+
+  /**
+   * <p>Fetch an Atom feed, revalidating the local copy with a conditional GET (ETag and If-Modified-Since)</p>
+   * <p>The local copy is used without contacting the server if it is recent, and instead of the server if it cannot be reached</p>
+   *
+   * @param url            The feed URL
+   * @param cacheDirectory The directory holding the local copy of the feed
+   * @param maximumEntries The number of newest entries to read
+   *
+   * @return The feed
+   *
+   * @throws IOException If the feed could not be fetched and there is no local copy
+   */
+  public static AtomFeed fetchAtomFeed(URL url, File cacheDirectory, int maximumEntries) throws IOException {
+
+    Preconditions.checkNotNull(url, "'url' must be present");
+    Preconditions.checkNotNull(cacheDirectory, "'cacheDirectory' must be present");
+
+    File feedFile = new File(cacheDirectory, FEED_CACHE_NAME);
+    File validatorsFile = new File(cacheDirectory, FEED_CACHE_VALIDATORS_NAME);
+
+    boolean cached = feedFile.exists();
+    if (cached && System.currentTimeMillis() - feedFile.lastModified() < MAXIMUM_CACHE_AGE_MILLIS) {
+      log.debug("Using recent local copy of Atom feed");
+      return parseAtomFeed(feedFile, maximumEntries);
+    }
+
+    Properties validators = new Properties();
+    if (cached && validatorsFile.exists()) {
+      try (InputStream inputStream = new FileInputStream(validatorsFile)) {
+        validators.load(inputStream);
+      }
+    }
+
+    try {
+      URLConnection connection = url.openConnection();
+      connection.setConnectTimeout(TIMEOUT_MILLIS);
+      connection.setReadTimeout(TIMEOUT_MILLIS);
+
+      String eTag = validators.getProperty(ETAG_PROPERTY);
+      if (eTag != null) {
+        connection.setRequestProperty("If-None-Match", eTag);
+      }
+      String lastModified = validators.getProperty(LAST_MODIFIED_PROPERTY);
+      if (lastModified != null) {
+        connection.setIfModifiedSince(Long.parseLong(lastModified));
+      }
+
+      if (connection instanceof HttpURLConnection) {
+        int responseCode = ((HttpURLConnection) connection).getResponseCode();
+        if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED && cached) {
+          log.debug("Atom feed is not modified");
+          // Restart the age of the local copy
+          if (!feedFile.setLastModified(System.currentTimeMillis())) {
+            log.debug("Unable to touch the local copy of the Atom feed");
+          }
+          return parseAtomFeed(feedFile, maximumEntries);
         }
+        if (responseCode != HttpURLConnection.HTTP_OK) {
+          throw new IOException("Unexpected response code " + responseCode + " for '" + url + "'");
+        }
+      }
 
+      byte[] content;
+      try (InputStream inputStream = connection.getInputStream()) {
+        content = ByteStreams.toByteArray(inputStream);
       }
-    });
+
+      // Parse before keeping the copy so a bad download does not replace a good one
+      AtomFeed atomFeed = parseAtomFeed(new ByteArrayInputStream(content), maximumEntries);
+
+      writeLocalCopy(content, connection, feedFile, validatorsFile);
+
+      return atomFeed;
+
+    } catch (IOException e) {
+      if (cached) {
+        log.warn("Using local copy of Atom feed. Error was '{}'", e.getMessage());
+        return parseAtomFeed(feedFile, maximumEntries);
+      }
+      throw e;
+    }
+
+  }
+
+  /**
+   * <p>Parse an Atom feed, stopping after the given number of entries</p>
+   * <p>Feeds list their newest entries first so only the start of the document is read</p>
+   *
+   * @param inputStream    The feed XML
+   * @param maximumEntries The number of entries to read
+   *
+   * @return The feed containing at most the given number of entries
+   *
+   * @throws IOException If the feed could not be parsed
+   */
+  public static AtomFeed parseAtomFeed(InputStream inputStream, int maximumEntries) throws IOException {
+
+    Preconditions.checkNotNull(inputStream, "'inputStream' must be present");
+    Preconditions.checkArgument(maximumEntries > 0, "'maximumEntries' must be greater than zero");
+
+    AtomFeed atomFeed = new AtomFeed();
+
+    XMLStreamReader reader = null;
+    try {
+      reader = newXMLInputFactory().createXMLStreamReader(inputStream);
+
+      int depth = 0;
+      int event = reader.getEventType();
+      while (atomFeed.getAtomEntries().size() < maximumEntries) {
+
+        if (event == XMLStreamConstants.START_ELEMENT) {
+          depth++;
+
+          // Only the direct children of the feed are of interest
+          if (depth == 2 && ATOM_NAMESPACE.equals(reader.getNamespaceURI())) {
+            switch (reader.getLocalName()) {
+              case "entry":
+                atomFeed.getAtomEntries().add(unmarshalEntry(reader));
+                depth--;
+                // The unmarshaller leaves the reader on the event after the entry
+                event = reader.getEventType();
+                continue;
+              case "id":
+                atomFeed.setId(reader.getElementText());
+                depth--;
+                break;
+              case "title":
+                atomFeed.setTitle(reader.getElementText());
+                depth--;
+                break;
+              case "updated":
+                atomFeed.setUpdated(new DateTime(reader.getElementText().trim()));
+                depth--;
+                break;
+              default:
+                // Ignore other elements
+            }
+          }
+        } else if (event == XMLStreamConstants.END_ELEMENT) {
+          depth--;
+        }
+
+        if (!reader.hasNext()) {
+          break;
+        }
+        event = reader.next();
+      }
+
+    } catch (XMLStreamException | JAXBException | IllegalArgumentException e) {
+      throw new IOException("Unable to parse Atom feed", e);
+    } finally {
+      if (reader != null) {
+        try {
+          reader.close();
+        } catch (XMLStreamException e) {
+          log.debug("Unable to close Atom feed reader", e);
+        }
+      }
+    }
+
+    return atomFeed;
+  }
+
+  /**
+   * @param feedFile       The local copy of the feed
+   * @param maximumEntries The number of entries to read
+   *
+   * @return The feed
+   *
+   * @throws IOException If the feed could not be read
+   */
+  private static AtomFeed parseAtomFeed(File feedFile, int maximumEntries) throws IOException {
+
+    try (InputStream inputStream = new BufferedInputStream(new FileInputStream(feedFile))) {
+      return parseAtomFeed(inputStream, maximumEntries);
+    }
+
+  }
+
+  /**
+   * @param reader The reader positioned at the start of an entry
+   *
+   * @return The entry (the reader is positioned after its end element)
+   *
+   * @throws JAXBException If the entry could not be bound
+   */
+  private static AtomEntry unmarshalEntry(XMLStreamReader reader) throws JAXBException {
+
+    synchronized (AtomFeeds.class) {
+      if (entryUnmarshaller == null) {
+        // Building the context is expensive so it is only done once
+        entryUnmarshaller = JAXBContext.newInstance(AtomFeed.class).createUnmarshaller();
+      }
+      return entryUnmarshaller.unmarshal(reader, AtomEntry.class).getValue();
+    }
+
+  }
+
+  /**
+   * @return An XML input factory that will not resolve external entities
+   */
+  private static XMLInputFactory newXMLInputFactory() {
+
+    XMLInputFactory factory = XMLInputFactory.newInstance();
+    factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+
+    return factory;
+  }
+
+  /**
+   * <p>Keep the downloaded feed and its validators for the next conditional GET</p>
+   */
+  private static void writeLocalCopy(byte[] content, URLConnection connection, File feedFile, File validatorsFile) {
+
+    Properties validators = new Properties();
+    if (connection.getHeaderField("ETag") != null) {
+      validators.setProperty(ETAG_PROPERTY, connection.getHeaderField("ETag"));
+    }
+    if (connection.getLastModified() > 0) {
+      validators.setProperty(LAST_MODIFIED_PROPERTY, String.valueOf(connection.getLastModified()));
+    }
+
+    try {
+      Files.write(content, feedFile);
+      try (OutputStream outputStream = new FileOutputStream(validatorsFile)) {
+        validators.store(outputStream, "Atom feed validators");
+      }
+    } catch (IOException e) {
+      log.warn("Unable to keep a local copy of the Atom feed. Error was '{}'", e.getMessage());
+    }
 
   }
 
@@ -0,0 +1,222 @@
+package org.multibit.hd.core.concurrent;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Queues;
+import com.google.common.collect.Sets;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Executor service to provide the following to the executor registry:</p>
+ * <ul>
+ * <li>A named view of a shared pool running at most a given number of its tasks at once</li>
+ * <li>Tasks started in submission order (one at a time when the limit is 1)</li>
+ * <li>Shutdown of the view without affecting the shared pool</li>
+ * </ul>
+ * <p>Each task is handed to the shared pool separately so a busy view cannot hold a pool thread
+ * while other views are waiting.</p>
+ *
+ * @since 0.3.0
+ */
+class BoundedExecutorService extends AbstractExecutorService {
+
+  private static final Logger log = LoggerFactory.getLogger(BoundedExecutorService.class);
+
+  private final String name;
+
+  private final Workload workload;
+
+  private final Executor pool;
+
+  private final int maximumConcurrency;
+
+  private final Deque<Runnable> queue = Queues.newArrayDeque();
+
+  /**
+   * The threads running tasks for this view (interrupted by shutdownNow)
+   */
+  private final Set<Thread> runners = Sets.newHashSet();
+
+  private int running = 0;
+
+  private int peakQueueDepth = 0;
+
+  private long completedTasks = 0;
+
+  private boolean shutdown = false;
+
+  /**
+   * @param name               The executor name (lowercase hyphenated)
+   * @param workload           The workload class of the shared pool
+   * @param pool               The shared pool
+   * @param maximumConcurrency The most tasks to run at once
+   */
+  BoundedExecutorService(String name, Workload workload, Executor pool, int maximumConcurrency) {
+
+    Preconditions.checkNotNull(name, "'name' must be present");
+    Preconditions.checkNotNull(workload, "'workload' must be present");
+    Preconditions.checkNotNull(pool, "'pool' must be present");
+    Preconditions.checkArgument(maximumConcurrency > 0, "'maximumConcurrency' must be greater than zero");
+
+    this.name = name;
+    this.workload = workload;
+    this.pool = pool;
+    this.maximumConcurrency = maximumConcurrency;
+  }
+
+  @Override
+  public void execute(Runnable command) {
+
+    Preconditions.checkNotNull(command, "'command' must be present");
+
+    synchronized (this) {
+      if (shutdown) {
+        throw new RejectedExecutionException("Executor '" + name + "' has been shut down");
+      }
+      queue.add(command);
+      peakQueueDepth = Math.max(peakQueueDepth, queue.size());
+
+      if (running >= maximumConcurrency) {
+        // A running task will hand over the next one when it completes
+        return;
+      }
+      running++;
+    }
+
+    pool.execute(new Worker());
+
+  }
+
+  @Override
+  public synchronized void shutdown() {
+    shutdown = true;
+    notifyAll();
+  }
+
+  @Override
+  public List<Runnable> shutdownNow() {
+
+    synchronized (this) {
+      shutdown = true;
+
+      List<Runnable> pending = Lists.newArrayList(queue);
+      queue.clear();
+
+      for (Thread runner : runners) {
+        runner.interrupt();
+      }
+      notifyAll();
+
+      return pending;
+    }
+
+  }
+
+  @Override
+  public synchronized boolean isShutdown() {
+    return shutdown;
+  }
+
+  @Override
+  public synchronized boolean isTerminated() {
+    return shutdown && running == 0;
+  }
+
+  @Override
+  public synchronized boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+
+    long remainingNanos = unit.toNanos(timeout);
+    long deadline = System.nanoTime() + remainingNanos;
+    while (!isTerminated()) {
+      if (remainingNanos <= 0) {
+        return false;
+      }
+      TimeUnit.NANOSECONDS.timedWait(this, remainingNanos);
+      remainingNanos = deadline - System.nanoTime();
+    }
+    return true;
+
+  }
+
+  /**
+   * @return A snapshot of the load on this executor
+   */
+  synchronized ExecutorMetrics getMetrics() {
+    return new ExecutorMetrics(name, workload, maximumConcurrency, runners.size(), queue.size(), peakQueueDepth, completedTasks);
+  }
+
+  /**
+   * @return The executor name
+   */
+  String getName() {
+    return name;
+  }
+
+  /**
+   * <p>Runs the next queued task on a pool thread, then hands over to the pool again if more are waiting</p>
+   */
+  private class Worker implements Runnable {
+
+    @Override
+    public void run() {
+
+      Runnable task;
+      Thread current = Thread.currentThread();
+      synchronized (BoundedExecutorService.this) {
+        task = queue.poll();
+        if (task == null) {
+          finished();
+          return;
+        }
+        runners.add(current);
+      }
+
+      String poolThreadName = current.getName();
+      current.setName(poolThreadName + "-" + name);
+      try {
+        task.run();
+      } catch (Throwable t) {
+        log.error("Uncaught exception in executor '{}'", name, t);
+      } finally {
+        current.setName(poolThreadName);
+
+        boolean more;
+        synchronized (BoundedExecutorService.this) {
+          runners.remove(current);
+          completedTasks++;
+          more = !queue.isEmpty();
+          if (!more) {
+            finished();
+          }
+        }
+
+        // Do not leak an interrupt meant for this task into the next one on the pool thread
+        Thread.interrupted();
+
+        if (more) {
+          pool.execute(this);
+        }
+      }
+
+    }
+
+    /**
+     * <p>Release the slot held by this worker (must hold the lock)</p>
+     */
+    private void finished() {
+      running--;
+      if (shutdown && running == 0) {
+        BoundedExecutorService.this.notifyAll();
+      }
+    }
+  }
+}
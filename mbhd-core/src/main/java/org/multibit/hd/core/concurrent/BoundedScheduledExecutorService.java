@@ -0,0 +1,230 @@
+package org.multibit.hd.core.concurrent;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+
+/**
+ * <p>Scheduled executor service to provide the following to the executor registry:</p>
+ * <ul>
+ * <li>Delayed and periodic tasks timed by a shared timer and run on a bounded view of a shared pool</li>
+ * </ul>
+ * <p>The timer thread only hands tasks over so a slow task cannot delay the tasks of other executors.
+ * Periodic tasks never overlap: the next run is scheduled when the previous one completes.</p>
+ * <p>Unlike a ScheduledThreadPoolExecutor, shutdown cancels delayed tasks that have not started.</p>
+ *
+ * @since 0.3.0
+ */
+class BoundedScheduledExecutorService extends BoundedExecutorService implements ScheduledExecutorService {
+
+  private final ScheduledExecutorService timer;
+
+  /**
+   * The tasks waiting for their trigger time
+   */
+  private final Set<ScheduledTask<?>> scheduledTasks = Sets.newHashSet();
+
+  /**
+   * @param name               The executor name (lowercase hyphenated)
+   * @param workload           The workload class of the shared pool
+   * @param pool               The shared pool
+   * @param maximumConcurrency The most tasks to run at once
+   * @param timer              The shared timer
+   */
+  BoundedScheduledExecutorService(String name, Workload workload, Executor pool, int maximumConcurrency, ScheduledExecutorService timer) {
+    super(name, workload, pool, maximumConcurrency);
+
+    Preconditions.checkNotNull(timer, "'timer' must be present");
+
+    this.timer = timer;
+  }
+
+  @Override
+  public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+    return schedule(Executors.callable(command), delay, unit);
+  }
+
+  @Override
+  public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+
+    Preconditions.checkNotNull(callable, "'callable' must be present");
+
+    ScheduledTask<V> task = new ScheduledTask<>(callable, triggerTime(delay, unit), 0);
+    task.arm();
+
+    return task;
+  }
+
+  @Override
+  public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+
+    Preconditions.checkNotNull(command, "'command' must be present");
+    Preconditions.checkArgument(period > 0, "'period' must be greater than zero");
+
+    ScheduledTask<Object> task = new ScheduledTask<>(Executors.callable(command), triggerTime(initialDelay, unit), unit.toNanos(period));
+    task.arm();
+
+    return task;
+  }
+
+  @Override
+  public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit) {
+
+    Preconditions.checkNotNull(command, "'command' must be present");
+    Preconditions.checkArgument(delay > 0, "'delay' must be greater than zero");
+
+    ScheduledTask<Object> task = new ScheduledTask<>(Executors.callable(command), triggerTime(initialDelay, unit), -unit.toNanos(delay));
+    task.arm();
+
+    return task;
+  }
+
+  @Override
+  public void shutdown() {
+    cancelScheduledTasks();
+    super.shutdown();
+  }
+
+  @Override
+  public List<Runnable> shutdownNow() {
+    cancelScheduledTasks();
+    return super.shutdownNow();
+  }
+
+  private void cancelScheduledTasks() {
+
+    List<ScheduledTask<?>> tasks;
+    synchronized (scheduledTasks) {
+      tasks = Lists.newArrayList(scheduledTasks);
+      scheduledTasks.clear();
+    }
+    for (ScheduledTask<?> task : tasks) {
+      task.cancel(false);
+    }
+
+  }
+
+  private static long triggerTime(long delay, TimeUnit unit) {
+    return System.nanoTime() + unit.toNanos(Math.max(0, delay));
+  }
+
+  /**
+   * <p>A delayed or periodic task handed from the timer to this executor at its trigger time</p>
+   */
+  private class ScheduledTask<V> extends FutureTask<V> implements ScheduledFuture<V> {
+
+    /**
+     * Positive for a fixed rate, negative for a fixed delay and zero for a single run
+     */
+    private final long periodNanos;
+
+    private volatile long triggerNanos;
+
+    private volatile ScheduledFuture<?> timerFuture;
+
+    private ScheduledTask(Callable<V> callable, long triggerNanos, long periodNanos) {
+      super(callable);
+      this.triggerNanos = triggerNanos;
+      this.periodNanos = periodNanos;
+    }
+
+    /**
+     * <p>Ask the timer to hand this task over at its trigger time</p>
+     */
+    private void arm() {
+
+      if (isShutdown()) {
+        throw new RejectedExecutionException("Executor '" + getName() + "' has been shut down");
+      }
+
+      synchronized (scheduledTasks) {
+        scheduledTasks.add(this);
+      }
+
+      timerFuture = timer.schedule(
+        new Runnable() {
+          @Override
+          public void run() {
+            handOver();
+          }
+        }, triggerNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+
+      // A cancel racing with the timer may have missed the new timer future
+      if (isCancelled()) {
+        timerFuture.cancel(false);
+      }
+
+    }
+
+    private void handOver() {
+
+      synchronized (scheduledTasks) {
+        scheduledTasks.remove(this);
+      }
+      if (isDone()) {
+        return;
+      }
+      try {
+        execute(this);
+      } catch (RejectedExecutionException e) {
+        cancel(false);
+      }
+
+    }
+
+    @Override
+    public void run() {
+
+      if (periodNanos == 0) {
+        super.run();
+        return;
+      }
+
+      // A periodic task that fails or is cancelled is not run again
+      if (runAndReset() && !isShutdown()) {
+        triggerNanos = periodNanos > 0 ? triggerNanos + periodNanos : System.nanoTime() - periodNanos;
+        try {
+          arm();
+        } catch (RejectedExecutionException e) {
+          cancel(false);
+        }
+      }
+
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+
+      boolean cancelled = super.cancel(mayInterruptIfRunning);
+      if (cancelled) {
+        ScheduledFuture<?> future = timerFuture;
+        if (future != null) {
+          future.cancel(false);
+        }
+        synchronized (scheduledTasks) {
+          scheduledTasks.remove(this);
+        }
+      }
+      return cancelled;
+
+    }
+
+    @Override
+    public long getDelay(TimeUnit unit) {
+      return unit.convert(triggerNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public int compareTo(Delayed other) {
+      if (other == this) {
+        return 0;
+      }
+      long difference = getDelay(TimeUnit.NANOSECONDS) - other.getDelay(TimeUnit.NANOSECONDS);
+      return difference < 0 ? -1 : (difference > 0 ? 1 : 0);
+    }
+  }
+}
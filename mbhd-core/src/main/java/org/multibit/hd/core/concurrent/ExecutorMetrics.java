@@ -0,0 +1,120 @@
+package org.multibit.hd.core.concurrent;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * <p>Value object to provide the following to the executor registry:</p>
+ * <ul>
+ * <li>A snapshot of the load on a shared pool or a named executor</li>
+ * </ul>
+ *
+ * @since 0.3.0
+ */
+public class ExecutorMetrics {
+
+  private final String name;
+
+  private final Workload workload;
+
+  private final int maximumThreads;
+
+  private final int activeThreads;
+
+  private final int queueDepth;
+
+  private final int peakQueueDepth;
+
+  private final long completedTasks;
+
+  /**
+   * @param name           The pool or executor name
+   * @param workload       The workload class
+   * @param maximumThreads The most threads that can run tasks at once
+   * @param activeThreads  The threads running tasks now
+   * @param queueDepth     The tasks waiting for a thread
+   * @param peakQueueDepth The most tasks that have waited for a thread at once
+   * @param completedTasks The tasks run to completion
+   */
+  public ExecutorMetrics(String name, Workload workload, int maximumThreads, int activeThreads, int queueDepth, int peakQueueDepth, long completedTasks) {
+
+    Preconditions.checkNotNull(name, "'name' must be present");
+    Preconditions.checkNotNull(workload, "'workload' must be present");
+
+    this.name = name;
+    this.workload = workload;
+    this.maximumThreads = maximumThreads;
+    this.activeThreads = activeThreads;
+    this.queueDepth = queueDepth;
+    this.peakQueueDepth = peakQueueDepth;
+    this.completedTasks = completedTasks;
+  }
+
+  /**
+   * @return The pool or executor name
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * @return The workload class
+   */
+  public Workload getWorkload() {
+    return workload;
+  }
+
+  /**
+   * @return The most threads that can run tasks at once
+   */
+  public int getMaximumThreads() {
+    return maximumThreads;
+  }
+
+  /**
+   * @return The threads running tasks now
+   */
+  public int getActiveThreads() {
+    return activeThreads;
+  }
+
+  /**
+   * @return The tasks waiting for a thread
+   */
+  public int getQueueDepth() {
+    return queueDepth;
+  }
+
+  /**
+   * @return The most tasks that have waited for a thread at once
+   */
+  public int getPeakQueueDepth() {
+    return peakQueueDepth;
+  }
+
+  /**
+   * @return The tasks run to completion
+   */
+  public long getCompletedTasks() {
+    return completedTasks;
+  }
+
+  /**
+   * @return The fraction of the threads running tasks (1.0 when saturated)
+   */
+  public double getSaturation() {
+    return maximumThreads == 0 ? 0 : (double) activeThreads / maximumThreads;
+  }
+
+  @Override
+  public String toString() {
+    return "ExecutorMetrics{" +
+      "name='" + name + '\'' +
+      ", workload=" + workload +
+      ", activeThreads=" + activeThreads +
+      ", maximumThreads=" + maximumThreads +
+      ", queueDepth=" + queueDepth +
+      ", peakQueueDepth=" + peakQueueDepth +
+      ", completedTasks=" + completedTasks +
+      '}';
+  }
+}
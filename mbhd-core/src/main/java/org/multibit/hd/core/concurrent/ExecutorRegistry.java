@@ -0,0 +1,234 @@
+package org.multibit.hd.core.concurrent;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.ListeningScheduledExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>Registry to provide the following to the application:</p>
+ * <ul>
+ * <li>A single bounded thread pool per workload class, sized to the number of cores</li>
+ * <li>Named executors drawing from those pools in place of dedicated thread pools</li>
+ * <li>Saturation and queue depth metrics for each pool and named executor</li>
+ * </ul>
+ * <p>A named executor runs at most a given number of its tasks at once (one for a single thread executor, preserving
+ * submission order) and can be shut down independently. Creating one does not create a thread, so the number of threads
+ * stays bounded however many wizards or services are created.</p>
+ * <p>Delayed and periodic tasks are timed by a single shared timer thread and run on the pool of their executor.</p>
+ * <p>Tasks that block indefinitely (e.g. a server socket accept loop) should use a dedicated executor so they do not
+ * hold a shared pool thread.</p>
+ *
+ * @since 0.3.0
+ */
+public enum ExecutorRegistry {
+
+  INSTANCE;
+
+  private static final Logger log = LoggerFactory.getLogger(ExecutorRegistry.class);
+
+  /**
+   * Idle pool threads are released after this time
+   */
+  private static final long KEEP_ALIVE_SECONDS = 60;
+
+  private final Map<Workload, MeteredThreadPoolExecutor> pools = Maps.newEnumMap(Workload.class);
+
+  /**
+   * Hands delayed and periodic tasks to their executors (never runs them itself)
+   */
+  private final ScheduledThreadPoolExecutor timer;
+
+  /**
+   * The named executors (weakly held so abandoned wizard executors can be collected)
+   */
+  private final List<WeakReference<BoundedExecutorService>> executors = Lists.newArrayList();
+
+  ExecutorRegistry() {
+
+    int cores = Runtime.getRuntime().availableProcessors();
+
+    for (Workload workload : Workload.values()) {
+      pools.put(workload, new MeteredThreadPoolExecutor(workload, workload.threadCount(cores)));
+    }
+
+    timer = new ScheduledThreadPoolExecutor(1, newThreadFactory("executor-timer"));
+    timer.setRemoveOnCancelPolicy(true);
+
+  }
+
+  /**
+   * @param name     The executor name (lowercase hyphenated)
+   * @param workload The workload class of the tasks
+   *
+   * @return An executor running one task at a time in submission order
+   */
+  public ListeningExecutorService newSingleThreadExecutor(String name, Workload workload) {
+    return newFixedThreadPool(1, name, workload);
+  }
+
+  /**
+   * @param maximumConcurrency The most tasks to run at once
+   * @param name               The executor name (lowercase hyphenated)
+   * @param workload           The workload class of the tasks
+   *
+   * @return An executor running at most the given number of tasks at once
+   */
+  public ListeningExecutorService newFixedThreadPool(int maximumConcurrency, String name, Workload workload) {
+
+    Preconditions.checkNotNull(workload, "'workload' must be present");
+
+    BoundedExecutorService executorService = new BoundedExecutorService(name, workload, pools.get(workload), maximumConcurrency);
+    register(executorService);
+
+    return MoreExecutors.listeningDecorator(executorService);
+  }
+
+  /**
+   * @param name     The executor name (lowercase hyphenated)
+   * @param workload The workload class of the tasks
+   *
+   * @return A scheduled executor running one task at a time
+   */
+  public ListeningScheduledExecutorService newSingleThreadScheduledExecutor(String name, Workload workload) {
+    return newScheduledThreadPool(1, name, workload);
+  }
+
+  /**
+   * @param maximumConcurrency The most tasks to run at once
+   * @param name               The executor name (lowercase hyphenated)
+   * @param workload           The workload class of the tasks
+   *
+   * @return A scheduled executor running at most the given number of tasks at once
+   */
+  public ListeningScheduledExecutorService newScheduledThreadPool(int maximumConcurrency, String name, Workload workload) {
+
+    Preconditions.checkNotNull(workload, "'workload' must be present");
+
+    BoundedScheduledExecutorService executorService = new BoundedScheduledExecutorService(name, workload, pools.get(workload), maximumConcurrency, timer);
+    register(executorService);
+
+    return MoreExecutors.listeningDecorator(executorService);
+  }
+
+  /**
+   * <p>Provide an executor with its own thread for a task that blocks indefinitely</p>
+   *
+   * @param name The executor name (lowercase hyphenated)
+   *
+   * @return An executor with a single dedicated thread (shut it down to release the thread)
+   */
+  public ListeningExecutorService newDedicatedExecutor(String name) {
+
+    ThreadPoolExecutor dedicated = new ThreadPoolExecutor(0, 1, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), newThreadFactory(name));
+    BoundedExecutorService executorService = new BoundedExecutorService(name, Workload.IO, dedicated, 1);
+    register(executorService);
+
+    return MoreExecutors.listeningDecorator(executorService);
+  }
+
+  /**
+   * @param workload The workload class
+   *
+   * @return A snapshot of the load on the shared pool
+   */
+  public ExecutorMetrics getPoolMetrics(Workload workload) {
+    return pools.get(workload).getMetrics();
+  }
+
+  /**
+   * @return Snapshots of the load on the named executors that are still in use
+   */
+  public List<ExecutorMetrics> getExecutorMetrics() {
+
+    List<ExecutorMetrics> metrics = Lists.newArrayList();
+    synchronized (executors) {
+      Iterator<WeakReference<BoundedExecutorService>> iterator = executors.iterator();
+      while (iterator.hasNext()) {
+        BoundedExecutorService executorService = iterator.next().get();
+        if (executorService == null || executorService.isTerminated()) {
+          iterator.remove();
+        } else {
+          metrics.add(executorService.getMetrics());
+        }
+      }
+    }
+    return metrics;
+
+  }
+
+  private void register(BoundedExecutorService executorService) {
+
+    synchronized (executors) {
+      // Drop the executors that have been collected or shut down
+      Iterator<WeakReference<BoundedExecutorService>> iterator = executors.iterator();
+      while (iterator.hasNext()) {
+        BoundedExecutorService registered = iterator.next().get();
+        if (registered == null || registered.isTerminated()) {
+          iterator.remove();
+        }
+      }
+      executors.add(new WeakReference<>(executorService));
+    }
+
+    log.trace("Registered executor '{}'", executorService.getName());
+
+  }
+
+  /**
+   * @param poolName The thread pool name (lowercase hyphenated)
+   *
+   * @return A factory of named daemon threads
+   */
+  private static ThreadFactory newThreadFactory(String poolName) {
+    return new ThreadFactoryBuilder()
+      .setNameFormat(poolName + "-%d")
+      .setDaemon(true)
+      .build();
+  }
+
+  /**
+   * <p>A shared pool of up to a fixed number of threads that records its queue depth</p>
+   */
+  private static class MeteredThreadPoolExecutor extends ThreadPoolExecutor {
+
+    private final Workload workload;
+
+    private final AtomicInteger peakQueueDepth = new AtomicInteger();
+
+    private MeteredThreadPoolExecutor(Workload workload, int threadCount) {
+      super(threadCount, threadCount, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), newThreadFactory(workload.getPoolName()));
+      this.workload = workload;
+
+      // Threads are only created under load and released when idle
+      allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    public void execute(Runnable command) {
+      super.execute(command);
+
+      int queueDepth = getQueue().size();
+      int peak = peakQueueDepth.get();
+      while (queueDepth > peak && !peakQueueDepth.compareAndSet(peak, queueDepth)) {
+        peak = peakQueueDepth.get();
+      }
+    }
+
+    private ExecutorMetrics getMetrics() {
+      return new ExecutorMetrics(workload.getPoolName(), workload, getMaximumPoolSize(), getActiveCount(), getQueue().size(), peakQueueDepth.get(), getCompletedTaskCount());
+    }
+  }
+}
@@ -0,0 +1,170 @@
+package org.multibit.hd.core.concurrent;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Registry to provide the following to controllers:</p>
+ * <ul>
+ * <li>Delayed checks keyed by an identifier (e.g. a transaction hash)</li>
+ * <li>Merging of duplicate checks so only the first one scheduled for a key runs</li>
+ * <li>Cancellation of a pending check when it is no longer required</li>
+ * </ul>
+ * <p>A pending check only occupies an entry on the timer of its executor so a burst of checks never holds
+ * a thread while waiting.</p>
+ *
+ * @param <K> The key type
+ *
+ * @since 0.3.0
+ */
+public class ScheduledCheckRegistry<K> {
+
+  private static final Logger log = LoggerFactory.getLogger(ScheduledCheckRegistry.class);
+
+  private final ScheduledExecutorService executorService;
+
+  private final ConcurrentMap<K, Check> pendingChecks = Maps.newConcurrentMap();
+
+  /**
+   * @param executorService The executor service to time and run the checks
+   */
+  public ScheduledCheckRegistry(ScheduledExecutorService executorService) {
+
+    Preconditions.checkNotNull(executorService, "'executorService' must be present");
+
+    this.executorService = executorService;
+  }
+
+  /**
+   * <p>Schedule a check unless one is already pending for the key</p>
+   *
+   * @param key   The key identifying the check
+   * @param check The check to run
+   * @param delay The delay before running the check
+   * @param unit  The time unit of the delay
+   *
+   * @return True if the check was scheduled, false if it was merged with a pending check
+   */
+  public boolean schedule(K key, Runnable check, long delay, TimeUnit unit) {
+
+    Preconditions.checkNotNull(key, "'key' must be present");
+    Preconditions.checkNotNull(check, "'check' must be present");
+
+    Check pendingCheck = new Check(key, check);
+    if (pendingChecks.putIfAbsent(key, pendingCheck) != null) {
+      log.debug("Check for '{}' is already pending", key);
+      return false;
+    }
+
+    pendingCheck.future = executorService.schedule(pendingCheck, delay, unit);
+
+    // A cancel racing with the schedule may have missed the future
+    if (pendingCheck.cancelled) {
+      pendingCheck.future.cancel(false);
+    }
+
+    return true;
+  }
+
+  /**
+   * <p>Cancel the pending check for the key (e.g. the transaction confirmed before the check was due)</p>
+   *
+   * @param key The key identifying the check
+   *
+   * @return True if a pending check was cancelled
+   */
+  public boolean cancel(K key) {
+
+    Preconditions.checkNotNull(key, "'key' must be present");
+
+    Check pendingCheck = pendingChecks.remove(key);
+    if (pendingCheck == null) {
+      return false;
+    }
+
+    log.debug("Cancelling check for '{}'", key);
+    pendingCheck.cancel();
+
+    return true;
+  }
+
+  /**
+   * <p>Cancel all pending checks (e.g. the wallet is closing)</p>
+   */
+  public void cancelAll() {
+
+    List<K> keys = Lists.newArrayList(pendingChecks.keySet());
+    for (K key : keys) {
+      cancel(key);
+    }
+
+  }
+
+  /**
+   * @param key The key identifying the check
+   *
+   * @return True if a check is waiting to run for the key
+   */
+  public boolean isPending(K key) {
+    return pendingChecks.containsKey(key);
+  }
+
+  /**
+   * @return The number of checks waiting to run
+   */
+  public int size() {
+    return pendingChecks.size();
+  }
+
+  /**
+   * <p>A check that leaves the registry as it starts to run</p>
+   */
+  private class Check implements Runnable {
+
+    private final K key;
+
+    private final Runnable check;
+
+    private volatile ScheduledFuture<?> future;
+
+    private volatile boolean cancelled = false;
+
+    private Check(K key, Runnable check) {
+      this.key = key;
+      this.check = check;
+    }
+
+    @Override
+    public void run() {
+
+      // Only run if this check has not been cancelled in the meantime
+      if (!pendingChecks.remove(key, this)) {
+        return;
+      }
+
+      try {
+        check.run();
+      } catch (RuntimeException e) {
+        log.error("Check for '{}' failed", key, e);
+      }
+
+    }
+
+    private void cancel() {
+      cancelled = true;
+      ScheduledFuture<?> scheduled = future;
+      if (scheduled != null) {
+        scheduled.cancel(false);
+      }
+    }
+  }
+}
@@ -0,0 +1,77 @@
+package org.multibit.hd.core.concurrent;
+
+/**
+ * <p>Enum to provide the following to the executor registry:</p>
+ * <ul>
+ * <li>The classes of work sharing a thread pool</li>
+ * <li>The size of each pool relative to the number of cores</li>
+ * </ul>
+ *
+ * @since 0.3.0
+ */
+public enum Workload {
+
+  /**
+   * Disk reads and writes (wallets, payments, backups, exports)
+   */
+  IO("io") {
+    @Override
+    int threadCount(int cores) {
+      return Math.max(4, cores);
+    }
+  },
+
+  /**
+   * Computation that keeps a core busy (key derivation, re-encryption, signing)
+   */
+  CPU("cpu") {
+    @Override
+    int threadCount(int cores) {
+      return Math.max(2, cores);
+    }
+  },
+
+  /**
+   * Requests that spend most of their time waiting on a remote host (exchanges, feeds, peers, hardware wallets)
+   */
+  NETWORK("network") {
+    @Override
+    int threadCount(int cores) {
+      return Math.max(8, 2 * cores);
+    }
+  },
+
+  /**
+   * Short tasks handing results between the services and the UI (event delivery, wizard transitions)
+   */
+  UI_HANDOFF("ui-handoff") {
+    @Override
+    int threadCount(int cores) {
+      return Math.max(8, cores);
+    }
+  },
+
+  // End of enum
+  ;
+
+  private final String poolName;
+
+  Workload(String poolName) {
+    this.poolName = poolName;
+  }
+
+  /**
+   * @return The thread name prefix of the pool (lowercase hyphenated)
+   */
+  public String getPoolName() {
+    return poolName;
+  }
+
+  /**
+   * @param cores The number of available processors
+   *
+   * @return The maximum number of threads in the pool
+   */
+  abstract int threadCount(int cores);
+
+}
@@ -24,7 +24,10 @@ public class Yaml {
 
   private static final Logger log = LoggerFactory.getLogger(Yaml.class);
 
-  private static ObjectMapper mapper = null;
+  /**
+   * Thread safe once configured so wallet summaries can be parsed in parallel
+   */
+  private static final ObjectMapper mapper = new ObjectMapper(new YAMLFactory());
 
   /**
    * Utilities have private constructors
@@ -40,16 +43,12 @@ public class Yaml {
    *
    * @return The configuration data (<code>Configuration</code>, <code>Wallet Summary</code> etc) if present
    */
-  public static synchronized <T> Optional<T> readYaml(InputStream is, Class<T> clazz) {
+  public static <T> Optional<T> readYaml(InputStream is, Class<T> clazz) {
     log.trace("Reading YAML data...");
 
     Optional<T> value;
 
     // Read the external configuration
-    if (mapper == null) {
-      mapper = new ObjectMapper(new YAMLFactory());
-    }
-
     try {
       value = Optional.fromNullable(mapper.readValue(is, clazz));
     } catch (YAMLException | IOException e) {
@@ -73,10 +72,6 @@ public class Yaml {
   public static synchronized <T> void writeYaml(OutputStream os, T configuration) {
     log.debug("Writing YAML data...");
 
-    if (mapper == null) {
-      mapper = new ObjectMapper(new YAMLFactory());
-    }
-
     try {
       mapper.writeValue(os, configuration);
     } catch (YAMLException | IOException e) {
@@ -0,0 +1,252 @@
+package org.multibit.hd.core.crypto;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import org.bitcoinj.crypto.KeyCrypterScrypt;
+import org.multibit.hd.core.dto.WalletId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.spongycastle.crypto.params.KeyParameter;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Cache to provide the following to encrypted file stores:</p>
+ * <ul>
+ * <li>Holds the scrypt derived AES key for the current wallet session (keyed by wallet ID and salt)</li>
+ * <li>Avoids a full scrypt derivation on every wallet, payments, contacts and BIP70 file read or write</li>
+ * <li>Counters for cache hits, misses and time spent in scrypt</li>
+ * </ul>
+ * <p>The cache is filled when a wallet is opened and wiped when it is closed or switched.
+ * A lookup only hits if the supplied password matches the password the session was opened with
+ * (compared by digest so the password itself is not retained).</p>
+ */
+public enum DerivedKeyCache {
+
+  INSTANCE;
+
+  private static final Logger log = LoggerFactory.getLogger(DerivedKeyCache.class);
+
+  /**
+   * The current wallet session entry (null if no wallet session is open)
+   */
+  private volatile Entry entry = null;
+
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+  private final AtomicLong scryptCount = new AtomicLong();
+  private final AtomicLong scryptNanos = new AtomicLong();
+
+  /**
+   * <p>Open a wallet session, deriving and caching the AES key for the given password and salt</p>
+   * <p>Any previous session is wiped first</p>
+   *
+   * @param walletId The wallet ID of the session
+   * @param password The wallet password
+   * @param salt     The scrypt salt
+   */
+  public void open(WalletId walletId, CharSequence password, byte[] salt) {
+
+    Preconditions.checkNotNull(walletId, "'walletId' must be present");
+    Preconditions.checkNotNull(password, "'password' must be present");
+    Preconditions.checkNotNull(salt, "'salt' must be present");
+
+    close();
+
+    KeyParameter keyParameter = derive(password, salt);
+    entry = new Entry(walletId, Arrays.copyOf(salt, salt.length), digest(password, salt), keyParameter);
+
+    log.debug("Opened derived key cache for wallet ID '{}'", walletId);
+
+  }
+
+  /**
+   * <p>Close the current wallet session and wipe the cached key</p>
+   */
+  public void close() {
+
+    Entry previous = entry;
+    entry = null;
+
+    if (previous != null) {
+      previous.wipe();
+      log.debug("Closed derived key cache for wallet ID '{}'. Hits: {}, misses: {}, scrypt: {} derivations in {} ms",
+        previous.walletId,
+        hitCount.get(),
+        missCount.get(),
+        scryptCount.get(),
+        getScryptMillis()
+      );
+    }
+
+  }
+
+  /**
+   * @param walletId The wallet ID
+   *
+   * @return True if a session is open for the given wallet ID
+   */
+  public boolean isOpenFor(WalletId walletId) {
+    Entry current = entry;
+    return current != null && current.walletId.equals(walletId);
+  }
+
+  /**
+   * <p>Get the AES key for the password and salt, using the cached key if it matches the current session</p>
+   * <p>A miss derives the key with scrypt but does not replace the session entry</p>
+   *
+   * @param password The password
+   * @param salt     The scrypt salt
+   *
+   * @return A copy of the derived key (safe to use after the session is closed)
+   */
+  public KeyParameter getOrDeriveKey(CharSequence password, byte[] salt) {
+
+    Preconditions.checkNotNull(password, "'password' must be present");
+    Preconditions.checkNotNull(salt, "'salt' must be present");
+
+    Entry current = entry;
+    if (current != null && current.matches(salt, digest(password, salt))) {
+      KeyParameter keyParameter = current.copyKey();
+      if (keyParameter != null) {
+        hitCount.incrementAndGet();
+        return keyParameter;
+      }
+    }
+
+    missCount.incrementAndGet();
+    return derive(password, salt);
+
+  }
+
+  /**
+   * @return The number of lookups served from the cache
+   */
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  /**
+   * @return The number of lookups that required a scrypt derivation
+   */
+  public long getMissCount() {
+    return missCount.get();
+  }
+
+  /**
+   * @return The number of scrypt derivations performed (including session opens)
+   */
+  public long getScryptCount() {
+    return scryptCount.get();
+  }
+
+  /**
+   * @return The total time spent in scrypt derivations in milliseconds
+   */
+  public long getScryptMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(scryptNanos.get());
+  }
+
+  /**
+   * <p>Reset the counters (the cached entry is unaffected)</p>
+   */
+  public void resetCounters() {
+    hitCount.set(0);
+    missCount.set(0);
+    scryptCount.set(0);
+    scryptNanos.set(0);
+  }
+
+  /**
+   * @param password The password
+   * @param salt     The scrypt salt
+   *
+   * @return The scrypt derived key
+   */
+  private KeyParameter derive(CharSequence password, byte[] salt) {
+
+    long start = System.nanoTime();
+    try {
+      KeyCrypterScrypt keyCrypterScrypt = new KeyCrypterScrypt(EncryptedFileReaderWriter.makeScryptParameters(salt));
+      return keyCrypterScrypt.deriveKey(password);
+    } finally {
+      scryptCount.incrementAndGet();
+      scryptNanos.addAndGet(System.nanoTime() - start);
+    }
+
+  }
+
+  /**
+   * @param password The password
+   * @param salt     The scrypt salt
+   *
+   * @return A SHA-256 digest of the salt and UTF-8 password bytes for session matching
+   */
+  private static byte[] digest(CharSequence password, byte[] salt) {
+
+    ByteBuffer passwordBuffer = Charsets.UTF_8.encode(CharBuffer.wrap(password));
+    byte[] passwordBytes = new byte[passwordBuffer.remaining()];
+    passwordBuffer.get(passwordBytes);
+
+    try {
+      MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+      messageDigest.update(salt);
+      messageDigest.update(passwordBytes);
+      return messageDigest.digest();
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not available", e);
+    } finally {
+      Arrays.fill(passwordBytes, (byte) 0);
+      if (passwordBuffer.hasArray()) {
+        Arrays.fill(passwordBuffer.array(), (byte) 0);
+      }
+    }
+
+  }
+
+  /**
+   * <p>Immutable wallet session entry (apart from wiping)</p>
+   */
+  private static class Entry {
+
+    private final WalletId walletId;
+    private final byte[] salt;
+    private final byte[] passwordDigest;
+    private final byte[] key;
+
+    private volatile boolean wiped = false;
+
+    private Entry(WalletId walletId, byte[] salt, byte[] passwordDigest, KeyParameter keyParameter) {
+      this.walletId = walletId;
+      this.salt = salt;
+      this.passwordDigest = passwordDigest;
+      this.key = Arrays.copyOf(keyParameter.getKey(), keyParameter.getKey().length);
+    }
+
+    private boolean matches(byte[] otherSalt, byte[] otherPasswordDigest) {
+      return !wiped && Arrays.equals(salt, otherSalt) && MessageDigest.isEqual(passwordDigest, otherPasswordDigest);
+    }
+
+    /**
+     * @return A copy of the key, or null if the entry has been wiped
+     */
+    private synchronized KeyParameter copyKey() {
+      if (wiped) {
+        return null;
+      }
+      return new KeyParameter(key);
+    }
+
+    private synchronized void wipe() {
+      wiped = true;
+      Arrays.fill(key, (byte) 0);
+      Arrays.fill(passwordDigest, (byte) 0);
+    }
+  }
+}
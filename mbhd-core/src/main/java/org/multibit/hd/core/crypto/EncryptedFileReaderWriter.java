@@ -1,27 +1,56 @@
 package org.multibit.hd.core.crypto;
 
 import com.google.common.base.Charsets;
+import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
 import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingOutputStream;
 import com.google.common.io.Files;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.protobuf.ByteString;
-import org.bitcoinj.crypto.KeyCrypterScrypt;
 import org.bitcoinj.wallet.Protos;
 import org.multibit.commons.crypto.AESUtils;
+import org.multibit.hd.core.concurrent.ExecutorRegistry;
+import org.multibit.hd.core.concurrent.Workload;
 import org.multibit.hd.core.exceptions.EncryptedFileReaderWriterException;
 import org.multibit.commons.files.SecureFiles;
 import org.multibit.hd.core.managers.WalletManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.spongycastle.crypto.BufferedBlockCipher;
+import org.spongycastle.crypto.engines.AESFastEngine;
+import org.spongycastle.crypto.io.CipherInputStream;
+import org.spongycastle.crypto.io.CipherOutputStream;
+import org.spongycastle.crypto.modes.CBCBlockCipher;
+import org.spongycastle.crypto.paddings.PaddedBufferedBlockCipher;
 import org.spongycastle.crypto.params.KeyParameter;
+import org.spongycastle.crypto.params.ParametersWithIV;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * <p>Reader / Writer to provide the following to Services:<br>
@@ -41,6 +70,40 @@ public class EncryptedFileReaderWriter {
   private static final String OLD_FILE_EXTENSION = ".old";
   private static final String NEW_FILE_EXTENSION = ".new";
 
+  private static final int STREAM_BUFFER_SIZE = 8192;
+
+  /**
+   * The upper bound on the threads used to change the encryption on many files
+   */
+  private static final int MAXIMUM_RE_ENCRYPTION_THREADS = 4;
+
+  /**
+   * <p>Writes plain bytes to the stream supplied (e.g. a protobuf serializer)</p>
+   */
+  public interface StreamWriter {
+
+    /**
+     * @param outputStream The stream to write the plain bytes to (do not close it)
+     *
+     * @throws IOException If the write fails
+     */
+    void writeTo(OutputStream outputStream) throws IOException;
+
+  }
+
+  /**
+   * <p>Receives the progress of a change of encryption on many files</p>
+   */
+  public interface ProgressListener {
+
+    /**
+     * @param filesDone  The number of files processed so far
+     * @param totalFiles The total number of files to process
+     */
+    void onProgress(int filesDone, int totalFiles);
+
+  }
+
   /**
    * Decrypt an AES encrypted file and return it as an inputStream
    */
@@ -54,21 +117,54 @@ public class EncryptedFileReaderWriter {
   public static byte[] readAndDecryptToByteArray(File encryptedProtobufFile, CharSequence password) throws EncryptedFileReaderWriterException {
     Preconditions.checkNotNull(encryptedProtobufFile);
     Preconditions.checkNotNull(password);
-    try {
-      // Read the encrypted file in and decrypt it.
-      log.debug("Encrypted file is of size {} bytes", encryptedProtobufFile.length());
-      byte[] encryptedWalletBytes = Files.toByteArray(encryptedProtobufFile);
-
-      KeyCrypterScrypt keyCrypterScrypt = new KeyCrypterScrypt(makeScryptParameters(WalletManager.scryptSalt()));
-      KeyParameter keyParameter = keyCrypterScrypt.deriveKey(password);
-
-      // Decrypt the file bytes
-      return AESUtils.decrypt(encryptedWalletBytes, keyParameter, WalletManager.aesInitialisationVector());
+    // Decrypt the file as it is read to avoid holding the encrypted bytes as well
+    try (InputStream decryptedInputStream = readAndDecryptStream(encryptedProtobufFile, password)) {
+      return ByteStreams.toByteArray(decryptedInputStream);
     } catch (Exception e) {
       throw new EncryptedFileReaderWriterException("Cannot read and decrypt the file '" + encryptedProtobufFile.getAbsolutePath() + "'", e);
     }
   }
 
+  /**
+   * <p>Open a stream that decrypts an AES encrypted file as it is read (the caller must close it)</p>
+   * <p>Only a buffer's worth of the file is held in memory at any time</p>
+   *
+   * @param encryptedFile The AES encrypted file
+   * @param password      The password to derive the AES key from
+   *
+   * @return The decrypted input stream
+   *
+   * @throws EncryptedFileReaderWriterException If the file cannot be opened
+   */
+  public static InputStream readAndDecryptStream(File encryptedFile, CharSequence password) throws EncryptedFileReaderWriterException {
+    Preconditions.checkNotNull(password);
+
+    KeyParameter keyParameter = DerivedKeyCache.INSTANCE.getOrDeriveKey(password, WalletManager.scryptSalt());
+    return readAndDecryptStream(encryptedFile, keyParameter);
+  }
+
+  /**
+   * <p>Open a stream that decrypts an AES encrypted file as it is read (the caller must close it)</p>
+   *
+   * @param encryptedFile The AES encrypted file
+   * @param keyParameter  The AES key
+   *
+   * @return The decrypted input stream (a bad key or corrupt file surfaces as an IOException when read)
+   *
+   * @throws EncryptedFileReaderWriterException If the file cannot be opened
+   */
+  public static InputStream readAndDecryptStream(File encryptedFile, KeyParameter keyParameter) throws EncryptedFileReaderWriterException {
+    Preconditions.checkNotNull(encryptedFile);
+    Preconditions.checkNotNull(keyParameter);
+
+    try {
+      log.debug("Encrypted file is of size {} bytes", encryptedFile.length());
+      return newDecryptingInputStream(new FileInputStream(encryptedFile), keyParameter);
+    } catch (IOException e) {
+      throw new EncryptedFileReaderWriterException("Cannot read and decrypt the file '" + encryptedFile.getAbsolutePath() + "'", e);
+    }
+  }
+
   /**
    * Encrypt a byte array and output to a file, using an intermediate temporary file
    */
@@ -97,6 +193,98 @@ public class EncryptedFileReaderWriter {
       throw new EncryptedFileReaderWriterException("Cannot encryptAndWriteDirect", e);
     }
   }
+
+  /**
+   * <p>Stream plain bytes through an AES cipher into a temporary file, then atomically rename it over the output file</p>
+   * <ul>
+   * <li>No plain text file is written and the encrypted bytes are never held in memory as a whole</li>
+   * <li>The temporary file is synced to disk and checked to decrypt to the same bytes (by SHA-256) before the rename</li>
+   * <li>The on-disk format is identical to {@link #encryptAndWrite(byte[], CharSequence, File)}</li>
+   * </ul>
+   *
+   * @param streamWriter The writer providing the plain bytes
+   * @param password     The password to derive the AES key from
+   * @param outputFile   The encrypted output file
+   *
+   * @return The number of encrypted bytes written
+   *
+   * @throws EncryptedFileReaderWriterException If the write or check fails (the output file is then unchanged)
+   */
+  public static long encryptAndWrite(StreamWriter streamWriter, CharSequence password, File outputFile) throws EncryptedFileReaderWriterException {
+    Preconditions.checkNotNull(password);
+
+    KeyParameter keyParameter = DerivedKeyCache.INSTANCE.getOrDeriveKey(password, WalletManager.scryptSalt());
+    return encryptAndWrite(streamWriter, keyParameter, outputFile);
+  }
+
+  /**
+   * <p>Stream plain bytes through an AES cipher into a temporary file, then atomically rename it over the output file</p>
+   *
+   * @param streamWriter The writer providing the plain bytes
+   * @param keyParameter The AES key
+   * @param outputFile   The encrypted output file
+   *
+   * @return The number of encrypted bytes written
+   *
+   * @throws EncryptedFileReaderWriterException If the write or check fails (the output file is then unchanged)
+   */
+  public static long encryptAndWrite(StreamWriter streamWriter, KeyParameter keyParameter, File outputFile) throws EncryptedFileReaderWriterException {
+    Preconditions.checkNotNull(streamWriter);
+    Preconditions.checkNotNull(keyParameter);
+    Preconditions.checkNotNull(outputFile);
+
+    File temporaryFile = new File(outputFile.getAbsolutePath() + TEMPORARY_FILE_EXTENSION);
+    try {
+      // Plain bytes -> digest -> cipher -> count -> buffer -> file (closing writes the final block and syncs)
+      MessageDigest plainDigest = newSha256Digest();
+      CountingOutputStream countingOutputStream = new CountingOutputStream(
+        new BufferedOutputStream(new SyncOnCloseOutputStream(new FileOutputStream(temporaryFile)), STREAM_BUFFER_SIZE)
+      );
+      try (DigestOutputStream plainOutputStream = new DigestOutputStream(newEncryptingOutputStream(countingOutputStream, keyParameter), plainDigest)) {
+        streamWriter.writeTo(plainOutputStream);
+      }
+
+      // Check that the encryption is reversible without reading the whole file into memory
+      MessageDigest rebornDigest = newSha256Digest();
+      try (InputStream rebornInputStream = new DigestInputStream(newDecryptingInputStream(new FileInputStream(temporaryFile), keyParameter), rebornDigest)) {
+        ByteStreams.copy(rebornInputStream, ByteStreams.nullOutputStream());
+      }
+      if (!MessageDigest.isEqual(plainDigest.digest(), rebornDigest.digest())) {
+        throw new EncryptedFileReaderWriterException("The encryption was not reversible so aborting.");
+      }
+
+      moveAtomically(temporaryFile, outputFile);
+
+      return countingOutputStream.getCount();
+
+    } catch (Exception e) {
+      if (temporaryFile.exists() && !temporaryFile.delete()) {
+        log.warn("Could not delete temporary file '{}'", temporaryFile.getAbsolutePath());
+      }
+      throw new EncryptedFileReaderWriterException("Cannot encryptAndWrite '" + outputFile.getAbsolutePath() + "'", e);
+    }
+  }
+
+  /**
+   * @param outputStream The stream to receive the encrypted bytes
+   * @param keyParameter The AES key
+   *
+   * @return A stream that AES/CBC/PKCS7 encrypts with the wallet initialisation vector (same format as AESUtils)
+   */
+  public static OutputStream newEncryptingOutputStream(OutputStream outputStream, KeyParameter keyParameter) {
+    return new CipherOutputStream(outputStream, newCipher(true, keyParameter));
+  }
+
+  /**
+   * @param inputStream  The stream providing the encrypted bytes
+   * @param keyParameter The AES key
+   *
+   * @return A stream that AES/CBC/PKCS7 decrypts with the wallet initialisation vector (same format as AESUtils)
+   */
+  public static InputStream newDecryptingInputStream(InputStream inputStream, KeyParameter keyParameter) {
+    return new CipherInputStream(new BufferedInputStream(inputStream, STREAM_BUFFER_SIZE), newCipher(false, keyParameter));
+  }
+
   /**
    * Encrypt the file specified using the backup AES key derived from the supplied credentials
    *
@@ -110,10 +298,7 @@ public class EncryptedFileReaderWriter {
     Preconditions.checkNotNull(password);
     Preconditions.checkNotNull(encryptedBackupAESKey);
     try {
-      // Decrypt the backup AES key stored in the wallet summary
-      KeyParameter walletPasswordDerivedAESKey = AESUtils.createAESKey(password.getBytes(Charsets.UTF_8), WalletManager.scryptSalt());
-      byte[] backupAESKeyBytes = AESUtils.decrypt(encryptedBackupAESKey, walletPasswordDerivedAESKey, WalletManager.aesInitialisationVector());
-      KeyParameter backupAESKey = new KeyParameter(backupAESKeyBytes);
+      KeyParameter backupAESKey = decryptBackupAESKey(password, encryptedBackupAESKey);
       File destinationFile = new File(fileToEncrypt.getAbsoluteFile() + WalletManager.MBHD_AES_SUFFIX);
 
       return encryptAndDeleteOriginal(fileToEncrypt, destinationFile, backupAESKey);
@@ -122,6 +307,26 @@ public class EncryptedFileReaderWriter {
     }
   }
 
+  /**
+   * Decrypt the backup AES key stored in the wallet summary
+   *
+   * @param password              the wallet password
+   * @param encryptedBackupAESKey the encrypted backup AES key from the wallet summary
+   * @return the backup AES key
+   * @throws EncryptedFileReaderWriterException
+   */
+  public static KeyParameter decryptBackupAESKey(String password, byte[] encryptedBackupAESKey) throws EncryptedFileReaderWriterException {
+    Preconditions.checkNotNull(password);
+    Preconditions.checkNotNull(encryptedBackupAESKey);
+    try {
+      KeyParameter walletPasswordDerivedAESKey = AESUtils.createAESKey(password.getBytes(Charsets.UTF_8), WalletManager.scryptSalt());
+      byte[] backupAESKeyBytes = AESUtils.decrypt(encryptedBackupAESKey, walletPasswordDerivedAESKey, WalletManager.aesInitialisationVector());
+      return new KeyParameter(backupAESKeyBytes);
+    } catch (Exception e) {
+      throw new EncryptedFileReaderWriterException("Could not decrypt backup AES key", e);
+    }
+  }
+
   /**
    * Encrypt the file specified using an AES key derived from the supplied credentials
    *
@@ -152,8 +357,7 @@ public class EncryptedFileReaderWriter {
     Preconditions.checkNotNull(destinationFile);
     Preconditions.checkNotNull(password);
 
-    KeyCrypterScrypt keyCrypterScrypt = new KeyCrypterScrypt(makeScryptParameters(WalletManager.scryptSalt()));
-    KeyParameter keyParameter = keyCrypterScrypt.deriveKey(password);
+    KeyParameter keyParameter = DerivedKeyCache.INSTANCE.getOrDeriveKey(password, WalletManager.scryptSalt());
     return encryptAndDeleteOriginal(fileToEncrypt, destinationFile, keyParameter);
   }
 
@@ -170,42 +374,135 @@ public class EncryptedFileReaderWriter {
    * @throws EncryptedFileReaderWriterException
    */
   public static List<File> changeEncryptionPrepare(List<File> files, CharSequence oldPassword, CharSequence newPassword) throws EncryptedFileReaderWriterException {
-    Preconditions.checkNotNull(files);
     Preconditions.checkNotNull(oldPassword);
     Preconditions.checkNotNull(newPassword);
 
+    // Derive the keys once for all the files
+    KeyParameter oldKeyParameter = DerivedKeyCache.INSTANCE.getOrDeriveKey(oldPassword, WalletManager.scryptSalt());
+    KeyParameter newKeyParameter = DerivedKeyCache.INSTANCE.getOrDeriveKey(newPassword, WalletManager.scryptSalt());
+
+    return changeEncryptionPrepare(files, oldKeyParameter, newKeyParameter, Optional.<ProgressListener>absent());
+  }
+
+  /**
+   * <p>Change the encryption on the files in parallel, giving them the suffix ".new"</p>
+   * <ul>
+   * <li>Each file is streamed through the old and new ciphers so no plain text is held in memory or written to disk</li>
+   * <li>The files are spread over a bounded pool of {@link #MAXIMUM_RE_ENCRYPTION_THREADS} threads</li>
+   * <li>If any file fails then all the ".new" files are deleted so nothing is committed</li>
+   * </ul>
+   * <p>Use changeEncryptionCommit to rename the files once everything else has been prepared</p>
+   *
+   * @param files            The List of files to change the encryption on
+   * @param oldKeyParameter  The AES key derived from the original password
+   * @param newKeyParameter  The AES key derived from the new password
+   * @param progressListener The listener to report progress to (called from the pool threads)
+   * @return newFiles   A list containing the newly encrypted files in the same order as the files
+   * @throws EncryptedFileReaderWriterException
+   */
+  public static List<File> changeEncryptionPrepare(
+    List<File> files,
+    final KeyParameter oldKeyParameter,
+    final KeyParameter newKeyParameter,
+    final Optional<ProgressListener> progressListener
+  ) throws EncryptedFileReaderWriterException {
+    Preconditions.checkNotNull(files);
+    Preconditions.checkNotNull(oldKeyParameter);
+    Preconditions.checkNotNull(newKeyParameter);
+    Preconditions.checkNotNull(progressListener);
+
     // The files are expected to end with ".aes"
     for (File fileToCheck : files) {
       Preconditions.checkState(fileToCheck.getAbsolutePath().endsWith(WalletManager.MBHD_AES_SUFFIX));
     }
 
+    final int totalFiles = files.size();
+    final AtomicInteger filesDone = new AtomicInteger();
+
     List<File> newFiles = Lists.newArrayList();
-    try {
-      KeyCrypterScrypt keyCrypterScrypt = new KeyCrypterScrypt(makeScryptParameters(WalletManager.scryptSalt()));
-      KeyParameter oldKeyParameter = keyCrypterScrypt.deriveKey(oldPassword);
-      KeyParameter newKeyParameter = keyCrypterScrypt.deriveKey(newPassword);
+    List<ListenableFuture<File>> futures = Lists.newArrayList();
 
-      for (File file : files) {
-        log.debug("Processing file\n'{}'", file.getAbsolutePath());
-        File newFile = new File(file.getAbsolutePath() + NEW_FILE_EXTENSION);
+    int threadCount = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), MAXIMUM_RE_ENCRYPTION_THREADS));
+    ListeningExecutorService executorService = ExecutorRegistry.INSTANCE.newFixedThreadPool(threadCount, "re-encryption", Workload.CPU);
+    try {
+      for (final File file : files) {
+        final File newFile = new File(file.getAbsolutePath() + NEW_FILE_EXTENSION);
         newFiles.add(newFile);
-        if (file.exists()) {
-          // Read in the file bytes that are encrypted with the old password
-          byte[] oldEncryptedBytes = Files.toByteArray(file);
-
-          // Decrypt using the old password
-          byte[] plainBytes = AESUtils.decrypt(oldEncryptedBytes, oldKeyParameter, WalletManager.aesInitialisationVector());
+        futures.add(
+          executorService.submit(
+            new Callable<File>() {
+              @Override
+              public File call() throws Exception {
+                log.debug("Processing file\n'{}'", file.getAbsolutePath());
+                reEncrypt(file, newFile, oldKeyParameter, newKeyParameter);
+                if (progressListener.isPresent()) {
+                  progressListener.get().onProgress(filesDone.incrementAndGet(), totalFiles);
+                }
+                return newFile;
+              }
+            }));
+      }
 
-          // Encrypt the bytes
-          byte[] newEncryptedBytes = encrypt(plainBytes, newKeyParameter);
+      // Fails fast on the first file that cannot be re-encrypted
+      Futures.allAsList(futures).get();
+      return newFiles;
 
-          // Write out the bytes to a file with the suffix ".new"
-          SecureFiles.writeFile(new ByteArrayInputStream(newEncryptedBytes), newFile);
+    } catch (InterruptedException | ExecutionException e) {
+      // Stop the remaining files and wait so that no ".new" file is written after the clean up
+      for (ListenableFuture<File> future : futures) {
+        future.cancel(false);
+      }
+      executorService.shutdown();
+      try {
+        executorService.awaitTermination(1, TimeUnit.MINUTES);
+      } catch (InterruptedException ie) {
+        Thread.currentThread().interrupt();
+      }
+      for (File newFile : newFiles) {
+        try {
+          if (newFile.exists()) {
+            SecureFiles.secureDelete(newFile);
+          }
+        } catch (IOException ioe) {
+          log.error("Could not delete file " + newFile.getAbsolutePath(), ioe);
         }
       }
-      return newFiles;
-    } catch (IOException ioe) {
-      throw new EncryptedFileReaderWriterException("Could not decrypt with old password and re-encrypt with new", ioe);
+      if (e instanceof InterruptedException) {
+        Thread.currentThread().interrupt();
+      }
+      throw new EncryptedFileReaderWriterException("Could not decrypt with old password and re-encrypt with new", e.getCause() == null ? e : e.getCause());
+    } finally {
+      executorService.shutdown();
+    }
+  }
+
+  /**
+   * <p>Stream a file through the old and new ciphers into the ".new" file</p>
+   *
+   * @param file            The file encrypted with the old key
+   * @param newFile         The file to write encrypted with the new key
+   * @param oldKeyParameter The old AES key
+   * @param newKeyParameter The new AES key
+   *
+   * @throws IOException If the file cannot be read
+   */
+  private static void reEncrypt(File file, File newFile, KeyParameter oldKeyParameter, KeyParameter newKeyParameter) throws IOException {
+    if (!file.exists()) {
+      // Make sure a stale ".new" file from an earlier attempt is not committed
+      if (newFile.exists()) {
+        SecureFiles.secureDelete(newFile);
+      }
+      return;
+    }
+
+    try (final InputStream plainInputStream = readAndDecryptStream(file, oldKeyParameter)) {
+      encryptAndWrite(
+        new StreamWriter() {
+          @Override
+          public void writeTo(OutputStream outputStream) throws IOException {
+            ByteStreams.copy(plainInputStream, outputStream);
+          }
+        }, newKeyParameter, newFile);
     }
   }
 
@@ -287,38 +584,48 @@ public class EncryptedFileReaderWriter {
       return null;
     }
 
-    FileOutputStream encryptedWalletOutputStream = null;
     try {
-      // Read in the file
-      byte[] unencryptedBytes = Files.toByteArray(fileToEncrypt);
-      byte[] encryptedBytes = encrypt(unencryptedBytes, keyParameter);
-
-      // Save encrypted bytes
-      ByteArrayInputStream encryptedWalletByteArrayInputStream = new ByteArrayInputStream(encryptedBytes);
-      encryptedWalletOutputStream = new FileOutputStream(encryptedFilename);
-      ByteStreams.copy(encryptedWalletByteArrayInputStream, encryptedWalletOutputStream);
-      encryptedWalletOutputStream.flush();
-
-      if (encryptedFilename.length() == encryptedBytes.length) {
-        SecureFiles.secureDelete(fileToEncrypt);
-      } else {
-        // The saved file isn't the correct size - do not delete the original
-        throw new EncryptedFileReaderWriterException("The saved file " + encryptedFilename + " is not the size of the encrypted bytes - not deleting the original file");
-      }
+      // Stream the file through the cipher rather than holding it in memory
+      final File plainFile = fileToEncrypt;
+      encryptAndWrite(
+        new StreamWriter() {
+          @Override
+          public void writeTo(OutputStream outputStream) throws IOException {
+            Files.copy(plainFile, outputStream);
+          }
+        }, keyParameter, encryptedFilename);
+
+      SecureFiles.secureDelete(fileToEncrypt);
 
       return encryptedFilename;
 
     } catch (Exception e) {
       throw new EncryptedFileReaderWriterException("Cannot make encrypted copy for file '" + fileToEncrypt.getAbsolutePath() + "'", e);
-    } finally {
-      if (encryptedWalletOutputStream != null) {
-        try {
-          encryptedWalletOutputStream.close();
-          encryptedWalletOutputStream = null;
-        } catch (IOException e) {
-          log.error("Cannot close wallet output stream", e);
-        }
-      }
+    }
+  }
+
+  private static BufferedBlockCipher newCipher(boolean forEncryption, KeyParameter keyParameter) {
+    BufferedBlockCipher cipher = new PaddedBufferedBlockCipher(new CBCBlockCipher(new AESFastEngine()));
+    cipher.init(forEncryption, new ParametersWithIV(keyParameter, WalletManager.aesInitialisationVector()));
+    return cipher;
+  }
+
+  private static MessageDigest newSha256Digest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not available", e);
+    }
+  }
+
+  /**
+   * <p>Rename the source over the target atomically where the file system supports it</p>
+   */
+  private static void moveAtomically(File source, File target) throws IOException {
+    try {
+      java.nio.file.Files.move(source.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } catch (AtomicMoveNotSupportedException e) {
+      java.nio.file.Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
     }
   }
 
@@ -358,12 +665,39 @@ public class EncryptedFileReaderWriter {
    */
   private static byte[] encrypt(byte[] unencryptedBytes, CharSequence password) {
     try {
-      KeyCrypterScrypt keyCrypterScrypt = new KeyCrypterScrypt(makeScryptParameters(WalletManager.scryptSalt()));
-      KeyParameter keyParameter = keyCrypterScrypt.deriveKey(password);
+      KeyParameter keyParameter = DerivedKeyCache.INSTANCE.getOrDeriveKey(password, WalletManager.scryptSalt());
 
       return encrypt(unencryptedBytes, keyParameter);
     } catch (Exception e) {
       throw new EncryptedFileReaderWriterException("Cannot encryptAndWrite", e);
     }
   }
+
+  /**
+   * <p>Forces the file contents to disk before closing so that a following rename cannot expose a partial file</p>
+   */
+  private static class SyncOnCloseOutputStream extends FilterOutputStream {
+
+    private final FileOutputStream fileOutputStream;
+
+    private SyncOnCloseOutputStream(FileOutputStream fileOutputStream) {
+      super(fileOutputStream);
+      this.fileOutputStream = fileOutputStream;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        flush();
+        fileOutputStream.getFD().sync();
+      } finally {
+        fileOutputStream.close();
+      }
+    }
+  }
 }
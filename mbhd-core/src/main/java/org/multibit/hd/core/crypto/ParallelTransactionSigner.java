@@ -0,0 +1,267 @@
+package org.multibit.hd.core.crypto;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import org.bitcoinj.core.*;
+import org.bitcoinj.crypto.TransactionSignature;
+import org.bitcoinj.script.Script;
+import org.bitcoinj.signers.LocalTransactionSigner;
+import org.bitcoinj.signers.MissingSigResolutionSigner;
+import org.bitcoinj.signers.TransactionSigner;
+import org.bitcoinj.wallet.RedeemData;
+import org.multibit.hd.core.concurrent.ExecutorRegistry;
+import org.multibit.hd.core.concurrent.Workload;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.spongycastle.crypto.params.KeyParameter;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * <p>Signer to provide the following to Bitcoin network service:</p>
+ * <ul>
+ * <li>Signing of the inputs of a completed transaction across all cores</li>
+ * <li>Decryption of each distinct key once rather than once per input</li>
+ * </ul>
+ * <p>The result is byte-identical to <code>Wallet.signTransaction</code>: signatures are deterministic (RFC 6979)
+ * and the SIGHASH_ALL signature hash of an input does not depend on the script sigs of the other inputs.
+ * Each worker hashes against its own copy of the transaction since bitcoinj clears and restores the
+ * script sigs of the transaction in place while hashing.</p>
+ * <p>Transactions this signer does not handle (few inputs, P2SH inputs, watching keys or a wallet with
+ * additional signers) are passed to the wallet unchanged.</p>
+ *
+ * @since 0.3.0
+ */
+public class ParallelTransactionSigner {
+
+  private static final Logger log = LoggerFactory.getLogger(ParallelTransactionSigner.class);
+
+  /**
+   * Below this number of inputs the thread hand off costs more than it saves
+   */
+  static final int MINIMUM_PARALLEL_INPUTS = 8;
+
+  /**
+   * Utilities have private constructors
+   */
+  private ParallelTransactionSigner() {
+  }
+
+  /**
+   * <p>Sign all the inputs of the send request transaction (replaces <code>wallet.signTransaction(sendRequest)</code>)</p>
+   *
+   * @param wallet      The wallet holding the keys
+   * @param sendRequest The completed send request (the AES key must be present for an encrypted wallet)
+   */
+  public static void signTransaction(Wallet wallet, Wallet.SendRequest sendRequest) {
+
+    Preconditions.checkNotNull(wallet, "'wallet' must be present");
+    Preconditions.checkNotNull(sendRequest, "'sendRequest' must be present");
+
+    Transaction tx = sendRequest.tx;
+    Preconditions.checkState(!tx.getInputs().isEmpty(), "'tx' must have inputs");
+    Preconditions.checkState(!tx.getOutputs().isEmpty(), "'tx' must have outputs");
+
+    if (tx.getInputs().size() < MINIMUM_PARALLEL_INPUTS || !hasOnlyLocalSigner(wallet)) {
+      wallet.signTransaction(sendRequest);
+      return;
+    }
+
+    List<InputToSign> inputsToSign = Lists.newArrayList();
+    for (int i = 0; i < tx.getInputs().size(); i++) {
+      TransactionInput txIn = tx.getInput(i);
+      if (txIn.getConnectedOutput() == null) {
+        log.warn("Missing connected output, assuming input {} is already signed.", i);
+        continue;
+      }
+      Script scriptPubKey = txIn.getConnectedOutput().getScriptPubKey();
+      try {
+        txIn.getScriptSig().correctlySpends(tx, i, scriptPubKey);
+        log.warn("Input {} already correctly spends output, skipping signing.", i);
+        continue;
+      } catch (ScriptException e) {
+        // Expected
+      }
+
+      RedeemData redeemData = txIn.getConnectedRedeemData(wallet);
+      if (redeemData == null
+        || !(scriptPubKey.isSentToAddress() || scriptPubKey.isSentToRawPubKey())
+        || !canSign(redeemData)) {
+        // Let the wallet apply its own rules (and errors) to this transaction
+        log.debug("Input {} cannot be signed in parallel so signing sequentially", i);
+        wallet.signTransaction(sendRequest);
+        return;
+      }
+
+      inputsToSign.add(new InputToSign(i, scriptPubKey, redeemData));
+    }
+
+    // Fill in the placeholder script sigs as the wallet does before signing
+    for (InputToSign inputToSign : inputsToSign) {
+      TransactionInput txIn = tx.getInput(inputToSign.index);
+      txIn.setScriptSig(inputToSign.scriptPubKey.createEmptyInputScript(inputToSign.redeemData.keys.get(0), inputToSign.redeemData.redeemScript));
+    }
+
+    if (!inputsToSign.isEmpty()) {
+      signInParallel(tx, inputsToSign, sendRequest.aesKey);
+    }
+
+    // Apply the wallet policy for any signatures that are still missing
+    new MissingSigResolutionSigner(sendRequest.missingSigsMode).signInputs(new TransactionSigner.ProposedTransaction(tx), wallet);
+
+  }
+
+  /**
+   * @param tx           The transaction with placeholder script sigs
+   * @param inputsToSign The inputs to sign
+   * @param aesKey       The AES key to decrypt the keys (null for an unencrypted wallet)
+   */
+  private static void signInParallel(Transaction tx, List<InputToSign> inputsToSign, final KeyParameter aesKey) {
+
+    int threadCount = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), inputsToSign.size()));
+    ListeningExecutorService executorService = ExecutorRegistry.INSTANCE.newFixedThreadPool(threadCount, "transaction-signing", Workload.CPU);
+
+    try {
+      // Decrypt each distinct key once
+      final Map<ByteBuffer, ECKey> encryptedKeys = Maps.newLinkedHashMap();
+      for (InputToSign inputToSign : inputsToSign) {
+        ECKey key = inputToSign.redeemData.keys.get(0);
+        encryptedKeys.put(ByteBuffer.wrap(key.getPubKey()), key);
+      }
+      List<ByteBuffer> pubKeys = Lists.newArrayList(encryptedKeys.keySet());
+      List<ListenableFuture<ECKey>> decryptFutures = Lists.newArrayList();
+      for (final ByteBuffer pubKey : pubKeys) {
+        decryptFutures.add(
+          executorService.submit(
+            new Callable<ECKey>() {
+              @Override
+              public ECKey call() throws Exception {
+                return maybeDecrypt(encryptedKeys.get(pubKey), aesKey);
+              }
+            }));
+      }
+      List<ECKey> decrypted = Futures.allAsList(decryptFutures).get();
+      final Map<ByteBuffer, ECKey> decryptedKeys = Maps.newHashMap();
+      for (int i = 0; i < pubKeys.size(); i++) {
+        decryptedKeys.put(pubKeys.get(i), decrypted.get(i));
+      }
+
+      // Hash and sign the inputs in contiguous slices, each against its own copy of the transaction
+      final byte[] serializedTx = tx.bitcoinSerialize();
+      final NetworkParameters networkParameters = tx.getParams();
+      int sliceSize = (inputsToSign.size() + threadCount - 1) / threadCount;
+      List<ListenableFuture<List<TransactionSignature>>> signFutures = Lists.newArrayList();
+      for (int from = 0; from < inputsToSign.size(); from += sliceSize) {
+        final List<InputToSign> slice = inputsToSign.subList(from, Math.min(from + sliceSize, inputsToSign.size()));
+        signFutures.add(
+          executorService.submit(
+            new Callable<List<TransactionSignature>>() {
+              @Override
+              public List<TransactionSignature> call() throws Exception {
+                Transaction copy = new Transaction(networkParameters, serializedTx);
+                List<TransactionSignature> signatures = Lists.newArrayList();
+                for (InputToSign inputToSign : slice) {
+                  ECKey key = decryptedKeys.get(ByteBuffer.wrap(inputToSign.redeemData.keys.get(0).getPubKey()));
+                  signatures.add(copy.calculateSignature(inputToSign.index, key, inputToSign.redeemData.redeemScript.getProgram(), Transaction.SigHash.ALL, false));
+                }
+                return signatures;
+              }
+            }));
+      }
+
+      // Apply the signatures in input order
+      int next = 0;
+      for (List<TransactionSignature> signatures : Futures.allAsList(signFutures).get()) {
+        for (TransactionSignature signature : signatures) {
+          InputToSign inputToSign = inputsToSign.get(next++);
+          TransactionInput txIn = tx.getInput(inputToSign.index);
+          txIn.setScriptSig(inputToSign.scriptPubKey.getScriptSigWithSignature(txIn.getScriptSig(), signature.encodeToBitcoin(), 0));
+        }
+      }
+
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while signing the transaction", e);
+    } catch (ExecutionException e) {
+      // Rethrow the signing failure (e.g. KeyCrypterException for a wrong password) as the wallet would
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IllegalStateException("Could not sign the transaction", e.getCause());
+    } finally {
+      executorService.shutdown();
+    }
+
+  }
+
+  /**
+   * @param key    The key (possibly encrypted)
+   * @param aesKey The AES key (null for an unencrypted wallet)
+   *
+   * @return The key with its private key available
+   */
+  private static ECKey maybeDecrypt(ECKey key, KeyParameter aesKey) {
+
+    if (!key.isEncrypted()) {
+      return key;
+    }
+    if (aesKey == null) {
+      throw new ECKey.KeyIsEncryptedException();
+    }
+    return key.decrypt(aesKey);
+
+  }
+
+  /**
+   * @param redeemData The redeem data of a pay to address or pay to public key input
+   *
+   * @return True if the single key has a private key (possibly encrypted)
+   */
+  private static boolean canSign(RedeemData redeemData) {
+
+    if (redeemData.keys.size() != 1 || redeemData.keys.get(0) == null) {
+      return false;
+    }
+    ECKey key = redeemData.keys.get(0);
+    return key.isEncrypted() || key.hasPrivKey();
+
+  }
+
+  /**
+   * @param wallet The wallet
+   *
+   * @return True if the wallet signs with the local key signer alone
+   */
+  private static boolean hasOnlyLocalSigner(Wallet wallet) {
+
+    List<TransactionSigner> signers = wallet.getTransactionSigners();
+    return signers.size() == 1 && signers.get(0) instanceof LocalTransactionSigner;
+
+  }
+
+  /**
+   * <p>An input to sign with the data needed to redeem its connected output</p>
+   */
+  private static class InputToSign {
+
+    private final int index;
+
+    private final Script scriptPubKey;
+
+    private final RedeemData redeemData;
+
+    private InputToSign(int index, Script scriptPubKey, RedeemData redeemData) {
+      this.index = index;
+      this.scriptPubKey = scriptPubKey;
+      this.redeemData = redeemData;
+    }
+  }
+}
@@ -0,0 +1,103 @@
+package org.multibit.hd.core.dto;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import org.joda.time.DateTime;
+
+/**
+ * <p>DTO to provide the following to Backup API:</p>
+ * <ul>
+ * <li>A snapshot of the backups made of one kind since the backup service started</li>
+ * </ul>
+ *
+ * @since 0.3.0
+ */
+public class BackupMetrics {
+
+  private final BackupType backupType;
+
+  private final Optional<DateTime> lastBackupTime;
+
+  private final long lastDurationMillis;
+
+  private final long lastBytesWritten;
+
+  private final long totalBytesWritten;
+
+  private final int backupCount;
+
+  /**
+   * @param backupType         The kind of backup
+   * @param lastBackupTime     When the last backup completed (absent if none has been made)
+   * @param lastDurationMillis How long the last backup took
+   * @param lastBytesWritten   The size of the last backup written (zero if nothing had changed)
+   * @param totalBytesWritten  The total size of the backups written
+   * @param backupCount        The number of backups made
+   */
+  public BackupMetrics(BackupType backupType, Optional<DateTime> lastBackupTime, long lastDurationMillis, long lastBytesWritten, long totalBytesWritten, int backupCount) {
+
+    Preconditions.checkNotNull(backupType, "'backupType' must be present");
+    Preconditions.checkNotNull(lastBackupTime, "'lastBackupTime' must be present");
+
+    this.backupType = backupType;
+    this.lastBackupTime = lastBackupTime;
+    this.lastDurationMillis = lastDurationMillis;
+    this.lastBytesWritten = lastBytesWritten;
+    this.totalBytesWritten = totalBytesWritten;
+    this.backupCount = backupCount;
+  }
+
+  /**
+   * @return The kind of backup
+   */
+  public BackupType getBackupType() {
+    return backupType;
+  }
+
+  /**
+   * @return When the last backup completed (absent if none has been made)
+   */
+  public Optional<DateTime> getLastBackupTime() {
+    return lastBackupTime;
+  }
+
+  /**
+   * @return How long the last backup took in milliseconds
+   */
+  public long getLastDurationMillis() {
+    return lastDurationMillis;
+  }
+
+  /**
+   * @return The size of the last backup written in bytes (zero if nothing had changed)
+   */
+  public long getLastBytesWritten() {
+    return lastBytesWritten;
+  }
+
+  /**
+   * @return The total size of the backups written in bytes
+   */
+  public long getTotalBytesWritten() {
+    return totalBytesWritten;
+  }
+
+  /**
+   * @return The number of backups made
+   */
+  public int getBackupCount() {
+    return backupCount;
+  }
+
+  @Override
+  public String toString() {
+    return "BackupMetrics{" +
+      "backupType=" + backupType +
+      ", lastBackupTime=" + lastBackupTime +
+      ", lastDurationMillis=" + lastDurationMillis +
+      ", lastBytesWritten=" + lastBytesWritten +
+      ", totalBytesWritten=" + totalBytesWritten +
+      ", backupCount=" + backupCount +
+      '}';
+  }
+}
@@ -0,0 +1,31 @@
+package org.multibit.hd.core.dto;
+
+/**
+ * <p>Enum to provide the following to Backup API:</p>
+ * <ul>
+ * <li>The kinds of backup made by the backup service</li>
+ * </ul>
+ *
+ * @since 0.3.0
+ */
+public enum BackupType {
+
+  /**
+   * An encrypted copy of the wallet alone (kept in the rolling backups directory)
+   */
+  ROLLING,
+
+  /**
+   * An encrypted zip of the wallet directory (kept in the local zip backups directory)
+   */
+  LOCAL_ZIP,
+
+  /**
+   * An encrypted zip of the wallet directory (kept in the user's cloud backup location)
+   */
+  CLOUD_ZIP,
+
+  // End of enum
+  ;
+
+}
@@ -114,6 +114,7 @@ public enum CoreMessageKey {
   CHANGE_PASSWORD_REPORT_TITLE("core_change_password_report_title"),
 
   CHANGE_PASSWORD_WORKING("core_change_password_working"),
+  CHANGE_PASSWORD_PROGRESS("core_change_password_progress"),
   CHANGE_PASSWORD_SUCCESS("core_change_password_success"),
   CHANGE_PASSWORD_WRONG_OLD_PASSWORD("core_change_password_wrong_old_password"),
   CHANGE_PASSWORD_ERROR("core_change_password_error"),
@@ -0,0 +1,76 @@
+package org.multibit.hd.core.dto;
+
+import com.google.common.base.Preconditions;
+import org.bitcoinj.core.Address;
+import org.bitcoinj.core.Coin;
+
+/**
+ * <p>Value object to provide the following to Bitcoin network service:</p>
+ * <ul>
+ * <li>A single recipient output of a batch send</li>
+ * </ul>
+ *
+ * @since 0.3.0
+ */
+public class SendOutput {
+
+  private final Address address;
+  private final Coin amount;
+
+  /**
+   * @param address The destination address
+   * @param amount  The amount to send (in coins)
+   */
+  public SendOutput(Address address, Coin amount) {
+
+    Preconditions.checkNotNull(address, "'address' must be present");
+    Preconditions.checkNotNull(amount, "'amount' must be present");
+    Preconditions.checkArgument(amount.signum() > 0, "'amount' must be positive");
+
+    this.address = address;
+    this.amount = amount;
+  }
+
+  /**
+   * @return The destination address
+   */
+  public Address getAddress() {
+    return address;
+  }
+
+  /**
+   * @return The amount to send (in coins)
+   */
+  public Coin getAmount() {
+    return amount;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+
+    SendOutput that = (SendOutput) o;
+
+    return address.equals(that.address) && amount.equals(that.amount);
+  }
+
+  @Override
+  public int hashCode() {
+    int result = address.hashCode();
+    result = 31 * result + amount.hashCode();
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    return "SendOutput{" +
+      "address=" + address +
+      ", amount=" + amount +
+      '}';
+  }
+}
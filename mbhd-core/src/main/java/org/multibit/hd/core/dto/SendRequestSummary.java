@@ -1,15 +1,21 @@
 package org.multibit.hd.core.dto;
 
 import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
 import org.bitcoinj.core.Address;
 import org.bitcoinj.core.Coin;
 import org.bitcoinj.core.Wallet;
+import org.multibit.hd.core.wallet.CoinSelectionMode;
 import org.spongycastle.crypto.params.KeyParameter;
 
+import java.util.List;
+
 /**
  * <p>Data object to provide the following to Bitcoin network service:</p>
  * <ul>
  * <li>Contains send bitcoin data</li>
+ * <li>Contains the outputs of a batch send to many recipients in a single transaction</li>
  * </ul>
  *
  * @since 0.0.1
@@ -19,6 +25,7 @@ public class SendRequestSummary {
   private final Address destinationAddress;
   private final Optional<FiatPayment> fiatPayment;
   private final Coin feePerKB;
+  private final List<SendOutput> outputs;
 
   // Mutable values
   private boolean emptyWallet;
@@ -28,6 +35,7 @@ public class SendRequestSummary {
   private Optional<String> notes = Optional.absent();
   private String password;
   private Address changeAddress;
+  private CoinSelectionMode coinSelectionMode = CoinSelectionMode.STANDARD;
 
   /**
    * @param destinationAddress The destination address to send to
@@ -57,6 +65,42 @@ public class SendRequestSummary {
     this.feePerKB = feePerKB;
     this.password = password;
     this.emptyWallet = emptyWallet;
+    this.outputs = ImmutableList.of();
+  }
+
+  /**
+   * <p>A batch send paying all the outputs from a single transaction (one fee, one coin selection and one broadcast)</p>
+   *
+   * @param outputs       The recipient outputs (at least one)
+   * @param fiatPayment   The fiat payment equivalent of the total bitcoin amount (see above)
+   * @param changeAddress The change address
+   * @param feePerKB      The fee per Kb (in coins)
+   * @param password      The wallet credentials
+   */
+  public SendRequestSummary(
+    List<SendOutput> outputs,
+    Optional<FiatPayment> fiatPayment,
+    Address changeAddress,
+    Coin feePerKB,
+    String password) {
+
+    Preconditions.checkNotNull(outputs, "'outputs' must be present");
+    Preconditions.checkArgument(!outputs.isEmpty(), "'outputs' must not be empty");
+
+    this.outputs = ImmutableList.copyOf(outputs);
+
+    // Report the first recipient as the destination and the sum of the outputs as the amount
+    Coin total = Coin.ZERO;
+    for (SendOutput output : this.outputs) {
+      total = total.add(output.getAmount());
+    }
+    this.destinationAddress = this.outputs.get(0).getAddress();
+    this.amount = total;
+    this.fiatPayment = fiatPayment;
+    this.changeAddress = changeAddress;
+    this.feePerKB = feePerKB;
+    this.password = password;
+    this.emptyWallet = false;
   }
 
   /**
@@ -76,6 +120,21 @@ public class SendRequestSummary {
     this.feePerKB = feePerKB;
     this.password = password;
     this.emptyWallet = false;
+    this.outputs = ImmutableList.of();
+  }
+
+  /**
+   * @return True if this is a batch send with an output per recipient
+   */
+  public boolean isBatch() {
+    return !outputs.isEmpty();
+  }
+
+  /**
+   * @return The recipient outputs of a batch send (empty for a single recipient send)
+   */
+  public List<SendOutput> getOutputs() {
+    return outputs;
   }
 
   /**
@@ -130,6 +189,18 @@ public class SendRequestSummary {
     return feePerKB;
   }
 
+  /**
+   * @return The strategy for choosing which outputs to spend
+   */
+  public CoinSelectionMode getCoinSelectionMode() {
+    return coinSelectionMode;
+  }
+
+  public void setCoinSelectionMode(CoinSelectionMode coinSelectionMode) {
+    Preconditions.checkNotNull(coinSelectionMode, "'coinSelectionMode' must be present");
+    this.coinSelectionMode = coinSelectionMode;
+  }
+
   /**
    * @return The wallet credentials
    */
@@ -149,6 +220,7 @@ public class SendRequestSummary {
   }
 
   public void setEmptyWallet(boolean emptyWallet) {
+    Preconditions.checkState(!emptyWallet || outputs.isEmpty(), "A batch send cannot empty the wallet");
     this.emptyWallet = emptyWallet;
   }
 
@@ -187,9 +259,11 @@ public class SendRequestSummary {
     return "SendRequestSummary{" +
       "destinationAddress=" + destinationAddress +
       ", amount=" + amount +
+      ", outputs=" + outputs.size() +
       ", fiatPayment=" + fiatPayment +
       ", changeAddress=" + changeAddress +
       ", feePerKB=" + feePerKB +
+      ", coinSelectionMode=" + coinSelectionMode +
       ", credentials=***" +
       ", notes=***" +
       '}';
@@ -2,6 +2,8 @@ package org.multibit.hd.core.dto;
 
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
 import org.bitcoinj.core.Address;
 import org.bitcoinj.core.Coin;
 import org.bitcoinj.core.TransactionConfidence;
@@ -45,14 +47,14 @@ public class TransactionData implements PaymentData {
   private String note;
 
   /**
-   * The transaction in its raw form (toStringed)
+   * The transaction in its raw form (toStringed), computed on first use
    */
-  private final String rawTransaction;
+  private final Supplier<String> rawTransaction;
 
   /**
-   * The size (in bytes)of the transaction
+   * The size (in bytes) of the transaction, computed on first use
    */
-  private int size;
+  private final Supplier<Integer> size;
 
   /**
    * The bitcoin addresses in this wallet that the transaction sends bitcoin to
@@ -94,6 +96,63 @@ public class TransactionData implements PaymentData {
     boolean isMock
   ) {
 
+    this(
+      transactionId,
+      date,
+      statusWithOrdinal,
+      amountBTC,
+      amountFiat,
+      miningFee,
+      clientFee,
+      confidenceType,
+      paymentType,
+      description,
+      isCoinbase,
+      outputAddresses,
+      rawTransaction == null ? null : Suppliers.ofInstance(rawTransaction),
+      Suppliers.ofInstance(size),
+      isMock
+    );
+
+  }
+
+  /**
+   * <p>Create transaction data where the raw form and size are only produced when first required (then memoized)</p>
+   *
+   * @param transactionId     The transaction ID
+   * @param date              The creation date
+   * @param statusWithOrdinal The status with ordinal
+   * @param amountBTC         The amount in coins
+   * @param amountFiat        The amount in fiat
+   * @param miningFee         The mining fee in coins
+   * @param clientFee         The client fee in coins
+   * @param confidenceType    The confidence type
+   * @param paymentType       The payment type
+   * @param description       The description
+   * @param isCoinbase        True if coinbase
+   * @param outputAddresses   The output addresses
+   * @param rawTransaction    Provides the raw transaction on first use
+   * @param size              Provides the size in bytes on first use
+   * @param isMock            True if this is a mock (CSV export header)
+   */
+  public TransactionData(
+    String transactionId,
+    DateTime date,
+    PaymentStatus statusWithOrdinal,
+    Optional<Coin> amountBTC,
+    @Nullable FiatPayment amountFiat,
+    Optional<Coin> miningFee,
+    Optional<Coin> clientFee,
+    TransactionConfidence.ConfidenceType confidenceType,
+    PaymentType paymentType,
+    String description,
+    boolean isCoinbase,
+    Collection<Address> outputAddresses,
+    Supplier<String> rawTransaction,
+    Supplier<Integer> size,
+    boolean isMock
+  ) {
+
     // Apply preconditions if being used in a real environment
     if (!isMock) {
       Preconditions.checkNotNull(transactionId, "'transactionId' must be present");
@@ -121,8 +180,8 @@ public class TransactionData implements PaymentData {
     this.description = description;
     this.coinBase = isCoinbase;
     this.outputAddresses = outputAddresses;
-    this.rawTransaction = rawTransaction;
-    this.size = size;
+    this.rawTransaction = rawTransaction == null ? null : Suppliers.memoize(rawTransaction);
+    this.size = size == null ? null : Suppliers.memoize(size);
   }
 
   @Override
@@ -284,11 +343,17 @@ public class TransactionData implements PaymentData {
     return outputAddresses;
   }
 
+  /**
+   * @return The transaction in its raw form (produced on first call)
+   */
   public String getRawTransaction() {
-    return rawTransaction;
+    return rawTransaction == null ? null : rawTransaction.get();
   }
 
+  /**
+   * @return The size of the transaction in bytes (produced on first call)
+   */
   public int getSize() {
-    return size;
+    return size == null ? -1 : size.get();
   }
 }
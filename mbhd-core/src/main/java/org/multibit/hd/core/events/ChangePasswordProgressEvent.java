@@ -0,0 +1,41 @@
+package org.multibit.hd.core.events;
+
+/**
+ * <p>Event to provide the following to UI event subscribers:</p>
+ * <ul>
+ * <li>Progress of the re-encryption of the wallet files during a change of credentials</li>
+ * </ul>
+ * <p>This is an infrequent event</p>
+ */
+public class ChangePasswordProgressEvent implements CoreEvent {
+
+  private final int filesDone;
+
+  private final int totalFiles;
+
+  /**
+   * @param filesDone  The number of files re-encrypted so far
+   * @param totalFiles The total number of files to re-encrypt
+   */
+  public ChangePasswordProgressEvent(int filesDone, int totalFiles) {
+
+    this.filesDone = filesDone;
+    this.totalFiles = totalFiles;
+  }
+
+  public int getFilesDone() {
+    return filesDone;
+  }
+
+  public int getTotalFiles() {
+    return totalFiles;
+  }
+
+  @Override
+  public String toString() {
+    return "ChangePasswordProgressEvent{" +
+            "filesDone=" + filesDone +
+            ", totalFiles=" + totalFiles +
+            '}';
+  }
+}
@@ -0,0 +1,258 @@
+package org.multibit.hd.core.events;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.google.common.eventbus.EventBus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Dispatcher to provide the following to CoreEvents:</p>
+ * <ul>
+ * <li>Delivery of events of the same type in the order they were fired</li>
+ * <li>Concurrent delivery of events of different types over a shared thread pool</li>
+ * <li>Coalescing of "latest value wins" events (e.g. download progress) that are still waiting to be delivered</li>
+ * <li>Queue depth and dispatch latency metrics</li>
+ * </ul>
+ * <p>Each event type has its own lane. A lane occupies at most one pool thread at a time so subscribers
+ * never see events of one type out of order, and a flood of one type cannot hold up the others.</p>
+ */
+public class CoreEventDispatcher {
+
+  private static final Logger log = LoggerFactory.getLogger(CoreEventDispatcher.class);
+
+  private final EventBus eventBus;
+
+  private final Executor executor;
+
+  private final ConcurrentMap<Class<?>, Lane> lanes = new ConcurrentHashMap<>();
+
+  private final AtomicInteger queueDepth = new AtomicInteger();
+  private final AtomicInteger maximumQueueDepth = new AtomicInteger();
+  private final AtomicLong dispatchedCount = new AtomicLong();
+  private final AtomicLong coalescedCount = new AtomicLong();
+  private final AtomicLong totalLatencyNanos = new AtomicLong();
+  private final AtomicLong maximumLatencyNanos = new AtomicLong();
+
+  /**
+   * @param eventBus The event bus to post the events to
+   * @param executor The executor providing the threads to post on
+   */
+  public CoreEventDispatcher(EventBus eventBus, Executor executor) {
+
+    Preconditions.checkNotNull(eventBus, "'eventBus' must be present");
+    Preconditions.checkNotNull(executor, "'executor' must be present");
+
+    this.eventBus = eventBus;
+    this.executor = executor;
+
+  }
+
+  /**
+   * <p>Queue an event for delivery after any earlier events of the same type</p>
+   *
+   * @param event The event
+   */
+  public void dispatch(Object event) {
+    dispatch(event, Optional.<String>absent());
+  }
+
+  /**
+   * <p>Queue an event for delivery after any earlier events of the same type</p>
+   * <p>A waiting event of the same type with the same coalescing key is dropped since this one supersedes it</p>
+   *
+   * @param event         The event
+   * @param coalescingKey The key identifying the value this event carries the latest state of (absent to never coalesce)
+   */
+  public void dispatch(Object event, Optional<String> coalescingKey) {
+
+    Preconditions.checkNotNull(event, "'event' must be present");
+    Preconditions.checkNotNull(coalescingKey, "'coalescingKey' must be present");
+
+    Lane lane = lanes.get(event.getClass());
+    if (lane == null) {
+      Lane newLane = new Lane();
+      lane = lanes.putIfAbsent(event.getClass(), newLane);
+      if (lane == null) {
+        lane = newLane;
+      }
+    }
+
+    lane.enqueue(new PendingEvent(event, coalescingKey, System.nanoTime()));
+
+  }
+
+  /**
+   * @return The number of events waiting to be delivered
+   */
+  public int getQueueDepth() {
+    return queueDepth.get();
+  }
+
+  /**
+   * @return The largest number of events that have been waiting to be delivered at once
+   */
+  public int getMaximumQueueDepth() {
+    return maximumQueueDepth.get();
+  }
+
+  /**
+   * @return The number of events delivered to the event bus
+   */
+  public long getDispatchedCount() {
+    return dispatchedCount.get();
+  }
+
+  /**
+   * @return The number of events dropped in favour of a later event with the same coalescing key
+   */
+  public long getCoalescedCount() {
+    return coalescedCount.get();
+  }
+
+  /**
+   * @return The mean time in milliseconds from firing an event to the start of its delivery
+   */
+  public double getAverageDispatchLatencyMillis() {
+    long dispatched = dispatchedCount.get();
+    if (dispatched == 0) {
+      return 0;
+    }
+    return (double) TimeUnit.NANOSECONDS.toMicros(totalLatencyNanos.get()) / dispatched / 1000;
+  }
+
+  /**
+   * @return The longest time in milliseconds from firing an event to the start of its delivery
+   */
+  public long getMaximumDispatchLatencyMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(maximumLatencyNanos.get());
+  }
+
+  @Override
+  public String toString() {
+    return "CoreEventDispatcher{" +
+      "queueDepth=" + queueDepth.get() +
+      ", maximumQueueDepth=" + maximumQueueDepth.get() +
+      ", dispatchedCount=" + dispatchedCount.get() +
+      ", coalescedCount=" + coalescedCount.get() +
+      ", averageDispatchLatencyMillis=" + getAverageDispatchLatencyMillis() +
+      ", maximumDispatchLatencyMillis=" + getMaximumDispatchLatencyMillis() +
+      '}';
+  }
+
+  private static void updateMaximum(AtomicInteger maximum, int value) {
+    int current = maximum.get();
+    while (value > current && !maximum.compareAndSet(current, value)) {
+      current = maximum.get();
+    }
+  }
+
+  private static void updateMaximum(AtomicLong maximum, long value) {
+    long current = maximum.get();
+    while (value > current && !maximum.compareAndSet(current, value)) {
+      current = maximum.get();
+    }
+  }
+
+  /**
+   * <p>An event waiting for delivery</p>
+   */
+  private static class PendingEvent {
+
+    private final Object event;
+    private final Optional<String> coalescingKey;
+    private final long firedNanos;
+
+    private PendingEvent(Object event, Optional<String> coalescingKey, long firedNanos) {
+      this.event = event;
+      this.coalescingKey = coalescingKey;
+      this.firedNanos = firedNanos;
+    }
+  }
+
+  /**
+   * <p>The queue of one event type, drained by at most one pool thread at a time</p>
+   */
+  private class Lane implements Runnable {
+
+    private final Deque<PendingEvent> pending = new ArrayDeque<>();
+
+    private boolean draining = false;
+
+    private void enqueue(PendingEvent pendingEvent) {
+
+      boolean startDraining;
+      synchronized (this) {
+        if (pendingEvent.coalescingKey.isPresent()) {
+          // The new event supersedes any waiting event carrying the same value
+          Iterator<PendingEvent> iterator = pending.iterator();
+          while (iterator.hasNext()) {
+            if (pendingEvent.coalescingKey.equals(iterator.next().coalescingKey)) {
+              iterator.remove();
+              queueDepth.decrementAndGet();
+              coalescedCount.incrementAndGet();
+            }
+          }
+        }
+        pending.addLast(pendingEvent);
+        updateMaximum(maximumQueueDepth, queueDepth.incrementAndGet());
+
+        startDraining = !draining;
+        draining = true;
+      }
+
+      if (startDraining) {
+        try {
+          executor.execute(this);
+        } catch (RejectedExecutionException e) {
+          synchronized (this) {
+            log.warn("Event executor is shut down. Dropping {} event(s)", pending.size());
+            queueDepth.addAndGet(-pending.size());
+            pending.clear();
+            draining = false;
+          }
+        }
+      }
+    }
+
+    @Override
+    public void run() {
+
+      while (true) {
+        PendingEvent next;
+        synchronized (this) {
+          next = pending.pollFirst();
+          if (next == null) {
+            draining = false;
+            return;
+          }
+        }
+        queueDepth.decrementAndGet();
+
+        long latencyNanos = System.nanoTime() - next.firedNanos;
+        totalLatencyNanos.addAndGet(latencyNanos);
+        updateMaximum(maximumLatencyNanos, latencyNanos);
+        dispatchedCount.incrementAndGet();
+
+        try {
+          eventBus.post(next.event);
+        } catch (RuntimeException e) {
+          // Keep the lane alive for the following events
+          log.error("Failed to post event " + next.event, e);
+        }
+      }
+
+    }
+  }
+}
@@ -8,10 +8,13 @@ import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.ListeningScheduledExecutorService;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import org.joda.time.DateTime;
-import org.multibit.commons.concurrent.SafeExecutors;
+import org.multibit.hd.core.concurrent.ExecutorRegistry;
+import org.multibit.hd.core.concurrent.Workload;
+import org.multibit.hd.core.dto.BitcoinNetworkStatus;
 import org.multibit.hd.core.dto.BitcoinNetworkSummary;
 import org.multibit.hd.core.dto.EnvironmentSummary;
 import org.multibit.hd.core.dto.ExchangeSummary;
+import org.multibit.hd.core.dto.RAGStatus;
 import org.multibit.hd.core.error_reporting.ExceptionHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -40,6 +43,9 @@ public class CoreEvents {
   // Provide a CoreEvent thread pool to ensure non-UI events are isolated from the EDT
   private static ListeningExecutorService eventExecutor = null;
 
+  // Provide ordered delivery per event type over the CoreEvent thread pool
+  private static CoreEventDispatcher eventDispatcher = null;
+
   // Provide a slower transaction seen thread that is isolated from the EDT
   // See http://www.cs.umd.edu/~pugh/java/memoryModel/DoubleCheckedLocking.html, section "Fixing Double-Checked Locking using Volatile"
   private static volatile Optional<ListeningScheduledExecutorService> txSeenExecutorOptional = Optional.absent();
@@ -123,10 +129,38 @@ public class CoreEvents {
 
   }
 
-  private synchronized static void createEventExecutorIfNecessary() {
+  private synchronized static CoreEventDispatcher getOrCreateEventDispatcher() {
     if (eventExecutor == null) {
-      eventExecutor = SafeExecutors.newFixedThreadPool(10, "core-events");
+      eventExecutor = ExecutorRegistry.INSTANCE.newFixedThreadPool(10, "core-events", Workload.UI_HANDOFF);
+      eventDispatcher = new CoreEventDispatcher(coreEventBus, eventExecutor);
     }
+    return eventDispatcher;
+  }
+
+  /**
+   * @return The dispatcher providing queue depth and dispatch latency metrics
+   */
+  public static CoreEventDispatcher getEventDispatcher() {
+    return getOrCreateEventDispatcher();
+  }
+
+  /**
+   * <p>Deliver the event after any earlier events of the same type</p>
+   *
+   * @param event The event
+   */
+  private static void dispatch(Object event) {
+    getOrCreateEventDispatcher().dispatch(event);
+  }
+
+  /**
+   * <p>Deliver the event after any earlier events of the same type, dropping any waiting event with the same key</p>
+   *
+   * @param event         The "latest value wins" event
+   * @param coalescingKey The key identifying the value the event carries
+   */
+  private static void dispatchLatest(Object event, String coalescingKey) {
+    getOrCreateEventDispatcher().dispatch(event, Optional.of(coalescingKey));
   }
 
   /**
@@ -143,17 +177,10 @@ public class CoreEvents {
     final Optional<String> rateProvider,
     final DateTime expires
   ) {
-    createEventExecutorIfNecessary();
-
-    eventExecutor.submit(
-      new Runnable() {
-        @Override
-        public void run() {
-          ExchangeRateChangedEvent event = new ExchangeRateChangedEvent(rate, currency, rateProvider, expires);
-          coreEventBus.post(event);
-          log.debug("Firing 'exchange rate changed' event: {}", event);
-        }
-      });
+    ExchangeRateChangedEvent event = new ExchangeRateChangedEvent(rate, currency, rateProvider, expires);
+    // Only the latest rate is of interest
+    dispatchLatest(event, "rate");
+    log.debug("Firing 'exchange rate changed' event: {}", event);
 
   }
 
@@ -163,16 +190,8 @@ public class CoreEvents {
    * @param exchangeSummary The exchange summary
    */
   public static void fireExchangeStatusChangedEvent(final ExchangeSummary exchangeSummary) {
-    createEventExecutorIfNecessary();
-
-    eventExecutor.submit(
-      new Runnable() {
-        @Override
-        public void run() {
-          log.trace("Firing 'exchange status changed' event");
-          coreEventBus.post(new ExchangeStatusChangedEvent(exchangeSummary));
-        }
-      });
+    log.trace("Firing 'exchange status changed' event");
+    dispatch(new ExchangeStatusChangedEvent(exchangeSummary));
 
   }
 
@@ -182,16 +201,8 @@ public class CoreEvents {
    * @param transactionCreationEvent containing transaction creation information
    */
   public static void fireTransactionCreationEvent(final TransactionCreationEvent transactionCreationEvent) {
-    createEventExecutorIfNecessary();
-
-    eventExecutor.submit(
-      new Runnable() {
-        @Override
-        public void run() {
-          log.trace("Firing 'transactionCreation' event");
-          coreEventBus.post(transactionCreationEvent);
-        }
-      });
+    log.trace("Firing 'transactionCreation' event");
+    dispatch(transactionCreationEvent);
 
   }
 
@@ -201,16 +212,8 @@ public class CoreEvents {
    * @param bitcoinSentEvent containing send information
    */
   public static void fireBitcoinSentEvent(final BitcoinSentEvent bitcoinSentEvent) {
-    createEventExecutorIfNecessary();
-
-    eventExecutor.submit(
-      new Runnable() {
-        @Override
-        public void run() {
-          log.trace("Firing 'bitcoin sent' event");
-          coreEventBus.post(bitcoinSentEvent);
-        }
-      });
+    log.trace("Firing 'bitcoin sent' event");
+    dispatch(bitcoinSentEvent);
   }
 
   /**
@@ -219,16 +222,8 @@ public class CoreEvents {
     * @param paymentSentToRequestorEvent containing send information
     */
    public static void firePaymentSentToRequestorEvent(final PaymentSentToRequestorEvent paymentSentToRequestorEvent) {
-     createEventExecutorIfNecessary();
-
-     eventExecutor.submit(
-       new Runnable() {
-         @Override
-         public void run() {
-           log.trace("Firing 'PaymentSentToRequestorEvent' event");
-           coreEventBus.post(paymentSentToRequestorEvent);
-         }
-       });
+     log.trace("Firing 'PaymentSentToRequestorEvent' event");
+     dispatch(paymentSentToRequestorEvent);
    }
 
   /**
@@ -237,16 +232,8 @@ public class CoreEvents {
     * @param bitcoinSendingEvent containing send information
     */
    public static void fireBitcoinSendingEvent(final BitcoinSendingEvent bitcoinSendingEvent) {
-     createEventExecutorIfNecessary();
-
-     eventExecutor.submit(
-       new Runnable() {
-         @Override
-         public void run() {
-           log.trace("Firing 'bitcoin sending' event");
-           coreEventBus.post(bitcoinSendingEvent);
-         }
-       });
+     log.trace("Firing 'bitcoin sending' event");
+     dispatch(bitcoinSendingEvent);
    }
 
   /**
@@ -255,32 +242,24 @@ public class CoreEvents {
    * @param walletLoadEvent containing walletLoad information
    */
   public static void fireWalletLoadEvent(final WalletLoadEvent walletLoadEvent) {
-    createEventExecutorIfNecessary();
-
-    eventExecutor.submit(
-      new Runnable() {
-        @Override
-        public void run() {
-          log.trace("Firing 'walletLoadEvent' event");
-          coreEventBus.post(walletLoadEvent);
-        }
-      });
+    log.trace("Firing 'walletLoadEvent' event");
+    dispatch(walletLoadEvent);
+  }
+
+  /**
+   * Broadcast ChangePasswordProgressEvent
+   */
+  public static void fireChangePasswordProgressEvent(final ChangePasswordProgressEvent changePasswordProgressEvent) {
+    log.trace("Firing 'change password progress' event");
+    dispatchLatest(changePasswordProgressEvent, "progress");
   }
 
   /**
    * Broadcast ChangePasswordResultEvent
    */
   public static void fireChangePasswordResultEvent(final ChangePasswordResultEvent changePasswordResultEvent) {
-    createEventExecutorIfNecessary();
-
-    eventExecutor.submit(
-      new Runnable() {
-        @Override
-        public void run() {
-          log.trace("Firing 'change password result' event");
-          coreEventBus.post(changePasswordResultEvent);
-        }
-      });
+    log.trace("Firing 'change password result' event");
+    dispatch(changePasswordResultEvent);
   }
 
   /**
@@ -298,7 +277,7 @@ public class CoreEvents {
         if (!txSeenExecutorOptional.isPresent() && !creatingTxSeenExecutor) {
           // Mark that creation has started - this takes about 600 ms
           creatingTxSeenExecutor = true;
-          txSeenExecutorOptional = Optional.of(SafeExecutors.newSingleThreadScheduledExecutor("tx-seen"));
+          txSeenExecutorOptional = Optional.of(ExecutorRegistry.INSTANCE.newSingleThreadScheduledExecutor("tx-seen", Workload.UI_HANDOFF));
           creatingTxSeenExecutor = false;
         }
       }
@@ -323,15 +302,8 @@ public class CoreEvents {
    * @param bitcoinSendProgressEvent containing transaction broadcast progress information
    */
   public static void fireBitcoinSendProgressEvent(final BitcoinSendProgressEvent bitcoinSendProgressEvent) {
-    createEventExecutorIfNecessary();
-
-    eventExecutor.submit(
-      new Runnable() {
-        @Override
-        public void run() {
-          coreEventBus.post(bitcoinSendProgressEvent);
-        }
-      });
+    // Only the latest progress of each transaction is of interest
+    dispatchLatest(bitcoinSendProgressEvent, bitcoinSendProgressEvent.getTransactionId());
   }
 
   /**
@@ -373,7 +345,17 @@ public class CoreEvents {
       }
     }
 
-    coreEventBus.post(new BitcoinNetworkChangedEvent(bitcoinNetworkSummary));
+    BitcoinNetworkChangedEvent event = new BitcoinNetworkChangedEvent(bitcoinNetworkSummary);
+    if (BitcoinNetworkStatus.DOWNLOADING_BLOCKCHAIN.equals(bitcoinNetworkSummary.getStatus())) {
+      // Only the latest download progress is of interest
+      dispatchLatest(event, "download");
+    } else if (RAGStatus.EMPTY.equals(bitcoinNetworkSummary.getSeverity())) {
+      // Only the latest peer count is of interest
+      dispatchLatest(event, "peers");
+    } else {
+      // Status changes (e.g. synchronized or failed) are always delivered
+      dispatch(event);
+    }
 
   }
 
@@ -383,16 +365,8 @@ public class CoreEvents {
    * @param environmentSummary The environment summary
    */
   public static void fireEnvironmentEvent(final EnvironmentSummary environmentSummary) {
-    createEventExecutorIfNecessary();
-
-    eventExecutor.submit(
-      new Runnable() {
-        @Override
-        public void run() {
-          log.trace("Firing 'environment' event");
-          coreEventBus.post(new EnvironmentEvent(environmentSummary));
-        }
-      });
+    log.trace("Firing 'environment' event");
+    dispatch(new EnvironmentEvent(environmentSummary));
   }
 
   /**
@@ -403,32 +377,16 @@ public class CoreEvents {
    * @param shutdownType The shutdown type
    */
   public static void fireShutdownEvent(final ShutdownEvent.ShutdownType shutdownType) {
-    createEventExecutorIfNecessary();
-
-    eventExecutor.submit(
-      new Runnable() {
-        @Override
-        public void run() {
-          log.info("Firing 'shutdown' event: {}", shutdownType);
-          coreEventBus.post(new ShutdownEvent(shutdownType));
-        }
-      });
+    log.info("Firing 'shutdown' event: {}", shutdownType);
+    dispatch(new ShutdownEvent(shutdownType));
   }
 
   /**
    * <p>Broadcast a new "configuration changed" event</p>
    */
   public static void fireConfigurationChangedEvent() {
-    createEventExecutorIfNecessary();
-
-    eventExecutor.submit(
-      new Runnable() {
-        @Override
-        public void run() {
-          log.trace("Firing 'configuration changed' event");
-          coreEventBus.post(new ConfigurationChangedEvent());
-        }
-      });
+    log.trace("Firing 'configuration changed' event");
+    dispatch(new ConfigurationChangedEvent());
   }
 
   /**
@@ -437,15 +395,7 @@ public class CoreEvents {
    * @param exportPerformedEvent The export performed event
    */
   public static void fireExportPerformedEvent(final ExportPerformedEvent exportPerformedEvent) {
-    createEventExecutorIfNecessary();
-
-    eventExecutor.submit(
-      new Runnable() {
-        @Override
-        public void run() {
-          log.trace("Firing 'export performed' event");
-          coreEventBus.post(exportPerformedEvent);
-        }
-      });
+    log.trace("Firing 'export performed' event");
+    dispatch(exportPerformedEvent);
   }
 }
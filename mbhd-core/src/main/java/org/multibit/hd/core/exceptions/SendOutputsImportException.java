@@ -0,0 +1,21 @@
+package org.multibit.hd.core.exceptions;
+
+
+/**
+ * <p>Exception to provide batch send import failure information :</p>
+ *
+ * <p>The message identifies the line of the CSV file that could not be imported. Since this is in English, it may
+ * not be worth reporting directly to the user other than as part of a "general failure to parse" response.</p>
+ *
+ * @since 0.3.0
+ */
+public class SendOutputsImportException extends RuntimeException {
+
+    public SendOutputsImportException(String s) {
+        super(s);
+    }
+
+    public SendOutputsImportException(String s, Throwable throwable) {
+        super(s, throwable);
+    }
+}
@@ -0,0 +1,190 @@
+package org.multibit.hd.core.files;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.Sets;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * <p>Value object to provide the following to BackupManager:</p>
+ * <ul>
+ * <li>The content hash of every file in a zip backup for change detection</li>
+ * <li>The full backup a delta backup depends on for its unchanged files</li>
+ * </ul>
+ * <p>The manifest is stored as the first entry of the (encrypted) zip so it can be read without decrypting the whole backup.</p>
+ * <p>A full backup contains every file. A delta backup contains only the files that differ from its base full backup
+ * and the restore takes the remaining files listed in the manifest from the base.</p>
+ */
+public class BackupManifest {
+
+  /**
+   * The zip entry name of the manifest
+   */
+  public static final String ENTRY_NAME = "mbhd-backup.manifest";
+
+  private static final String BASE_PREFIX = "base ";
+  private static final String DELTA_COUNT_PREFIX = "deltas ";
+  private static final String FILE_PREFIX = "file ";
+
+  private final SortedMap<String, String> hashes;
+
+  private final Optional<String> baseBackupName;
+
+  private final int deltaCount;
+
+  private BackupManifest(SortedMap<String, String> hashes, Optional<String> baseBackupName, int deltaCount) {
+    this.hashes = ImmutableSortedMap.copyOfSorted(hashes);
+    this.baseBackupName = baseBackupName;
+    this.deltaCount = deltaCount;
+  }
+
+  /**
+   * @param entries The files to back up keyed by zip entry name
+   *
+   * @return A full backup manifest with the SHA-256 content hash of each file
+   *
+   * @throws IOException If a file cannot be read
+   */
+  public static BackupManifest newFullManifest(Map<String, File> entries) throws IOException {
+    SortedMap<String, String> hashes = new TreeMap<>();
+    for (Map.Entry<String, File> entry : entries.entrySet()) {
+      hashes.put(entry.getKey(), Files.hash(entry.getValue(), Hashing.sha256()).toString());
+    }
+    return new BackupManifest(hashes, Optional.<String>absent(), 0);
+  }
+
+  /**
+   * @param baseBackupName The file name of the full backup providing the unchanged files
+   * @param deltaCount     The number of delta backups made against the base including this one
+   *
+   * @return A delta backup manifest with the same content hashes
+   */
+  public BackupManifest asDeltaOf(String baseBackupName, int deltaCount) {
+    Preconditions.checkNotNull(baseBackupName, "'baseBackupName' must be present");
+    Preconditions.checkState(deltaCount > 0, "'deltaCount' must be positive");
+
+    return new BackupManifest(hashes, Optional.of(baseBackupName), deltaCount);
+  }
+
+  /**
+   * @return True if this describes a full backup
+   */
+  public boolean isFull() {
+    return !baseBackupName.isPresent();
+  }
+
+  /**
+   * @return The file name of the full backup providing the unchanged files (absent for a full backup)
+   */
+  public Optional<String> getBaseBackupName() {
+    return baseBackupName;
+  }
+
+  /**
+   * @return The number of delta backups made against the base including this one (zero for a full backup)
+   */
+  public int getDeltaCount() {
+    return deltaCount;
+  }
+
+  /**
+   * @return The zip entry names of all the files in the backed up state
+   */
+  public Set<String> getEntryNames() {
+    return hashes.keySet();
+  }
+
+  /**
+   * @param other The other manifest
+   *
+   * @return True if both manifests describe the same files with the same content
+   */
+  public boolean hasSameContent(BackupManifest other) {
+    return hashes.equals(other.hashes);
+  }
+
+  /**
+   * @param base The manifest of the base backup
+   *
+   * @return The entry names that are new or whose content differs from the base
+   */
+  public Set<String> getChangedEntryNames(BackupManifest base) {
+    Set<String> changed = Sets.newTreeSet();
+    for (Map.Entry<String, String> entry : hashes.entrySet()) {
+      if (!entry.getValue().equals(base.hashes.get(entry.getKey()))) {
+        changed.add(entry.getKey());
+      }
+    }
+    return changed;
+  }
+
+  /**
+   * @param outputStream The stream to write the manifest to (not closed)
+   *
+   * @throws IOException If the write fails
+   */
+  public void writeTo(OutputStream outputStream) throws IOException {
+    Writer writer = new OutputStreamWriter(outputStream, Charsets.UTF_8);
+    if (baseBackupName.isPresent()) {
+      writer.write(BASE_PREFIX + baseBackupName.get() + "\n");
+      writer.write(DELTA_COUNT_PREFIX + deltaCount + "\n");
+    }
+    for (Map.Entry<String, String> entry : hashes.entrySet()) {
+      // The hash comes first as entry names may contain spaces
+      writer.write(FILE_PREFIX + entry.getValue() + " " + entry.getKey() + "\n");
+    }
+    writer.flush();
+  }
+
+  /**
+   * @param inputStream The stream to read the manifest from (not closed)
+   *
+   * @return The manifest
+   *
+   * @throws IOException If the manifest is malformed or cannot be read
+   */
+  public static BackupManifest readFrom(InputStream inputStream) throws IOException {
+    BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, Charsets.UTF_8));
+
+    SortedMap<String, String> hashes = new TreeMap<>();
+    Optional<String> baseBackupName = Optional.absent();
+    int deltaCount = 0;
+
+    String line;
+    while ((line = reader.readLine()) != null) {
+      if (line.startsWith(FILE_PREFIX)) {
+        String[] parts = line.substring(FILE_PREFIX.length()).split(" ", 2);
+        if (parts.length != 2) {
+          throw new IOException("Malformed backup manifest line '" + line + "'");
+        }
+        hashes.put(parts[1], parts[0]);
+      } else if (line.startsWith(BASE_PREFIX)) {
+        baseBackupName = Optional.of(line.substring(BASE_PREFIX.length()));
+      } else if (line.startsWith(DELTA_COUNT_PREFIX)) {
+        try {
+          deltaCount = Integer.parseInt(line.substring(DELTA_COUNT_PREFIX.length()));
+        } catch (NumberFormatException e) {
+          throw new IOException("Malformed backup manifest line '" + line + "'", e);
+        }
+      }
+    }
+
+    return new BackupManifest(hashes, baseBackupName, deltaCount);
+  }
+}
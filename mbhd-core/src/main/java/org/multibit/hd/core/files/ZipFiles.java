@@ -1,5 +1,8 @@
 package org.multibit.hd.core.files;
 
+import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
+import com.google.common.io.ByteStreams;
 import org.multibit.hd.core.managers.BackupManager;
 import org.multibit.hd.core.managers.InstallationManager;
 import org.slf4j.Logger;
@@ -7,8 +10,14 @@ import org.slf4j.LoggerFactory;
 
 import java.io.*;
 import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
 
 import static org.multibit.commons.files.SecureFiles.verifyOrCreateDirectory;
@@ -45,31 +54,146 @@ public class ZipFiles {
    * @throws java.io.IOException
    */
   public static void zipFolder(String srcFolder, String destZipFile, boolean includeBlockStore) throws IOException {
-    ZipOutputStream zip;
-    FileOutputStream fileWriter;
+    try (FileOutputStream fileWriter = new FileOutputStream(destZipFile)) {
+      zipFolder(srcFolder, fileWriter, includeBlockStore);
+    }
+  }
 
-    fileWriter = new FileOutputStream(destZipFile);
-    zip = new ZipOutputStream(fileWriter);
+  /**
+   * Copy the files in the specified srcFolder as a zip to the output stream (e.g. an encrypting stream)
+   *
+   * @param srcFolder         The directory holding the files to zip
+   * @param outputStream      The stream to write the zip to (finished but not closed)
+   * @param includeBlockStore if true then include the blockstore, if false then don't
+   *
+   * @throws java.io.IOException
+   */
+  public static void zipFolder(String srcFolder, OutputStream outputStream, boolean includeBlockStore) throws IOException {
+    ZipOutputStream zip = new ZipOutputStream(outputStream);
 
     try {
-      // Add the contents of the srcFolder to the zip - note the top folder (with the wallet id) is not added as it is coded in the name of the zip
-      String[] srcFolderList = new File(srcFolder).list();
+      zipEntries(listEntries(srcFolder, includeBlockStore), zip);
+    } finally {
+      zip.finish();
+      zip.flush();
+    }
+  }
 
-      if (srcFolderList != null) {
-        for (String fileName : srcFolderList) {
-          if (!includeBlockStore && fileName.endsWith(InstallationManager.MBHD_PREFIX + InstallationManager.SPV_BLOCKCHAIN_SUFFIX)) {
-            // Do not include the block chain (to save space)
-            continue;
+  /**
+   * List the files that {@link #zipFolder(String, OutputStream, boolean)} would add, keyed by zip entry name
+   * The top folder (with the wallet id) is not included as it is coded in the name of the zip
+   *
+   * @param srcFolder         The directory holding the files to zip
+   * @param includeBlockStore if true then include the blockstore, if false then don't
+   *
+   * @return The files to zip in entry name order
+   */
+  public static SortedMap<String, File> listEntries(String srcFolder, boolean includeBlockStore) {
+    SortedMap<String, File> entries = new TreeMap<>();
+
+    String[] srcFolderList = new File(srcFolder).list();
+    if (srcFolderList != null) {
+      for (String fileName : srcFolderList) {
+        if (!includeBlockStore && isBlockStoreFile(fileName)) {
+          // Do not include the block chain (to save space)
+          continue;
+        }
+        addEntry(srcFolder, fileName, entries, includeBlockStore);
+      }
+    }
+
+    return entries;
+  }
+
+  /**
+   * Add the files to the zip
+   *
+   * @param entries The files to add keyed by zip entry name
+   * @param zip     The zip to add the files to
+   *
+   * @throws java.io.IOException
+   */
+  public static void zipEntries(Map<String, File> entries, ZipOutputStream zip) throws IOException {
+    byte[] buf = new byte[1024];
+    int len;
+    for (Map.Entry<String, File> entry : entries.entrySet()) {
+      File srcFileOnDisk = entry.getValue();
+      if (srcFileOnDisk.exists()) {
+        try (FileInputStream in = new FileInputStream(srcFileOnDisk)) {
+          zip.putNextEntry(new ZipEntry(entry.getKey()));
+
+          while ((len = in.read(buf)) > 0) {
+            zip.write(buf, 0, len);
           }
-          addFileToZip(srcFolder, fileName, zip, includeBlockStore);
+        } catch (IOException ioe) {
+          log.error("Failed to save file to cloud backup. Error was {}", ioe);
         }
+      } else {
+        log.debug("Not adding file {} to backup as it does not exist.", srcFileOnDisk);
       }
-    } finally {
-      zip.flush();
-      zip.close();
     }
   }
 
+  /**
+   * Extract the zip read from the input stream (e.g. a decrypting stream) without an intermediate file
+   *
+   * @param inputStream          The stream to read the zip from (not closed)
+   * @param directoryToExtractTo The directory to extract the files to
+   *
+   * @throws java.io.IOException
+   */
+  public static void unzip(InputStream inputStream, String directoryToExtractTo) throws IOException {
+    unzip(inputStream, directoryToExtractTo, Predicates.<String>alwaysTrue());
+  }
+
+  /**
+   * Extract the zip entries accepted by the filter from the input stream without an intermediate file
+   *
+   * @param inputStream          The stream to read the zip from (not closed)
+   * @param directoryToExtractTo The directory to extract the files to
+   * @param entryNameFilter      The filter on the entry names to extract
+   *
+   * @return The names of the extracted file entries
+   *
+   * @throws java.io.IOException
+   */
+  public static Set<String> unzip(InputStream inputStream, String directoryToExtractTo, Predicate<String> entryNameFilter) throws IOException {
+
+    Set<String> extractedNames = new HashSet<>();
+
+    File directory = new File(directoryToExtractTo);
+    verifyOrCreateDirectory(directory);
+
+    ZipInputStream zip = new ZipInputStream(inputStream);
+    ZipEntry entry;
+    while ((entry = zip.getNextEntry()) != null) {
+
+      if (entry.isDirectory()) {
+        verifyOrCreateDirectory(new File(directoryToExtractTo + File.separator + entry.getName()));
+        continue;
+      }
+
+      // Ignore certain files
+      if (entry.getName().contains(".DS_Store") || !entryNameFilter.apply(entry.getName())) {
+        continue;
+      }
+
+      log.debug("Extracting file: " + entry.getName());
+
+      String dir = directoryPart(entry.getName());
+      if (dir != null) {
+        verifyOrCreateDirectory(new File(directoryToExtractTo + File.separator + dir));
+      }
+
+      try (OutputStream out = new BufferedOutputStream(new FileOutputStream(directoryToExtractTo + File.separator + entry.getName()))) {
+        ByteStreams.copy(zip, out);
+      }
+      extractedNames.add(entry.getName());
+    }
+
+    return extractedNames;
+  }
+
   public static void unzip(String zipFileName, String directoryToExtractTo) throws IOException {
 
     Enumeration entriesEnum;
@@ -121,33 +245,25 @@ public class ZipFiles {
     }
   }
 
-  private static void addFileToZip(String path, String srcFile, ZipOutputStream zip, boolean includeBlockStore)
-    throws IOException {
+  /**
+   * @return True if the file is the block chain or its header index (both can be recreated from the network)
+   */
+  private static boolean isBlockStoreFile(String fileName) {
+    return fileName.endsWith(InstallationManager.MBHD_PREFIX + InstallationManager.SPV_BLOCKCHAIN_SUFFIX)
+      || fileName.endsWith(InstallationManager.MBHD_PREFIX + InstallationManager.SPV_BLOCKCHAIN_INDEX_SUFFIX);
+  }
+
+  private static void addEntry(String path, String srcFile, SortedMap<String, File> entries, boolean includeBlockStore) {
 
     File srcFileOnDisk = new File(path + File.separator + srcFile);
     if (srcFileOnDisk.isDirectory()) {
-      addFolderToZip(path, srcFile, zip, includeBlockStore);
+      addFolderEntries(path, srcFile, entries, includeBlockStore);
     } else {
-      byte[] buf = new byte[1024];
-      int len;
-      if (srcFileOnDisk.exists()) {
-        try (FileInputStream in = new FileInputStream(srcFileOnDisk)) {
-          zip.putNextEntry(new ZipEntry(srcFile));
-
-          while ((len = in.read(buf)) > 0) {
-            zip.write(buf, 0, len);
-          }
-        } catch (IOException ioe) {
-          log.error("Failed to save file to cloud backup. Error was {}", ioe);
-        }
-      } else {
-        log.debug("Not adding file {} to backup as it does not exist.", srcFileOnDisk);
-      }
+      entries.put(srcFile, srcFileOnDisk);
     }
   }
 
-  private static void addFolderToZip(String path, String srcFolder, ZipOutputStream zip, boolean includeBlockStore)
-    throws IOException {
+  private static void addFolderEntries(String path, String srcFolder, SortedMap<String, File> entries, boolean includeBlockStore) {
 
     File folder = new File(srcFolder);
     File folderOnDisk = new File(path + File.separator + srcFolder);
@@ -160,11 +276,11 @@ public class ZipFiles {
     String[] folderOnDiskList = folderOnDisk.list();
     if (folderOnDiskList != null) {
       for (String fileName : folderOnDiskList) {
-        if (!includeBlockStore && fileName.endsWith(InstallationManager.MBHD_PREFIX + InstallationManager.SPV_BLOCKCHAIN_SUFFIX)) {
+        if (!includeBlockStore && isBlockStoreFile(fileName)) {
           // Do not include the block writeContacts (to save space)
           continue;
         }
-        addFileToZip(path, srcFolder + File.separator + fileName, zip, includeBlockStore);
+        addEntry(path, srcFolder + File.separator + fileName, entries, includeBlockStore);
       }
     }
   }
@@ -2,13 +2,14 @@ package org.multibit.hd.core.managers;
 
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.google.common.io.ByteStreams;
-import com.google.common.io.Files;
 import org.bitcoinj.core.Wallet;
 import org.joda.time.DateTime;
-import org.multibit.commons.crypto.AESUtils;
 import org.multibit.commons.utils.Dates;
 import org.multibit.hd.brit.core.seed_phrase.Bip39SeedPhraseGenerator;
 import org.multibit.hd.brit.core.seed_phrase.SeedPhraseGenerator;
@@ -23,15 +24,18 @@ import org.multibit.hd.core.events.WalletLoadEvent;
 import org.multibit.hd.core.exceptions.EncryptedFileReaderWriterException;
 import org.multibit.hd.core.exceptions.WalletLoadException;
 import org.multibit.commons.files.SecureFiles;
+import org.multibit.hd.core.files.BackupManifest;
 import org.multibit.hd.core.files.ZipFiles;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.spongycastle.crypto.params.KeyParameter;
 
-import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
@@ -39,6 +43,11 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
 
 import static org.multibit.hd.core.dto.WalletId.LENGTH_OF_FORMATTED_WALLET_ID;
 import static org.multibit.hd.core.dto.WalletId.WALLET_ID_SEPARATOR;
@@ -64,8 +73,16 @@ public enum BackupManager {
   public static final int MAXIMUM_NUMBER_OF_ZIP_BACKUPS = 60; // Chosen so that you will have about weekly backups for a year, fortnightly over two years.
   public static final int NUMBER_OF_FIRST_WALLET_ZIP_BACKUPS_TO_ALWAYS_KEEP = 2;
   public static final int NUMBER_OF_LAST_WALLET_ZIP_BACKUPS_TO_ALWAYS_KEEP = 8; // Must be at least 1.
+  public static final int MAXIMUM_NUMBER_OF_DELTA_ZIP_BACKUPS = 10; // Deltas made against one full backup before the next full backup.
 
   public static final String BACKUP_TIMESTAMP_SUFFIX_FORMAT = "yyyyMMddHHmmss";
+
+  /**
+   * The prefix of the directory in the application data directory that a zip backup is restored into before it is
+   * moved over the wallet root directory
+   */
+  private static final String RESTORE_DIRECTORY_PREFIX = "restore-";
+
   private DateFormat dateFormat;
 
   private static final Logger log = LoggerFactory.getLogger(BackupManager.class);
@@ -250,7 +267,7 @@ public enum BackupManager {
    *
    * @param walletSummary The wallet data with the wallet to backup
    *
-   * @return the File of the created rolling wallet backup
+   * @return the File of the created (AES encrypted) rolling wallet backup
    *
    * @throws java.io.IOException if the wallet backup could not be created
    */
@@ -281,13 +298,18 @@ public enum BackupManager {
       + Dates.formatBackupDate(Dates.nowUtc())
       + WalletManager.MBHD_WALLET_SUFFIX;
 
-    File walletBackupFile = new File(walletBackupFilename);
-    log.debug("Creating rolling-backup\n'{}'", walletBackupFilename);
-    walletSummary.getWallet().saveToFile(walletBackupFile);
-    log.debug("Created rolling-backup successfully. Size = {}", walletBackupFile.length());
-
-    File encryptedAESCopy = EncryptedFileReaderWriter.makeAESEncryptedCopyAndDeleteOriginal(walletBackupFile, password);
-    log.debug("Created rolling-backup AES copy successfully as file:\n'{}'", encryptedAESCopy == null ? "" : encryptedAESCopy.getAbsolutePath());
+    // Stream the wallet straight through the cipher so no plain text copy is written
+    final Wallet wallet = walletSummary.getWallet();
+    File encryptedAESCopy = new File(walletBackupFilename + WalletManager.MBHD_AES_SUFFIX);
+    log.debug("Creating rolling-backup\n'{}'", encryptedAESCopy.getAbsolutePath());
+    long bytesWritten = EncryptedFileReaderWriter.encryptAndWrite(
+      new EncryptedFileReaderWriter.StreamWriter() {
+        @Override
+        public void writeTo(OutputStream outputStream) throws IOException {
+          wallet.saveToFileStream(outputStream);
+        }
+      }, password, encryptedAESCopy);
+    log.debug("Created rolling-backup AES copy successfully. Size = {}", bytesWritten);
 
     List<File> rollingBackups = getRollingBackups(walletSummary.getWalletId());
 
@@ -302,7 +324,7 @@ public enum BackupManager {
       // Delete the second eldest
       SecureFiles.secureDelete(rollingBackups.get(1));
     }
-    return walletBackupFile;
+    return encryptedAESCopy;
   }
 
   /**
@@ -338,15 +360,13 @@ public enum BackupManager {
     String localBackupFilename = localBackupDirectory.getAbsolutePath() + File.separator + backupFilename;
 
     log.debug("Creating local zip-backup\n'{}'", localBackupFilename);
-    ZipFiles.zipFolder(walletRootDirectory.getAbsolutePath(), localBackupFilename, false);
-    File localBackupEncryptedFilename = EncryptedFileReaderWriter.makeBackupAESEncryptedCopyAndDeleteOriginal(
-      new File(localBackupFilename),
-      (String) password,
-      walletSummary.getEncryptedBackupKey());
-    log.debug("Created encrypted local zip-backup successfully. Size = {} bytes", localBackupEncryptedFilename.length());
-
-    // Thin the local backup directory
-    thinBackupDirectory(walletId, localBackupDirectory);
+    File localBackupEncryptedFilename = writeZipBackup(
+      walletId,
+      walletRootDirectory,
+      new File(localBackupFilename + WalletManager.MBHD_AES_SUFFIX),
+      password,
+      walletSummary);
+    log.debug("Local zip-backup is\n'{}'\nSize = {} bytes", localBackupEncryptedFilename.getAbsolutePath(), localBackupEncryptedFilename.length());
 
     return localBackupEncryptedFilename;
   }
@@ -383,16 +403,14 @@ public enum BackupManager {
     if (cloudBackupDirectory.isPresent() && cloudBackupDirectory.get().exists()) {
       String cloudBackupFilename = cloudBackupDirectory.get().getAbsolutePath() + File.separator + backupFilename;
       log.debug("Creating cloud zip-backup '" + cloudBackupFilename + "'");
-      ZipFiles.zipFolder(walletRootDirectory.getAbsolutePath(), cloudBackupFilename, false);
-      File cloudBackupEncryptedFilename = EncryptedFileReaderWriter.makeBackupAESEncryptedCopyAndDeleteOriginal(
-        new File(cloudBackupFilename),
-        (String) password,
-        walletSummary.getEncryptedBackupKey());
-
-      log.debug("Created encrypted cloud zip-backup successfully. Size = " + (cloudBackupEncryptedFilename).length() + " bytes");
+      File cloudBackupEncryptedFilename = writeZipBackup(
+        walletId,
+        walletRootDirectory,
+        new File(cloudBackupFilename + WalletManager.MBHD_AES_SUFFIX),
+        password,
+        walletSummary);
 
-      // Thin the local backup directory
-      thinBackupDirectory(walletId, cloudBackupDirectory.get());
+      log.debug("Cloud zip-backup is '" + cloudBackupEncryptedFilename.getAbsolutePath() + "'. Size = " + cloudBackupEncryptedFilename.length() + " bytes");
 
       return cloudBackupEncryptedFilename;
     } else {
@@ -469,12 +487,14 @@ public enum BackupManager {
 
   /**
    * Load a zip backup file, copying all the backup files to the appropriate wallet root directory
+   * (the wallet root directory is only changed once the whole backup has been decrypted)
    *
    * @param backupFileToLoad The encrypted backup file to load
    * @param backupAESKey     The AES key to use to decrypt the backup file
+   *
+   * @throws EncryptedFileReaderWriterException If the backup cannot be decrypted with the key or is damaged
    */
   public WalletId loadZipBackup(File backupFileToLoad, KeyParameter backupAESKey) throws IOException {
-    File temporaryFile = null;
     try {
       // Work out the walletId of the backup file being loaded
       String backupFilename = backupFileToLoad.getName();
@@ -491,31 +511,239 @@ public enum BackupManager {
       }
       WalletId walletId = new WalletId(walletRoot);
 
-      File walletRootDirectory = WalletManager.getOrCreateWalletDirectory(applicationDataDirectory, WalletManager.createWalletRoot(walletId));
+      String walletRootName = WalletManager.createWalletRoot(walletId);
 
-      // Read the encrypted file in.
-      byte[] encryptedBytes = Files.toByteArray(new File(backupFileToLoad.getAbsolutePath()));
+      // Decrypt and unzip the backup into a staging directory so that a wrong key or a corrupt backup leaves the
+      // wallet root directory untouched
+      File stagingDirectory = new File(applicationDataDirectory, RESTORE_DIRECTORY_PREFIX + walletRootName);
+      deleteStagingDirectory(stagingDirectory);
+      try {
+        Optional<BackupManifest> manifest = readManifest(backupFileToLoad, backupAESKey);
+        Set<String> extractedNames = unzipVerified(
+          backupFileToLoad,
+          backupAESKey,
+          stagingDirectory,
+          Predicates.not(Predicates.equalTo(BackupManifest.ENTRY_NAME)));
+
+        // A zip read with the wrong key can end without any entries rather than fail
+        if (extractedNames.isEmpty() && !manifest.isPresent()) {
+          throw new IOException("The backup contains no files");
+        }
 
-      // Decrypt the backup bytes
-      byte[] decryptedBytes = AESUtils.decrypt(encryptedBytes, backupAESKey, WalletManager.aesInitialisationVector());
+        // A delta backup takes its unchanged files from its base full backup (files deleted since the base are not listed)
+        if (manifest.isPresent() && manifest.get().getBaseBackupName().isPresent()) {
+          File baseBackupFile = new File(backupFileToLoad.getAbsoluteFile().getParentFile(), manifest.get().getBaseBackupName().get());
+          if (!baseBackupFile.exists()) {
+            throw new IOException("The base backup '" + baseBackupFile.getAbsolutePath() + "' of the delta backup is missing");
+          }
+          Set<String> unchangedNames = Sets.difference(manifest.get().getEntryNames(), extractedNames).immutableCopy();
+          log.debug("Restoring {} unchanged file(s) from base backup\n'{}'", unchangedNames.size(), baseBackupFile.getAbsolutePath());
+          unzipVerified(baseBackupFile, backupAESKey, stagingDirectory, Predicates.in(unchangedNames));
+        }
 
-      File tempDirectory = Files.createTempDir();
-      temporaryFile = File.createTempFile("backup", "zip", tempDirectory);
-      try (FileOutputStream outputFileStream = new FileOutputStream(temporaryFile)) {
-        ByteStreams.copy(new ByteArrayInputStream(decryptedBytes), outputFileStream);
+        // Everything decrypted so move the files over the wallet root directory - this overwrites files if already
+        // present (hence the backup just done)
+        File walletRootDirectory = WalletManager.getOrCreateWalletDirectory(applicationDataDirectory, walletRootName);
+        moveStagedFiles(stagingDirectory, walletRootDirectory);
+      } finally {
+        deleteStagingDirectory(stagingDirectory);
       }
 
-      // Unzip the backup into the wallet root directory - this overwrites files if already present (hence the backup just done)
-      ZipFiles.unzip(temporaryFile.getAbsolutePath(), walletRootDirectory.getAbsolutePath());
-
       return walletId;
     } catch (Exception e) {
       throw new EncryptedFileReaderWriterException("Cannot read and decrypt the backup file '" + backupFileToLoad.getAbsolutePath() + "'", e);
-    } finally {
-      if (temporaryFile != null) {
-        SecureFiles.secureDelete(temporaryFile);
+    }
+  }
+
+  /**
+   * <p>Zip the wallet root directory straight through the backup AES key cipher so no plain text zip is written</p>
+   * <ul>
+   * <li>If nothing has changed since the latest backup in the directory then no backup is written and the latest is returned</li>
+   * <li>Otherwise a delta backup holding only the files changed since the latest full backup is written</li>
+   * <li>A full backup is written if there is no usable full backup or after {@link #MAXIMUM_NUMBER_OF_DELTA_ZIP_BACKUPS} deltas</li>
+   * </ul>
+   *
+   * @param walletId            The wallet id
+   * @param walletRootDirectory The wallet root directory to zip
+   * @param backupFile          The encrypted zip file to write
+   * @param password            The wallet password
+   * @param walletSummary       The wallet summary providing the encrypted backup AES key
+   *
+   * @return The written backup or the latest backup if nothing has changed
+   */
+  private File writeZipBackup(WalletId walletId, File walletRootDirectory, File backupFile, CharSequence password, WalletSummary walletSummary) throws IOException {
+
+    File backupDirectory = backupFile.getAbsoluteFile().getParentFile();
+    KeyParameter backupAESKey = EncryptedFileReaderWriter.decryptBackupAESKey((String) password, walletSummary.getEncryptedBackupKey());
+
+    final SortedMap<String, File> entries = ZipFiles.listEntries(walletRootDirectory.getAbsolutePath(), false);
+    BackupManifest manifest = BackupManifest.newFullManifest(entries);
+
+    // Compare with the latest backup
+    Optional<File> latestBackup = getLatestWalletBackup(walletId, backupDirectory);
+    Optional<BackupManifest> latestManifest = latestBackup.isPresent() ? readManifest(latestBackup.get(), backupAESKey) : Optional.<BackupManifest>absent();
+    if (latestManifest.isPresent() && latestManifest.get().hasSameContent(manifest)) {
+      log.debug("Not writing zip-backup as nothing has changed since\n'{}'", latestBackup.get().getAbsolutePath());
+      return latestBackup.get();
+    }
+
+    // Work out the full backup to base a delta on
+    Optional<File> baseBackup = Optional.absent();
+    Optional<BackupManifest> baseManifest = Optional.absent();
+    if (latestManifest.isPresent() && latestManifest.get().getDeltaCount() < MAXIMUM_NUMBER_OF_DELTA_ZIP_BACKUPS) {
+      if (latestManifest.get().isFull()) {
+        baseBackup = latestBackup;
+        baseManifest = latestManifest;
+      } else {
+        File latestBase = new File(backupDirectory, latestManifest.get().getBaseBackupName().get());
+        if (latestBase.exists()) {
+          baseBackup = Optional.of(latestBase);
+          baseManifest = readManifest(latestBase, backupAESKey);
+        }
+      }
+    }
+
+    final BackupManifest backupManifest;
+    final SortedMap<String, File> backupEntries;
+    if (baseManifest.isPresent() && baseManifest.get().isFull()) {
+      backupManifest = manifest.asDeltaOf(baseBackup.get().getName(), latestManifest.get().getDeltaCount() + 1);
+      backupEntries = Maps.newTreeMap();
+      for (String changedName : manifest.getChangedEntryNames(baseManifest.get())) {
+        backupEntries.put(changedName, entries.get(changedName));
+      }
+      log.debug("Writing delta zip-backup of {} changed file(s) against\n'{}'", backupEntries.size(), baseBackup.get().getAbsolutePath());
+    } else {
+      backupManifest = manifest;
+      backupEntries = entries;
+      log.debug("Writing full zip-backup of {} file(s)", backupEntries.size());
+    }
+
+    EncryptedFileReaderWriter.encryptAndWrite(
+      new EncryptedFileReaderWriter.StreamWriter() {
+        @Override
+        public void writeTo(OutputStream outputStream) throws IOException {
+          ZipOutputStream zip = new ZipOutputStream(outputStream);
+          // The manifest is first so it can be read without decrypting the whole backup
+          zip.putNextEntry(new ZipEntry(BackupManifest.ENTRY_NAME));
+          backupManifest.writeTo(zip);
+          zip.closeEntry();
+          ZipFiles.zipEntries(backupEntries, zip);
+          zip.finish();
+          zip.flush();
+        }
+      }, backupAESKey, backupFile);
+
+    thinBackupDirectory(walletId, backupDirectory, backupAESKey);
+
+    return backupFile;
+  }
+
+  /**
+   * @param walletId        The wallet id
+   * @param backupDirectory The backup directory
+   *
+   * @return The most recent backup (by the timestamp in its name)
+   */
+  private Optional<File> getLatestWalletBackup(WalletId walletId, File backupDirectory) {
+    File latest = null;
+    for (BackupSummary backup : getWalletBackups(walletId, backupDirectory)) {
+      // The timestamp is the only varying part of the name so names sort by time
+      if (latest == null || backup.getFile().getName().compareTo(latest.getName()) > 0) {
+        latest = backup.getFile();
       }
     }
+    return Optional.fromNullable(latest);
+  }
+
+  /**
+   * <p>Decrypt and unzip a backup, reading to the end of the file so that the cipher padding is checked</p>
+   *
+   * @param backupFile           The encrypted zip backup
+   * @param backupAESKey         The AES key to use to decrypt the backup file
+   * @param directoryToExtractTo The directory to extract the files to
+   * @param entryNameFilter      The filter on the entry names to extract
+   *
+   * @return The names of the extracted file entries
+   *
+   * @throws IOException If the backup cannot be decrypted (e.g. a wrong key or a damaged file)
+   */
+  private Set<String> unzipVerified(File backupFile, KeyParameter backupAESKey, File directoryToExtractTo, Predicate<String> entryNameFilter) throws IOException {
+
+    try (InputStream decryptedInputStream = EncryptedFileReaderWriter.readAndDecryptStream(backupFile, backupAESKey)) {
+      Set<String> extractedNames = ZipFiles.unzip(decryptedInputStream, directoryToExtractTo.getAbsolutePath(), entryNameFilter);
+      // The zip reader stops at the central directory so drain the rest to reach the final cipher block
+      ByteStreams.copy(decryptedInputStream, ByteStreams.nullOutputStream());
+      return extractedNames;
+    }
+
+  }
+
+  /**
+   * @param stagingDirectory    The directory holding the restored files
+   * @param walletRootDirectory The wallet root directory to move them to
+   */
+  private void moveStagedFiles(File stagingDirectory, File walletRootDirectory) throws IOException {
+
+    File[] stagedFiles = stagingDirectory.listFiles();
+    if (stagedFiles == null) {
+      return;
+    }
+    for (File stagedFile : stagedFiles) {
+      File target = new File(walletRootDirectory, stagedFile.getName());
+      if (stagedFile.isDirectory()) {
+        SecureFiles.verifyOrCreateDirectory(target);
+        moveStagedFiles(stagedFile, target);
+      } else {
+        Files.move(stagedFile.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      }
+    }
+
+  }
+
+  /**
+   * @param stagingDirectory The staging directory to delete along with anything left in it
+   */
+  private void deleteStagingDirectory(File stagingDirectory) {
+
+    File[] stagedFiles = stagingDirectory.listFiles();
+    if (stagedFiles != null) {
+      for (File stagedFile : stagedFiles) {
+        if (stagedFile.isDirectory()) {
+          deleteStagingDirectory(stagedFile);
+        } else {
+          try {
+            SecureFiles.secureDelete(stagedFile);
+          } catch (IOException e) {
+            log.warn("Could not delete restored file '{}'. Error was '{}'", stagedFile.getAbsolutePath(), e.getMessage());
+          }
+        }
+      }
+    }
+    if (stagingDirectory.exists() && !stagingDirectory.delete()) {
+      log.warn("Could not delete restore directory '{}'", stagingDirectory.getAbsolutePath());
+    }
+
+  }
+
+  /**
+   * Read the manifest from the first entry of a zip backup without decrypting the rest of it
+   *
+   * @param backupFile   The encrypted zip backup
+   * @param backupAESKey The AES key to use to decrypt the backup file
+   *
+   * @return The manifest or absent if the backup has none (made by an earlier version) or cannot be read
+   */
+  private Optional<BackupManifest> readManifest(File backupFile, KeyParameter backupAESKey) {
+    try (InputStream decryptedInputStream = EncryptedFileReaderWriter.readAndDecryptStream(backupFile, backupAESKey)) {
+      ZipInputStream zip = new ZipInputStream(decryptedInputStream);
+      ZipEntry firstEntry = zip.getNextEntry();
+      if (firstEntry != null && BackupManifest.ENTRY_NAME.equals(firstEntry.getName())) {
+        return Optional.of(BackupManifest.readFrom(zip));
+      }
+    } catch (IOException | EncryptedFileReaderWriterException e) {
+      log.warn("Could not read the manifest of backup '{}'. Error was '{}'", backupFile.getAbsolutePath(), e.getMessage());
+    }
+    return Optional.absent();
   }
 
   /**
@@ -523,10 +751,13 @@ public enum BackupManager {
    * Thinning is done by removing the most quickly replaced backup, except for the first and last few
    * (as they are considered to be more valuable backups).
    *
+   * Full backups that a remaining delta backup is based on are never thinned.
+   *
    * @param walletId        the wallet id of wallet backups to thin
    * @param backupDirectory the directory to thin
+   * @param backupAESKey    the AES key to read the backup manifests with
    */
-  private void thinBackupDirectory(WalletId walletId, File backupDirectory) {
+  private void thinBackupDirectory(WalletId walletId, File backupDirectory, KeyParameter backupAESKey) {
     if (dateFormat == null) {
       dateFormat = new SimpleDateFormat(BACKUP_TIMESTAMP_SUFFIX_FORMAT);
     }
@@ -568,14 +799,24 @@ public enum BackupManager {
       }
     }
 
+    // Work out which full backups are needed to restore the delta backups
+    Set<String> baseBackupNames = Sets.newHashSet();
+    for (BackupSummary backup : backups) {
+      Optional<BackupManifest> manifest = readManifest(backup.getFile(), backupAESKey);
+      if (manifest.isPresent() && manifest.get().getBaseBackupName().isPresent()) {
+        baseBackupNames.add(manifest.get().getBaseBackupName().get());
+      }
+    }
+
     // See which wallet is most quickly replaced by another backup - this will be thinned.
     int walletBackupToDeleteIndex = -1; // Not set yet.
     long walletBackupToDeleteReplacementTimeMillis = Integer.MAX_VALUE; // How quickly the wallet was replaced by a later one.
 
     for (int i = 0; i < backups.size(); i++) {
       if ((i < NUMBER_OF_FIRST_WALLET_ZIP_BACKUPS_TO_ALWAYS_KEEP)
-        || (i >= backups.size() - NUMBER_OF_LAST_WALLET_ZIP_BACKUPS_TO_ALWAYS_KEEP)) {
-        // Keep the very first and last wallets always.
+        || (i >= backups.size() - NUMBER_OF_LAST_WALLET_ZIP_BACKUPS_TO_ALWAYS_KEEP)
+        || baseBackupNames.contains(backups.get(i).getFile().getName())) {
+        // Keep the very first and last wallets always (and any base of a delta backup).
       } else {
         // Work out how quickly the wallet is replaced by the next backup.
         Date thisWalletTimestamp = mapOfFileToBackupTimes.get(backups.get(i).getFile());
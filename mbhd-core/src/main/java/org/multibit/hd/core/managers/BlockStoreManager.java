@@ -1,15 +1,20 @@
 package org.multibit.hd.core.managers;
 
+import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import org.bitcoinj.core.CheckpointManager;
 import org.bitcoinj.core.NetworkParameters;
 import org.bitcoinj.core.StoredBlock;
+import org.bitcoinj.core.Wallet;
 import org.bitcoinj.store.BlockStore;
 import org.bitcoinj.store.BlockStoreException;
 import org.bitcoinj.store.SPVBlockStore;
 import org.joda.time.DateTime;
 import org.multibit.commons.utils.Dates;
+import org.multibit.hd.core.dto.WalletSummary;
+import org.multibit.hd.core.store.HeaderArchive;
+import org.multibit.hd.core.store.IndexedBlockStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -22,6 +27,8 @@ import java.util.Stack;
  * <p>Manager to provide the following to BitcoinNetworkService:</p>
  * <ul>
  * <li>Create a blockstore</li>
+ * <li>Keep a header index next to the blockstore for replays</li>
+ * <li>Seed new blockstores from (and refresh) the header archive shared by all wallets</li>
  * </ul>
  */
 public class BlockStoreManager {
@@ -33,14 +40,29 @@ public class BlockStoreManager {
 
   private final NetworkParameters networkParameters;
 
+  private final HeaderArchive headerArchive;
+
   /**
    * @param networkParameters The Bitcoin network parameters
    */
   public BlockStoreManager(NetworkParameters networkParameters) {
+    this(
+      networkParameters,
+      new File(InstallationManager.getOrCreateApplicationDataDirectory(), InstallationManager.MBHD_PREFIX + InstallationManager.HEADER_ARCHIVE_SUFFIX)
+    );
+  }
+
+  /**
+   * @param networkParameters The Bitcoin network parameters
+   * @param headerArchiveFile The header archive shared by all wallets
+   */
+  public BlockStoreManager(NetworkParameters networkParameters, File headerArchiveFile) {
 
     Preconditions.checkNotNull(networkParameters, "'networkParameters' must be present");
+    Preconditions.checkNotNull(headerArchiveFile, "'headerArchiveFile' must be present");
 
     this.networkParameters = networkParameters;
+    this.headerArchive = new HeaderArchive(networkParameters, headerArchiveFile);
   }
 
   /**
@@ -61,14 +83,14 @@ public class BlockStoreManager {
     log.debug("Get or create SPV block store:\n'{}'", blockStoreFile.getAbsolutePath());
     BlockStore blockStore;
     try {
-      blockStore = new SPVBlockStore(networkParameters, blockStoreFile);
+      blockStore = newIndexedBlockStore(blockStoreFile);
     } catch (BlockStoreException bse) {
       try {
         log.warn("Failed to get or create SPV block store", bse.getMessage());
         // If the block store creation failed, delete the block store file and try again.
         blockStoreCreatedNew = deleteBlockStoreIfRequired(true, blockStoreFile);
 
-        blockStore = new SPVBlockStore(networkParameters, blockStoreFile);
+        blockStore = newIndexedBlockStore(blockStoreFile);
       } catch (BlockStoreException bse2) {
         log.error("Unrecoverable failure in opening block store. This is bad.", bse2.getMessage());
         // Throw the exception so that it is indicated on the UI
@@ -99,9 +121,70 @@ public class BlockStoreManager {
       }
     }
 
+    // Move on from the checkpoint using the headers other wallets have already downloaded
+    // but never past blocks the wallet has not seen, or it would miss their transactions
+    if (checkpointDate == null) {
+      if (blockStoreCreatedNew) {
+        Optional<Long> seedTimeSeconds = getCurrentWalletSeedTimeSeconds();
+        if (seedTimeSeconds.isPresent()) {
+          headerArchive.seed(blockStore, seedTimeSeconds.get());
+        } else {
+          log.debug("Wallet sync position is unknown so not seeding from the header archive");
+        }
+      }
+    } else {
+      headerArchive.seed(blockStore, checkpointDate.getMillis() / 1000);
+    }
+
     return blockStore;
   }
 
+  /**
+   * @return The time of the last block seen by the current wallet, or its earliest key time if it has not seen
+   * any blocks (absent if there is no current wallet or neither is known)
+   */
+  private Optional<Long> getCurrentWalletSeedTimeSeconds() {
+
+    Optional<WalletSummary> currentWalletSummary = WalletManager.INSTANCE.getCurrentWalletSummary();
+    if (!currentWalletSummary.isPresent() || currentWalletSummary.get().getWallet() == null) {
+      return Optional.absent();
+    }
+
+    Wallet wallet = currentWalletSummary.get().getWallet();
+
+    long lastBlockSeenTimeSeconds = wallet.getLastBlockSeenTimeSecs();
+    if (lastBlockSeenTimeSeconds > 0) {
+      return Optional.of(lastBlockSeenTimeSeconds);
+    }
+
+    long earliestKeyCreationTimeSeconds = wallet.getEarliestKeyCreationTime();
+    if (earliestKeyCreationTimeSeconds > 0 && earliestKeyCreationTimeSeconds <= Dates.nowInSeconds()) {
+      return Optional.of(earliestKeyCreationTimeSeconds);
+    }
+
+    return Optional.absent();
+
+  }
+
+  /**
+   * <p>Add the headers the block store has downloaded to the header archive so later wallets can be seeded from them</p>
+   *
+   * @param blockStore The (open) block store
+   */
+  public void archiveHeaders(BlockStore blockStore) {
+
+    Preconditions.checkNotNull(blockStore, "'blockStore' must be present");
+
+    try {
+      int added = headerArchive.update(blockStore);
+      log.debug("Added {} header(s) to the header archive", added);
+    } catch (BlockStoreException | IOException e) {
+      // The archive is only an optimisation
+      log.warn("Could not update the header archive. Error was '{}'", e.getMessage());
+    }
+
+  }
+
   /**
    * @param blockStoreFile  The file to use for the block store
    * @param storedBlockStack   Snippet of chain to use
@@ -120,7 +203,7 @@ public class BlockStoreManager {
     log.debug("StoredBlockStack is size {}", storedBlockStack == null ? 0 : storedBlockStack.size());
     BlockStore blockStore;
     try {
-      blockStore = new SPVBlockStore(networkParameters, blockStoreFile);
+      blockStore = newIndexedBlockStore(blockStoreFile);
 
       if (storedBlockStack != null && !storedBlockStack.isEmpty()) {
         StoredBlock loopStoredBlock = null;
@@ -138,7 +221,7 @@ public class BlockStoreManager {
         // If the block store creation failed, try to delete the block store file and try again.
         blockStoreCreatedNew = deleteBlockStoreIfRequired(createNew, blockStoreFile);
 
-        blockStore = new SPVBlockStore(networkParameters, blockStoreFile);
+        blockStore = newIndexedBlockStore(blockStoreFile);
         if (storedBlockStack != null && !storedBlockStack.isEmpty()) {
           StoredBlock loopStoredBlock = null;
           while (!storedBlockStack.isEmpty()) {
@@ -161,6 +244,18 @@ public class BlockStoreManager {
     return blockStore;
   }
 
+  /**
+   * @param blockStoreFile The file to use for the block store
+   *
+   * @return The SPV block store with a header index kept in a side file next to it
+   *
+   * @throws BlockStoreException
+   */
+  private BlockStore newIndexedBlockStore(File blockStoreFile) throws BlockStoreException {
+    File indexFile = new File(blockStoreFile.getParentFile(), InstallationManager.MBHD_PREFIX + InstallationManager.SPV_BLOCKCHAIN_INDEX_SUFFIX);
+    return new IndexedBlockStore(new SPVBlockStore(networkParameters, blockStoreFile), indexFile);
+  }
+
   @SuppressFBWarnings({"DM_GC"})
   private boolean deleteBlockStoreIfRequired(boolean createNew, File blockStoreFile) {
     // If the spvBlockStore is to be created new
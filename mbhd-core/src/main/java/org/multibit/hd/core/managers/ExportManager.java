@@ -6,7 +6,8 @@ import com.googlecode.jcsv.CSVStrategy;
 import com.googlecode.jcsv.writer.CSVEntryConverter;
 import com.googlecode.jcsv.writer.CSVWriter;
 import com.googlecode.jcsv.writer.internal.CSVWriterBuilder;
-import org.multibit.commons.concurrent.SafeExecutors;
+import org.multibit.hd.core.concurrent.ExecutorRegistry;
+import org.multibit.hd.core.concurrent.Workload;
 import org.multibit.hd.core.dto.*;
 import org.multibit.hd.core.events.CoreEvents;
 import org.multibit.hd.core.events.ExportPerformedEvent;
@@ -44,7 +45,7 @@ public class ExportManager {
                             final CSVEntryConverter<MBHDPaymentRequestData> mbhdPaymentRequestDataCSVEntryConverter, final CSVEntryConverter<MBHDPaymentRequestData> mbhdPaymentRequestConverter,
                             final CSVEntryConverter<PaymentRequestData> paymentRequestDataCSVEntryConverter, final CSVEntryConverter<PaymentRequestData> paymentRequestConverter
   ) {
-    ExecutorService executorService = SafeExecutors.newSingleThreadExecutor("export");
+    ExecutorService executorService = ExecutorRegistry.INSTANCE.newSingleThreadExecutor("export", Workload.IO);
     executorService.submit(new Runnable() {
       @Override
       public void run() {
@@ -0,0 +1,148 @@
+package org.multibit.hd.core.managers;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.googlecode.jcsv.CSVStrategy;
+import com.googlecode.jcsv.reader.CSVTokenizer;
+import com.googlecode.jcsv.reader.internal.CSVTokenizerImpl;
+import org.bitcoinj.core.Address;
+import org.bitcoinj.core.Coin;
+import org.multibit.hd.core.dto.SendOutput;
+import org.multibit.hd.core.exceptions.SendOutputsImportException;
+import org.multibit.hd.core.utils.Addresses;
+import org.multibit.hd.core.utils.Coins;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.LineNumberReader;
+import java.io.Reader;
+import java.util.List;
+
+/**
+ * <p>Manager to provide the following to other core classes:</p>
+ * <ul>
+ * <li>Importing of batch send outputs from CSV files</li>
+ * </ul>
+ * <p>Each row holds a Bitcoin address and an amount in BTC (e.g. "1AGNa15ZQXAZUgFiqJ2i7Z2DPU2J6hW62i,0.0015").
+ * An optional header row is skipped, as are empty lines and lines starting with '#'.</p>
+ */
+public class ImportManager {
+
+  private static final Logger log = LoggerFactory.getLogger(ImportManager.class);
+
+  private ImportManager() {
+  }
+
+  /**
+   * @param csvFile The CSV file of address/amount rows
+   *
+   * @return The send outputs in file order
+   *
+   * @throws SendOutputsImportException If the file cannot be read or a row is not a valid address and amount
+   */
+  public static List<SendOutput> importSendOutputs(File csvFile) {
+
+    Preconditions.checkNotNull(csvFile, "'csvFile' must be present");
+
+    try (Reader reader = new InputStreamReader(new FileInputStream(csvFile), Charsets.UTF_8)) {
+      return importSendOutputs(reader);
+    } catch (IOException e) {
+      throw new SendOutputsImportException("Could not read '" + csvFile.getAbsolutePath() + "'", e);
+    }
+
+  }
+
+  /**
+   * @param reader The reader providing address/amount rows (not closed)
+   *
+   * @return The send outputs in row order
+   *
+   * @throws SendOutputsImportException If the rows cannot be read or a row is not a valid address and amount
+   */
+  public static List<SendOutput> importSendOutputs(Reader reader) {
+
+    Preconditions.checkNotNull(reader, "'reader' must be present");
+
+    // Read the lines here rather than through a CSVReader so that errors can give the line number in the file
+    // (the CSVReader skips comments and empty lines without counting them)
+    CSVStrategy strategy = CSVStrategy.UK_DEFAULT;
+    CSVTokenizer tokenizer = new CSVTokenizerImpl();
+    LineNumberReader lineNumberReader = new LineNumberReader(reader);
+
+    final List<String[]> rows = Lists.newArrayList();
+    final List<Integer> lineNumbers = Lists.newArrayList();
+    try {
+      String line;
+      while ((line = lineNumberReader.readLine()) != null) {
+        int lineNumber = lineNumberReader.getLineNumber();
+        if ((strategy.isIgnoreEmptyLines() && line.trim().isEmpty())
+          || line.startsWith(String.valueOf(strategy.getCommentIndicator()))) {
+          continue;
+        }
+        // A quoted value can continue onto the following lines
+        List<String> values = tokenizer.tokenizeLine(line, strategy, lineNumberReader);
+        rows.add(values.toArray(new String[values.size()]));
+        lineNumbers.add(lineNumber);
+      }
+    } catch (IOException | RuntimeException e) {
+      throw new SendOutputsImportException("Could not read the CSV rows", e);
+    }
+
+    List<SendOutput> sendOutputs = Lists.newArrayList();
+
+    for (int i = 0; i < rows.size(); i++) {
+      String[] row = rows.get(i);
+      int lineNumber = lineNumbers.get(i);
+
+      if (row.length < 2) {
+        throw new SendOutputsImportException("Line " + lineNumber + " must have an address and an amount");
+      }
+
+      String rawAddress = row[0].trim();
+      String rawAmount = row[1].trim();
+
+      Optional<Address> address = Addresses.parse(rawAddress);
+      Optional<Coin> amount = parseAmount(rawAmount);
+
+      if (i == 0 && !address.isPresent() && !amount.isPresent()) {
+        log.debug("Skipping header row");
+        continue;
+      }
+
+      if (!address.isPresent()) {
+        throw new SendOutputsImportException("Line " + lineNumber + " has an invalid address '" + rawAddress + "'");
+      }
+      if (!amount.isPresent() || amount.get().signum() <= 0) {
+        throw new SendOutputsImportException("Line " + lineNumber + " has an invalid amount '" + rawAmount + "'");
+      }
+
+      sendOutputs.add(new SendOutput(address.get(), amount.get()));
+    }
+
+    log.debug("Imported {} send outputs", sendOutputs.size());
+
+    return sendOutputs;
+
+  }
+
+  /**
+   * @param rawAmount The amount in BTC (e.g. "0.0015")
+   *
+   * @return The amount in coins if it could be parsed
+   */
+  private static Optional<Coin> parseAmount(String rawAmount) {
+
+    try {
+      return Optional.of(Coins.fromPlainAmount(rawAmount));
+    } catch (IllegalArgumentException | ArithmeticException e) {
+      return Optional.absent();
+    }
+
+  }
+}
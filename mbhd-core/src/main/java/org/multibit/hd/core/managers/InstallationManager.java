@@ -48,7 +48,9 @@ public class InstallationManager {
   public static final String MBHD_CONFIGURATION_FILE = MBHD_PREFIX + ".yaml";
 
   public static final String SPV_BLOCKCHAIN_SUFFIX = ".spvchain";
+  public static final String SPV_BLOCKCHAIN_INDEX_SUFFIX = ".spvindex";
   public static final String CHECKPOINTS_SUFFIX = ".checkpoints";
+  public static final String HEADER_ARCHIVE_SUFFIX = ".headers";
   public static final String CA_CERTS_NAME = MBHD_PREFIX + "-cacerts";
 
   /**
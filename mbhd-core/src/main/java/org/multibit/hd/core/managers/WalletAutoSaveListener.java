@@ -1,84 +1,157 @@
 package org.multibit.hd.core.managers;
 
 import com.google.common.base.Optional;
-import org.bitcoinj.wallet.WalletFiles;
-import org.multibit.hd.core.crypto.EncryptedFileReaderWriter;
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ListeningScheduledExecutorService;
+import org.bitcoinj.core.AbstractWalletEventListener;
+import org.bitcoinj.core.Wallet;
+import org.multibit.hd.core.concurrent.ExecutorRegistry;
+import org.multibit.hd.core.concurrent.Workload;
 import org.multibit.hd.core.dto.WalletId;
 import org.multibit.hd.core.dto.WalletSummary;
 import org.multibit.hd.core.exceptions.WalletSaveException;
-import org.multibit.commons.files.SecureFiles;
-import org.multibit.hd.core.services.BackupService;
-import org.multibit.hd.core.services.CoreServices;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
-import java.io.IOException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * <p>Listener to provide the following to WalletManager:</p>
  * <ul>
+ * <li>Write-behind saving of the AES encrypted wallet after it changes</li>
+ * <li>Coalescing of bursts of changes (e.g. during a chain sync) into a single save</li>
  * <li>Saving of rolling wallet backups and zip backups</li>
  * </ul>
- * </p>
+ * <p>The wallet is streamed straight through the cipher so no plain text copy is written to disk.</p>
  */
-
-public class WalletAutoSaveListener implements WalletFiles.Listener {
+public class WalletAutoSaveListener extends AbstractWalletEventListener {
 
   private static final Logger log = LoggerFactory.getLogger(WalletAutoSaveListener.class);
 
-  @Override
-  public void onBeforeAutoSave(File tempFile) {
+  private final Wallet wallet;
+
+  private final File walletFile;
+
+  private final long delay;
+
+  private final TimeUnit timeUnit;
+
+  private final ListeningScheduledExecutorService autoSaveExecutor = ExecutorRegistry.INSTANCE.newSingleThreadScheduledExecutor("wallet-autosave", Workload.IO);
+
+  /**
+   * The number of save requests since the last save (zero means no save is pending)
+   */
+  private final AtomicInteger pendingRequests = new AtomicInteger();
+
+  private volatile Future<?> pendingSave;
 
-    log.debug("Auto-saving wallet to tempFile:\n'{}'", tempFile.getAbsolutePath());
+  /**
+   * @param wallet     The wallet to save
+   * @param walletFile The wallet file WITHOUT the AES suffix
+   * @param delay      The delay between the first change and the save
+   * @param timeUnit   The time unit of the delay
+   */
+  public WalletAutoSaveListener(Wallet wallet, File walletFile, long delay, TimeUnit timeUnit) {
+
+    Preconditions.checkNotNull(wallet, "'wallet' must be present");
+    Preconditions.checkNotNull(walletFile, "'walletFile' must be present");
+    Preconditions.checkNotNull(timeUnit, "'timeUnit' must be present");
+
+    this.wallet = wallet;
+    this.walletFile = walletFile;
+    this.delay = delay;
+    this.timeUnit = timeUnit;
 
   }
 
   @Override
-  public void onAfterAutoSave(File newlySavedFile) {
-      log.debug("Wallet auto-saved to newlySavedFile:\n'{}'", newlySavedFile.getAbsolutePath());
+  public void onChange() {
+    requestSave();
+  }
+
+  /**
+   * <p>Request a save after the delay, coalescing with any save already pending</p>
+   */
+  public void requestSave() {
+
+    if (pendingRequests.getAndIncrement() == 0 && !autoSaveExecutor.isShutdown()) {
+      pendingSave = autoSaveExecutor.schedule(
+        new Runnable() {
+          @Override
+          public void run() {
+            saveNow();
+          }
+        }, delay, timeUnit);
+    }
+
+  }
+
+  /**
+   * <p>Flush any pending save and stop the autosave thread</p>
+   */
+  public void shutdownAndWait() {
+
+    wallet.removeEventListener(this);
+
+    Future<?> scheduledSave = pendingSave;
+    if (scheduledSave != null && scheduledSave.cancel(false)) {
+      // Flush the pending save now rather than waiting out the delay
+      autoSaveExecutor.submit(
+        new Runnable() {
+          @Override
+          public void run() {
+            saveNow();
+          }
+        });
+    }
+
+    autoSaveExecutor.shutdown();
+    try {
+      if (!autoSaveExecutor.awaitTermination(30, TimeUnit.SECONDS)) {
+        log.warn("Wallet autosave did not complete in time");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+
+  }
+
+  /**
+   * <p>Save the wallet (runs on the autosave thread)</p>
+   */
+  private void saveNow() {
+
+    int coalescedRequests = pendingRequests.getAndSet(0);
 
     try {
       Optional<WalletSummary> walletSummary = WalletManager.INSTANCE.getCurrentWalletSummary();
 
-      if (walletSummary.isPresent()) {
-        // Check the password is the correct password for this wallet
-        // The walletSummary needs to be consistent and the wallet filename contains the formatted walletId
-        WalletId walletId = walletSummary.get().getWalletId();
-        if (!walletId.equals(walletSummary.get().getWalletPassword().getWalletId())
-                || !newlySavedFile.getAbsolutePath().contains(walletId.toFormattedString())) {
-          throw new WalletSaveException("The password specified is not the password for the wallet saved in '" + newlySavedFile.getAbsolutePath() + "'");
-        }
-
-        // Work out what the encrypted wallet filename will be
-        File newlySavedFileWithAES =  new File(newlySavedFile.getAbsoluteFile() + WalletManager.MBHD_AES_SUFFIX);
-
-        // Rename the wallet to a temp file to reduce contention on secure delete
-        File directory = newlySavedFile.getAbsoluteFile().getParentFile();
-        File tempWalletToDelete = SecureFiles.createTemporaryFilename("wallet", ".tmp", directory);
-        if (!newlySavedFile.renameTo(tempWalletToDelete)) {
-          throw new WalletSaveException("Could not save wallet " + newlySavedFile.getAbsolutePath() + ". Rename of wallet prior to secure delete failed.");
-        }
-
-        // Save an encrypted copy of the wallet
-        CharSequence password = walletSummary.get().getWalletPassword().getPassword();
-        File encryptedWalletFile = EncryptedFileReaderWriter.makeAESEncryptedCopyAndDeleteOriginal(tempWalletToDelete, newlySavedFileWithAES, password);
-        if (encryptedWalletFile != null && encryptedWalletFile.exists()) {
-          log.debug("Save encrypted copy of wallet (size: {} bytes) as:\n'{}'", encryptedWalletFile.length(), encryptedWalletFile.getAbsolutePath());
-        } else {
-          log.debug("No encrypted copy of wallet:\n'{}'", newlySavedFile.getAbsolutePath());
-        }
-
-        // Remember the info required for the next backups
-        BackupService backupService = CoreServices.getOrCreateBackupService();
-        backupService.rememberWalletSummaryAndPasswordForRollingBackup(walletSummary.get(), password);
-        backupService.rememberWalletIdAndPasswordForLocalZipBackup(walletSummary.get().getWalletId(), password);
-        backupService.rememberWalletIdAndPasswordForCloudZipBackup(walletSummary.get().getWalletId(), password);
-      } else {
-        log.error("No AES wallet encryption nor backups created as there was no wallet data to backup.");
+      if (!walletSummary.isPresent() || walletSummary.get().getWallet() != wallet) {
+        log.debug("Not auto-saving wallet as it is no longer the current wallet");
+        return;
       }
-    } catch (IOException ioe) {
-      throw new WalletSaveException("Could not save wallet " + newlySavedFile.getAbsolutePath(), ioe);
+
+      // Check the password is the correct password for this wallet
+      // The walletSummary needs to be consistent and the wallet filename contains the formatted walletId
+      WalletId walletId = walletSummary.get().getWalletId();
+      if (!walletId.equals(walletSummary.get().getWalletPassword().getWalletId())
+        || !walletFile.getAbsolutePath().contains(walletId.toFormattedString())) {
+        throw new WalletSaveException("The password specified is not the password for the wallet saved in '" + walletFile.getAbsolutePath() + "'");
+      }
+
+      long bytesWritten = WalletManager.INSTANCE.writeEncryptedWallet(walletSummary.get(), walletFile);
+      log.debug("Wallet auto-saved ({} bytes, {} ms, {} coalesced requests) to:\n'{}'",
+        bytesWritten,
+        WalletManager.INSTANCE.getLastWalletSaveMillis(),
+        coalescedRequests,
+        walletFile.getAbsolutePath());
+
+    } catch (RuntimeException e) {
+      // Keep the autosave thread alive for the next change
+      log.error("Could not auto-save wallet '" + walletFile.getAbsolutePath() + "'", e);
     }
   }
 }
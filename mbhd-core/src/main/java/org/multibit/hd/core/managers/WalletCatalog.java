@@ -0,0 +1,345 @@
+package org.multibit.hd.core.managers;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import org.multibit.hd.core.concurrent.ExecutorRegistry;
+import org.multibit.hd.core.concurrent.Workload;
+import org.multibit.hd.core.dto.WalletId;
+import org.multibit.hd.core.dto.WalletSummary;
+import org.multibit.hd.core.dto.WalletType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * <p>Catalog to provide the following to WalletManager:</p>
+ * <ul>
+ * <li>Wallet summaries for listing (ID, name, notes and type) without parsing each wallet summary YAML</li>
+ * <li>Parallel parsing of only the wallet summaries that have changed since they were catalogued</li>
+ * </ul>
+ * <p>The catalog is a small file next to the wallet directories. An entry is stale when the wallet directory or
+ * its summary file has been modified since it was catalogued.</p>
+ * <p>Catalogued summaries do not carry the encrypted credentials. Use <code>WalletManager.getOrCreateWalletSummary</code>
+ * to read a full wallet summary.</p>
+ */
+public enum WalletCatalog {
+
+  INSTANCE;
+
+  private static final Logger log = LoggerFactory.getLogger(WalletCatalog.class);
+
+  public static final String CATALOG_NAME = InstallationManager.MBHD_PREFIX + ".catalog";
+
+  private static final int CATALOG_MAGIC = 0x4d424843; // "MBHC"
+  private static final int CATALOG_VERSION = 1;
+
+  private static final int MAXIMUM_PARSE_THREADS = 4;
+
+  /**
+   * The catalogs read so far keyed by the directory holding the wallet directories
+   */
+  private final Map<File, Map<String, Entry>> catalogs = Maps.newHashMap();
+
+  /**
+   * @param walletDirectories The wallet directories (usually all in the application data directory)
+   *
+   * @return The wallet summaries in the same order as the directories
+   */
+  public synchronized List<WalletSummary> getWalletSummaries(List<File> walletDirectories) {
+
+    Preconditions.checkNotNull(walletDirectories, "'walletDirectories' must be present");
+
+    // Work out which directories need their summary parsed
+    List<File> staleDirectories = Lists.newArrayList();
+    for (File walletDirectory : walletDirectories) {
+      Entry entry = getCatalog(walletDirectory.getParentFile()).get(walletDirectory.getName());
+      if (entry == null || !entry.isCurrent(walletDirectory)) {
+        staleDirectories.add(walletDirectory);
+      }
+    }
+
+    if (!staleDirectories.isEmpty()) {
+      log.debug("Parsing {} of {} wallet summaries", staleDirectories.size(), walletDirectories.size());
+      for (Entry entry : parse(staleDirectories)) {
+        getCatalog(entry.walletDirectory.getParentFile()).put(entry.walletDirectory.getName(), entry);
+      }
+      for (File parentDirectory : parentDirectories(staleDirectories)) {
+        writeCatalog(parentDirectory);
+      }
+    }
+
+    List<WalletSummary> walletSummaries = Lists.newArrayList();
+    for (File walletDirectory : walletDirectories) {
+      walletSummaries.add(getCatalog(walletDirectory.getParentFile()).get(walletDirectory.getName()).newWalletSummary());
+    }
+
+    return walletSummaries;
+  }
+
+  /**
+   * <p>Drop the catalog entry for a wallet (e.g. after its summary has been written)</p>
+   *
+   * @param walletDirectory The wallet directory
+   */
+  public synchronized void invalidate(File walletDirectory) {
+
+    Preconditions.checkNotNull(walletDirectory, "'walletDirectory' must be present");
+
+    File parentDirectory = walletDirectory.getParentFile();
+    if (getCatalog(parentDirectory).remove(walletDirectory.getName()) != null) {
+      // Do not rely on the modified time alone since it may not have changed within its resolution
+      writeCatalog(parentDirectory);
+    }
+
+  }
+
+  /**
+   * <p>Forget all catalogs read into memory (e.g. after a switch of application data directory)</p>
+   */
+  public synchronized void clear() {
+    catalogs.clear();
+  }
+
+  /**
+   * @return The parsed entries for the wallet directories, in parallel if there are several
+   */
+  private List<Entry> parse(List<File> walletDirectories) {
+
+    if (walletDirectories.size() == 1) {
+      return Lists.newArrayList(Entry.parse(walletDirectories.get(0)));
+    }
+
+    int threadCount = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), MAXIMUM_PARSE_THREADS));
+    ListeningExecutorService executorService = ExecutorRegistry.INSTANCE.newFixedThreadPool(threadCount, "wallet-catalog", Workload.IO);
+    try {
+      List<ListenableFuture<Entry>> futures = Lists.newArrayList();
+      for (final File walletDirectory : walletDirectories) {
+        futures.add(
+          executorService.submit(
+            new Callable<Entry>() {
+              @Override
+              public Entry call() throws Exception {
+                return Entry.parse(walletDirectory);
+              }
+            }));
+      }
+      return Futures.allAsList(futures).get();
+
+    } catch (InterruptedException | ExecutionException e) {
+      log.warn("Could not parse wallet summaries in parallel. Parsing in turn. Error was '{}'", e.getMessage());
+      if (e instanceof InterruptedException) {
+        Thread.currentThread().interrupt();
+      }
+      List<Entry> entries = Lists.newArrayList();
+      for (File walletDirectory : walletDirectories) {
+        entries.add(Entry.parse(walletDirectory));
+      }
+      return entries;
+    } finally {
+      executorService.shutdown();
+    }
+
+  }
+
+  private static List<File> parentDirectories(List<File> walletDirectories) {
+    List<File> parentDirectories = Lists.newArrayList();
+    for (File walletDirectory : walletDirectories) {
+      if (!parentDirectories.contains(walletDirectory.getParentFile())) {
+        parentDirectories.add(walletDirectory.getParentFile());
+      }
+    }
+    return parentDirectories;
+  }
+
+  /**
+   * @return The catalog for the directory holding the wallet directories, read from file on first use
+   */
+  private Map<String, Entry> getCatalog(File parentDirectory) {
+
+    Map<String, Entry> catalog = catalogs.get(parentDirectory);
+    if (catalog == null) {
+      catalog = readCatalog(parentDirectory);
+      catalogs.put(parentDirectory, catalog);
+    }
+    return catalog;
+
+  }
+
+  private Map<String, Entry> readCatalog(File parentDirectory) {
+
+    Map<String, Entry> catalog = Maps.newHashMap();
+
+    File catalogFile = new File(parentDirectory, CATALOG_NAME);
+    if (!catalogFile.exists()) {
+      return catalog;
+    }
+
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(catalogFile)))) {
+      if (in.readInt() != CATALOG_MAGIC || in.readInt() != CATALOG_VERSION) {
+        log.debug("Ignoring wallet catalog with an unknown format");
+        return catalog;
+      }
+      int count = in.readInt();
+      for (int i = 0; i < count; i++) {
+        Entry entry = Entry.read(parentDirectory, in);
+        catalog.put(entry.walletDirectory.getName(), entry);
+      }
+    } catch (IOException | IllegalArgumentException e) {
+      // Everything will be parsed again
+      log.warn("Wallet catalog could not be read. Error was '{}'", e.getMessage());
+      catalog.clear();
+    }
+
+    return catalog;
+  }
+
+  private void writeCatalog(File parentDirectory) {
+
+    Map<String, Entry> catalog = getCatalog(parentDirectory);
+
+    File catalogFile = new File(parentDirectory, CATALOG_NAME);
+    File temporaryFile = new File(parentDirectory, CATALOG_NAME + ".tmp");
+    try {
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryFile)))) {
+        out.writeInt(CATALOG_MAGIC);
+        out.writeInt(CATALOG_VERSION);
+        out.writeInt(catalog.size());
+        for (Entry entry : catalog.values()) {
+          entry.write(out);
+        }
+      }
+      Files.move(temporaryFile.toPath(), catalogFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      // The catalog is only an optimisation so the summaries are parsed again next time
+      log.warn("Wallet catalog could not be written. Error was '{}'", e.getMessage());
+      if (temporaryFile.exists() && !temporaryFile.delete()) {
+        log.debug("Could not delete '{}'", temporaryFile.getAbsolutePath());
+      }
+    }
+
+  }
+
+  /**
+   * <p>The listing details of one wallet and the modified times they were read at</p>
+   */
+  private static class Entry {
+
+    private final File walletDirectory;
+    private final long directoryModified;
+    private final long summaryModified;
+    private final long summaryLength;
+
+    private final String walletId;
+    private final String name;
+    private final String notes;
+    private final WalletType walletType;
+
+    private Entry(File walletDirectory, long directoryModified, long summaryModified, long summaryLength, String walletId, String name, String notes, WalletType walletType) {
+      this.walletDirectory = walletDirectory;
+      this.directoryModified = directoryModified;
+      this.summaryModified = summaryModified;
+      this.summaryLength = summaryLength;
+      this.walletId = walletId;
+      this.name = name;
+      this.notes = notes;
+      this.walletType = walletType;
+    }
+
+    /**
+     * @return An entry from the wallet summary YAML (or a default summary if there is none)
+     */
+    private static Entry parse(File walletDirectory) {
+
+      // Take the modified times first so a change during the parse leaves the entry stale
+      File summaryFile = new File(walletDirectory, WalletManager.MBHD_SUMMARY_NAME);
+      long directoryModified = walletDirectory.lastModified();
+      long summaryModified = summaryFile.lastModified();
+      long summaryLength = summaryFile.length();
+
+      String directoryName = walletDirectory.getName();
+      WalletId walletId = new WalletId(directoryName.substring(WalletManager.MBHD_WALLET_PREFIX.length() + 1));
+      WalletSummary walletSummary = WalletManager.getOrCreateWalletSummary(walletDirectory, walletId);
+
+      return new Entry(
+        walletDirectory,
+        directoryModified,
+        summaryModified,
+        summaryLength,
+        walletId.toFormattedString(),
+        walletSummary.getName(),
+        walletSummary.getNotes(),
+        walletSummary.getWalletType()
+      );
+    }
+
+    private static Entry read(File parentDirectory, DataInputStream in) throws IOException {
+      File walletDirectory = new File(parentDirectory, in.readUTF());
+      long directoryModified = in.readLong();
+      long summaryModified = in.readLong();
+      long summaryLength = in.readLong();
+      String walletId = in.readUTF();
+      String name = in.readBoolean() ? in.readUTF() : null;
+      String notes = in.readBoolean() ? in.readUTF() : null;
+      WalletType walletType = WalletType.valueOf(in.readUTF());
+      return new Entry(walletDirectory, directoryModified, summaryModified, summaryLength, walletId, name, notes, walletType);
+    }
+
+    private void write(DataOutputStream out) throws IOException {
+      out.writeUTF(walletDirectory.getName());
+      out.writeLong(directoryModified);
+      out.writeLong(summaryModified);
+      out.writeLong(summaryLength);
+      out.writeUTF(walletId);
+      writeOptionalUTF(out, name);
+      writeOptionalUTF(out, notes);
+      out.writeUTF(walletType.name());
+    }
+
+    private static void writeOptionalUTF(DataOutputStream out, String value) throws IOException {
+      out.writeBoolean(value != null);
+      if (value != null) {
+        out.writeUTF(value);
+      }
+    }
+
+    /**
+     * @return True if neither the wallet directory nor its summary have changed since the entry was made
+     */
+    private boolean isCurrent(File walletDirectory) {
+      File summaryFile = new File(walletDirectory, WalletManager.MBHD_SUMMARY_NAME);
+      return walletDirectory.lastModified() == directoryModified
+        && summaryFile.lastModified() == summaryModified
+        && summaryFile.length() == summaryLength;
+    }
+
+    /**
+     * @return A new wallet summary for listing (the caller may modify it)
+     */
+    private WalletSummary newWalletSummary() {
+      WalletSummary walletSummary = new WalletSummary();
+      walletSummary.setWalletId(new WalletId(walletId));
+      walletSummary.setName(name);
+      walletSummary.setNotes(notes);
+      walletSummary.setWalletType(walletType);
+      return walletSummary;
+    }
+  }
+}
@@ -6,7 +6,6 @@ import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
-import com.google.common.io.Files;
 import com.google.common.primitives.Bytes;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
@@ -19,10 +18,10 @@ import org.bitcoinj.store.BlockStore;
 import org.bitcoinj.store.BlockStoreException;
 import org.bitcoinj.store.UnreadableWalletException;
 import org.bitcoinj.store.WalletProtobufSerializer;
+import org.bitcoinj.utils.Threading;
 import org.bitcoinj.wallet.DeterministicSeed;
 import org.bitcoinj.wallet.Protos;
 import org.joda.time.DateTime;
-import org.multibit.commons.concurrent.SafeExecutors;
 import org.multibit.commons.crypto.AESUtils;
 import org.multibit.commons.files.SecureFiles;
 import org.multibit.commons.utils.Dates;
@@ -31,8 +30,11 @@ import org.multibit.hd.brit.core.extensions.SendFeeDtoWalletExtension;
 import org.multibit.hd.brit.core.seed_phrase.Bip39SeedPhraseGenerator;
 import org.multibit.hd.brit.core.seed_phrase.SeedPhraseGenerator;
 import org.multibit.hd.brit.core.services.FeeService;
+import org.multibit.hd.core.concurrent.ExecutorRegistry;
+import org.multibit.hd.core.concurrent.Workload;
 import org.multibit.hd.core.config.Configurations;
 import org.multibit.hd.core.config.Yaml;
+import org.multibit.hd.core.crypto.DerivedKeyCache;
 import org.multibit.hd.core.crypto.EncryptedFileReaderWriter;
 import org.multibit.hd.core.dto.*;
 import org.multibit.hd.core.error_reporting.ExceptionHandler;
@@ -62,6 +64,7 @@ import java.security.SignatureException;
 import java.util.*;
 import java.util.concurrent.Callable;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Pattern;
 
 import static org.multibit.hd.core.dto.WalletId.*;
@@ -192,6 +195,17 @@ public enum WalletManager implements WalletEventListener {
 
   private ListeningExecutorService walletExecutorService = null;
 
+  /**
+   * The write-behind autosave of the current wallet (absent if not yet set up)
+   */
+  private Optional<WalletAutoSaveListener> walletAutoSaveListener = Optional.absent();
+
+  private volatile long lastWalletSaveBytes = 0;
+
+  private volatile long lastWalletSaveMillis = 0;
+
+  private final AtomicLong walletSaveCount = new AtomicLong();
+
   /**
    * @return A copy of the AES initialisation vector
    */
@@ -228,6 +242,9 @@ public enum WalletManager implements WalletEventListener {
 
     this.currentWalletSummary = Optional.absent();
 
+    // Open a new wallet session key cache (wipes any previous session)
+    DerivedKeyCache.INSTANCE.open(walletId, password, SCRYPT_SALT);
+
     // Ensure BackupManager knows where the wallets are
     BackupManager.INSTANCE.setApplicationDataDirectory(applicationDataDirectory);
 
@@ -245,7 +262,14 @@ public enum WalletManager implements WalletEventListener {
         String walletDirectoryPath = walletDirectory.getAbsolutePath();
         if (walletDirectoryPath.contains(walletIdPath)) {
           // Found the required wallet directory - attempt to present the wallet
-          WalletSummary walletSummary = loadFromWalletDirectory(walletDirectory, password);
+          WalletSummary walletSummary;
+          try {
+            walletSummary = loadFromWalletDirectory(walletDirectory, password);
+          } catch (WalletLoadException | WalletVersionException e) {
+            // Do not keep a session key for a wallet that failed to open
+            DerivedKeyCache.INSTANCE.close();
+            throw e;
+          }
           setCurrentWalletSummary(walletSummary);
 
           try {
@@ -262,6 +286,10 @@ public enum WalletManager implements WalletEventListener {
       currentWalletSummary = Optional.absent();
     }
 
+    if (!currentWalletSummary.isPresent()) {
+      DerivedKeyCache.INSTANCE.close();
+    }
+
     return currentWalletSummary;
   }
 
@@ -960,25 +988,18 @@ public enum WalletManager implements WalletEventListener {
    */
   public Wallet loadWalletFromFile(File walletFile, CharSequence password) throws IOException, UnreadableWalletException {
 
-    // Read the encrypted file in and decrypt it.
-    byte[] encryptedWalletBytes = Files.toByteArray(walletFile);
-
-    Preconditions.checkNotNull(encryptedWalletBytes, "'encryptedWalletBytes' must be present");
-
-    log.trace("Encrypted wallet bytes after load:\n{}", Utils.HEX.encode(encryptedWalletBytes));
-    log.debug("Loaded the encrypted wallet bytes with length: {}", encryptedWalletBytes.length);
-
-    KeyCrypterScrypt keyCrypterScrypt = new KeyCrypterScrypt(EncryptedFileReaderWriter.makeScryptParameters(SCRYPT_SALT));
-    KeyParameter keyParameter = keyCrypterScrypt.deriveKey(password);
+    log.debug("Loading the encrypted wallet with length: {}", walletFile.length());
 
-    // Decrypt the wallet bytes
-    byte[] decryptedBytes = AESUtils.decrypt(encryptedWalletBytes, keyParameter, AES_INITIALISATION_VECTOR);
+    // Use the wallet session key if available to avoid another scrypt derivation
+    KeyParameter keyParameter = DerivedKeyCache.INSTANCE.getOrDeriveKey(password, SCRYPT_SALT);
 
-    log.debug("Successfully decrypted wallet bytes, length is now: {}", decryptedBytes.length);
-
-    InputStream inputStream = new ByteArrayInputStream(decryptedBytes);
+    // Decrypt the wallet as it is parsed so only the protobuf (not the encrypted and decrypted bytes) is held in memory
+    Protos.Wallet walletProto;
+    try (InputStream inputStream = EncryptedFileReaderWriter.readAndDecryptStream(walletFile, keyParameter)) {
+      walletProto = WalletProtobufSerializer.parseToProto(inputStream);
+    }
 
-    Protos.Wallet walletProto = WalletProtobufSerializer.parseToProto(inputStream);
+    log.debug("Successfully decrypted and parsed wallet, serialized size: {}", walletProto.getSerializedSize());
 
     WalletExtension[] walletExtensions = new WalletExtension[]{new SendFeeDtoWalletExtension(), new MatcherResponseWalletExtension(), new WalletTypeExtension()};
     Wallet wallet = new WalletProtobufSerializer().readWallet(BitcoinNetwork.current().get(), walletExtensions, walletProto);
@@ -1126,29 +1147,53 @@ public enum WalletManager implements WalletEventListener {
 
   /**
    * Set up auto-save on the wallet.
-   * This ensures the wallet is saved on modification
-   * The listener has a 'after save' callback which ensures rolling backups and local/ cloud backups are also saved where necessary
+   * This ensures the wallet is saved (encrypted) shortly after modification with bursts of changes coalesced into one save
+   * Each save ensures rolling backups and local/ cloud backups are also saved where necessary
    *
    * @param wallet The wallet to add the autosave listener to
    * @param file   The file to add the autoSaveListener to - this should be WITHOUT the AES suffix
    */
   private void addAutoSaveListener(Wallet wallet, File file) {
     if (file != null) {
-      WalletAutoSaveListener walletAutoSaveListener = new WalletAutoSaveListener();
-      wallet.autosaveToFile(file, AUTO_SAVE_DELAY, TimeUnit.MILLISECONDS, walletAutoSaveListener);
-      log.debug("WalletAutoSaveListener {} on file\n'{}'\njust added to wallet {}", System.identityHashCode(this), file.getAbsolutePath(), System.identityHashCode(wallet));
+      shutdownAutoSaveListener();
+
+      WalletAutoSaveListener autoSaveListener = new WalletAutoSaveListener(wallet, file, AUTO_SAVE_DELAY, TimeUnit.MILLISECONDS);
+      wallet.addEventListener(autoSaveListener, Threading.SAME_THREAD);
+      walletAutoSaveListener = Optional.of(autoSaveListener);
+      log.debug("WalletAutoSaveListener {} on file\n'{}'\njust added to wallet {}", System.identityHashCode(autoSaveListener), file.getAbsolutePath(), System.identityHashCode(wallet));
     } else {
       log.debug("Not adding autoSaveListener to wallet {} as no wallet file is specified", System.identityHashCode(wallet));
     }
   }
 
+  /**
+   * <p>Flush any pending autosave and stop the autosave listener</p>
+   */
+  private void shutdownAutoSaveListener() {
+    if (walletAutoSaveListener.isPresent()) {
+      walletAutoSaveListener.get().shutdownAndWait();
+      walletAutoSaveListener = Optional.absent();
+    }
+  }
+
+  /**
+   * <p>Request a write-behind save of the current wallet (e.g. as blocks are downloaded)</p>
+   * <p>Requests made before the save runs are coalesced into a single save</p>
+   */
+  public void requestWalletSave() {
+    Optional<WalletAutoSaveListener> autoSaveListener = walletAutoSaveListener;
+    if (autoSaveListener.isPresent()) {
+      autoSaveListener.get().requestSave();
+    }
+  }
+
   /**
    * @param replayDate The date from which to replay the download (absent means no checkpoints)
    */
   private void synchroniseWallet(final Optional<DateTime> replayDate) {
 
     if (walletExecutorService == null) {
-      walletExecutorService = SafeExecutors.newSingleThreadExecutor("sync-wallet");
+      walletExecutorService = ExecutorRegistry.INSTANCE.newSingleThreadExecutor("sync-wallet", Workload.NETWORK);
     }
 
     // Start the Bitcoin network synchronization operation
@@ -1340,6 +1385,8 @@ public enum WalletManager implements WalletEventListener {
 
   /**
    * <p>Find Wallet summaries for all the wallet directories provided</p>
+   * <p>The summaries come from the wallet catalog so only new or changed wallet summaries are parsed. They are
+   * suitable for listing wallets but do not carry the encrypted credentials</p>
    *
    * @param walletDirectories The candidate wallet directory references
    * @param walletRoot        The wallet root of the first entry
@@ -1350,23 +1397,23 @@ public enum WalletManager implements WalletEventListener {
 
     Preconditions.checkNotNull(walletDirectories, "'walletDirectories' must be present");
 
-    List<WalletSummary> walletList = Lists.newArrayList();
+    // Only directories named like a wallet
+    List<File> matchingDirectories = Lists.newArrayList();
     for (File walletDirectory : walletDirectories) {
-      if (walletDirectory.isDirectory()) {
-        String directoryName = walletDirectory.getName();
-        if (directoryName.matches(REGEX_FOR_WALLET_DIRECTORY)) {
+      if (walletDirectory.isDirectory() && walletDirectory.getName().matches(REGEX_FOR_WALLET_DIRECTORY)) {
+        matchingDirectories.add(walletDirectory);
+      }
+    }
 
-          // The name matches so process it
-          WalletId walletId = new WalletId(directoryName.substring(MBHD_WALLET_PREFIX.length() + 1));
-          WalletSummary walletSummary = getOrCreateWalletSummary(walletDirectory, walletId);
+    List<WalletSummary> walletSummaries = WalletCatalog.INSTANCE.getWalletSummaries(matchingDirectories);
 
-          // Check if the wallet root is present and matches the file name
-          if (walletRoot.isPresent() && directoryName.equals(walletRoot.get())) {
-            walletList.add(0, walletSummary);
-          } else {
-            walletList.add(walletSummary);
-          }
-        }
+    List<WalletSummary> walletList = Lists.newArrayList();
+    for (int i = 0; i < matchingDirectories.size(); i++) {
+      // Check if the wallet root is present and matches the file name
+      if (walletRoot.isPresent() && matchingDirectories.get(i).getName().equals(walletRoot.get())) {
+        walletList.add(0, walletSummaries.get(i));
+      } else {
+        walletList.add(walletSummaries.get(i));
       }
     }
 
@@ -1509,6 +1556,9 @@ public enum WalletManager implements WalletEventListener {
     } catch (IOException e) {
       ExceptionHandler.handleThrowable(e);
     }
+
+    // The listing details may have changed
+    WalletCatalog.INSTANCE.invalidate(walletSummaryFile.getParentFile());
   }
 
   /**
@@ -1835,6 +1885,9 @@ public enum WalletManager implements WalletEventListener {
     // log.debug("Wallet at shutdown:\n{}\n", getCurrentWalletSummary().isPresent() ? getCurrentWalletSummary().get().getWallet() : "");
     currentWalletSummary = Optional.absent();
 
+    // Wipe the wallet session key
+    DerivedKeyCache.INSTANCE.close();
+
   }
 
   /**
@@ -1858,24 +1911,82 @@ public enum WalletManager implements WalletEventListener {
         File applicationDataDirectory = InstallationManager.getOrCreateApplicationDataDirectory();
         File currentWalletFile = WalletManager.INSTANCE.getCurrentWalletFile(applicationDataDirectory).get();
 
-        walletSummary.getWallet().saveToFile(currentWalletFile);
+        long bytesWritten = writeEncryptedWallet(walletSummary, currentWalletFile);
+        log.debug("Created AES encrypted wallet as file:\n'{}'\nSize: {} bytes", currentWalletFile.getAbsolutePath() + MBHD_AES_SUFFIX, bytesWritten);
 
-        File encryptedAESCopy = EncryptedFileReaderWriter.makeAESEncryptedCopyAndDeleteOriginal(currentWalletFile, walletSummary.getWalletPassword().getPassword());
-        if (encryptedAESCopy == null) {
-          log.debug("Did not create AES encrypted wallet");
-        } else {
-          log.debug("Created AES encrypted wallet as file:\n'{}'\nSize: {} bytes", encryptedAESCopy.getAbsolutePath(), encryptedAESCopy.length());
+      } catch (RuntimeException e) {
+        log.error("Could not write wallet and backups for wallet with id '" + walletId + "' successfully. The error was '" + e.getMessage() + "'");
+      }
+    }
+
+  }
+
+  /**
+   * <p>Stream the wallet through AES encryption into its ".aes" file and remember the info required for the next backups</p>
+   * <p>No plain text copy of the wallet is written and the encrypted file is replaced atomically</p>
+   *
+   * @param walletSummary The wallet summary providing the wallet and password
+   * @param walletFile    The wallet file WITHOUT the AES suffix
+   *
+   * @return The number of encrypted bytes written
+   */
+  synchronized long writeEncryptedWallet(WalletSummary walletSummary, File walletFile) {
+
+    final Wallet wallet = walletSummary.getWallet();
+    CharSequence password = walletSummary.getWalletPassword().getPassword();
+
+    long start = System.currentTimeMillis();
+    long bytesWritten = EncryptedFileReaderWriter.encryptAndWrite(
+      new EncryptedFileReaderWriter.StreamWriter() {
+        @Override
+        public void writeTo(OutputStream outputStream) throws IOException {
+          wallet.saveToFileStream(outputStream);
         }
-        BackupService backupService = CoreServices.getOrCreateBackupService();
-        backupService.rememberWalletSummaryAndPasswordForRollingBackup(walletSummary, walletSummary.getWalletPassword().getPassword());
-        backupService.rememberWalletIdAndPasswordForLocalZipBackup(walletSummary.getWalletId(), walletSummary.getWalletPassword().getPassword());
-        backupService.rememberWalletIdAndPasswordForCloudZipBackup(walletSummary.getWalletId(), walletSummary.getWalletPassword().getPassword());
+      },
+      password,
+      new File(walletFile.getAbsolutePath() + MBHD_AES_SUFFIX)
+    );
+
+    lastWalletSaveBytes = bytesWritten;
+    lastWalletSaveMillis = System.currentTimeMillis() - start;
+    walletSaveCount.incrementAndGet();
 
+    // Remove any plain text wallet left behind by earlier versions
+    if (walletFile.exists()) {
+      try {
+        SecureFiles.secureDelete(walletFile);
       } catch (IOException ioe) {
-        log.error("Could not write wallet and backups for wallet with id '" + walletId + "' successfully. The error was '" + ioe.getMessage() + "'");
+        log.warn("Could not delete plain text wallet '{}'", walletFile.getAbsolutePath());
       }
     }
 
+    BackupService backupService = CoreServices.getOrCreateBackupService();
+    backupService.rememberWalletSummaryAndPasswordForRollingBackup(walletSummary, password);
+    backupService.rememberWalletIdAndPasswordForLocalZipBackup(walletSummary.getWalletId(), password);
+    backupService.rememberWalletIdAndPasswordForCloudZipBackup(walletSummary.getWalletId(), password);
+
+    return bytesWritten;
+  }
+
+  /**
+   * @return The number of encrypted bytes written by the last wallet save
+   */
+  public long getLastWalletSaveBytes() {
+    return lastWalletSaveBytes;
+  }
+
+  /**
+   * @return The duration of the last wallet save in milliseconds
+   */
+  public long getLastWalletSaveMillis() {
+    return lastWalletSaveMillis;
+  }
+
+  /**
+   * @return The number of wallet saves since startup
+   */
+  public long getWalletSaveCount() {
+    return walletSaveCount.get();
   }
 
   /**
@@ -1884,18 +1995,15 @@ public enum WalletManager implements WalletEventListener {
   public void closeWallet() {
 
     if (WalletManager.INSTANCE.getCurrentWalletSummary().isPresent()) {
-      try {
-        Wallet wallet = WalletManager.INSTANCE.getCurrentWalletSummary().get().getWallet();
-        log.debug("Shutdown wallet autosave at height: {} ", wallet.getLastBlockSeenHeight());
-        wallet.shutdownAutosaveAndWait();
-      } catch (IllegalStateException ise) {
-        // If there is no autosaving set up yet then that is ok
-        if (!ise.getMessage().contains("Auto saving not enabled.")) {
-          throw ise;
-        }
-      }
+      Wallet wallet = WalletManager.INSTANCE.getCurrentWalletSummary().get().getWallet();
+      log.debug("Shutdown wallet autosave at height: {} ", wallet.getLastBlockSeenHeight());
+      // If there is no autosaving set up yet then that is ok
+      shutdownAutoSaveListener();
     } else {
       log.info("No current wallet summary to provide wallet");
     }
+
+    // Wipe the wallet session key
+    DerivedKeyCache.INSTANCE.close();
   }
 }
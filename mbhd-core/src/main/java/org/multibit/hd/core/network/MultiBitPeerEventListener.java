@@ -49,6 +49,9 @@ public class MultiBitPeerEventListener implements PeerEventListener {
 
     isDownloading = blocksLeft > 0;
 
+    // Persist the chain progress with bursts of blocks coalesced into a single save
+    WalletManager.INSTANCE.requestWalletSave();
+
     double pct = 100.0 - (100.0 * (blocksLeft / (double) originalBlocksLeft));
     if ((int) pct != lastPercent) {
       if (block != null) {
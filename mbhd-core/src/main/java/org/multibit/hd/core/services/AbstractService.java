@@ -3,7 +3,8 @@ package org.multibit.hd.core.services;
 import com.google.common.base.Optional;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.ListeningScheduledExecutorService;
-import org.multibit.commons.concurrent.SafeExecutors;
+import org.multibit.hd.core.concurrent.ExecutorRegistry;
+import org.multibit.hd.core.concurrent.Workload;
 import org.multibit.hd.core.events.CoreEvents;
 import org.multibit.hd.core.events.ShutdownEvent;
 import org.slf4j.Logger;
@@ -136,22 +137,33 @@ public abstract class AbstractService implements ManagedService {
   }
 
   /**
-   * <p>Provide a single thread scheduled executor</p>
+   * <p>Provide a single thread scheduled executor drawing on the shared pool for the workload</p>
    *
    * @param poolName The thread pool name (use lowercase hyphenated)
+   * @param workload The workload class of the tasks
    */
-  protected void requireSingleThreadScheduledExecutor(String poolName) {
-    scheduledService = Optional.of(SafeExecutors.newSingleThreadScheduledExecutor(poolName));
+  protected void requireSingleThreadScheduledExecutor(String poolName, Workload workload) {
+    scheduledService = Optional.of(ExecutorRegistry.INSTANCE.newSingleThreadScheduledExecutor(poolName, workload));
   }
 
   /**
-   * <p>Provide a fixed thread pool executor</p>
+   * <p>Provide a fixed thread pool executor drawing on the shared pool for the workload</p>
    *
-   * @param threadCount The number of threads
+   * @param threadCount The most tasks to run at once
    * @param poolName    The thread pool name (use lowercase hyphenated)
+   * @param workload    The workload class of the tasks
    */
-  protected void requireFixedThreadPoolExecutor(int threadCount, String poolName) {
-    service = Optional.of(SafeExecutors.newFixedThreadPool(threadCount, poolName));
+  protected void requireFixedThreadPoolExecutor(int threadCount, String poolName, Workload workload) {
+    service = Optional.of(ExecutorRegistry.INSTANCE.newFixedThreadPool(threadCount, poolName, workload));
+  }
+
+  /**
+   * <p>Provide an executor with its own thread for a task that blocks indefinitely</p>
+   *
+   * @param poolName The thread pool name (use lowercase hyphenated)
+   */
+  protected void requireDedicatedExecutor(String poolName) {
+    service = Optional.of(ExecutorRegistry.INSTANCE.newDedicatedExecutor(poolName));
   }
 
   /**
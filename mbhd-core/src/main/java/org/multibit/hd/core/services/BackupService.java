@@ -1,7 +1,11 @@
 package org.multibit.hd.core.services;
 
 import com.google.common.base.Optional;
-import com.google.common.util.concurrent.Uninterruptibles;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import org.joda.time.DateTime;
+import org.multibit.hd.core.concurrent.ExecutorRegistry;
+import org.multibit.hd.core.concurrent.Workload;
 import org.multibit.hd.core.dto.*;
 import org.multibit.hd.core.events.CoreEvents;
 import org.multibit.hd.core.events.ShutdownEvent;
@@ -9,13 +13,17 @@ import org.multibit.hd.core.managers.BackupManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 /**
  * <p>Service to provide the following to application API:</p>
  * <ul>
  * <li>Access to rolling, local zip and cloud zip backups</li>
+ * <li>Metrics describing the backups made of each kind</li>
  * </ul>
  * <p/>
  * Wallet backup strategy:
@@ -29,29 +37,19 @@ import java.util.concurrent.TimeUnit;
  * make a save at MBHD exit
  * <p/>
  * <p/>
- * Rolling backups
- * <p/>
- * make saves every 2 minutes
- * make first save 1 minutes after MBHD start (most likely after initial sync)
- * make a save at MBHD exit
- * <p/>
- * <p/>
- * Local zip backups
- * <p/>
- * make saves every 10 minutes
- * make first save 1 minutes after MBHD start
- * make a save at MBHD exit
- * <p/>
- * <p/>
- * Cloud backups
- * <p/>
- * make saves every 30 minutes
- * make first save 1 minutes after MBHD start
- * make a save at MBHD exit
+ * Backups are driven by changes to the wallet store rather than a timer. Wallet saves, payments writes and
+ * contacts writes mark the store dirty and each kind of backup is then scheduled by its own policy:
  * <p/>
+ * <ul>
+ * <li>debounce: wait until the store has been quiet for a while so a burst of writes gives a single backup</li>
+ * <li>maximum delay: never postpone a backup for longer than this after the first change</li>
+ * <li>minimum interval: never make backups of the same kind closer together than this</li>
+ * </ul>
  * <p/>
- * Do not bother tracking if the wallet is dirty, this only really affects the rolling backups and
- * is not worth the bother of writing a wallet extension to track it.
+ * Rolling backups are made at most every 2 minutes, local zip backups every 10 minutes and cloud backups
+ * every 30 minutes. No backup is made in the first minute after MBHD start (most likely before the initial sync).
+ * Each kind runs on its own executor so a slow cloud share never delays a rolling backup.
+ * Outstanding backups are made at MBHD exit.
  *
  * @since 0.0.1
  */
@@ -66,122 +64,81 @@ public class BackupService extends AbstractService {
   private static final int INITIAL_DELAY = 60;
 
   /**
-   * This is the fastest tick in seconds used for the backup scheduler
-   * Everything else is done on a multiple of this
+   * The scheduling policy of each kind of backup
    */
-  private static final int TICK_TIME_SECONDS = 12;
-
-  /**
-    * The slowdown rate for performing rolling backups
-    */
-   private static final int ROLLING_BACKUP_MODULO = 10;
-
+  private static final Map<BackupType, BackupPolicy> BACKUP_POLICIES = Maps.newEnumMap(BackupType.class);
 
-  /**
-   * The slowdown rate for performing local zip backups
-   */
-  private static final int LOCAL_ZIP_BACKUP_MODULO = 50;
+  static {
+    BACKUP_POLICIES.put(BackupType.ROLLING, new BackupPolicy(TimeUnit.SECONDS.toMillis(30), TimeUnit.MINUTES.toMillis(5), TimeUnit.MINUTES.toMillis(2)));
+    BACKUP_POLICIES.put(BackupType.LOCAL_ZIP, new BackupPolicy(TimeUnit.MINUTES.toMillis(1), TimeUnit.MINUTES.toMillis(20), TimeUnit.MINUTES.toMillis(10)));
+    BACKUP_POLICIES.put(BackupType.CLOUD_ZIP, new BackupPolicy(TimeUnit.MINUTES.toMillis(2), TimeUnit.MINUTES.toMillis(60), TimeUnit.MINUTES.toMillis(30)));
+  }
 
   /**
-   * The slowdown rate for performing cloud zip backups
+   * The schedule of each kind of backup
    */
-  private static final int CLOUD_ZIP_BACKUP_MODULO = 150;
+  private final Map<BackupType, BackupSchedule> backupSchedules = Maps.newEnumMap(BackupType.class);
 
   /**
-   * The number of times the backup main loop has incremented
-   * We expect this service to be a singleton
+   * The earliest time a backup can be made (set when the service starts)
    */
-  private int tickCount;
+  private volatile long earliestBackupMillis = Long.MAX_VALUE;
 
   /**
-   * The wallet summary to use for the next rolling backup
+   * The wallet summary to use for rolling backups
    */
-  private Optional<WalletSummary> rememberedWalletSummaryForRollingBackup = Optional.absent();
+  private volatile Optional<WalletSummary> rememberedWalletSummaryForRollingBackup = Optional.absent();
 
   /**
-   * The credentials to use for the next rolling backup
+   * The credentials to use for rolling backups
    */
-  private Optional<CharSequence> rememberedPasswordForRollingBackup = Optional.absent();
+  private volatile Optional<CharSequence> rememberedPasswordForRollingBackup = Optional.absent();
 
   /**
-   * The wallet id to use for the next local zip backup
+   * The wallet id to use for local zip backups
    */
-  private Optional<WalletId> rememberedWalletIdForLocalBackup = Optional.absent();
+  private volatile Optional<WalletId> rememberedWalletIdForLocalBackup = Optional.absent();
 
   /**
-   * The credentials to use for the next local zip backup
+   * The credentials to use for local zip backups
    */
-  private Optional<CharSequence> rememberedPasswordForLocalBackup = Optional.absent();
+  private volatile Optional<CharSequence> rememberedPasswordForLocalBackup = Optional.absent();
 
   /**
-   * The wallet id to use for the next cloud zip backup
+   * The wallet id to use for cloud zip backups
    */
-  private Optional<WalletId> rememberedWalletIdForCloudBackup = Optional.absent();
+  private volatile Optional<WalletId> rememberedWalletIdForCloudBackup = Optional.absent();
 
   /**
-   * The credentials to use for the next cloud zip backup
+   * The credentials to use for cloud zip backups
    */
-  private Optional<CharSequence> rememberedPasswordForCloudBackup = Optional.absent();
+  private volatile Optional<CharSequence> rememberedPasswordForCloudBackup = Optional.absent();
 
   /**
    * Whether backups are enabled or not
    */
-  private boolean backupsAreEnabled = true;
+  private volatile boolean backupsAreEnabled = true;
 
-  /**
-   * Whether backups are currently being performed
-   */
-  private boolean backupsAreRunning = false;
+  public BackupService() {
 
-  /**
-   * Whether a cloud backup should be performed at the next tick
-   */
-  private boolean performCloudBackupAtNextTick = false;
+    for (BackupType backupType : BackupType.values()) {
+      backupSchedules.put(backupType, new BackupSchedule(backupType, BACKUP_POLICIES.get(backupType)));
+    }
+
+  }
 
   @Override
   protected boolean startInternal() {
 
-    // The first tick (at time INITIAL_DELAY seconds) all of a rolling backup,
-    // local backup and a cloud backup
-    // The users copy of MBHD will most likely be fully synchronised by then
-    tickCount = 0;
-
-    // Use the provided executor service management
-    requireSingleThreadScheduledExecutor("backup");
-
-    // Use the provided executor service management
-    getScheduledExecutorService().scheduleAtFixedRate(
-      new Runnable() {
-        public void run() {
-          backupsAreRunning = true;
-          try {
-            // Main backup loop
-            //log.debug("The tickCount is {}", tickCount);
-
-            // A rolling backup is performed every ROLLING_BACKUP_MODULO tick
-            if (backupsAreEnabled  && tickCount % ROLLING_BACKUP_MODULO == 0) {
-              performRollingBackup();
-            }
+    earliestBackupMillis = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(INITIAL_DELAY);
 
-            // Local zip backups are done every LOCAL_ZIP_BACKUP_MODULO number of ticks
-            if (backupsAreEnabled && tickCount % LOCAL_ZIP_BACKUP_MODULO == 0) {
-              performLocalZipBackup();
-            }
+    // Use the provided executor service management for the timer
+    requireSingleThreadScheduledExecutor("backup", Workload.IO);
 
-            // Check if a cloud zip backup is required
-            // Cloud backups are done every CLOUD_ZIP_BACKUP_MODULO number of ticks or if the performCloudBackupAtNextTick is set
-            if (backupsAreEnabled && (tickCount % CLOUD_ZIP_BACKUP_MODULO == 0 || performCloudBackupAtNextTick)) {
-              performCloudBackupAtNextTick = false;
-              performCloudZipBackup();
-            }
-
-          } finally {
-            tickCount++;
-            backupsAreRunning = false;
-          }
-        }
-      }
-      , INITIAL_DELAY, TICK_TIME_SECONDS, TimeUnit.SECONDS);
+    // Each kind of backup runs on its own thread
+    for (BackupSchedule backupSchedule : backupSchedules.values()) {
+      backupSchedule.start(ExecutorRegistry.INSTANCE.newSingleThreadExecutor("backup-" + backupSchedule.backupType.name().toLowerCase().replace('_', '-'), Workload.IO));
+    }
 
     return true;
   }
@@ -192,36 +149,21 @@ public class BackupService extends AbstractService {
     switch (shutdownType) {
 
       case HARD:
+      case SWITCH:
         // A hard shutdown does not give enough time to wait gracefully
+        for (BackupSchedule backupSchedule : backupSchedules.values()) {
+          backupSchedule.stop(false);
+        }
         break;
       case SOFT:
-        // A soft shutdown occurs during FEST testing so the backups may not be running
-        if (isBackupsAreRunning()) {
-          log.debug("Performing backups at shutdown");
-
-          // Disable any new backups
-          this.setBackupsAreEnabled(false);
-
-          getScheduledExecutorService().schedule(
-            new Runnable() {
-              public void run() {
-                // Wait for any current backups to complete
-                while (isBackupsAreRunning()) {
-                  Uninterruptibles.sleepUninterruptibly(200, TimeUnit.MILLISECONDS);
-                }
-
-                performRollingBackup();
-
-                performLocalZipBackup();
-
-                performCloudZipBackup();
-
-              }
-
-            }, 0, TimeUnit.MILLISECONDS);
+        // Make any outstanding backups then allow the executors to finish
+        log.debug("Performing outstanding backups at shutdown");
+        for (BackupSchedule backupSchedule : backupSchedules.values()) {
+          backupSchedule.stop(backupsAreEnabled);
         }
-        break;
-      case SWITCH:
+
+        // Disable any new backups
+        this.setBackupsAreEnabled(false);
         break;
     }
 
@@ -230,89 +172,95 @@ public class BackupService extends AbstractService {
 
   }
 
+  /**
+   * <p>Record that the wallet store has changed so that each kind of backup is scheduled</p>
+   * <p>Can be called on any thread</p>
+   */
+  public void markStoreDirty() {
+
+    for (BackupSchedule backupSchedule : backupSchedules.values()) {
+      backupSchedule.markDirty();
+    }
+
+  }
+
   /**
    * Remember a wallet summary and credentials.
-   * This will be used at the next rolling backup.
+   * This will be used for rolling backups and marks the store as changed.
    */
   public void rememberWalletSummaryAndPasswordForRollingBackup(WalletSummary walletSummary, CharSequence password) {
     rememberedWalletSummaryForRollingBackup = Optional.of(walletSummary);
     rememberedPasswordForRollingBackup = Optional.of(password);
+    backupSchedules.get(BackupType.ROLLING).markDirty();
   }
 
   /**
    * Perform a rolling backup using the last remembered wallet summary and credentials
+   *
+   * @return The backup file if one was made
    */
-  private void performRollingBackup() {
+  private Optional<File> performRollingBackup() {
     if (rememberedWalletSummaryForRollingBackup.isPresent() && rememberedPasswordForRollingBackup.isPresent()) {
       log.debug("Performing a rolling backup");
 
       try {
-        BackupManager.INSTANCE.createRollingBackup(rememberedWalletSummaryForRollingBackup.get(), rememberedPasswordForRollingBackup.get());
-
-        // Don't use anything remembered in the past at this point again
-        // (This will miss anything newly remembered whilst the backup is taking place
-        rememberedWalletSummaryForRollingBackup = Optional.absent();
-        rememberedPasswordForRollingBackup = Optional.absent();
+        return Optional.of(BackupManager.INSTANCE.createRollingBackup(rememberedWalletSummaryForRollingBackup.get(), rememberedPasswordForRollingBackup.get()));
       } catch (IOException ioe) {
         log.error("Failed to perform rolling backup", ioe);
-        // TODO handle exception (which is thrown inside the main runnable)
       }
     }
+    return Optional.absent();
   }
 
   /**
    * Remember a wallet id and credentials.
-   * This will be used at the next local zip backup.
+   * This will be used for local zip backups and marks the store as changed.
    */
   public void rememberWalletIdAndPasswordForLocalZipBackup(WalletId walletId, CharSequence password) {
     rememberedWalletIdForLocalBackup = Optional.of(walletId);
     rememberedPasswordForLocalBackup = Optional.of(password);
+    backupSchedules.get(BackupType.LOCAL_ZIP).markDirty();
   }
 
   /**
    * Perform a local zip backup
+   *
+   * @return The backup file if one was made
    */
-  private void performLocalZipBackup() {
+  private Optional<File> performLocalZipBackup() {
     if (rememberedWalletIdForLocalBackup.isPresent() && rememberedPasswordForLocalBackup.isPresent()) {
       log.debug("Performing a local zip backup");
 
       try {
-        BackupManager.INSTANCE.createLocalBackup(rememberedWalletIdForLocalBackup.get(), rememberedPasswordForLocalBackup.get());
-
-        // Don't use anything remembered in the past at this point again
-        // (This will miss anything newly remembered whilst the backup is taking place
-        rememberedWalletIdForLocalBackup = Optional.absent();
-        rememberedPasswordForLocalBackup = Optional.absent();
+        return Optional.of(BackupManager.INSTANCE.createLocalBackup(rememberedWalletIdForLocalBackup.get(), rememberedPasswordForLocalBackup.get()));
       } catch (IOException ioe) {
         log.error("Failed to perform local backup", ioe);
-        // TODO handle exception (which is thrown inside the main runnable)
       }
     }
+    return Optional.absent();
   }
 
   /**
    * Remember a wallet id and credentials.
-   * This will be used at the next cloud zip backup.
+   * This will be used for cloud zip backups and marks the store as changed.
    */
   public void rememberWalletIdAndPasswordForCloudZipBackup(WalletId walletId, CharSequence password) {
     rememberedWalletIdForCloudBackup = Optional.of(walletId);
     rememberedPasswordForCloudBackup = Optional.of(password);
+    backupSchedules.get(BackupType.CLOUD_ZIP).markDirty();
   }
 
   /**
    * Perform a cloud zip backup
+   *
+   * @return The backup file if one was made
    */
-  private void performCloudZipBackup() {
+  private Optional<File> performCloudZipBackup() {
     if (rememberedWalletIdForCloudBackup.isPresent() && rememberedPasswordForCloudBackup.isPresent()) {
       log.debug("Performing a cloud zip backup");
 
       try {
-        BackupManager.INSTANCE.createCloudBackup(rememberedWalletIdForCloudBackup.get(), rememberedPasswordForCloudBackup.get());
-
-        // Don't use anything remembered in the past at this point again
-        // (This will miss anything newly remembered whilst the backup is taking place
-        rememberedWalletIdForCloudBackup = Optional.absent();
-        rememberedPasswordForCloudBackup = Optional.absent();
+        return Optional.fromNullable(BackupManager.INSTANCE.createCloudBackup(rememberedWalletIdForCloudBackup.get(), rememberedPasswordForCloudBackup.get()));
       } catch (IOException ioe) {
         log.error("Failed to perform cloud backup", ioe);
         CoreEvents.fireEnvironmentEvent(EnvironmentSummary.newBackupFailed());
@@ -320,6 +268,27 @@ public class BackupService extends AbstractService {
     } else {
       log.debug("Cannot perform cloud backup as no remembered wallet id or password is available");
     }
+    return Optional.absent();
+  }
+
+  /**
+   * @param backupType The kind of backup
+   *
+   * @return The backup file if one was made
+   */
+  private Optional<File> performBackup(BackupType backupType) {
+
+    switch (backupType) {
+      case ROLLING:
+        return performRollingBackup();
+      case LOCAL_ZIP:
+        return performLocalZipBackup();
+      case CLOUD_ZIP:
+        return performCloudZipBackup();
+      default:
+        throw new IllegalStateException("Unsupported backup type: " + backupType.name());
+    }
+
   }
 
   /**
@@ -334,15 +303,287 @@ public class BackupService extends AbstractService {
   }
 
   /**
-   * Indicates whether backups are currently running in the main scheduled loop
+   * Indicates whether any kind of backup is currently running
    *
-   * @return true if a backup is running in the main scheduled loop
+   * @return true if a backup is running
    */
   public boolean isBackupsAreRunning() {
-    return backupsAreRunning;
+    for (BackupSchedule backupSchedule : backupSchedules.values()) {
+      if (backupSchedule.isRunning()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * <p>Make a cloud backup as soon as possible (e.g. the user has just chosen a cloud backup location)</p>
+   */
+  public void requestCloudBackup() {
+    backupSchedules.get(BackupType.CLOUD_ZIP).markUrgent();
+  }
+
+  /**
+   * @param backupType The kind of backup
+   *
+   * @return The metrics for the backups of this kind made since the service started
+   */
+  public BackupMetrics getBackupMetrics(BackupType backupType) {
+    return backupSchedules.get(backupType).getBackupMetrics();
+  }
+
+  /**
+   * <p>The scheduling policy of one kind of backup</p>
+   */
+  static class BackupPolicy {
+
+    private final long debounceMillis;
+    private final long maximumDelayMillis;
+    private final long minimumIntervalMillis;
+
+    /**
+     * @param debounceMillis        The quiet period after a change before a backup is made
+     * @param maximumDelayMillis    The longest a backup is postponed after the first change
+     * @param minimumIntervalMillis The shortest time between two backups
+     */
+    BackupPolicy(long debounceMillis, long maximumDelayMillis, long minimumIntervalMillis) {
+      this.debounceMillis = debounceMillis;
+      this.maximumDelayMillis = maximumDelayMillis;
+      this.minimumIntervalMillis = minimumIntervalMillis;
+    }
+
+    /**
+     * @param dirtySinceMillis     When the store first changed since the last backup
+     * @param lastChangeMillis     When the store last changed
+     * @param lastBackupMillis     When the last backup started (zero if none)
+     * @param earliestBackupMillis The earliest time any backup can be made
+     *
+     * @return When the next backup is due
+     */
+    long nextBackupMillis(long dirtySinceMillis, long lastChangeMillis, long lastBackupMillis, long earliestBackupMillis) {
+
+      // Wait for a quiet period but not beyond the maximum delay
+      long dueMillis = Math.min(lastChangeMillis + debounceMillis, dirtySinceMillis + maximumDelayMillis);
+
+      // Respect the minimum interval between backups
+      if (lastBackupMillis > 0) {
+        dueMillis = Math.max(dueMillis, lastBackupMillis + minimumIntervalMillis);
+      }
+
+      return Math.max(dueMillis, earliestBackupMillis);
+    }
   }
 
-  public void setPerformCloudBackupAtNextTick(boolean performCloudBackupAtNextTick) {
-    this.performCloudBackupAtNextTick = performCloudBackupAtNextTick;
+  /**
+   * <p>The state, executor and metrics of one kind of backup</p>
+   */
+  private class BackupSchedule {
+
+    private final BackupType backupType;
+    private final BackupPolicy backupPolicy;
+
+    private ListeningExecutorService executorService;
+
+    private ScheduledFuture<?> pendingBackup;
+
+    /**
+     * When the store first changed since the last backup started (zero if clean)
+     */
+    private long dirtySinceMillis = 0;
+    private long lastChangeMillis = 0;
+    private long lastBackupStartMillis = 0;
+    private boolean urgent = false;
+    private boolean running = false;
+
+    private Optional<DateTime> lastBackupTime = Optional.absent();
+    private long lastDurationMillis = 0;
+    private long lastBytesWritten = 0;
+    private long totalBytesWritten = 0;
+    private int backupCount = 0;
+
+    private BackupSchedule(BackupType backupType, BackupPolicy backupPolicy) {
+      this.backupType = backupType;
+      this.backupPolicy = backupPolicy;
+    }
+
+    /**
+     * @param executorService The executor to run this kind of backup
+     */
+    private synchronized void start(ListeningExecutorService executorService) {
+      this.executorService = executorService;
+
+      // Changes may have been made before the service started (e.g. the wallet was opened)
+      if (dirtySinceMillis != 0) {
+        schedule();
+      }
+    }
+
+    /**
+     * @param performOutstanding True if a backup should be made if the store is dirty
+     */
+    private synchronized void stop(boolean performOutstanding) {
+
+      if (pendingBackup != null) {
+        pendingBackup.cancel(false);
+        pendingBackup = null;
+      }
+      if (executorService == null) {
+        return;
+      }
+
+      if (!performOutstanding) {
+        executorService.shutdownNow();
+        return;
+      }
+
+      if (dirtySinceMillis != 0) {
+        executorService.submit(
+          new Runnable() {
+            @Override
+            public void run() {
+              // Backups are disabled once shutdown starts
+              runBackup(true);
+            }
+          });
+      }
+      // Allow any running or outstanding backup to complete
+      executorService.shutdown();
+
+    }
+
+    private synchronized void markDirty() {
+
+      long now = System.currentTimeMillis();
+      if (dirtySinceMillis == 0) {
+        dirtySinceMillis = now;
+      }
+      lastChangeMillis = now;
+
+      schedule();
+    }
+
+    private synchronized void markUrgent() {
+      urgent = true;
+      markDirty();
+    }
+
+    private synchronized boolean isRunning() {
+      return running;
+    }
+
+    /**
+     * <p>Schedule the next backup from the policy (a running backup reschedules when it completes)</p>
+     */
+    private void schedule() {
+
+      if (executorService == null || executorService.isShutdown() || running) {
+        return;
+      }
+
+      long dueMillis = urgent
+        ? System.currentTimeMillis()
+        : backupPolicy.nextBackupMillis(dirtySinceMillis, lastChangeMillis, lastBackupStartMillis, earliestBackupMillis);
+
+      if (pendingBackup != null) {
+        pendingBackup.cancel(false);
+      }
+
+      pendingBackup = getScheduledExecutorService().schedule(
+        new Runnable() {
+          @Override
+          public void run() {
+            submitBackup();
+          }
+        }, Math.max(0, dueMillis - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+
+    }
+
+    /**
+     * <p>Hand the due backup from the timer to the executor for this kind of backup</p>
+     */
+    private synchronized void submitBackup() {
+
+      pendingBackup = null;
+      if (executorService == null || executorService.isShutdown()) {
+        return;
+      }
+
+      executorService.submit(
+        new Runnable() {
+          @Override
+          public void run() {
+            runBackup(false);
+          }
+        });
+
+    }
+
+    /**
+     * @param force True if the backup should be made even though backups have been disabled
+     */
+    private void runBackup(boolean force) {
+
+      final long previousDirtySinceMillis;
+      synchronized (this) {
+        if (running || dirtySinceMillis == 0) {
+          return;
+        }
+        running = true;
+        // Changes made from now on need another backup
+        previousDirtySinceMillis = dirtySinceMillis;
+        dirtySinceMillis = 0;
+        urgent = false;
+        lastBackupStartMillis = System.currentTimeMillis();
+      }
+
+      long startMillis = System.currentTimeMillis();
+      Optional<File> backupFile = Optional.absent();
+      try {
+        if (force || backupsAreEnabled) {
+          backupFile = performBackup(backupType);
+          if (backupFile.isPresent()) {
+            recordBackup(backupFile.get(), startMillis);
+          }
+        }
+      } finally {
+        synchronized (this) {
+          running = false;
+          if (!backupFile.isPresent()) {
+            // No backup was made (e.g. the cloud share is unavailable) so the changes still need one and the policy
+            // retries after the minimum interval
+            dirtySinceMillis = dirtySinceMillis == 0 ? previousDirtySinceMillis : Math.min(dirtySinceMillis, previousDirtySinceMillis);
+          }
+          if (dirtySinceMillis != 0) {
+            schedule();
+          }
+        }
+      }
+
+    }
+
+    /**
+     * @param backupFile  The backup that was made
+     * @param startMillis When the backup started
+     */
+    private synchronized void recordBackup(File backupFile, long startMillis) {
+
+      long now = System.currentTimeMillis();
+
+      // A backup manager may return the latest backup if nothing has changed (allow for coarse file timestamps)
+      boolean written = backupFile.lastModified() >= (startMillis / 1000) * 1000;
+
+      lastBackupTime = Optional.of(new DateTime(now));
+      lastDurationMillis = now - startMillis;
+      lastBytesWritten = written ? backupFile.length() : 0;
+      totalBytesWritten += lastBytesWritten;
+      backupCount++;
+
+      log.debug("{} backup took {} ms and wrote {} bytes", backupType, lastDurationMillis, lastBytesWritten);
+
+    }
+
+    private synchronized BackupMetrics getBackupMetrics() {
+      return new BackupMetrics(backupType, lastBackupTime, lastDurationMillis, lastBytesWritten, totalBytesWritten, backupCount);
+    }
   }
-}
\ No newline at end of file
+}
@@ -3,6 +3,7 @@ package org.multibit.hd.core.services;
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
@@ -23,20 +24,23 @@ import org.bitcoinj.wallet.DeterministicKeyChain;
 import org.bitcoinj.wallet.KeyChain;
 import org.joda.time.DateTime;
 import org.multibit.commons.files.SecureFiles;
+import org.multibit.hd.core.concurrent.Workload;
 import org.multibit.hd.core.config.Configurations;
+import org.multibit.hd.core.crypto.ParallelTransactionSigner;
 import org.multibit.hd.core.dto.*;
 import org.multibit.hd.core.events.*;
 import org.multibit.hd.core.managers.BlockStoreManager;
 import org.multibit.hd.core.managers.InstallationManager;
 import org.multibit.hd.core.managers.WalletManager;
 import org.multibit.hd.core.network.MultiBitPeerEventListener;
+import org.multibit.hd.core.store.IndexedBlockStore;
 import org.multibit.hd.core.utils.Coins;
+import org.multibit.hd.core.wallet.IndexedCoinSelector;
 import org.multibit.hd.hardware.core.HardwareWalletService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.swing.*;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.math.BigDecimal;
@@ -67,8 +71,6 @@ public class BitcoinNetworkService extends AbstractService {
 
   public static final int MAXIMUM_NUMBER_OF_PEERS = 10;
 
-  private static final int SIZE_OF_SIGNATURE = 72; // bytes
-
   private static int CONNECTION_TIMEOUT = 4000; // milliseconds
 
   private static int NUMBER_OF_PEERS_TO_PING = 2;
@@ -108,7 +110,7 @@ public class BitcoinNetworkService extends AbstractService {
 
     this.networkParameters = networkParameters;
 
-    requireFixedThreadPoolExecutor(5, "bitcoin-network");
+    requireFixedThreadPoolExecutor(5, "bitcoin-network", Workload.NETWORK);
 
   }
 
@@ -369,6 +371,8 @@ public class BitcoinNetworkService extends AbstractService {
    * if so return the stored block from before the replay date
    * If not, return Optional.absent()
    *
+   * An indexed block store is binary searched by header timestamp rather than walked back from the chain head.
+   *
    * We wind back NUMBER_OF_BLOCKS_DELTA_FOR_REPLAY blocks to cater for forks.
    * There has to be a difficulty transition in the stack returned (otherwise adding blocks fails) so if there isn't return Optional.absent()
    *
@@ -387,6 +391,17 @@ public class BitcoinNetworkService extends AbstractService {
     }
 
     try {
+      if (blockStore instanceof IndexedBlockStore) {
+        // Binary search the header index rather than walk back from the chain head
+        Optional<StoredBlock> indexedStoredBlock = ((IndexedBlockStore) blockStore).findStoredBlockBefore(replayDateTime.get().toDate());
+        if (!indexedStoredBlock.isPresent()) {
+          log.debug("No indexed stored block available before replay date");
+          return Optional.absent();
+        }
+        log.debug("Found indexed stored block at height {} before replay date", indexedStoredBlock.get().getHeight());
+        return Optional.fromNullable(pushStoredBlocksToCursorAndCheckDifficulty(indexedStoredBlock.get()));
+      }
+
       StoredBlock cursor = blockStore.getChainHead();
       if (cursor == null) {
         // No chainHead so cannot search back in time
@@ -433,6 +448,14 @@ public class BitcoinNetworkService extends AbstractService {
       storedBlock = storedBlock.getPrev(blockStore);
     }
 
+    if (storedBlock != null
+      && blockStore instanceof IndexedBlockStore
+      && !((IndexedBlockStore) blockStore).mayHaveDifficultyTransitionBelow(storedBlock.getHeight(), networkParameters.getInterval())) {
+      // Avoid walking the rest of the block store when it cannot contain a difficulty transition
+      log.debug("No difficulty transition in indexed chain snippet so returning null");
+      return null;
+    }
+
     boolean foundDifficultyTransition = false;
 
     Stack<StoredBlock> stack = new Stack<>();
@@ -698,10 +721,20 @@ public class BitcoinNetworkService extends AbstractService {
 
       } else {
         // No SendRequest so build one from the information in the summary
-        sendRequest = Wallet.SendRequest.to(
-          sendRequestSummary.getDestinationAddress(),
-          sendRequestSummary.getAmount()
-        );
+        if (sendRequestSummary.isBatch()) {
+          // A single transaction with an output per recipient
+          Transaction batchTx = new Transaction(networkParameters);
+          for (SendOutput output : sendRequestSummary.getOutputs()) {
+            batchTx.addOutput(output.getAmount(), output.getAddress());
+          }
+          sendRequest = Wallet.SendRequest.forTx(batchTx);
+          log.debug("Built a batch send request with {} outputs", sendRequestSummary.getOutputs().size());
+        } else {
+          sendRequest = Wallet.SendRequest.to(
+            sendRequestSummary.getDestinationAddress(),
+            sendRequestSummary.getAmount()
+          );
+        }
 
         // Ensure the transactionConfidence is in the Context transaction confidence table
         TransactionConfidence confidence = sendRequest.tx.getConfidence(CoreServices.getContext());
@@ -722,6 +755,9 @@ public class BitcoinNetworkService extends AbstractService {
       sendRequest.fee = Coin.ZERO;
       sendRequest.feePerKb = sendRequestSummary.getFeePerKB();
 
+      // Select from an index of the spendable outputs rather than re-sorting them on every fee iteration
+      sendRequest.coinSelector = new IndexedCoinSelector(sendRequestSummary.getFeePerKB(), sendRequestSummary.getCoinSelectionMode());
+
       // Append the Bitcoinj send request to the summary
       sendRequestSummary.setSendRequest(sendRequest);
 
@@ -798,26 +834,14 @@ public class BitcoinNetworkService extends AbstractService {
         return false;
       }
 
-      // Attempt to completeWithoutSigning it
+      // Attempt to completeWithoutSigning it (the recipient amount is reduced by the transaction fee)
       if (!completeWithoutSigning(sendRequestSummary, wallet)) {
         return false;
       }
 
-      // Update the SendRequestSummary to ensure it is not an "empty wallet" and has the adjusted recipient amount
+      // Update the SendRequestSummary to ensure it is not an "empty wallet" since the transaction is now complete
       sendRequestSummary.setEmptyWallet(false);
 
-      // Attempt to build and append the send request as if it were standard
-      // (This may now add on a client fee transaction output and also adjust the size of the output amounts)
-      if (!appendSendRequest(sendRequestSummary)) {
-        return false;
-      }
-
-      // Attempt to completeWithoutSigning it - we need to remove the inputs first as the complete will put all possible inputs back on the tx
-      sendRequestSummary.getSendRequest().get().tx.clearInputs();
-      if (!completeWithoutSigning(sendRequestSummary, wallet)) {
-        return false;
-      }
-
       // Set the fiat equivalent amount into the emptyWalletSendRequestSummary - this will take into account the transaction fee and client fee
       setFiatEquivalent(sendRequestSummary);
     }
@@ -914,8 +938,14 @@ public class BitcoinNetworkService extends AbstractService {
 
       // Complete it (works out fee) but DO NOT sign it
       sendRequest.signInputs = false;
+      List<TransactionOutput> requestedOutputs = Lists.newArrayList(sendRequest.tx.getOutputs());
       wallet.completeTx(sendRequest);
 
+      // Change that costs as much to spend as it is worth is better paid as fee
+      if (sendRequest.coinSelector instanceof IndexedCoinSelector) {
+        ((IndexedCoinSelector) sendRequest.coinSelector).foldChangeIntoFee(sendRequest, requestedOutputs);
+      }
+
     } catch (Exception e) {
       log.error("Could not complete the transaction without signing, error: {}", e.getClass().getCanonicalName() + " " + e.getMessage());
 
@@ -1024,10 +1054,10 @@ public class BitcoinNetworkService extends AbstractService {
       // Shuffle the outputs to obfuscate change and payment addresses
       sendRequest.tx.shuffleOutputs();
 
-      // Sign the transaction
+      // Sign the transaction (inputs are signed in parallel for large transactions)
       sendRequest.signInputs = true;
       log.debug("sendRequest just before signing: {} ", sendRequest);
-      wallet.signTransaction(sendRequest);
+      ParallelTransactionSigner.signTransaction(wallet, sendRequest);
 
       // Check the signatures are canonical - non-canonical signatures are not relayed
       for (TransactionInput txInput : sendRequest.tx.getInputs()) {
@@ -1508,6 +1538,8 @@ public class BitcoinNetworkService extends AbstractService {
       try {
         // The blockstore can throw an NPE internally
         log.debug("When the blockstore was closed the height was {}", blockStore.getChainHead() == null ? "unknown" : blockStore.getChainHead().getHeight());
+        // Share the downloaded headers with the other wallets
+        new BlockStoreManager(networkParameters).archiveHeaders(blockStore);
         blockStore.close();
       } catch (BlockStoreException e) {
         log.warn("BlockStoreException: Blockstore was already closed or not closed cleanly: {}", e.getMessage());
@@ -1590,23 +1622,6 @@ public class BitcoinNetworkService extends AbstractService {
     startedOk = true;
   }
 
-  /**
-   * Calculate the size of the transaction
-   *
-   * @param transaction The transaction to calculate the size of
-   *
-   * @return size of the transaction
-   */
-  private int calculateSizeWithSignatures(Transaction transaction) throws IOException {
-    ByteArrayOutputStream byteOutputStream = new ByteArrayOutputStream();
-    transaction.bitcoinSerialize(byteOutputStream);
-
-    int unsignedSize = byteOutputStream.size();
-
-    // Add on size of signatures
-    return unsignedSize + SIZE_OF_SIGNATURE * transaction.getInputs().size();
-  }
-
   public Optional<SendRequestSummary> getLastSendRequestSummaryOptional() {
     return lastSendRequestSummaryOptional;
   }
@@ -9,9 +9,10 @@ import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import org.bitcoinj.core.Context;
 import org.bitcoinj.core.NetworkParameters;
 import org.bitcoinj.utils.Threading;
-import org.multibit.commons.concurrent.SafeExecutors;
 import org.multibit.hd.brit.core.seed_phrase.Bip39SeedPhraseGenerator;
 import org.multibit.hd.brit.core.seed_phrase.SeedPhraseGenerator;
+import org.multibit.hd.core.concurrent.ExecutorRegistry;
+import org.multibit.hd.core.concurrent.Workload;
 import org.multibit.hd.core.config.BitcoinConfiguration;
 import org.multibit.hd.core.config.Configuration;
 import org.multibit.hd.core.config.Configurations;
@@ -555,7 +556,7 @@ public class CoreServices {
    */
   public static synchronized void stopBitcoinNetworkService() {
     if (coreServices == null) {
-      coreServices = SafeExecutors.newFixedThreadPool(10, "core-services");
+      coreServices = ExecutorRegistry.INSTANCE.newFixedThreadPool(10, "core-services", Workload.UI_HANDOFF);
     }
 
     log.debug("Stop Bitcoin network service");
@@ -2,6 +2,7 @@ package org.multibit.hd.core.services;
 
 import org.joda.time.DateTime;
 import org.multibit.commons.utils.Dates;
+import org.multibit.hd.core.concurrent.Workload;
 import org.multibit.hd.core.dto.EnvironmentSummary;
 import org.multibit.hd.core.events.CoreEvents;
 import org.multibit.hd.core.events.ShutdownEvent;
@@ -36,7 +37,7 @@ public class EnvironmentCheckingService extends AbstractService {
     log.debug("Starting environment service");
 
     // Use the provided executor service management
-    requireSingleThreadScheduledExecutor("environment");
+    requireSingleThreadScheduledExecutor("environment", Workload.IO);
 
     // Use the provided executor service management
     getScheduledExecutorService().scheduleAtFixedRate(
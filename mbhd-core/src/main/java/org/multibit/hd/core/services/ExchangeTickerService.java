@@ -11,8 +11,9 @@ import com.xeiam.xchange.ExchangeFactory;
 import com.xeiam.xchange.NotAvailableFromExchangeException;
 import com.xeiam.xchange.currency.CurrencyPair;
 import com.xeiam.xchange.dto.marketdata.Ticker;
-import org.multibit.commons.concurrent.SafeExecutors;
 import org.multibit.commons.utils.Dates;
+import org.multibit.hd.core.concurrent.ExecutorRegistry;
+import org.multibit.hd.core.concurrent.Workload;
 import org.multibit.hd.core.config.BitcoinConfiguration;
 import org.multibit.hd.core.config.Configurations;
 import org.multibit.hd.core.dto.EnvironmentSummary;
@@ -62,7 +63,7 @@ public class ExchangeTickerService extends AbstractService {
    * The executor service for managing one off dynamic "all currency" lookups against exchanges
    */
   private volatile ListeningExecutorService allCurrenciesExecutorService = null;
-  private ListeningExecutorService latestTickerExecutorService = SafeExecutors.newSingleThreadExecutor("latest-ticker");
+  private ListeningExecutorService latestTickerExecutorService = ExecutorRegistry.INSTANCE.newSingleThreadExecutor("latest-ticker", Workload.NETWORK);
 
   /**
    * <p>Each new instance of the exchange ticker service creates a new independent Exchange</p>
@@ -103,7 +104,7 @@ public class ExchangeTickerService extends AbstractService {
     log.debug("Starting service");
 
     // Use the provided executor service management
-    requireSingleThreadScheduledExecutor("exchange-ticker");
+    requireSingleThreadScheduledExecutor("exchange-ticker", Workload.NETWORK);
 
     // Use the provided executor service management
     getScheduledExecutorService().scheduleAtFixedRate(
@@ -330,7 +331,7 @@ public class ExchangeTickerService extends AbstractService {
    */
   public ListenableFuture<String[]> allCurrencies() {
     if (allCurrenciesExecutorService == null) {
-      allCurrenciesExecutorService = SafeExecutors.newSingleThreadExecutor("all-currencies");
+      allCurrenciesExecutorService = ExecutorRegistry.INSTANCE.newSingleThreadExecutor("all-currencies", Workload.NETWORK);
     }
 
     return allCurrenciesExecutorService.submit(
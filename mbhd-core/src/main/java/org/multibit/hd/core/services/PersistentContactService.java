@@ -15,13 +15,15 @@ import org.multibit.hd.core.exceptions.EncryptedFileReaderWriterException;
 import org.multibit.commons.files.SecureFiles;
 import org.multibit.hd.core.managers.InstallationManager;
 import org.multibit.hd.core.managers.WalletManager;
+import org.multibit.hd.core.store.ContactSearchIndex;
 import org.multibit.hd.core.store.ContactsProtobufSerializer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Collection;
 import java.util.List;
 import java.util.Set;
@@ -45,6 +47,11 @@ public class PersistentContactService extends AbstractService implements Contact
    */
   private final Set<Contact> contacts = Sets.newHashSet();
 
+  /**
+   * The lookup index over the contacts (kept in step with the cache)
+   */
+  private final ContactSearchIndex contactSearchIndex = new ContactSearchIndex();
+
   /**
    * The location of the backing writeContacts for the contacts
    */
@@ -148,16 +155,7 @@ public class PersistentContactService extends AbstractService implements Contact
 
     Preconditions.checkNotNull(address, "'address' must be present");
 
-    List<Contact> filteredContacts = Lists.newArrayList();
-
-    for (Contact contact : contacts) {
-
-      if (contact.getBitcoinAddress().isPresent() && contact.getBitcoinAddress().get().equals(address)) {
-        filteredContacts.add(contact);
-      }
-    }
-
-    return filteredContacts;
+    return Lists.newArrayList(contactSearchIndex.findByBitcoinAddress(address));
   }
 
   @Override
@@ -167,9 +165,18 @@ public class PersistentContactService extends AbstractService implements Contact
 
     String lowerQuery = query.toLowerCase();
 
+    // Narrow down to contacts with words containing the query words (the wildcard matches everything)
+    Collection<Contact> candidates = contacts;
+    if (!"*".equals(query)) {
+      Optional<Set<Contact>> indexedCandidates = contactSearchIndex.findCandidates(lowerQuery);
+      if (indexedCandidates.isPresent()) {
+        candidates = indexedCandidates.get();
+      }
+    }
+
     List<Contact> filteredContacts = Lists.newArrayList();
 
-    for (Contact contact : contacts) {
+    for (Contact contact : candidates) {
 
       // No Bitcoin address and excluding not payable
       if (excludeNotPayable && !contact.getBitcoinAddress().isPresent() ) {
@@ -232,21 +239,19 @@ public class PersistentContactService extends AbstractService implements Contact
 
     List<Contact> filteredContacts = Lists.newArrayList();
 
-    for (Contact contact : contacts) {
+    // Note: Do not include a Bitcoin address or xpub in this search
+    // because vanity addresses can cause an attack vector
+    // Instead use the dedicated methods for those fields
+
+    // We apply a stricter rule here to force a single match
+    for (Contact contact : contactSearchIndex.findByName(lowerQuery)) {
 
       // No Bitcoin address and excluding not payable
       if (excludeNotPayable && !contact.getBitcoinAddress().isPresent()) {
         continue;
       }
 
-      // Note: Do not include a Bitcoin address or xpub in this search
-      // because vanity addresses can cause an attack vector
-      // Instead use the dedicated methods for those fields
-
-      // We apply a stricter rule here to force a single match
-      if (contact.getName().toLowerCase().equals(lowerQuery)) {
-        filteredContacts.add(contact);
-      }
+      filteredContacts.add(contact);
     }
 
     // Test for exactly one match
@@ -262,6 +267,7 @@ public class PersistentContactService extends AbstractService implements Contact
   public void addAll(Collection<Contact> selectedContacts) {
 
     contacts.addAll(selectedContacts);
+    contactSearchIndex.addAll(selectedContacts);
 
   }
 
@@ -272,13 +278,17 @@ public class PersistentContactService extends AbstractService implements Contact
 
     try {
       contacts.clear();
+      contactSearchIndex.clear();
       if (backingStoreFile.exists()) {
-        ByteArrayInputStream decryptedInputStream = EncryptedFileReaderWriter.readAndDecrypt(backingStoreFile, password);
-        Set<Contact> loadedContacts = protobufSerializer.readContacts(decryptedInputStream);
+        Set<Contact> loadedContacts;
+        try (InputStream decryptedInputStream = EncryptedFileReaderWriter.readAndDecryptStream(backingStoreFile, password)) {
+          loadedContacts = protobufSerializer.readContacts(decryptedInputStream);
+        }
 
         contacts.addAll(loadedContacts);
+        contactSearchIndex.addAll(loadedContacts);
       }
-    } catch (EncryptedFileReaderWriterException e) {
+    } catch (EncryptedFileReaderWriterException | IOException e) {
       throw new ContactsLoadException("Could not loadContacts contacts db '" + backingStoreFile.getAbsolutePath() + "'. Error was '" + e.getMessage() + "'.");
     }
   }
@@ -289,6 +299,7 @@ public class PersistentContactService extends AbstractService implements Contact
    */
   void clear() {
     contacts.clear();
+    contactSearchIndex.clear();
   }
 
   @Override
@@ -299,6 +310,7 @@ public class PersistentContactService extends AbstractService implements Contact
     log.debug("Removing {} contact(s)", selectedContacts.size());
 
     contacts.removeAll(selectedContacts);
+    contactSearchIndex.removeAll(selectedContacts);
 
   }
 
@@ -317,6 +329,9 @@ public class PersistentContactService extends AbstractService implements Contact
 
       }
 
+      // Edits are made in place so always re-index
+      contactSearchIndex.add(editedContact);
+
     }
 
   }
@@ -327,10 +342,19 @@ public class PersistentContactService extends AbstractService implements Contact
     log.debug("Writing {} contact(s)", contacts.size());
 
     try {
-      ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream(1024);
-
-      protobufSerializer.writeContacts(contacts, byteArrayOutputStream);
-      EncryptedFileReaderWriter.encryptAndWrite(byteArrayOutputStream.toByteArray(), WalletManager.INSTANCE.getCurrentWalletSummary().get().getWalletPassword().getPassword(), backingStoreFile);
+      EncryptedFileReaderWriter.encryptAndWrite(
+        new EncryptedFileReaderWriter.StreamWriter() {
+          @Override
+          public void writeTo(OutputStream outputStream) throws IOException {
+            protobufSerializer.writeContacts(contacts, outputStream);
+          }
+        },
+        WalletManager.INSTANCE.getCurrentWalletSummary().get().getWalletPassword().getPassword(),
+        backingStoreFile
+      );
+
+      // Schedule backups of the changed contacts
+      CoreServices.getOrCreateBackupService().markStoreDirty();
 
     } catch (Exception e) {
       throw new ContactsSaveException("Could not save contacts db '" + backingStoreFile.getAbsolutePath() + "'. Error was '" + e.getMessage() + "'.");
@@ -378,6 +402,8 @@ public class PersistentContactService extends AbstractService implements Contact
     contact6.setEmail("alicia.lower@example.org");
     contacts.add(contact6);
 
+    contactSearchIndex.addAll(contacts);
+
   }
 
 }
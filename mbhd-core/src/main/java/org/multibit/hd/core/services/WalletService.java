@@ -1,14 +1,15 @@
 package org.multibit.hd.core.services;
 
 import com.google.common.base.Charsets;
-import com.google.common.base.Joiner;
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Supplier;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.google.common.eventbus.Subscribe;
+import com.google.common.util.concurrent.ListeningScheduledExecutorService;
 import com.google.protobuf.ByteString;
 import com.google.protobuf.InvalidProtocolBufferException;
 import com.googlecode.jcsv.writer.CSVEntryConverter;
@@ -18,10 +19,13 @@ import org.bitcoinj.core.*;
 import org.bitcoinj.crypto.ChildNumber;
 import org.bitcoinj.crypto.DeterministicKey;
 import org.bitcoinj.script.Script;
+import org.bitcoinj.wallet.WalletTransaction;
 import org.joda.time.DateTime;
-import org.multibit.commons.concurrent.SafeExecutors;
 import org.multibit.commons.crypto.AESUtils;
 import org.multibit.commons.files.SecureFiles;
+import org.multibit.hd.core.concurrent.ExecutorRegistry;
+import org.multibit.hd.core.concurrent.Workload;
+import org.multibit.hd.core.crypto.DerivedKeyCache;
 import org.multibit.hd.core.crypto.EncryptedFileReaderWriter;
 import org.multibit.hd.core.dto.*;
 import org.multibit.hd.core.events.*;
@@ -34,8 +38,12 @@ import org.multibit.hd.core.managers.ExportManager;
 import org.multibit.hd.core.managers.InstallationManager;
 import org.multibit.hd.core.managers.WalletManager;
 import org.multibit.hd.core.store.Payments;
+import org.multibit.hd.core.store.PaymentDataIndex;
+import org.multibit.hd.core.store.PaymentSearchIndex;
+import org.multibit.hd.core.store.PaymentsChangeTracker;
 import org.multibit.hd.core.store.PaymentsProtobufSerializer;
 import org.multibit.hd.core.store.TransactionInfo;
+import org.multibit.hd.core.store.TransactionInfoJournal;
 import org.multibit.hd.core.utils.BitcoinNetwork;
 import org.multibit.hd.core.utils.Coins;
 import org.slf4j.Logger;
@@ -48,6 +56,9 @@ import java.security.NoSuchAlgorithmException;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * <p>Service to provide the following to GUI classes:</p>
@@ -72,6 +83,16 @@ public class WalletService extends AbstractService {
    */
   public static final String PAYMENTS_DATABASE_NAME = "payments.aes";
 
+  /**
+   * The name of the journal of transaction info changes made since the payments database was last written, AES encrypted per record
+   */
+  public static final String TRANSACTION_INFO_JOURNAL_NAME = "payments.journal";
+
+  /**
+   * The number of journal records that triggers a write of the payments database (compacting the journal)
+   */
+  public static final int MAXIMUM_JOURNAL_RECORDS = 200;
+
   /**
    * The text separator used in localising To: and By: prefices
    */
@@ -102,6 +123,11 @@ public class WalletService extends AbstractService {
    */
   public static final int GAP_LIMIT = 20;
 
+  /**
+   * The delay between the first payments change and the write-behind save (a burst of edits is written once)
+   */
+  public static final int PAYMENTS_WRITE_DELAY_MILLIS = 1000;
+
   /**
    * The Bitcoin network parameters
    */
@@ -147,6 +173,38 @@ public class WalletService extends AbstractService {
    */
   private Set<PaymentData> lastSeenPaymentDataSet = Sets.newHashSet();
 
+  /**
+   * The incrementally maintained index of adapted transactions
+   */
+  private final PaymentDataIndex paymentDataIndex = new PaymentDataIndex();
+
+  /**
+   * The full text index over the last seen payments
+   */
+  private final PaymentSearchIndex paymentSearchIndex = new PaymentSearchIndex();
+
+  /**
+   * The journal of transaction info changes made since the last write to the backing store
+   */
+  private TransactionInfoJournal transactionInfoJournal;
+
+  /**
+   * The payments changed since the last write to the backing store
+   */
+  private final PaymentsChangeTracker paymentsChangeTracker = new PaymentsChangeTracker();
+
+  /**
+   * The number of write requests since the last write-behind save (zero means no save is pending)
+   */
+  private final AtomicInteger pendingWriteRequests = new AtomicInteger();
+
+  /**
+   * Handles write-behind saves of the payments (created on first use)
+   */
+  private ListeningScheduledExecutorService paymentsWriteExecutor = null;
+
+  private volatile Future<?> pendingWrite;
+
   /**
    * Handles wallet operations
    */
@@ -173,6 +231,12 @@ public class WalletService extends AbstractService {
   @Override
   protected boolean shutdownNowInternal(ShutdownEvent.ShutdownType shutdownType) {
 
+    // Any pending write-behind save is flushed by the synchronous write below
+    Future<?> scheduledWrite = pendingWrite;
+    if (scheduledWrite != null) {
+      scheduledWrite.cancel(false);
+    }
+
     if (WalletManager.INSTANCE.getCurrentWalletSummary().isPresent()) {
       try {
         if (WalletManager.INSTANCE.getCurrentWalletSummary().get().getWalletPassword().getPassword() != null) {
@@ -189,6 +253,13 @@ public class WalletService extends AbstractService {
       executorService = null;
     }
 
+    synchronized (this) {
+      if (paymentsWriteExecutor != null) {
+        paymentsWriteExecutor.shutdown();
+        paymentsWriteExecutor = null;
+      }
+    }
+
     // Always treat as a hard shutdown
     return true;
   }
@@ -213,17 +284,19 @@ public class WalletService extends AbstractService {
     SecureFiles.verifyOrCreateDirectory(paymentsDirectory);
 
     this.paymentDatabaseFile = new File(paymentsDirectory.getAbsolutePath() + File.separator + PAYMENTS_DATABASE_NAME);
+    this.transactionInfoJournal = new TransactionInfoJournal(new File(paymentsDirectory.getAbsolutePath() + File.separator + TRANSACTION_INFO_JOURNAL_NAME));
 
     protobufSerializer = new PaymentsProtobufSerializer();
 
-    if (paymentDatabaseFile.exists()) {
+    if (paymentDatabaseFile.exists() || !transactionInfoJournal.isEmpty()) {
       readPayments(password);
     }
   }
 
   /**
    * <p>Get all the payments (payments and payment requests) in the current wallet.</p>
-   * <h3>NOTE: This is moderately expensive so don't call it indiscriminately</h3>
+   * <p>Only transactions that have been seen or changed since the last call are adapted, the rest
+   * are served from the payment data index. The returned set is a snapshot and is not modified by later calls.</p>
    */
   public Set<PaymentData> getPaymentDataSet() {
 
@@ -243,48 +316,165 @@ public class WalletService extends AbstractService {
     // There should be a wallet
     Preconditions.checkNotNull(wallet, "There is no wallet to process");
 
-    // Get all the transactions in the wallet
-    Set<Transaction> transactions = wallet.getTransactions(true);
-
-    // Adapted transaction data to return
-    Set<TransactionData> transactionDataSet = Sets.newHashSet();
-
-    // Work out the unmatched BIP70 payment requests
-    Set<PaymentData> unmatchedBip70PaymentDatas = createUnmatchedPaymentRequestDatas();
-
-    // Create a Map of all the unmatched paymentDetails
-    Map<UUID, Protos.PaymentDetails> unmatchedPaymentDetailsMap = createUnmatchedPaymentDetails(unmatchedBip70PaymentDatas);
-
-    if (transactions != null) {
-      for (Transaction transaction : transactions) {
-        // Adapt the transaction - adding on matching MBHDPaymentRequests and BIP70 PaymentRequests
-        TransactionData transactionData = adaptTransaction(wallet, transaction, unmatchedPaymentDetailsMap);
-        transactionDataSet.add(transactionData);
-      }
-    }
+    // Bring the index up to date (adapting only new or changed transactions)
+    refreshPaymentDataIndex(wallet);
 
     // Determine which MBHDPaymentRequests have not been fully funded or request zero funds (these will appear as independent entities in the UI)
     Set<MBHDPaymentRequestData> paymentRequestsNotFullyFunded = Sets.newHashSet();
-    for (MBHDPaymentRequestData baseMBHDPaymentRequestData : mbhdPaymentRequestDataMap.values()) {
+    for (MBHDPaymentRequestData baseMBHDPaymentRequestData : getMBHDPaymentRequestDataList()) {
       boolean requestAmountIsZeroOrAbsent = !baseMBHDPaymentRequestData.getAmountCoin().isPresent() || baseMBHDPaymentRequestData.getAmountCoin().get().compareTo(Coin.ZERO) == 0;
       if ((requestAmountIsZeroOrAbsent && baseMBHDPaymentRequestData.getPaidAmountCoin().compareTo(Coin.ZERO) == 0) ||
               (!requestAmountIsZeroOrAbsent && baseMBHDPaymentRequestData.getPaidAmountCoin().compareTo(baseMBHDPaymentRequestData.getAmountCoin().or(Coin.ZERO)) < 0)) {
         paymentRequestsNotFullyFunded.add(baseMBHDPaymentRequestData);
       }
     }
-    // Union the transactionData set and paymentData set
-    lastSeenPaymentDataSet = Sets.union(transactionDataSet, paymentRequestsNotFullyFunded);
 
-    lastSeenPaymentDataSet = Sets.union(lastSeenPaymentDataSet, unmatchedBip70PaymentDatas);
+    // Union the indexed transactionData, unfunded payment requests and unmatched BIP70 payment requests
+    Set<PaymentData> paymentDataSet = Sets.newHashSet();
+    paymentDataSet.addAll(paymentDataIndex.snapshotTransactionData());
+    paymentDataSet.addAll(paymentRequestsNotFullyFunded);
+    paymentDataSet.addAll(createUnmatchedPaymentRequestDatas());
+
+    lastSeenPaymentDataSet = Collections.unmodifiableSet(paymentDataSet);
+
+    // Keep the search index in line (only new or replaced payments are indexed)
+    paymentSearchIndex.update(lastSeenPaymentDataSet);
 
     //log.debug("lastSeenPaymentDataSet:\n" + lastSeenPaymentDataSet.toString());
     return lastSeenPaymentDataSet;
   }
 
+  /**
+   * <p>Bring the payment data index up to date with the wallet</p>
+   * <p>Normally only the transactions marked as pending (by transaction seen events or payment request changes)
+   * are examined. A full reconcile is performed if the wallet or its transaction count has changed unexpectedly.</p>
+   *
+   * @param wallet The current wallet
+   */
+  private void refreshPaymentDataIndex(Wallet wallet) {
+
+    synchronized (paymentDataIndex) {
+
+      // Work out the unmatched BIP70 payment details once (parsed details are cached by the index)
+      Map<UUID, Protos.PaymentDetails> unmatchedPaymentDetailsMap = createUnmatchedPaymentDetails(createUnmatchedPaymentRequestDatas());
+
+      int transactionCount = countTransactions(wallet);
+
+      if (paymentDataIndex.isReconcileRequired(wallet, transactionCount)) {
+
+        // Examine every transaction (entries that have not changed are not re-adapted)
+        paymentDataIndex.drainPendingHashes();
+        Set<String> transactionHashes = Sets.newHashSet();
+        for (Transaction transaction : wallet.getTransactions(true)) {
+          transactionHashes.add(transaction.getHashAsString());
+          updatePaymentDataIndex(wallet, transaction, unmatchedPaymentDetailsMap);
+        }
+        paymentDataIndex.retainAll(transactionHashes);
+
+        log.debug("Reconciled payment data index with {} transactions", transactionHashes.size());
+
+      } else {
+
+        // Only examine the transactions that have been seen or changed
+        for (String transactionHash : paymentDataIndex.drainPendingHashes()) {
+          Transaction transaction = wallet.getTransaction(Sha256Hash.wrap(transactionHash));
+          if (transaction == null) {
+            paymentDataIndex.remove(transactionHash);
+          } else {
+            updatePaymentDataIndex(wallet, transaction, unmatchedPaymentDetailsMap);
+          }
+        }
+      }
+
+      paymentDataIndex.markReconciled(wallet, transactionCount);
+    }
+  }
+
+  /**
+   * <p>Update the index entry for a single transaction, adapting it fully only if required</p>
+   *
+   * @param wallet                     The current wallet
+   * @param transaction                The transaction
+   * @param unmatchedPaymentDetailsMap Unmatched BIP70 payment details map
+   */
+  private void updatePaymentDataIndex(Wallet wallet, Transaction transaction, Map<UUID, Protos.PaymentDetails> unmatchedPaymentDetailsMap) {
+
+    String transactionHashAsString = transaction.getHashAsString();
+
+    TransactionConfidence confidence = transaction.getConfidence();
+    TransactionConfidence.ConfidenceType confidenceType = confidence == null ? TransactionConfidence.ConfidenceType.UNKNOWN : confidence.getConfidenceType();
+    int depth = confidence != null && TransactionConfidence.ConfidenceType.BUILDING == confidenceType ? confidence.getDepthInBlocks() : 0;
+    int numberOfPeers = confidence == null ? 0 : confidence.numBroadcastPeers();
+
+    if (paymentDataIndex.isFullAdaptRequired(transactionHashAsString)) {
+
+      TransactionData transactionData = adaptTransaction(wallet, transaction, unmatchedPaymentDetailsMap);
+      paymentDataIndex.put(transactionData, confidenceType, depth, numberOfPeers, true);
+
+    } else if (paymentDataIndex.isConfidenceChanged(transactionHashAsString, confidenceType, depth, numberOfPeers)) {
+
+      // Only the confidence has changed so avoid a full adapt
+      TransactionData previous = paymentDataIndex.get(transactionHashAsString);
+      TransactionData transactionData = refreshTransactionStatus(previous, transaction, confidence, confidenceType, depth, numberOfPeers);
+      paymentDataIndex.put(transactionData, confidenceType, depth, numberOfPeers, false);
+
+    }
+  }
+
+  /**
+   * <p>Create a copy of the transaction data with the status fields recalculated for the new confidence</p>
+   * <p>The description, fee and output addresses do not depend on the confidence so are reused</p>
+   */
+  private TransactionData refreshTransactionStatus(
+          TransactionData previous,
+          Transaction transaction,
+          TransactionConfidence confidence,
+          TransactionConfidence.ConfidenceType confidenceType,
+          int depth,
+          int numberOfPeers
+  ) {
+
+    PaymentStatus paymentStatus = confidence == null ? new PaymentStatus(RAGStatus.AMBER, CoreMessageKey.UNKNOWN) : calculateStatus(confidenceType, depth, numberOfPeers);
+    PaymentType paymentType = calculatePaymentType(previous.getAmountCoin().or(Coin.ZERO), depth, confidenceType);
+
+    TransactionData transactionData = new TransactionData(
+            previous.getTransactionId(),
+            new DateTime(transaction.getUpdateTime()),
+            paymentStatus,
+            previous.getAmountCoin(),
+            previous.getAmountFiat(),
+            previous.getMiningFee(),
+            previous.getClientFee(),
+            confidenceType,
+            paymentType,
+            previous.getDescription(),
+            previous.isCoinBase(),
+            previous.getOutputAddresses(),
+            newRawTransactionSupplier(transaction),
+            newSizeSupplier(transaction),
+            false
+    );
+    transactionData.setNote(previous.getNote());
+
+    return transactionData;
+  }
+
+  /**
+   * @param wallet The wallet
+   *
+   * @return The number of transactions in the wallet including dead ones (cheap, no copying)
+   */
+  private int countTransactions(Wallet wallet) {
+    return wallet.getTransactionPool(WalletTransaction.Pool.UNSPENT).size()
+            + wallet.getTransactionPool(WalletTransaction.Pool.SPENT).size()
+            + wallet.getTransactionPool(WalletTransaction.Pool.PENDING).size()
+            + wallet.getTransactionPool(WalletTransaction.Pool.DEAD).size();
+  }
+
   private Set<PaymentData> createUnmatchedPaymentRequestDatas() {
     // Work out the unmatched BIP70 payment requests
     Set<PaymentData> unmatchedBip70PaymentDatas = Sets.newHashSet();
-    for (PaymentData paymentData : bip70PaymentRequestDataMap.values()) {
+    for (PaymentData paymentData : getPaymentRequestDataList()) {
       // If there is a tx hash then the bip70 payment is not a 'top level' object - not shown in payments table
       if (!((PaymentRequestData) paymentData).getTransactionHash().isPresent()) {
         unmatchedBip70PaymentDatas.add(paymentData);
@@ -297,18 +487,41 @@ public class WalletService extends AbstractService {
     // Create a Map of all the unmatched paymentDetails
     Map<UUID, Protos.PaymentDetails> unmatchedPaymentDetailsMap = Maps.newHashMap();
     for (PaymentData unmatchedBip70PaymentData : unmatchedBip70PaymentDatas) {
-      Protos.PaymentRequest paymentRequest = ((PaymentRequestData) unmatchedBip70PaymentData).getPaymentRequest().get();
-      try {
-        Protos.PaymentDetails paymentDetails = Protos.PaymentDetails.parseFrom(paymentRequest.getSerializedPaymentDetails());
-        unmatchedPaymentDetailsMap.put(((PaymentRequestData) unmatchedBip70PaymentData).getUuid(), paymentDetails);
-      } catch (InvalidProtocolBufferException ipbe) {
-        // Do nothing
-        ipbe.printStackTrace();
+      Optional<Protos.PaymentDetails> paymentDetails = getOrParsePaymentDetails((PaymentRequestData) unmatchedBip70PaymentData);
+      if (paymentDetails.isPresent()) {
+        unmatchedPaymentDetailsMap.put(((PaymentRequestData) unmatchedBip70PaymentData).getUuid(), paymentDetails.get());
       }
     }
     return unmatchedPaymentDetailsMap;
   }
 
+  /**
+   * @param paymentRequestData The BIP70 payment request data
+   *
+   * @return The parsed payment details (cached in the payment data index), absent if not parseable
+   */
+  private Optional<Protos.PaymentDetails> getOrParsePaymentDetails(PaymentRequestData paymentRequestData) {
+
+    Protos.PaymentDetails paymentDetails = paymentDataIndex.getPaymentDetails(paymentRequestData.getUuid());
+    if (paymentDetails != null) {
+      return Optional.of(paymentDetails);
+    }
+
+    if (!paymentRequestData.getPaymentRequest().isPresent()) {
+      return Optional.absent();
+    }
+
+    try {
+      paymentDetails = Protos.PaymentDetails.parseFrom(paymentRequestData.getPaymentRequest().get().getSerializedPaymentDetails());
+      paymentDataIndex.putPaymentDetails(paymentRequestData.getUuid(), paymentDetails);
+      return Optional.of(paymentDetails);
+    } catch (InvalidProtocolBufferException ipbe) {
+      // Do nothing
+      ipbe.printStackTrace();
+      return Optional.absent();
+    }
+  }
+
   public int getPaymentDataSetSize() {
     // IF lastSeenPaymentDataSet is not assigned/ empty then rebuild it to determine payment list size
     if (lastSeenPaymentDataSet == null || lastSeenPaymentDataSet.isEmpty()) {
@@ -364,48 +577,20 @@ public class WalletService extends AbstractService {
    * @param query The text fragment to match (case-insensitive, anywhere in the name)
    * @return A filtered set of Payments for the given query
    */
-  @SuppressFBWarnings({"ITC_INHERITANCE_TYPE_CHECKING"})
   public List<PaymentData> filterPaymentsByContent(String query) {
+    return filterPaymentsByContent(query, PaymentSearchIndex.Mode.SUBSTRING);
+  }
 
-    String lowerQuery = query.toLowerCase();
-
-    List<PaymentData> filteredPayments = Lists.newArrayList();
-
-    for (PaymentData paymentData : lastSeenPaymentDataSet) {
-
-      boolean isDescriptionMatched = paymentData.getDescription().toLowerCase().contains(lowerQuery);
-      boolean isNoteMatched = paymentData.getNote().toLowerCase().contains(lowerQuery);
-
-      boolean isQrCodeLabelMatched = false;
-      boolean isPaymentAddressMatched = false;
-      boolean isOutputAddressMatched = false;
-      boolean isRawTransactionMatched = false;
-
-      if (paymentData instanceof MBHDPaymentRequestData) {
-
-        MBHDPaymentRequestData MBHDPaymentRequestData = (MBHDPaymentRequestData) paymentData;
-        isQrCodeLabelMatched = MBHDPaymentRequestData.getLabel().toLowerCase().contains(lowerQuery);
-
-        // Exact match only
-        isPaymentAddressMatched = MBHDPaymentRequestData.getAddress().toString().equals(query);
-
-      } else if (paymentData instanceof TransactionData) {
-
-        TransactionData transactionData = (TransactionData) paymentData;
-        isOutputAddressMatched = Joiner.on(" ").join(transactionData.getOutputAddresses()).toLowerCase().contains(lowerQuery);
-        isRawTransactionMatched = transactionData.getRawTransaction().toLowerCase().contains(lowerQuery);
+  /**
+   * <p>Search the last seen payments using the payment search index</p>
+   *
+   * @param query The text fragment to match (case-insensitive)
+   * @param mode  The search mode (substring matches anywhere, prefix matches the start of words)
+   * @return A filtered set of Payments for the given query
+   */
+  public List<PaymentData> filterPaymentsByContent(String query, PaymentSearchIndex.Mode mode) {
 
-      }
-      if (isDescriptionMatched
-              || isNoteMatched
-              || isQrCodeLabelMatched
-              || isPaymentAddressMatched
-              || isOutputAddressMatched
-              || isRawTransactionMatched
-              ) {
-        filteredPayments.add(paymentData);
-      }
-    }
+    List<PaymentData> filteredPayments = paymentSearchIndex.search(query, mode);
 
     Collections.sort(filteredPayments, new PaymentComparator());
 
@@ -469,18 +654,6 @@ public class WalletService extends AbstractService {
     String description = calculateDescriptionAndUpdatePaymentRequests(wallet, transaction, transactionHashAsString, paymentType, amountBTC.get(), unmatchedPaymentDetailsMap);
     // Also works out outputAddresses
 
-    // Include the raw serialized form of the transaction for lowest level viewing
-    String rawTransaction = transaction.toString() + "\n" + Utils.HEX.encode(transaction.bitcoinSerialize()) + "\n";
-
-    int size = -1;
-    ByteArrayOutputStream byteOutputStream = new ByteArrayOutputStream();
-    try {
-      transaction.bitcoinSerialize(byteOutputStream);
-      size = byteOutputStream.size();
-    } catch (IOException e) {
-      log.error("Failed to serialize transaction", e);
-    }
-
     List<Address> outputAddresses = calculateOutputAddresses(transaction);
 
     // Create the DTO from the raw transaction info
@@ -497,8 +670,8 @@ public class WalletService extends AbstractService {
             description,
             transaction.isCoinBase(),
             outputAddresses,
-            rawTransaction,
-            size,
+            newRawTransactionSupplier(transaction),
+            newSizeSupplier(transaction),
             false
     );
 
@@ -509,6 +682,42 @@ public class WalletService extends AbstractService {
     return transactionData;
   }
 
+  /**
+   * <p>The raw serialized form of the transaction for lowest level viewing is only built when the
+   * transaction detail or a search requires it (TransactionData memoizes the result)</p>
+   *
+   * @param transaction The transaction
+   *
+   * @return A supplier of the raw transaction text
+   */
+  private static Supplier<String> newRawTransactionSupplier(final Transaction transaction) {
+    return new Supplier<String>() {
+      @Override
+      public String get() {
+        return transaction.toString() + "\n" + Utils.HEX.encode(transaction.bitcoinSerialize()) + "\n";
+      }
+    };
+  }
+
+  /**
+   * @param transaction The transaction
+   *
+   * @return A supplier of the serialized size of the transaction in bytes (-1 if it cannot be serialized)
+   */
+  private static Supplier<Integer> newSizeSupplier(final Transaction transaction) {
+    return new Supplier<Integer>() {
+      @Override
+      public Integer get() {
+        try {
+          return transaction.bitcoinSerialize().length;
+        } catch (RuntimeException e) {
+          log.error("Failed to serialize transaction", e);
+          return -1;
+        }
+      }
+    };
+  }
+
   /**
    * <p>Calculate the PaymentStatus of the transaction:</p>
    * <ul>
@@ -780,7 +989,9 @@ public class WalletService extends AbstractService {
     // Double check we are not overwriting an extant transactionInfo
     if (transactionInfoMap.get(transactionHashAsString) == null) {
       // Expected
-      transactionInfoMap.putIfAbsent(transactionHashAsString, newTransactionInfo);
+      if (transactionInfoMap.putIfAbsent(transactionHashAsString, newTransactionInfo) == null) {
+        journalTransactionInfo(newTransactionInfo);
+      }
     }
 
     return amountFiat;
@@ -836,12 +1047,17 @@ public class WalletService extends AbstractService {
     mbhdPaymentRequestDataMap.clear();
     transactionInfoMap.clear();
     bip70PaymentRequestDataMap.clear();
+    paymentDataIndex.invalidateAll();
+    paymentSearchIndex.clear();
+    paymentsChangeTracker.clear();
 
     if (paymentDatabaseFile.exists()) {
-      ByteArrayInputStream decryptedInputStream = EncryptedFileReaderWriter.readAndDecrypt(
-              paymentDatabaseFile,
-              password);
-      Payments payments = protobufSerializer.readPayments(decryptedInputStream);
+      Payments payments;
+      try (InputStream decryptedInputStream = EncryptedFileReaderWriter.readAndDecryptStream(paymentDatabaseFile, password)) {
+        payments = protobufSerializer.readPayments(decryptedInputStream);
+      } catch (IOException e) {
+        throw new PaymentsLoadException("Could not read payments db '" + paymentDatabaseFile.getAbsolutePath() + "'. Error was '" + e.getMessage() + "'.", e);
+      }
 
       // For quick access payment requests and transaction infos are stored in maps
       Collection<MBHDPaymentRequestData> mbhdPaymentRequestDataCollection = payments.getMBHDPaymentRequestDataCollection();
@@ -876,6 +1092,7 @@ public class WalletService extends AbstractService {
             if (wallet != null && wallet.getTransaction(transactionHashOptional.get()) == null) {
               // Transaction is not in the wallet - clear it from the paymentRequestData
               paymentRequestData.setTransactionHash(Optional.<Sha256Hash>absent());
+              paymentsChangeTracker.markPaymentRequest(paymentRequestData.getUuid());
             }
           }
 
@@ -884,6 +1101,15 @@ public class WalletService extends AbstractService {
       }
     }
 
+    // Apply the transaction info changes made since the payments database was last written
+    // They stay in the journal until the next write of the payments database
+    if (transactionInfoJournal != null) {
+      KeyParameter keyParameter = DerivedKeyCache.INSTANCE.getOrDeriveKey(password, WalletManager.scryptSalt());
+      for (TransactionInfo transactionInfo : transactionInfoJournal.replay(keyParameter)) {
+        transactionInfoMap.put(transactionInfo.getHash(), transactionInfo);
+      }
+    }
+
     Collection<PaymentRequestData> values = bip70PaymentRequestDataMap.values();
     readPaymentRequestsDataFiles(values, paymentDatabaseFile, password);
 
@@ -897,42 +1123,158 @@ public class WalletService extends AbstractService {
 
   /**
    * <p>Save the payments data to the backing store</p>
+   * <ul>
+   * <li>Nothing is written if no payments have changed since the last save</li>
+   * <li>The payments database is a single encrypted protobuf so it is rewritten as a whole</li>
+   * <li>The transaction info journal is compacted into the payments database</li>
+   * <li>Only the BIP70 files of changed payment requests are rewritten</li>
+   * </ul>
    */
-  public void writePayments(CharSequence password) throws PaymentsSaveException {
+  public synchronized void writePayments(CharSequence password) throws PaymentsSaveException {
     Preconditions.checkNotNull(paymentDatabaseFile, "'backingStoreFile' must be present. Initialise WalletService.");
     Preconditions.checkState(WalletManager.INSTANCE.getCurrentWalletSummary().isPresent(), "Current wallet summary must be present");
 
+    // Any pending write-behind save is covered by this one
+    pendingWriteRequests.set(0);
+
+    if (paymentsChangeTracker.isClean() && paymentDatabaseFile.exists() && transactionInfoJournal.isEmpty()) {
+      log.debug("No payments changes to write");
+      return;
+    }
+
+    final PaymentsChangeTracker.Changes changes = paymentsChangeTracker.takeChanges();
+
     try {
-      log.debug("Writing payments to\n'{}'", paymentDatabaseFile.getAbsolutePath());
+      log.debug("Writing payments to\n'{}' with {}", paymentDatabaseFile.getAbsolutePath(), changes);
       log.trace("Writing TransactionInfoMap: {}", transactionInfoMap);
 
-      ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream(1024);
-      Payments payments = new Payments();
+      final Payments payments = new Payments();
       Collection<TransactionInfo> transactionInfoCollection = transactionInfoMap.values();
       payments.setTransactionInfoCollection(transactionInfoCollection);
       Collection<MBHDPaymentRequestData> mbhdPaymentRequestDataCollection = mbhdPaymentRequestDataMap.values();
       payments.setMBHDPaymentRequestDataCollection(mbhdPaymentRequestDataCollection);
       Collection<PaymentRequestData> paymentRequestDataCollection = bip70PaymentRequestDataMap.values();
       payments.setPaymentRequestDataCollection(paymentRequestDataCollection);
-      protobufSerializer.writePayments(payments, byteArrayOutputStream);
-      EncryptedFileReaderWriter.encryptAndWrite(
-              byteArrayOutputStream.toByteArray(),
-              WalletManager.INSTANCE.getCurrentWalletSummary().get().getWalletPassword().getPassword(),
-              paymentDatabaseFile
-      );
+      // Appends wait so that a transaction info is always in either the payments database or the journal
+      synchronized (transactionInfoJournal) {
+        EncryptedFileReaderWriter.encryptAndWrite(
+                new EncryptedFileReaderWriter.StreamWriter() {
+                  @Override
+                  public void writeTo(OutputStream outputStream) throws IOException {
+                    protobufSerializer.writePayments(payments, outputStream);
+                  }
+                },
+                WalletManager.INSTANCE.getCurrentWalletSummary().get().getWalletPassword().getPassword(),
+                paymentDatabaseFile
+        );
+        transactionInfoJournal.truncate();
+      }
 
-      writePaymentRequestDataFiles(paymentRequestDataCollection, paymentDatabaseFile, password);
+      writePaymentRequestDataFiles(changes.getPaymentRequestUuids(), paymentDatabaseFile, password);
+
+      // Schedule backups of the changed payments
+      CoreServices.getOrCreateBackupService().markStoreDirty();
 
       log.debug(
               "Writing payments completed\nTransaction infos: {}\nMBHD payment requests: {}\nBIP70 payment requests: {}",
               transactionInfoCollection.size(), mbhdPaymentRequestDataCollection.size(),
               paymentRequestDataCollection.size());
     } catch (Exception e) {
+      // Keep the changes for the next save
+      paymentsChangeTracker.restore(changes);
       log.error("Could not write to payments db\n'{}'", paymentDatabaseFile.getAbsolutePath(), e);
       throw new PaymentsSaveException("Could not write payments db '" + paymentDatabaseFile.getAbsolutePath() + "'. Error was '" + e.getMessage() + "'.", e);
     }
   }
 
+  /**
+   * <p>Request a write-behind save of the payments, coalescing with any save already pending</p>
+   * <p>The save uses the password of the current wallet and is skipped if this is no longer the current wallet</p>
+   */
+  public void requestWritePayments() {
+
+    if (pendingWriteRequests.getAndIncrement() != 0) {
+      // A save is already pending and will include this change
+      return;
+    }
+
+    synchronized (this) {
+      if (paymentsWriteExecutor == null) {
+        paymentsWriteExecutor = ExecutorRegistry.INSTANCE.newSingleThreadScheduledExecutor("payments-write", Workload.IO);
+      }
+      pendingWrite = paymentsWriteExecutor.schedule(
+        new Runnable() {
+          @Override
+          public void run() {
+            writePaymentsBehind();
+          }
+        }, PAYMENTS_WRITE_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+  }
+
+  /**
+   * <p>Save the payments (runs on the payments write thread)</p>
+   */
+  private void writePaymentsBehind() {
+
+    int coalescedRequests = pendingWriteRequests.get();
+
+    Optional<CharSequence> password = getCurrentWalletPassword();
+    if (!password.isPresent()) {
+      log.debug("Not writing payments as the wallet is no longer the current wallet");
+      pendingWriteRequests.set(0);
+      return;
+    }
+
+    try {
+      writePayments(password.get());
+      log.debug("Write-behind of payments covered {} request(s)", coalescedRequests);
+    } catch (PaymentsSaveException pse) {
+      log.error("Failed to write payments.", pse);
+    }
+
+  }
+
+  /**
+   * @return The password of the current wallet if it is the wallet of this service
+   */
+  private Optional<CharSequence> getCurrentWalletPassword() {
+
+    Optional<WalletSummary> walletSummary = WalletManager.INSTANCE.getCurrentWalletSummary();
+    if (!walletSummary.isPresent() || !walletSummary.get().getWalletId().equals(walletId)) {
+      return Optional.absent();
+    }
+
+    return Optional.fromNullable(walletSummary.get().getWalletPassword().getPassword());
+  }
+
+  /**
+   * <p>Make a changed transaction info durable by appending it to the journal</p>
+   * <p>If the journal cannot be used the transaction info is written with the payments database instead</p>
+   *
+   * @param transactionInfo The changed transaction info (already in the transaction info map)
+   */
+  private void journalTransactionInfo(TransactionInfo transactionInfo) {
+
+    Optional<CharSequence> password = getCurrentWalletPassword();
+    if (transactionInfoJournal != null && password.isPresent()) {
+      try {
+        KeyParameter keyParameter = DerivedKeyCache.INSTANCE.getOrDeriveKey(password.get(), WalletManager.scryptSalt());
+        int records = transactionInfoJournal.append(transactionInfo, keyParameter);
+        if (records >= MAXIMUM_JOURNAL_RECORDS) {
+          // Compact the journal into the payments database
+          requestWritePayments();
+        }
+        return;
+      } catch (IOException e) {
+        log.warn("Could not append to the transaction info journal. Error was '{}'", e.getMessage());
+      }
+    }
+
+    paymentsChangeTracker.markTransactionInfo(transactionInfo.getHash());
+  }
+
   private File getOrCreateBip70PaymentRequestDirectory(File backingStoreFile) {
     // Work out the directory the raw BIP70 payment requests get written to.
     Preconditions.checkNotNull(backingStoreFile);
@@ -989,13 +1331,17 @@ public class WalletService extends AbstractService {
   }
 
   /**
-   * Write all the PaymentRequestData collection with serialized supporting BIP70 files
+   * Write the serialized supporting BIP70 files of the changed PaymentRequestData entries
    *
-   * @param paymentRequestDataCollection The collection of PaymentRequestData entries to write
-   * @param backingStoreFile             The location of the backing store
+   * @param changedUuids     The UUIDs of the changed PaymentRequestData entries
+   * @param backingStoreFile The location of the backing store
    */
-  private void writePaymentRequestDataFiles(Collection<PaymentRequestData> paymentRequestDataCollection, File backingStoreFile, CharSequence password) throws EncryptedFileReaderWriterException {
-    Preconditions.checkNotNull(paymentRequestDataCollection);
+  private void writePaymentRequestDataFiles(Set<UUID> changedUuids, File backingStoreFile, CharSequence password) throws EncryptedFileReaderWriterException {
+    Preconditions.checkNotNull(changedUuids);
+
+    if (changedUuids.isEmpty()) {
+      return;
+    }
 
     // Work out the directory the raw BIP70 payment requests get written to.
     File bip70PaymentRequestDirectory = new File(backingStoreFile.getParent() + File.separator + BIP70_PAYMENT_REQUEST_DIRECTORY);
@@ -1006,45 +1352,43 @@ public class WalletService extends AbstractService {
       }
     }
 
-    // Write all the payment requests, payments and paymentACKS to disk, encrypted with the wallet password
-    // Existing files are not overwritten
-    for (PaymentRequestData paymentRequestData : paymentRequestDataCollection) {
-      File paymentRequestFile = getPaymentRequestFile(paymentRequestData.getUuid(), backingStoreFile);
-      if (!paymentRequestFile.exists()) {
-        // Write the PaymentRequest
-        if (paymentRequestData.getPaymentRequest().isPresent()) {
-          byte[] serialisedBytes = paymentRequestData.getPaymentRequest().get().toByteArray();
-          EncryptedFileReaderWriter.encryptAndWriteDirect(
-                  serialisedBytes,
-                  password, paymentRequestFile);
-          log.debug("Written serialised bytes of unencrypted length {} to output file\n'{}'", serialisedBytes.length, paymentRequestFile.getAbsolutePath());
-        }
+    // Write the changed payment requests, payments and paymentACKS to disk, encrypted with the wallet password
+    // Unchanged entries already have their files so are not written again
+    for (UUID uuid : changedUuids) {
+      PaymentRequestData paymentRequestData = bip70PaymentRequestDataMap.get(uuid);
+      if (paymentRequestData == null) {
+        // Deleted since it changed (the delete removes the files)
+        continue;
       }
 
-      File paymentFile = getPaymentFile(paymentRequestData.getUuid(), backingStoreFile);
-      if (!paymentFile.exists()) {
-        // Write the Payment
-        if (paymentRequestData.getPayment().isPresent()) {
-          byte[] serialisedBytes = paymentRequestData.getPayment().get().toByteArray();
-
-          EncryptedFileReaderWriter.encryptAndWriteDirect(
-                  serialisedBytes,
-                  password, paymentFile);
-          log.debug("Written serialised bytes of unencrypted length {} to output file\n'{}'", serialisedBytes.length, paymentFile.getAbsolutePath());
-        }
+      // Write the PaymentRequest
+      if (paymentRequestData.getPaymentRequest().isPresent()) {
+        File paymentRequestFile = getPaymentRequestFile(uuid, backingStoreFile);
+        byte[] serialisedBytes = paymentRequestData.getPaymentRequest().get().toByteArray();
+        EncryptedFileReaderWriter.encryptAndWriteDirect(
+                serialisedBytes,
+                password, paymentRequestFile);
+        log.debug("Written serialised bytes of unencrypted length {} to output file\n'{}'", serialisedBytes.length, paymentRequestFile.getAbsolutePath());
       }
 
-      File paymentACKFile = getPaymentACKFile(paymentRequestData.getUuid(), backingStoreFile);
-      if (!paymentACKFile.exists()) {
-        // Write the PaymentACK
-        if (paymentRequestData.getPaymentACK().isPresent()) {
-          byte[] serialisedBytes = paymentRequestData.getPaymentACK().get().toByteArray();
-
-          EncryptedFileReaderWriter.encryptAndWriteDirect(
-                  serialisedBytes,
-                  password, paymentACKFile);
-          log.debug("Written serialised bytes of unencrypted length {} to output file\n'{}'", serialisedBytes.length, paymentACKFile.getAbsolutePath());
-        }
+      // Write the Payment
+      if (paymentRequestData.getPayment().isPresent()) {
+        File paymentFile = getPaymentFile(uuid, backingStoreFile);
+        byte[] serialisedBytes = paymentRequestData.getPayment().get().toByteArray();
+        EncryptedFileReaderWriter.encryptAndWriteDirect(
+                serialisedBytes,
+                password, paymentFile);
+        log.debug("Written serialised bytes of unencrypted length {} to output file\n'{}'", serialisedBytes.length, paymentFile.getAbsolutePath());
+      }
+
+      // Write the PaymentACK
+      if (paymentRequestData.getPaymentACK().isPresent()) {
+        File paymentACKFile = getPaymentACKFile(uuid, backingStoreFile);
+        byte[] serialisedBytes = paymentRequestData.getPaymentACK().get().toByteArray();
+        EncryptedFileReaderWriter.encryptAndWriteDirect(
+                serialisedBytes,
+                password, paymentACKFile);
+        log.debug("Written serialised bytes of unencrypted length {} to output file\n'{}'", serialisedBytes.length, paymentACKFile.getAbsolutePath());
       }
     }
   }
@@ -1124,7 +1468,14 @@ public class WalletService extends AbstractService {
   }
 
   public void addMBHDPaymentRequestData(MBHDPaymentRequestData MBHDPaymentRequestData) {
-    mbhdPaymentRequestDataMap.put(MBHDPaymentRequestData.getAddress(), MBHDPaymentRequestData);
+    MBHDPaymentRequestData previous = mbhdPaymentRequestDataMap.put(MBHDPaymentRequestData.getAddress(), MBHDPaymentRequestData);
+    paymentsChangeTracker.markMBHDPaymentRequest(MBHDPaymentRequestData.getAddress());
+
+    // The label or note may have been edited in place so re-index it
+    paymentSearchIndex.replace(previous, MBHDPaymentRequestData);
+
+    // Any transactions paying this address need their description and paid amounts recalculated
+    paymentDataIndex.markDirtyByOutputAddress(MBHDPaymentRequestData.getAddress());
   }
 
   /**
@@ -1138,13 +1489,37 @@ public class WalletService extends AbstractService {
       paymentRequestData.setAmountFiat(calculateFiatPaymentEquivalent(paymentRequestData.getAmountCoin().or(Coin.ZERO)));
     }
 
-    bip70PaymentRequestDataMap.put(paymentRequestData.getUuid(), paymentRequestData);
+    PaymentRequestData previous = bip70PaymentRequestDataMap.put(paymentRequestData.getUuid(), paymentRequestData);
+    paymentsChangeTracker.markPaymentRequest(paymentRequestData.getUuid());
+
+    // The note may have been edited in place so re-index it
+    paymentSearchIndex.replace(previous, paymentRequestData);
+
+    // Re-parse the payment details in case they have changed
+    paymentDataIndex.removePaymentDetails(paymentRequestData.getUuid());
+
+    // An unmatched payment request may be matched by transactions paying to its outputs
+    if (!paymentRequestData.getTransactionHash().isPresent()) {
+      Optional<Protos.PaymentDetails> paymentDetails = getOrParsePaymentDetails(paymentRequestData);
+      if (paymentDetails.isPresent()) {
+        for (Protos.Output output : paymentDetails.get().getOutputsList()) {
+          Script script = new Script(output.getScript().toByteArray());
+          if (script.isSentToAddress()) {
+            paymentDataIndex.markDirtyByOutputAddress(script.getToAddress(networkParameters));
+          }
+        }
+      }
+    }
 
     log.debug("Adding payment request data: {}", paymentRequestData);
   }
 
   public void addTransactionInfo(TransactionInfo transactionInfo) {
     transactionInfoMap.put(transactionInfo.getHash(), transactionInfo);
+    journalTransactionInfo(transactionInfo);
+
+    // The note, fiat amount and fee may have changed
+    paymentDataIndex.markDirty(transactionInfo.getHash());
   }
 
   public TransactionInfo getTransactionInfoByHash(String transactionHashAsString) {
@@ -1371,6 +1746,10 @@ public class WalletService extends AbstractService {
   public void deleteMBHDPaymentRequest(MBHDPaymentRequestData mbhdPaymentRequestData) {
     undoDeletePaymentDataStack.push(mbhdPaymentRequestData);
     mbhdPaymentRequestDataMap.remove(mbhdPaymentRequestData.getAddress());
+    paymentsChangeTracker.markDeleted();
+
+    // Any transactions paying this address no longer include the request label in their description
+    paymentDataIndex.markDirtyByOutputAddress(mbhdPaymentRequestData.getAddress());
   }
 
   /**
@@ -1379,6 +1758,8 @@ public class WalletService extends AbstractService {
   public void deletePaymentRequest(PaymentRequestData paymentRequestData) {
     undoDeletePaymentDataStack.push(paymentRequestData);
     bip70PaymentRequestDataMap.remove(paymentRequestData.getUuid());
+    paymentsChangeTracker.markDeleted();
+    paymentDataIndex.removePaymentDetails(paymentRequestData.getUuid());
 
     // Delete the serialised payment request file
     File paymentRequestFile = getPaymentRequestFile(paymentRequestData.getUuid(), paymentDatabaseFile);
@@ -1487,7 +1868,7 @@ public class WalletService extends AbstractService {
    */
   public static void changeCurrentWalletPassword(final String oldPassword, final String newPassword) {
     if (executorService == null) {
-      executorService = SafeExecutors.newSingleThreadExecutor("wallet-service");
+      executorService = ExecutorRegistry.INSTANCE.newSingleThreadExecutor("wallet-service", Workload.IO);
     }
 
     executorService.submit(
@@ -1530,6 +1911,9 @@ public class WalletService extends AbstractService {
       log.debug("File to change password on {}", file.getAbsolutePath());
     }
 
+    // The journal records are encrypted with the old password so they must be compacted into the payments database
+    File transactionInfoJournalFile = getTransactionInfoJournalFile(applicationDataDirectory, walletId);
+
     // Close the Network connection to stop writes to the wallet + payments database whilst we are rewriting files
     // Close  Contacts / Payments
     CoreServices.shutdownNow(ShutdownEvent.ShutdownType.SWITCH);
@@ -1544,6 +1928,11 @@ public class WalletService extends AbstractService {
     InstallationManager.shutdownNow(ShutdownEvent.ShutdownType.SWITCH);
 
     try {
+      // Shutting down the wallet service compacts the journal so any records left could not be written
+      if (!new TransactionInfoJournal(transactionInfoJournalFile).isEmpty()) {
+        throw new IllegalStateException("The transaction info journal could not be written to the payments database. Aborting change of wallet credentials");
+      }
+
       // Decrypt the seedDerivedAESKey using the old credentials and encrypt it with the new one
       byte[] encryptedOldBackupAESKey = walletSummary.getEncryptedBackupKey();
 
@@ -1589,7 +1978,19 @@ public class WalletService extends AbstractService {
       }
 
       // Change the password on all the non-wallet files, save them to disk but don't do the "rename existing + rename new + delete old" commit
-      List<File> newFiles = EncryptedFileReaderWriter.changeEncryptionPrepare(filesToChangePassword, oldPassword, newPassword);
+      // The keys are derived once and the files are re-encrypted in parallel
+      CoreEvents.fireChangePasswordProgressEvent(new ChangePasswordProgressEvent(0, filesToChangePassword.size()));
+      List<File> newFiles = EncryptedFileReaderWriter.changeEncryptionPrepare(
+              filesToChangePassword,
+              DerivedKeyCache.INSTANCE.getOrDeriveKey(oldPassword, WalletManager.scryptSalt()),
+              DerivedKeyCache.INSTANCE.getOrDeriveKey(newPassword, WalletManager.scryptSalt()),
+              Optional.<EncryptedFileReaderWriter.ProgressListener>of(
+                      new EncryptedFileReaderWriter.ProgressListener() {
+                        @Override
+                        public void onProgress(int filesDone, int totalFiles) {
+                          CoreEvents.fireChangePasswordProgressEvent(new ChangePasswordProgressEvent(filesDone, totalFiles));
+                        }
+                      }));
 
       // Change the credentials used to encrypt the wallet
       wallet.decrypt(oldPassword);
@@ -1599,6 +2000,9 @@ public class WalletService extends AbstractService {
 
       // WALLET WAS ENCRYPTED OK - SAVE EVERYTHING WITH NEW PASSWORD
 
+      // Start a new wallet session key cache for the new password
+      DerivedKeyCache.INSTANCE.open(walletId, newPassword, WalletManager.scryptSalt());
+
       // Save the new encrypted backup key using the new password
       walletSummary.setEncryptedBackupKey(encryptedNewBackupAESKey);
 
@@ -1632,6 +2036,12 @@ public class WalletService extends AbstractService {
     }
   }
 
+  private static File getTransactionInfoJournalFile(File applicationDataDirectory, WalletId walletId) {
+    String currentWalletDirectoryPath = WalletManager.getOrCreateWalletDirectory(applicationDataDirectory, WalletManager.createWalletRoot(walletId)).getAbsolutePath();
+
+    return new File(currentWalletDirectoryPath + File.separator + PAYMENTS_DIRECTORY_NAME + File.separator + TRANSACTION_INFO_JOURNAL_NAME);
+  }
+
   private static List<File> createListOfFilesToChangePassword(File applicationDataDirectory, WalletId walletId) {
     String currentWalletDirectoryPath = WalletManager.getOrCreateWalletDirectory(applicationDataDirectory, WalletManager.createWalletRoot(walletId)).getAbsolutePath();
 
@@ -1674,6 +2084,9 @@ public class WalletService extends AbstractService {
   @Subscribe
   public void onTransactionSeenEvent(TransactionSeenEvent transactionSeenEvent) {
 
+    // Ensure the payment data index examines this transaction on the next refresh
+    paymentDataIndex.markPending(transactionSeenEvent.getTransactionId());
+
     // If not in the transaction info map create on and add
     if (transactionInfoMap.get(transactionSeenEvent.getTransactionId()) == null) {
 
@@ -1713,6 +2126,7 @@ public class WalletService extends AbstractService {
 
         // Use the atomic putIfAbsent to ensure we don't overwrite
         if (transactionInfoMap.putIfAbsent(transactionSeenEvent.getTransactionId(), transactionInfo) == null) {
+          journalTransactionInfo(transactionInfo);
           log.debug("Created TransactionInfo: {}", transactionInfo);
         } else {
           log.debug("Not adding transactionInfo - another process has already added transactionInfo: {}", transactionInfo);
@@ -0,0 +1,246 @@
+package org.multibit.hd.core.store;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Maps;
+import com.google.common.collect.SetMultimap;
+import com.google.common.collect.Sets;
+import org.bitcoinj.core.Address;
+import org.multibit.hd.core.dto.Contact;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * <p>In-memory index to provide the following to ContactService:</p>
+ * <ul>
+ * <li>Hash lookup of contacts by Bitcoin address</li>
+ * <li>Hash lookup of contacts by exact (case insensitive) name</li>
+ * <li>Sorted word suffix index over name, email, notes and tags for substring candidates</li>
+ * </ul>
+ * <p>Each word of a field is indexed by all of its suffixes (truncated to {@value #MAX_SUFFIX_LENGTH} characters)
+ * so a prefix range lookup finds every contact with a word containing a given run of letters or digits.
+ * Candidates are a superset of the matches and must be verified by the caller against the full query.</p>
+ * <p>Contacts are edited in place so the index must be told about edits through {@link #add(Contact)}.</p>
+ */
+public class ContactSearchIndex {
+
+  /**
+   * The maximum length of an indexed word suffix (longer query words are truncated before lookup)
+   */
+  public static final int MAX_SUFFIX_LENGTH = 16;
+
+  /**
+   * The indexed state of each contact (keyed by contact ID through equality)
+   */
+  private final Map<Contact, Entry> entries = Maps.newHashMap();
+
+  private final SetMultimap<Address, Contact> contactsByAddress = HashMultimap.create();
+
+  private final SetMultimap<String, Contact> contactsByName = HashMultimap.create();
+
+  private final NavigableMap<String, Set<Contact>> contactsBySuffix = new TreeMap<>();
+
+  /**
+   * <p>Add or re-index a contact (e.g. after it has been edited)</p>
+   *
+   * @param contact The contact
+   */
+  public synchronized void add(Contact contact) {
+
+    remove(contact);
+
+    Entry entry = new Entry(contact);
+    entries.put(contact, entry);
+
+    if (entry.address != null) {
+      contactsByAddress.put(entry.address, contact);
+    }
+    contactsByName.put(entry.lowerName, contact);
+
+    for (String suffix : entry.suffixes) {
+      Set<Contact> suffixContacts = contactsBySuffix.get(suffix);
+      if (suffixContacts == null) {
+        suffixContacts = Sets.newHashSet();
+        contactsBySuffix.put(suffix, suffixContacts);
+      }
+      suffixContacts.add(contact);
+    }
+
+  }
+
+  /**
+   * @param contacts The contacts to add or re-index
+   */
+  public synchronized void addAll(Collection<Contact> contacts) {
+    for (Contact contact : contacts) {
+      add(contact);
+    }
+  }
+
+  /**
+   * @param contact The contact to remove
+   */
+  public synchronized void remove(Contact contact) {
+
+    Entry entry = entries.remove(contact);
+    if (entry == null) {
+      return;
+    }
+
+    if (entry.address != null) {
+      contactsByAddress.remove(entry.address, entry.contact);
+    }
+    contactsByName.remove(entry.lowerName, entry.contact);
+
+    for (String suffix : entry.suffixes) {
+      Set<Contact> suffixContacts = contactsBySuffix.get(suffix);
+      if (suffixContacts != null) {
+        suffixContacts.remove(entry.contact);
+        if (suffixContacts.isEmpty()) {
+          contactsBySuffix.remove(suffix);
+        }
+      }
+    }
+
+  }
+
+  /**
+   * @param contacts The contacts to remove
+   */
+  public synchronized void removeAll(Collection<Contact> contacts) {
+    for (Contact contact : contacts) {
+      remove(contact);
+    }
+  }
+
+  /**
+   * <p>Remove all contacts</p>
+   */
+  public synchronized void clear() {
+    entries.clear();
+    contactsByAddress.clear();
+    contactsByName.clear();
+    contactsBySuffix.clear();
+  }
+
+  /**
+   * @param address The Bitcoin address
+   *
+   * @return The contacts with the given Bitcoin address
+   */
+  public synchronized Set<Contact> findByBitcoinAddress(Address address) {
+    return Sets.newHashSet(contactsByAddress.get(address));
+  }
+
+  /**
+   * @param lowerName The lower case name
+   *
+   * @return The contacts whose lower case name equals the given name
+   */
+  public synchronized Set<Contact> findByName(String lowerName) {
+    return Sets.newHashSet(contactsByName.get(lowerName));
+  }
+
+  /**
+   * @param lowerQuery The lower case query
+   *
+   * @return The contacts with a word containing every run of letters or digits in the query,
+   * or absent if the query has no such runs and the caller must scan
+   */
+  public synchronized Optional<Set<Contact>> findCandidates(String lowerQuery) {
+
+    Set<String> queryWords = Sets.newHashSet();
+    addWords(lowerQuery, queryWords);
+
+    if (queryWords.isEmpty()) {
+      return Optional.absent();
+    }
+
+    Set<Contact> candidates = null;
+    for (String queryWord : queryWords) {
+
+      String key = truncate(queryWord);
+
+      Set<Contact> wordCandidates = Sets.newHashSet();
+      for (Set<Contact> suffixContacts : contactsBySuffix.subMap(key, true, key + Character.MAX_VALUE, false).values()) {
+        wordCandidates.addAll(suffixContacts);
+      }
+
+      if (candidates == null) {
+        candidates = wordCandidates;
+      } else {
+        candidates.retainAll(wordCandidates);
+      }
+      if (candidates.isEmpty()) {
+        break;
+      }
+    }
+
+    return Optional.of(candidates);
+  }
+
+  /**
+   * @return The number of indexed contacts
+   */
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  private static String truncate(String text) {
+    return text.length() > MAX_SUFFIX_LENGTH ? text.substring(0, MAX_SUFFIX_LENGTH) : text;
+  }
+
+  /**
+   * <p>Add the words (runs of letters or digits) of the (lower case) text</p>
+   */
+  private static void addWords(String text, Set<String> target) {
+    int start = -1;
+    for (int i = 0; i <= text.length(); i++) {
+      boolean wordCharacter = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+      if (wordCharacter && start < 0) {
+        start = i;
+      } else if (!wordCharacter && start >= 0) {
+        target.add(text.substring(start, i));
+        start = -1;
+      }
+    }
+  }
+
+  /**
+   * <p>The indexed keys of a contact, captured so that they can be removed after the contact is edited</p>
+   */
+  private static class Entry {
+
+    private final Contact contact;
+    private final Address address;
+    private final String lowerName;
+    private final Set<String> suffixes = Sets.newHashSet();
+
+    private Entry(Contact contact) {
+
+      this.contact = contact;
+      this.address = contact.getBitcoinAddress().orNull();
+      this.lowerName = contact.getName().toLowerCase();
+
+      Set<String> words = Sets.newHashSet();
+      addWords(lowerName, words);
+      addWords(contact.getEmail().or("").toLowerCase(), words);
+      addWords(contact.getNotes().or("").toLowerCase(), words);
+      List<String> tags = contact.getTags();
+      for (String tag : tags) {
+        addWords(tag.toLowerCase(), words);
+      }
+
+      for (String word : words) {
+        for (int i = 0; i < word.length(); i++) {
+          suffixes.add(truncate(word.substring(i)));
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,373 @@
+package org.multibit.hd.core.store;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import org.bitcoinj.core.NetworkParameters;
+import org.bitcoinj.core.ProtocolException;
+import org.bitcoinj.core.StoredBlock;
+import org.bitcoinj.store.BlockStore;
+import org.bitcoinj.store.BlockStoreException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <p>Archive to provide the following to BlockStoreManager:</p>
+ * <ul>
+ * <li>A single read-only (memory mapped) archive of best chain headers shared by all wallets</li>
+ * <li>Seeding of a new or replayed wallet block store at the latest archived header before the key birthday</li>
+ * <li>Refreshing the archive from a wallet block store after it has synced</li>
+ * </ul>
+ * <p>The archive holds consecutive headers in the compact block store form, starting at a difficulty transition
+ * so a seeded block store always holds the blocks needed to check the next transition.</p>
+ * <p>The archive file is only ever replaced as a whole so a reader never sees a partly written archive.</p>
+ */
+public class HeaderArchive {
+
+  private static final Logger log = LoggerFactory.getLogger(HeaderArchive.class);
+
+  private static final int ARCHIVE_MAGIC = 0x4d424841; // "MBHA"
+  private static final int ARCHIVE_VERSION = 1;
+
+  /**
+   * About a year of headers (5MB)
+   */
+  public static final int MAXIMUM_ARCHIVE_HEADERS = 26 * 2016;
+
+  /**
+   * The offset of the little endian header timestamp within a compact stored block
+   * (chain work, height, then the header version, previous hash and merkle root)
+   */
+  private static final int TIME_OFFSET = StoredBlock.CHAIN_WORK_BYTES + 4 + 4 + 32 + 32;
+
+  /**
+   * Seed a week before the birthday to allow for inaccurate block timestamps (as the bitcoinj checkpoints do)
+   */
+  private static final long SEED_MARGIN_SECONDS = 7 * 24 * 60 * 60;
+
+  /**
+   * All wallets share the one archive file
+   */
+  private static final Object lock = new Object();
+
+  private final NetworkParameters networkParameters;
+
+  private final File archiveFile;
+
+  /**
+   * @param networkParameters The Bitcoin network parameters
+   * @param archiveFile       The shared header archive file
+   */
+  public HeaderArchive(NetworkParameters networkParameters, File archiveFile) {
+
+    Preconditions.checkNotNull(networkParameters, "'networkParameters' must be present");
+    Preconditions.checkNotNull(archiveFile, "'archiveFile' must be present");
+
+    this.networkParameters = networkParameters;
+    this.archiveFile = archiveFile;
+
+  }
+
+  /**
+   * <p>Seed the block store with the archived headers from the last difficulty transition up to the latest
+   * archived header mined at least a week before the given time</p>
+   * <p>Nothing is done if the block store chain head is already at or beyond that header</p>
+   *
+   * @param blockStore  The block store (usually just checkpointed)
+   * @param timeSeconds The key birthday or replay date in seconds since the epoch
+   *
+   * @return The new chain head if the block store was seeded
+   *
+   * @throws BlockStoreException If the block store cannot be written
+   */
+  public Optional<StoredBlock> seed(BlockStore blockStore, long timeSeconds) throws BlockStoreException {
+
+    Preconditions.checkNotNull(blockStore, "'blockStore' must be present");
+
+    synchronized (lock) {
+
+      Optional<Archive> archive = openArchive(true);
+      if (!archive.isPresent()) {
+        return Optional.absent();
+      }
+      Archive headers = archive.get();
+
+      // Latest header mined before the seed time
+      long seedTimeSeconds = timeSeconds - SEED_MARGIN_SECONDS;
+      int seedIndex = headers.count - 1;
+      while (seedIndex >= 0 && headers.getTimeSeconds(seedIndex) > seedTimeSeconds) {
+        seedIndex--;
+      }
+      if (seedIndex < 0) {
+        log.debug("No archived header is early enough to seed from");
+        return Optional.absent();
+      }
+
+      int seedHeight = headers.firstHeight + seedIndex;
+      StoredBlock chainHead = blockStore.getChainHead();
+      if (chainHead != null && chainHead.getHeight() >= seedHeight) {
+        log.debug("Block store is already at height {}. Not seeding from height {}", chainHead.getHeight(), seedHeight);
+        return Optional.absent();
+      }
+
+      // The archive starts at a difficulty transition so the last one before the seed is always present
+      int interval = networkParameters.getInterval();
+      int transitionIndex = Math.max(0, seedHeight - (seedHeight % interval) - headers.firstHeight);
+
+      try {
+        StoredBlock seedBlock = null;
+        for (int i = transitionIndex; i <= seedIndex; i++) {
+          seedBlock = headers.getStoredBlock(i);
+          blockStore.put(seedBlock);
+        }
+        blockStore.setChainHead(seedBlock);
+
+        log.debug("Seeded block store with {} archived header(s) up to height {}", seedIndex - transitionIndex + 1, seedHeight);
+
+        return Optional.of(seedBlock);
+      } catch (BufferUnderflowException | ProtocolException e) {
+        // Treat a damaged archive as absent (the checkpoint is still in place)
+        log.warn("Header archive could not be read. Error was '{}'", e.getMessage());
+        return Optional.absent();
+      }
+    }
+
+  }
+
+  /**
+   * <p>Add the best chain headers in the block store to the archive</p>
+   * <p>The block store is walked back from its chain head until it joins the archive so a synced wallet
+   * only adds the headers it has downloaded since the archive was last refreshed</p>
+   *
+   * @param blockStore The block store of a (synced) wallet
+   *
+   * @return The number of headers added
+   *
+   * @throws BlockStoreException If the block store cannot be read
+   * @throws IOException         If the archive cannot be written
+   */
+  public int update(BlockStore blockStore) throws BlockStoreException, IOException {
+
+    Preconditions.checkNotNull(blockStore, "'blockStore' must be present");
+
+    synchronized (lock) {
+
+      // Read into memory rather than mapping so the archive file can be replaced on all platforms
+      Optional<Archive> archive = openArchive(false);
+      Archive headers = archive.isPresent() ? archive.get() : null;
+
+      List<StoredBlock> newBlocks = Lists.newArrayList();
+      int joinIndex = -1;
+      StoredBlock cursor = blockStore.getChainHead();
+      while (cursor != null && newBlocks.size() < MAXIMUM_ARCHIVE_HEADERS) {
+        if (headers != null) {
+          joinIndex = headers.indexOf(cursor);
+          if (joinIndex >= 0) {
+            break;
+          }
+        }
+        newBlocks.add(cursor);
+        cursor = cursor.getPrev(blockStore);
+      }
+      newBlocks = Lists.reverse(newBlocks);
+
+      if (newBlocks.isEmpty()) {
+        return 0;
+      }
+
+      if (joinIndex < 0 && headers != null && headers.count > 0) {
+        // The block store may start just after the end of the archive
+        StoredBlock first = newBlocks.get(0);
+        StoredBlock tip = headers.getStoredBlock(headers.count - 1);
+        if (first.getHeight() == tip.getHeight() + 1 && first.getHeader().getPrevBlockHash().equals(tip.getHeader().getHash())) {
+          joinIndex = headers.count - 1;
+        } else if (newBlocks.get(newBlocks.size() - 1).getHeight() <= tip.getHeight()) {
+          // Never replace the archive with a shorter unconnected chain (e.g. a wallet that has not synced yet)
+          log.debug("Block store does not extend the header archive");
+          return 0;
+        }
+      }
+
+      // Keep the archived headers up to the join and drop the rest (a different or out of date chain)
+      int keepCount = joinIndex + 1;
+      int firstHeight = keepCount > 0 ? headers.firstHeight : newBlocks.get(0).getHeight();
+      int count = keepCount + newBlocks.size();
+
+      // Trim to size and start at a difficulty transition
+      int dropCount = Math.max(0, count - MAXIMUM_ARCHIVE_HEADERS);
+      int interval = networkParameters.getInterval();
+      int remainder = (firstHeight + dropCount) % interval;
+      if (remainder != 0) {
+        dropCount += interval - remainder;
+      }
+      if (dropCount >= count) {
+        log.debug("Not enough headers to archive from height {}", firstHeight);
+        return 0;
+      }
+
+      writeArchive(headers, keepCount, newBlocks, firstHeight, dropCount, count);
+
+      log.debug("Header archive now covers {} header(s) from height {}", count - dropCount, firstHeight + dropCount);
+
+      return newBlocks.size();
+    }
+
+  }
+
+  /**
+   * <p>Write the archive to a temporary file and then replace the current archive with it</p>
+   */
+  private void writeArchive(Archive headers, int keepCount, List<StoredBlock> newBlocks, int firstHeight, int dropCount, int count) throws IOException {
+
+    File temporaryFile = new File(archiveFile.getParentFile(), archiveFile.getName() + ".tmp");
+
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryFile)))) {
+      out.writeInt(ARCHIVE_MAGIC);
+      out.writeInt(ARCHIVE_VERSION);
+      out.writeUTF(networkParameters.getId());
+      out.writeInt(firstHeight + dropCount);
+      out.writeInt(count - dropCount);
+
+      byte[] record = new byte[StoredBlock.COMPACT_SERIALIZED_SIZE];
+      for (int i = dropCount; i < keepCount; i++) {
+        headers.copyRecord(i, record);
+        out.write(record);
+      }
+      ByteBuffer buffer = ByteBuffer.wrap(record);
+      for (int i = Math.max(0, dropCount - keepCount); i < newBlocks.size(); i++) {
+        buffer.clear();
+        newBlocks.get(i).serializeCompact(buffer);
+        out.write(record);
+      }
+    }
+
+    try {
+      Files.move(temporaryFile.toPath(), archiveFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      // Usually the old archive is still mapped by a reader (Windows) so try again next time
+      if (!temporaryFile.delete()) {
+        log.debug("Could not delete '{}'", temporaryFile.getAbsolutePath());
+      }
+      throw e;
+    }
+
+  }
+
+  /**
+   * @param memoryMapped True to map the archive file, false to read it into memory
+   *
+   * @return The archive if it is present and was written for these network parameters
+   */
+  private Optional<Archive> openArchive(boolean memoryMapped) {
+
+    if (!archiveFile.exists()) {
+      return Optional.absent();
+    }
+
+    try (RandomAccessFile randomAccessFile = new RandomAccessFile(archiveFile, "r");
+         FileChannel channel = randomAccessFile.getChannel()) {
+
+      ByteBuffer buffer;
+      if (memoryMapped) {
+        // The mapping remains valid after the channel is closed
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      } else {
+        buffer = ByteBuffer.allocate((int) channel.size());
+        while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+          // Keep reading
+        }
+        buffer.flip();
+      }
+
+      if (buffer.getInt() != ARCHIVE_MAGIC || buffer.getInt() != ARCHIVE_VERSION) {
+        log.debug("Ignoring header archive with an unknown format");
+        return Optional.absent();
+      }
+      byte[] id = new byte[buffer.getShort() & 0xffff];
+      buffer.get(id);
+      if (!networkParameters.getId().equals(new String(id, Charsets.UTF_8))) {
+        log.debug("Ignoring header archive for another network");
+        return Optional.absent();
+      }
+      int firstHeight = buffer.getInt();
+      int count = buffer.getInt();
+      if (count < 0 || buffer.remaining() < (long) count * StoredBlock.COMPACT_SERIALIZED_SIZE) {
+        log.warn("Ignoring truncated header archive");
+        return Optional.absent();
+      }
+
+      return Optional.of(new Archive(firstHeight, count, buffer.slice()));
+
+    } catch (IOException | BufferUnderflowException e) {
+      log.warn("Header archive could not be opened. Error was '{}'", e.getMessage());
+      return Optional.absent();
+    }
+
+  }
+
+  /**
+   * <p>A view of the archived headers</p>
+   */
+  private class Archive {
+
+    private final int firstHeight;
+
+    private final int count;
+
+    private final ByteBuffer records;
+
+    private Archive(int firstHeight, int count, ByteBuffer records) {
+      this.firstHeight = firstHeight;
+      this.count = count;
+      this.records = records;
+    }
+
+    private long getTimeSeconds(int index) {
+      int offset = index * StoredBlock.COMPACT_SERIALIZED_SIZE + TIME_OFFSET;
+      return records.duplicate().order(ByteOrder.LITTLE_ENDIAN).getInt(offset) & 0xffffffffL;
+    }
+
+    private StoredBlock getStoredBlock(int index) {
+      ByteBuffer record = records.duplicate();
+      record.position(index * StoredBlock.COMPACT_SERIALIZED_SIZE);
+      return StoredBlock.deserializeCompact(networkParameters, record);
+    }
+
+    private void copyRecord(int index, byte[] record) {
+      ByteBuffer source = records.duplicate();
+      source.position(index * StoredBlock.COMPACT_SERIALIZED_SIZE);
+      source.get(record);
+    }
+
+    /**
+     * @return The index of the block in the archive or -1 if it is not archived
+     */
+    private int indexOf(StoredBlock block) {
+      int index = block.getHeight() - firstHeight;
+      if (index < 0 || index >= count) {
+        return -1;
+      }
+      byte[] record = new byte[StoredBlock.COMPACT_SERIALIZED_SIZE];
+      copyRecord(index, record);
+      ByteBuffer expected = ByteBuffer.allocate(StoredBlock.COMPACT_SERIALIZED_SIZE);
+      block.serializeCompact(expected);
+      return Arrays.equals(record, expected.array()) ? index : -1;
+    }
+  }
+}
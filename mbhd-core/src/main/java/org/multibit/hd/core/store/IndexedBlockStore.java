@@ -0,0 +1,472 @@
+package org.multibit.hd.core.store;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import org.bitcoinj.core.NetworkParameters;
+import org.bitcoinj.core.Sha256Hash;
+import org.bitcoinj.core.StoredBlock;
+import org.bitcoinj.store.BlockStore;
+import org.bitcoinj.store.BlockStoreException;
+import org.bitcoinj.store.SPVBlockStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * <p>Block store to provide the following to BitcoinNetworkService:</p>
+ * <ul>
+ * <li>Delegation of all storage to the underlying (SPV) block store</li>
+ * <li>A compact side index of the height, timestamp and hash of each block on the best chain</li>
+ * <li>Binary search of the index for the replay start block rather than walking back from the chain head</li>
+ * </ul>
+ * <p>The index is kept in a side file next to the block store. It is appended to as the chain head advances,
+ * resynchronised after a re-org and rebuilt from the block store if it is missing or does not match the chain head.</p>
+ * <p>The index always reaches back at least as far as the best chain blocks held in the block store.</p>
+ */
+public class IndexedBlockStore implements BlockStore {
+
+  private static final Logger log = LoggerFactory.getLogger(IndexedBlockStore.class);
+
+  private static final int INDEX_MAGIC = 0x4d424849; // "MBHI"
+  private static final int INDEX_VERSION = 1;
+  private static final int HASH_LENGTH = 32;
+
+  /**
+   * The index is trimmed back to the block store capacity once it grows beyond twice that
+   */
+  private static final int MAXIMUM_INDEX_ENTRIES = 2 * SPVBlockStore.DEFAULT_NUM_HEADERS;
+
+  private final BlockStore blockStore;
+
+  private final File indexFile;
+
+  /**
+   * The height of the first entry (entries have consecutive heights)
+   */
+  private int firstHeight;
+
+  private int count;
+
+  private int[] times = new int[1024];
+
+  /**
+   * The latest timestamp up to and including each entry so the index can be binary searched even though
+   * block timestamps are only approximately increasing
+   */
+  private int[] maximumTimes = new int[1024];
+
+  private Sha256Hash[] hashes = new Sha256Hash[1024];
+
+  private DataOutputStream indexOutputStream;
+
+  private boolean indexAvailable = true;
+
+  /**
+   * @param blockStore The block store to index
+   * @param indexFile  The side file holding the index
+   *
+   * @throws BlockStoreException If the block store cannot be read
+   */
+  public IndexedBlockStore(BlockStore blockStore, File indexFile) throws BlockStoreException {
+
+    Preconditions.checkNotNull(blockStore, "'blockStore' must be present");
+    Preconditions.checkNotNull(indexFile, "'indexFile' must be present");
+
+    this.blockStore = blockStore;
+    this.indexFile = indexFile;
+
+    openIndex();
+
+  }
+
+  @Override
+  public void put(StoredBlock block) throws BlockStoreException {
+    blockStore.put(block);
+  }
+
+  @Override
+  public StoredBlock get(Sha256Hash hash) throws BlockStoreException {
+    return blockStore.get(hash);
+  }
+
+  @Override
+  public StoredBlock getChainHead() throws BlockStoreException {
+    return blockStore.getChainHead();
+  }
+
+  @Override
+  public void setChainHead(StoredBlock chainHead) throws BlockStoreException {
+    blockStore.setChainHead(chainHead);
+    onChainHead(chainHead);
+  }
+
+  @Override
+  public synchronized void close() throws BlockStoreException {
+    closeIndexOutputStream();
+    blockStore.close();
+  }
+
+  @Override
+  public NetworkParameters getParams() {
+    return blockStore.getParams();
+  }
+
+  /**
+   * <p>Find the block to start a replay from using the index</p>
+   * <p>The block returned is never later than the one found by walking back from the chain head to the first
+   * block with an earlier timestamp (it can be a little earlier if block timestamps are out of order)</p>
+   * <p>If the index is not available or the indexed block has since left the block store the walk back from
+   * the chain head is used instead</p>
+   *
+   * @param date The replay date
+   *
+   * @return The latest indexed block on the best chain with a timestamp (and all earlier timestamps) before the date,
+   * or absent if there is none
+   *
+   * @throws BlockStoreException If the block store cannot be read
+   */
+  public Optional<StoredBlock> findStoredBlockBefore(Date date) throws BlockStoreException {
+
+    Preconditions.checkNotNull(date, "'date' must be present");
+
+    Sha256Hash hash;
+    synchronized (this) {
+      if (!indexAvailable || count == 0) {
+        return walkBackFromChainHead(date);
+      }
+
+      // Binary search for the last entry with every timestamp up to it before the date
+      long dateMillis = date.getTime();
+      int low = 0;
+      int high = count - 1;
+      int found = -1;
+      while (low <= high) {
+        int middle = (low + high) >>> 1;
+        if (maximumTimes[middle] * 1000L < dateMillis) {
+          found = middle;
+          low = middle + 1;
+        } else {
+          high = middle - 1;
+        }
+      }
+      if (found < 0) {
+        // The index reaches back at least as far as the block store so a walk would not find one either
+        return Optional.absent();
+      }
+      hash = hashes[found];
+    }
+
+    // A single lookup rather than a walk back from the chain head
+    StoredBlock storedBlock = blockStore.get(hash);
+    if (storedBlock == null) {
+      log.debug("Indexed block {} is no longer in the block store. Walking back from the chain head", hash);
+      return walkBackFromChainHead(date);
+    }
+    return Optional.of(storedBlock);
+  }
+
+  /**
+   * @param date The replay date
+   *
+   * @return The first block with a timestamp before the date walking back from the chain head, or absent if
+   * the block store runs out first
+   *
+   * @throws BlockStoreException If the block store cannot be read
+   */
+  private Optional<StoredBlock> walkBackFromChainHead(Date date) throws BlockStoreException {
+
+    StoredBlock cursor = blockStore.getChainHead();
+    while (cursor != null) {
+      if (cursor.getHeader().getTime().before(date)) {
+        return Optional.of(cursor);
+      }
+      // Null once the block store is exhausted
+      cursor = cursor.getPrev(blockStore);
+    }
+    return Optional.absent();
+
+  }
+
+  /**
+   * <p>Check the indexed heights for a difficulty transition without reading the block store</p>
+   * <p>Since the index reaches back at least as far as the block store, a negative result means a walk back
+   * through the block store from the height cannot find a transition either</p>
+   *
+   * @param height   The height to look back from
+   * @param interval The number of blocks between difficulty transitions
+   *
+   * @return True if a difficulty transition height lies above the first indexed height and at or below the height
+   */
+  public synchronized boolean mayHaveDifficultyTransitionBelow(int height, int interval) {
+
+    Preconditions.checkState(interval > 0, "'interval' must be positive");
+
+    if (!indexAvailable || count == 0) {
+      // Cannot tell
+      return true;
+    }
+    int lastTransitionHeight = height - (height % interval);
+    return lastTransitionHeight > firstHeight;
+  }
+
+  /**
+   * @return The number of blocks in the index
+   */
+  public synchronized int getIndexSize() {
+    return count;
+  }
+
+  /**
+   * <p>Keep the index in step with the best chain</p>
+   *
+   * @param chainHead The new chain head
+   */
+  private synchronized void onChainHead(StoredBlock chainHead) throws BlockStoreException {
+
+    if (!indexAvailable) {
+      return;
+    }
+
+    try {
+      if (count > 0
+        && chainHead.getHeight() == firstHeight + count
+        && chainHead.getHeader().getPrevBlockHash().equals(hashes[count - 1])) {
+        // The usual case - the chain head has advanced by one block
+        appendEntry(chainHead);
+        writeEntry(chainHead);
+        if (count > MAXIMUM_INDEX_ENTRIES) {
+          trim();
+          writeIndex();
+        }
+      } else if (!matches(chainHead)) {
+        // A re-org, a checkpoint or a replay so find the common ancestor
+        resynchronise(chainHead);
+        writeIndex();
+      }
+    } catch (IOException e) {
+      disableIndex(e);
+    }
+
+  }
+
+  /**
+   * <p>Read the index, rebuilding it if it does not match the chain head</p>
+   */
+  private synchronized void openIndex() throws BlockStoreException {
+
+    StoredBlock chainHead = blockStore.getChainHead();
+
+    try {
+      if (indexFile.exists()) {
+        readIndex();
+      }
+
+      if (chainHead != null && !matches(chainHead)) {
+        log.debug("Header index does not match the chain head at height {}. Rebuilding", chainHead.getHeight());
+        resynchronise(chainHead);
+        writeIndex();
+      } else {
+        indexOutputStream = newIndexOutputStream(true);
+      }
+      log.debug("Header index covers {} block(s) from height {}", count, firstHeight);
+    } catch (IOException e) {
+      disableIndex(e);
+    }
+
+  }
+
+  /**
+   * @return True if the block is the last entry in the index
+   */
+  private boolean matches(StoredBlock block) {
+    return count > 0
+      && block.getHeight() == firstHeight + count - 1
+      && block.getHeader().getHash().equals(hashes[count - 1]);
+  }
+
+  /**
+   * <p>Walk back from the chain head to the first block that is already indexed (or the start of the block store)
+   * and replace the entries above it</p>
+   */
+  private void resynchronise(StoredBlock chainHead) throws BlockStoreException {
+
+    List<StoredBlock> newBlocks = Lists.newArrayList();
+    StoredBlock cursor = chainHead;
+    while (cursor != null && !isIndexed(cursor)) {
+      newBlocks.add(cursor);
+      cursor = cursor.getPrev(blockStore);
+    }
+
+    if (cursor == null) {
+      // No common ancestor so the index holds exactly the best chain in the block store
+      count = 0;
+    } else {
+      count = cursor.getHeight() - firstHeight + 1;
+    }
+    for (StoredBlock block : Lists.reverse(newBlocks)) {
+      appendEntry(block);
+    }
+    if (count > MAXIMUM_INDEX_ENTRIES) {
+      trim();
+    }
+
+    log.debug("Header index resynchronised with {} new block(s)", newBlocks.size());
+
+  }
+
+  /**
+   * @return True if the block is in the index
+   */
+  private boolean isIndexed(StoredBlock block) {
+    int index = block.getHeight() - firstHeight;
+    return count > 0 && index >= 0 && index < count && block.getHeader().getHash().equals(hashes[index]);
+  }
+
+  private void appendEntry(StoredBlock block) {
+    appendEntry(block.getHeight(), (int) block.getHeader().getTimeSeconds(), block.getHeader().getHash());
+  }
+
+  private void appendEntry(int height, int time, Sha256Hash hash) {
+    if (count == 0) {
+      firstHeight = height;
+    }
+    if (count == times.length) {
+      int capacity = times.length * 2;
+      times = Arrays.copyOf(times, capacity);
+      maximumTimes = Arrays.copyOf(maximumTimes, capacity);
+      hashes = Arrays.copyOf(hashes, capacity);
+    }
+    times[count] = time;
+    maximumTimes[count] = count == 0 ? time : Math.max(maximumTimes[count - 1], time);
+    hashes[count] = hash;
+    count++;
+  }
+
+  /**
+   * <p>Keep only as many of the latest entries as the block store can hold</p>
+   */
+  private void trim() {
+    int keep = SPVBlockStore.DEFAULT_NUM_HEADERS;
+    int drop = count - keep;
+    System.arraycopy(times, drop, times, 0, keep);
+    System.arraycopy(hashes, drop, hashes, 0, keep);
+    Arrays.fill(hashes, keep, count, null);
+    firstHeight += drop;
+    count = keep;
+    // The running maximum must restart from the new first entry
+    maximumTimes[0] = times[0];
+    for (int i = 1; i < count; i++) {
+      maximumTimes[i] = Math.max(maximumTimes[i - 1], times[i]);
+    }
+  }
+
+  private void readIndex() throws IOException {
+
+    count = 0;
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+      if (in.readInt() != INDEX_MAGIC || in.readInt() != INDEX_VERSION) {
+        log.debug("Ignoring header index with an unknown format");
+        return;
+      }
+      byte[] hashBytes = new byte[HASH_LENGTH];
+      while (true) {
+        int height;
+        try {
+          height = in.readInt();
+        } catch (EOFException e) {
+          break;
+        }
+        int time = in.readInt();
+        in.readFully(hashBytes);
+        if (count > 0 && height != firstHeight + count) {
+          throw new IOException("Header index is not contiguous at height " + height);
+        }
+        appendEntry(height, time, Sha256Hash.wrap(Arrays.copyOf(hashBytes, HASH_LENGTH)));
+      }
+    } catch (EOFException e) {
+      // A partly written final entry (e.g. after a crash) is caught by the chain head check
+      log.debug("Header index was truncated after {} entries", count);
+    } catch (IOException e) {
+      log.warn("Header index could not be read. Rebuilding. Error was '{}'", e.getMessage());
+      count = 0;
+    }
+
+  }
+
+  /**
+   * <p>Rewrite the whole index and reopen it for appending</p>
+   */
+  private void writeIndex() throws IOException {
+
+    closeIndexOutputStream();
+
+    try (DataOutputStream out = newIndexOutputStream(false)) {
+      out.writeInt(INDEX_MAGIC);
+      out.writeInt(INDEX_VERSION);
+      for (int i = 0; i < count; i++) {
+        out.writeInt(firstHeight + i);
+        out.writeInt(times[i]);
+        out.write(hashes[i].getBytes());
+      }
+    }
+
+    indexOutputStream = newIndexOutputStream(true);
+
+  }
+
+  private void writeEntry(StoredBlock block) throws IOException {
+    indexOutputStream.writeInt(block.getHeight());
+    indexOutputStream.writeInt((int) block.getHeader().getTimeSeconds());
+    indexOutputStream.write(block.getHeader().getHash().getBytes());
+    // Entries are buffered so a long sync does not cost a write per block (a lost tail is rebuilt on open)
+  }
+
+  private DataOutputStream newIndexOutputStream(boolean append) throws IOException {
+    return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile, append)));
+  }
+
+  private void closeIndexOutputStream() {
+    if (indexOutputStream != null) {
+      try {
+        indexOutputStream.close();
+      } catch (IOException e) {
+        log.warn("Header index could not be closed. Error was '{}'", e.getMessage());
+      }
+      indexOutputStream = null;
+    }
+  }
+
+  /**
+   * <p>Fall back to walking the block store rather than fail the block chain</p>
+   */
+  private void disableIndex(IOException e) {
+    log.warn("Header index is not available. Error was '{}'", e.getMessage());
+    indexAvailable = false;
+    count = 0;
+    closeIndexOutputStream();
+    if (indexFile.exists() && !indexFile.delete()) {
+      log.warn("Could not delete header index '{}'", indexFile.getAbsolutePath());
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "IndexedBlockStore{" +
+      "blockStore=" + blockStore +
+      ", indexSize=" + count +
+      '}';
+  }
+}
@@ -0,0 +1,323 @@
+package org.multibit.hd.core.store;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.SetMultimap;
+import com.google.common.collect.Sets;
+import org.bitcoin.protocols.payments.Protos;
+import org.bitcoinj.core.Address;
+import org.bitcoinj.core.TransactionConfidence;
+import org.bitcoinj.core.Wallet;
+import org.multibit.hd.core.dto.TransactionData;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * <p>In-memory index to provide the following to WalletService:</p>
+ * <ul>
+ * <li>Adapted TransactionData keyed by transaction hash</li>
+ * <li>Tracking of which transactions need a full re-adapt and which only need a status check</li>
+ * <li>Lookup of transactions by output address so payment request changes only touch affected entries</li>
+ * <li>Parsed BIP70 PaymentDetails keyed by payment request UUID</li>
+ * </ul>
+ * <p>The index is updated incrementally from transaction seen events and payment request changes.
+ * A full reconcile against the wallet is only needed when the wallet or its transaction count changes
+ * in a way that events do not explain (e.g. replay or reset).</p>
+ * <p>All methods are synchronized so that the index can be updated from the event bus while views take snapshots.</p>
+ */
+public class PaymentDataIndex {
+
+  /**
+   * The adapted transactions keyed by transaction hash
+   */
+  private final Map<String, Entry> entries = Maps.newHashMap();
+
+  /**
+   * The transaction hashes keyed by each output address of the transaction
+   */
+  private final SetMultimap<Address, String> hashesByOutputAddress = HashMultimap.create();
+
+  /**
+   * Transactions that have been seen since the last refresh and need at least a status check
+   */
+  private final Set<String> pendingHashes = Sets.newHashSet();
+
+  /**
+   * Transactions that need a full re-adapt (a subset of pending)
+   */
+  private final Set<String> dirtyHashes = Sets.newHashSet();
+
+  /**
+   * Parsed payment details for BIP70 payment requests
+   */
+  private final Map<UUID, Protos.PaymentDetails> paymentDetailsMap = Maps.newHashMap();
+
+  /**
+   * The wallet the index was last reconciled against (identity only)
+   */
+  private Wallet reconciledWallet = null;
+
+  /**
+   * The number of wallet transactions at the last reconcile or incremental update
+   */
+  private int reconciledTransactionCount = -1;
+
+  private long fullAdaptCount = 0;
+  private long statusRefreshCount = 0;
+
+  /**
+   * @param wallet           The current wallet
+   * @param transactionCount The current number of transactions in the wallet
+   *
+   * @return True if the index cannot be brought up to date incrementally
+   */
+  public synchronized boolean isReconcileRequired(Wallet wallet, int transactionCount) {
+    return reconciledWallet != wallet || reconciledTransactionCount != transactionCount;
+  }
+
+  /**
+   * <p>Record that the index now reflects the wallet with the given transaction count</p>
+   *
+   * @param wallet           The current wallet
+   * @param transactionCount The number of transactions in the wallet
+   */
+  public synchronized void markReconciled(Wallet wallet, int transactionCount) {
+    reconciledWallet = wallet;
+    reconciledTransactionCount = transactionCount;
+  }
+
+  /**
+   * <p>Force every entry to be re-adapted and the index to be reconciled on the next refresh</p>
+   */
+  public synchronized void invalidateAll() {
+    dirtyHashes.addAll(entries.keySet());
+    pendingHashes.addAll(entries.keySet());
+    paymentDetailsMap.clear();
+    reconciledWallet = null;
+    reconciledTransactionCount = -1;
+  }
+
+  /**
+   * <p>Remove all entries (e.g. when the wallet is switched)</p>
+   */
+  public synchronized void clear() {
+    entries.clear();
+    hashesByOutputAddress.clear();
+    pendingHashes.clear();
+    dirtyHashes.clear();
+    paymentDetailsMap.clear();
+    reconciledWallet = null;
+    reconciledTransactionCount = -1;
+  }
+
+  /**
+   * @param transactionHash The transaction hash that has been seen (new or changed confidence)
+   */
+  public synchronized void markPending(String transactionHash) {
+    pendingHashes.add(transactionHash);
+  }
+
+  /**
+   * @param transactionHash The transaction hash whose adapted form is out of date (e.g. new note)
+   */
+  public synchronized void markDirty(String transactionHash) {
+    pendingHashes.add(transactionHash);
+    dirtyHashes.add(transactionHash);
+  }
+
+  /**
+   * @param address The address whose paying transactions need to be re-adapted (e.g. payment request added)
+   */
+  public synchronized void markDirtyByOutputAddress(Address address) {
+    for (String transactionHash : hashesByOutputAddress.get(address)) {
+      markDirty(transactionHash);
+    }
+  }
+
+  /**
+   * @return The transaction hashes to check, clearing the pending set
+   */
+  public synchronized Set<String> drainPendingHashes() {
+    Set<String> drained = Sets.newHashSet(pendingHashes);
+    pendingHashes.clear();
+    return drained;
+  }
+
+  /**
+   * @param transactionHash The transaction hash
+   *
+   * @return True if the transaction has never been adapted or has been marked dirty
+   */
+  public synchronized boolean isFullAdaptRequired(String transactionHash) {
+    return !entries.containsKey(transactionHash) || dirtyHashes.contains(transactionHash);
+  }
+
+  /**
+   * @param transactionHash The transaction hash
+   * @param confidenceType  The current confidence type
+   * @param depth           The current depth in blocks
+   * @param numberOfPeers   The current number of broadcast peers
+   *
+   * @return True if the indexed entry was adapted with a different confidence
+   */
+  public synchronized boolean isConfidenceChanged(String transactionHash, TransactionConfidence.ConfidenceType confidenceType, int depth, int numberOfPeers) {
+    Entry entry = entries.get(transactionHash);
+    return entry == null || !entry.hasConfidence(confidenceType, depth, numberOfPeers);
+  }
+
+  /**
+   * @param transactionHash The transaction hash
+   *
+   * @return The indexed transaction data, or null if absent
+   */
+  public synchronized TransactionData get(String transactionHash) {
+    Entry entry = entries.get(transactionHash);
+    return entry == null ? null : entry.transactionData;
+  }
+
+  /**
+   * <p>Add or replace an adapted transaction</p>
+   *
+   * @param transactionData The adapted transaction data
+   * @param confidenceType  The confidence type it was adapted with
+   * @param depth           The depth it was adapted with
+   * @param numberOfPeers   The number of broadcast peers it was adapted with
+   * @param fullAdapt       True if this was a full adapt (clears the dirty flag)
+   */
+  public synchronized void put(TransactionData transactionData, TransactionConfidence.ConfidenceType confidenceType, int depth, int numberOfPeers, boolean fullAdapt) {
+
+    String transactionHash = transactionData.getTransactionId();
+
+    Entry previous = entries.put(transactionHash, new Entry(transactionData, confidenceType, depth, numberOfPeers));
+    if (previous != null) {
+      removeOutputAddresses(transactionHash, previous.transactionData.getOutputAddresses());
+    }
+
+    if (transactionData.getOutputAddresses() != null) {
+      for (Address address : transactionData.getOutputAddresses()) {
+        hashesByOutputAddress.put(address, transactionHash);
+      }
+    }
+
+    if (fullAdapt) {
+      dirtyHashes.remove(transactionHash);
+      fullAdaptCount++;
+    } else {
+      statusRefreshCount++;
+    }
+  }
+
+  /**
+   * @param transactionHash The transaction hash to remove (e.g. no longer in the wallet)
+   */
+  public synchronized void remove(String transactionHash) {
+    Entry previous = entries.remove(transactionHash);
+    if (previous != null) {
+      removeOutputAddresses(transactionHash, previous.transactionData.getOutputAddresses());
+    }
+    dirtyHashes.remove(transactionHash);
+    pendingHashes.remove(transactionHash);
+  }
+
+  /**
+   * @param transactionHashes The transaction hashes to keep, all others are removed
+   */
+  public synchronized void retainAll(Set<String> transactionHashes) {
+    for (String transactionHash : Lists.newArrayList(entries.keySet())) {
+      if (!transactionHashes.contains(transactionHash)) {
+        remove(transactionHash);
+      }
+    }
+  }
+
+  /**
+   * @return A snapshot of the indexed transaction data (unaffected by later updates)
+   */
+  public synchronized List<TransactionData> snapshotTransactionData() {
+    List<TransactionData> snapshot = Lists.newArrayListWithCapacity(entries.size());
+    for (Entry entry : entries.values()) {
+      snapshot.add(entry.transactionData);
+    }
+    return snapshot;
+  }
+
+  /**
+   * @return The number of indexed transactions
+   */
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  /**
+   * @param uuid The BIP70 payment request UUID
+   *
+   * @return The cached parsed payment details, or null if not yet parsed
+   */
+  public synchronized Protos.PaymentDetails getPaymentDetails(UUID uuid) {
+    return paymentDetailsMap.get(uuid);
+  }
+
+  /**
+   * @param uuid           The BIP70 payment request UUID
+   * @param paymentDetails The parsed payment details
+   */
+  public synchronized void putPaymentDetails(UUID uuid, Protos.PaymentDetails paymentDetails) {
+    paymentDetailsMap.put(uuid, paymentDetails);
+  }
+
+  /**
+   * @param uuid The BIP70 payment request UUID to forget
+   */
+  public synchronized void removePaymentDetails(UUID uuid) {
+    paymentDetailsMap.remove(uuid);
+  }
+
+  /**
+   * @return The number of full transaction adaptations performed since creation
+   */
+  public synchronized long getFullAdaptCount() {
+    return fullAdaptCount;
+  }
+
+  /**
+   * @return The number of cheap status refreshes performed since creation
+   */
+  public synchronized long getStatusRefreshCount() {
+    return statusRefreshCount;
+  }
+
+  private void removeOutputAddresses(String transactionHash, Collection<Address> outputAddresses) {
+    if (outputAddresses != null) {
+      for (Address address : outputAddresses) {
+        hashesByOutputAddress.remove(address, transactionHash);
+      }
+    }
+  }
+
+  /**
+   * <p>An adapted transaction and the confidence it was adapted with</p>
+   */
+  private static class Entry {
+
+    private final TransactionData transactionData;
+    private final TransactionConfidence.ConfidenceType confidenceType;
+    private final int depth;
+    private final int numberOfPeers;
+
+    private Entry(TransactionData transactionData, TransactionConfidence.ConfidenceType confidenceType, int depth, int numberOfPeers) {
+      this.transactionData = transactionData;
+      this.confidenceType = confidenceType;
+      this.depth = depth;
+      this.numberOfPeers = numberOfPeers;
+    }
+
+    private boolean hasConfidence(TransactionConfidence.ConfidenceType otherConfidenceType, int otherDepth, int otherNumberOfPeers) {
+      return confidenceType == otherConfidenceType && depth == otherDepth && numberOfPeers == otherNumberOfPeers;
+    }
+  }
+}
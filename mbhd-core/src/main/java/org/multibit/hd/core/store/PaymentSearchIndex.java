@@ -0,0 +1,633 @@
+package org.multibit.hd.core.store;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import org.multibit.hd.core.dto.MBHDPaymentRequestData;
+import org.multibit.hd.core.dto.PaymentData;
+import org.multibit.hd.core.dto.TransactionData;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * <p>In-memory inverted index to provide the following to WalletService:</p>
+ * <ul>
+ * <li>Substring search over payment description, note, label, transaction ID, output addresses and raw transaction text</li>
+ * <li>Prefix search over the words of the same fields apart from the raw transaction text</li>
+ * <li>Exact match on payment request addresses</li>
+ * </ul>
+ * <p>Substring queries of {@value #GRAM_LENGTH} or more characters are answered by intersecting
+ * trigram posting lists and then verifying the (few) candidates with {@link #matches(PaymentData, String)},
+ * so results are always identical to a linear scan. Shorter queries match most payments anyway and fall back to a scan.</p>
+ * <p>The raw transaction text is built on demand so its trigrams are kept apart and only added when a substring
+ * search first needs them. It is left out of the word index since it is mostly hex.</p>
+ * <p>Documents are tracked by identity. Replacing a payment with a new instance re-indexes it, removed documents are
+ * tombstoned and compacted away once they outnumber the live ones.</p>
+ * <p>All methods are synchronized so that the index can be updated by the wallet service while views search it.</p>
+ */
+public class PaymentSearchIndex {
+
+  /**
+   * The length of the character n-grams used for substring search
+   */
+  public static final int GRAM_LENGTH = 3;
+
+  /**
+   * The search modes supported by the index
+   */
+  public enum Mode {
+
+    /**
+     * The query (case insensitive) appears anywhere in a searchable field
+     */
+    SUBSTRING,
+
+    /**
+     * Every word of the query (case insensitive) starts a word in a searchable field
+     */
+    PREFIX,
+
+    // End of enum
+    ;
+
+  }
+
+  /**
+   * The indexed documents by ID (null if removed)
+   */
+  private final List<PaymentData> documents = Lists.newArrayList();
+
+  /**
+   * The document IDs keyed by document identity
+   */
+  private final Map<PaymentData, Integer> documentIds = new IdentityHashMap<>();
+
+  /**
+   * The posting lists keyed by packed trigram
+   */
+  private final Map<Long, Postings> grams = Maps.newHashMap();
+
+  /**
+   * The posting lists of the raw transaction text keyed by packed trigram
+   */
+  private final Map<Long, Postings> rawTextGrams = Maps.newHashMap();
+
+  /**
+   * The transaction document IDs (in increasing order) whose raw text is not yet in the raw text trigrams
+   */
+  private final List<Integer> rawTextPending = Lists.newArrayList();
+
+  /**
+   * The posting lists keyed by word (sorted for prefix range lookups)
+   */
+  private final NavigableMap<String, Postings> words = new TreeMap<>();
+
+  /**
+   * The posting lists keyed by payment request address (case sensitive, exact match only)
+   */
+  private final Map<String, Postings> addresses = Maps.newHashMap();
+
+  private int removedCount = 0;
+
+  /**
+   * <p>Bring the index in line with the given payments, indexing new instances and removing missing ones</p>
+   *
+   * @param paymentDataCollection The current payments
+   */
+  public synchronized void update(Collection<? extends PaymentData> paymentDataCollection) {
+
+    Set<PaymentData> current = Sets.newIdentityHashSet();
+    current.addAll(paymentDataCollection);
+
+    for (PaymentData paymentData : Lists.newArrayList(documentIds.keySet())) {
+      if (!current.contains(paymentData)) {
+        remove(paymentData);
+      }
+    }
+
+    for (PaymentData paymentData : current) {
+      if (!documentIds.containsKey(paymentData)) {
+        add(paymentData);
+      }
+    }
+
+    compactIfRequired();
+
+  }
+
+  /**
+   * <p>Remove a payment so that it is re-indexed on the next update (e.g. its label or note has been edited in place)</p>
+   *
+   * @param paymentData The payment to remove
+   */
+  public synchronized void remove(PaymentData paymentData) {
+
+    Integer documentId = documentIds.remove(paymentData);
+    if (documentId != null) {
+      documents.set(documentId, null);
+      removedCount++;
+    }
+
+  }
+
+  /**
+   * <p>Re-index a payment that has been edited in place or replaced by a new instance</p>
+   * <p>Payments that are not in the index are left for the next update to add.</p>
+   *
+   * @param previous    The payment as indexed (may be the same instance as the new one, or null if none)
+   * @param paymentData The current payment
+   */
+  public synchronized void replace(PaymentData previous, PaymentData paymentData) {
+
+    boolean indexed = documentIds.containsKey(paymentData) || (previous != null && documentIds.containsKey(previous));
+
+    if (previous != null) {
+      remove(previous);
+    }
+    remove(paymentData);
+
+    if (indexed) {
+      add(paymentData);
+    }
+
+    compactIfRequired();
+
+  }
+
+  /**
+   * <p>Remove all documents</p>
+   */
+  public synchronized void clear() {
+
+    documents.clear();
+    documentIds.clear();
+    grams.clear();
+    rawTextGrams.clear();
+    rawTextPending.clear();
+    words.clear();
+    addresses.clear();
+    removedCount = 0;
+
+  }
+
+  /**
+   * @return The number of indexed payments
+   */
+  public synchronized int size() {
+    return documentIds.size();
+  }
+
+  /**
+   * @param query The query text
+   * @param mode  The search mode
+   *
+   * @return The matching payments (unsorted)
+   */
+  public synchronized List<PaymentData> search(String query, Mode mode) {
+
+    switch (mode) {
+      case SUBSTRING:
+        return searchSubstring(query);
+      case PREFIX:
+        return searchPrefix(query);
+      default:
+        throw new IllegalStateException("Unknown search mode: " + mode);
+    }
+
+  }
+
+  /**
+   * <p>The payment search rules, used to verify index candidates and by callers performing a plain scan</p>
+   *
+   * @param paymentData The payment
+   * @param query       The query text
+   *
+   * @return True if the payment matches the query
+   */
+  @SuppressFBWarnings({"ITC_INHERITANCE_TYPE_CHECKING"})
+  public static boolean matches(PaymentData paymentData, String query) {
+
+    String lowerQuery = query.toLowerCase();
+
+    if (containsLowerCase(paymentData.getDescription(), lowerQuery) || containsLowerCase(paymentData.getNote(), lowerQuery)) {
+      return true;
+    }
+
+    if (paymentData instanceof MBHDPaymentRequestData) {
+
+      MBHDPaymentRequestData mbhdPaymentRequestData = (MBHDPaymentRequestData) paymentData;
+
+      // Exact match only on the address
+      return containsLowerCase(mbhdPaymentRequestData.getLabel(), lowerQuery)
+        || (mbhdPaymentRequestData.getAddress() != null && mbhdPaymentRequestData.getAddress().toString().equals(query));
+
+    } else if (paymentData instanceof TransactionData) {
+
+      TransactionData transactionData = (TransactionData) paymentData;
+
+      return containsLowerCase(transactionData.getTransactionId(), lowerQuery)
+        || containsLowerCase(joinOutputAddresses(transactionData), lowerQuery)
+        || containsLowerCase(transactionData.getRawTransaction(), lowerQuery);
+
+    }
+
+    return false;
+  }
+
+  private List<PaymentData> searchSubstring(String query) {
+
+    String lowerQuery = query.toLowerCase();
+
+    if (lowerQuery.length() < GRAM_LENGTH) {
+      // Too short to narrow down with n-grams so verify everything
+      List<PaymentData> results = Lists.newArrayList();
+      for (PaymentData paymentData : documentIds.keySet()) {
+        if (matches(paymentData, query)) {
+          results.add(paymentData);
+        }
+      }
+      return results;
+    }
+
+    indexRawText();
+
+    // Every n-gram of the query must appear in the fields or the raw text of a matching document
+    long[] queryGrams = packGrams(Collections.singletonList(lowerQuery));
+    Set<Integer> candidates = Sets.newHashSet();
+    addCandidates(grams, queryGrams, candidates);
+    addCandidates(rawTextGrams, queryGrams, candidates);
+
+    // Exact address matches are not covered by the n-grams
+    Postings addressPostings = addresses.get(query);
+    if (addressPostings != null) {
+      addressPostings.addLiveTo(documents, candidates);
+    }
+
+    List<PaymentData> results = Lists.newArrayList();
+    for (Integer documentId : candidates) {
+      PaymentData paymentData = documents.get(documentId);
+      if (paymentData != null && matches(paymentData, query)) {
+        results.add(paymentData);
+      }
+    }
+
+    return results;
+  }
+
+  private List<PaymentData> searchPrefix(String query) {
+
+    Set<String> queryWords = Sets.newHashSet();
+    addWords(query.toLowerCase(), queryWords);
+
+    Set<Integer> candidates = null;
+    for (String queryWord : queryWords) {
+
+      Set<Integer> wordMatches = Sets.newHashSet();
+      for (Postings postings : words.subMap(queryWord, true, queryWord + Character.MAX_VALUE, false).values()) {
+        postings.addLiveTo(documents, wordMatches);
+      }
+
+      if (candidates == null) {
+        candidates = wordMatches;
+      } else {
+        candidates.retainAll(wordMatches);
+      }
+      if (candidates.isEmpty()) {
+        break;
+      }
+    }
+
+    if (candidates == null) {
+      // No words in the query so everything matches
+      candidates = Sets.newHashSet(documentIds.values());
+    }
+
+    Postings addressPostings = addresses.get(query);
+    if (addressPostings != null) {
+      addressPostings.addLiveTo(documents, candidates);
+    }
+
+    List<PaymentData> results = Lists.newArrayListWithCapacity(candidates.size());
+    for (Integer documentId : candidates) {
+      results.add(documents.get(documentId));
+    }
+
+    return results;
+  }
+
+  /**
+   * <p>Add the documents holding every query n-gram in the given posting lists to the candidates</p>
+   */
+  private void addCandidates(Map<Long, Postings> gramPostings, long[] queryGrams, Set<Integer> candidates) {
+
+    List<Postings> postingsList = Lists.newArrayList();
+    for (long queryGram : queryGrams) {
+      Postings postings = gramPostings.get(queryGram);
+      if (postings == null) {
+        return;
+      }
+      postingsList.add(postings);
+    }
+
+    if (!postingsList.isEmpty()) {
+      intersect(postingsList, candidates);
+    }
+
+  }
+
+  /**
+   * <p>Add the raw text of the transactions indexed since the last substring search (building it if required)</p>
+   */
+  private void indexRawText() {
+
+    for (Integer documentId : rawTextPending) {
+      PaymentData paymentData = documents.get(documentId);
+      if (paymentData == null) {
+        continue;
+      }
+      String rawTransaction = ((TransactionData) paymentData).getRawTransaction();
+      if (rawTransaction == null) {
+        continue;
+      }
+      addPostings(rawTextGrams, packGrams(Collections.singletonList(rawTransaction.toLowerCase())), documentId);
+    }
+    rawTextPending.clear();
+
+  }
+
+  private static void addPostings(Map<Long, Postings> gramPostings, long[] packedGrams, int documentId) {
+
+    for (long gram : packedGrams) {
+      Postings postings = gramPostings.get(gram);
+      if (postings == null) {
+        postings = new Postings();
+        gramPostings.put(gram, postings);
+      }
+      postings.add(documentId);
+    }
+
+  }
+
+  private void add(PaymentData paymentData) {
+
+    int documentId = documents.size();
+    documents.add(paymentData);
+    documentIds.put(paymentData, documentId);
+
+    List<String> lowerFields = Lists.newArrayList();
+    Set<String> documentWords = Sets.newHashSet();
+
+    for (String field : searchableFields(paymentData)) {
+      String lowerField = field.toLowerCase();
+      lowerFields.add(lowerField);
+      addWords(lowerField, documentWords);
+    }
+
+    addPostings(grams, packGrams(lowerFields), documentId);
+
+    if (paymentData instanceof TransactionData) {
+      rawTextPending.add(documentId);
+    }
+
+    for (String word : documentWords) {
+      Postings postings = words.get(word);
+      if (postings == null) {
+        postings = new Postings();
+        words.put(word, postings);
+      }
+      postings.add(documentId);
+    }
+
+    if (paymentData instanceof MBHDPaymentRequestData && ((MBHDPaymentRequestData) paymentData).getAddress() != null) {
+      String address = ((MBHDPaymentRequestData) paymentData).getAddress().toString();
+      Postings postings = addresses.get(address);
+      if (postings == null) {
+        postings = new Postings();
+        addresses.put(address, postings);
+      }
+      postings.add(documentId);
+    }
+
+  }
+
+  /**
+   * <p>Renumber the live documents and drop tombstones once they outnumber the live documents</p>
+   */
+  private void compactIfRequired() {
+
+    if (removedCount == 0 || removedCount < documentIds.size()) {
+      return;
+    }
+
+    int[] newIds = new int[documents.size()];
+    List<PaymentData> liveDocuments = Lists.newArrayListWithCapacity(documentIds.size());
+    for (int i = 0; i < documents.size(); i++) {
+      PaymentData paymentData = documents.get(i);
+      if (paymentData == null) {
+        newIds[i] = -1;
+      } else {
+        newIds[i] = liveDocuments.size();
+        liveDocuments.add(paymentData);
+        documentIds.put(paymentData, newIds[i]);
+      }
+    }
+
+    documents.clear();
+    documents.addAll(liveDocuments);
+    removedCount = 0;
+
+    List<Integer> livePending = Lists.newArrayListWithCapacity(rawTextPending.size());
+    for (Integer documentId : rawTextPending) {
+      if (newIds[documentId] >= 0) {
+        livePending.add(newIds[documentId]);
+      }
+    }
+    rawTextPending.clear();
+    rawTextPending.addAll(livePending);
+
+    compact(grams.values(), newIds);
+    compact(rawTextGrams.values(), newIds);
+    compact(words.values(), newIds);
+    compact(addresses.values(), newIds);
+
+  }
+
+  private static void compact(Collection<Postings> postingsCollection, int[] newIds) {
+
+    for (Iterator<Postings> iterator = postingsCollection.iterator(); iterator.hasNext(); ) {
+      Postings postings = iterator.next();
+      postings.renumber(newIds);
+      if (postings.size == 0) {
+        iterator.remove();
+      }
+    }
+
+  }
+
+  /**
+   * <p>Intersect posting lists, smallest first, adding the live document IDs to the result</p>
+   */
+  private void intersect(List<Postings> postingsList, Set<Integer> result) {
+
+    Collections.sort(postingsList, new Comparator<Postings>() {
+      @Override
+      public int compare(Postings o1, Postings o2) {
+        return Integer.compare(o1.size, o2.size);
+      }
+    });
+
+    Postings smallest = postingsList.get(0);
+    for (int i = 0; i < smallest.size; i++) {
+      int documentId = smallest.ids[i];
+      if (documents.get(documentId) == null) {
+        continue;
+      }
+      boolean inAll = true;
+      for (int j = 1; j < postingsList.size() && inAll; j++) {
+        inAll = postingsList.get(j).contains(documentId);
+      }
+      if (inAll) {
+        result.add(documentId);
+      }
+    }
+
+  }
+
+  /**
+   * @return The fields covered by the substring and prefix search apart from the raw transaction text
+   * (see {@link #matches(PaymentData, String)})
+   */
+  @SuppressFBWarnings({"ITC_INHERITANCE_TYPE_CHECKING"})
+  private static List<String> searchableFields(PaymentData paymentData) {
+
+    List<String> fields = Lists.newArrayList();
+    addIfPresent(fields, paymentData.getDescription());
+    addIfPresent(fields, paymentData.getNote());
+
+    if (paymentData instanceof MBHDPaymentRequestData) {
+      addIfPresent(fields, ((MBHDPaymentRequestData) paymentData).getLabel());
+    } else if (paymentData instanceof TransactionData) {
+      TransactionData transactionData = (TransactionData) paymentData;
+      addIfPresent(fields, transactionData.getTransactionId());
+      addIfPresent(fields, joinOutputAddresses(transactionData));
+    }
+
+    return fields;
+  }
+
+  private static void addIfPresent(List<String> fields, String field) {
+    if (field != null) {
+      fields.add(field);
+    }
+  }
+
+  private static String joinOutputAddresses(TransactionData transactionData) {
+    return transactionData.getOutputAddresses() == null ? null : Joiner.on(" ").join(transactionData.getOutputAddresses());
+  }
+
+  private static boolean containsLowerCase(String field, String lowerQuery) {
+    return field != null && field.toLowerCase().contains(lowerQuery);
+  }
+
+  /**
+   * <p>Pack each n-gram of the (lower case) texts into a long, avoiding boxing for long fields</p>
+   *
+   * @return The sorted, distinct packed n-grams
+   */
+  private static long[] packGrams(List<String> texts) {
+
+    int count = 0;
+    for (String text : texts) {
+      count += Math.max(0, text.length() - GRAM_LENGTH + 1);
+    }
+
+    long[] packed = new long[count];
+    int index = 0;
+    for (String text : texts) {
+      for (int i = 0; i + GRAM_LENGTH <= text.length(); i++) {
+        packed[index++] = ((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | (long) text.charAt(i + 2);
+      }
+    }
+
+    Arrays.sort(packed);
+
+    int distinct = 0;
+    for (int i = 0; i < packed.length; i++) {
+      if (i == 0 || packed[i] != packed[i - 1]) {
+        packed[distinct++] = packed[i];
+      }
+    }
+
+    return Arrays.copyOf(packed, distinct);
+  }
+
+  /**
+   * <p>Add the words (runs of letters or digits) of the (lower case) text</p>
+   */
+  private static void addWords(String text, Set<String> target) {
+    int start = -1;
+    for (int i = 0; i <= text.length(); i++) {
+      boolean wordCharacter = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+      if (wordCharacter && start < 0) {
+        start = i;
+      } else if (!wordCharacter && start >= 0) {
+        target.add(text.substring(start, i));
+        start = -1;
+      }
+    }
+  }
+
+  /**
+   * <p>A sorted list of document IDs (IDs are allocated in increasing order so appending keeps it sorted)</p>
+   */
+  private static class Postings {
+
+    private int[] ids = new int[4];
+    private int size = 0;
+
+    private void add(int documentId) {
+      if (size == ids.length) {
+        ids = Arrays.copyOf(ids, size * 2);
+      }
+      ids[size++] = documentId;
+    }
+
+    private boolean contains(int documentId) {
+      return Arrays.binarySearch(ids, 0, size, documentId) >= 0;
+    }
+
+    private void addLiveTo(List<PaymentData> documents, Set<Integer> target) {
+      for (int i = 0; i < size; i++) {
+        if (documents.get(ids[i]) != null) {
+          target.add(ids[i]);
+        }
+      }
+    }
+
+    /**
+     * <p>Map old IDs to new IDs (-1 drops the ID), preserving order</p>
+     */
+    private void renumber(int[] newIds) {
+      int newSize = 0;
+      for (int i = 0; i < size; i++) {
+        int newId = newIds[ids[i]];
+        if (newId >= 0) {
+          ids[newSize++] = newId;
+        }
+      }
+      size = newSize;
+    }
+  }
+}
@@ -0,0 +1,172 @@
+package org.multibit.hd.core.store;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+import org.bitcoinj.core.Address;
+
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * <p>Tracker to provide the following to WalletService:</p>
+ * <ul>
+ * <li>The transaction infos, MBHD payment requests and BIP70 payment requests changed since the last save</li>
+ * <li>A quick check that there is nothing to save</li>
+ * </ul>
+ * <p>Changes are taken as a whole when a save starts and restored if the save fails, so a change made
+ * during a save is kept for the next one.</p>
+ */
+public class PaymentsChangeTracker {
+
+  private final Set<String> transactionInfoHashes = Sets.newHashSet();
+
+  private final Set<Address> mbhdPaymentRequestAddresses = Sets.newHashSet();
+
+  private final Set<UUID> paymentRequestUuids = Sets.newHashSet();
+
+  private int deletionCount = 0;
+
+  /**
+   * @param transactionHash The hash of the added or changed transaction info
+   */
+  public synchronized void markTransactionInfo(String transactionHash) {
+    transactionInfoHashes.add(transactionHash);
+  }
+
+  /**
+   * @param address The address of the added or changed MBHD payment request
+   */
+  public synchronized void markMBHDPaymentRequest(Address address) {
+    mbhdPaymentRequestAddresses.add(address);
+  }
+
+  /**
+   * @param uuid The UUID of the added or changed BIP70 payment request
+   */
+  public synchronized void markPaymentRequest(UUID uuid) {
+    paymentRequestUuids.add(uuid);
+  }
+
+  /**
+   * <p>Record that a payment request was deleted</p>
+   */
+  public synchronized void markDeleted() {
+    deletionCount++;
+  }
+
+  /**
+   * @return True if there is nothing to save
+   */
+  public synchronized boolean isClean() {
+    return transactionInfoHashes.isEmpty()
+      && mbhdPaymentRequestAddresses.isEmpty()
+      && paymentRequestUuids.isEmpty()
+      && deletionCount == 0;
+  }
+
+  /**
+   * <p>Take the changes to save, leaving the tracker clean</p>
+   *
+   * @return The changes since the last save
+   */
+  public synchronized Changes takeChanges() {
+
+    Changes changes = new Changes(
+      ImmutableSet.copyOf(transactionInfoHashes),
+      ImmutableSet.copyOf(mbhdPaymentRequestAddresses),
+      ImmutableSet.copyOf(paymentRequestUuids),
+      deletionCount
+    );
+    clear();
+
+    return changes;
+  }
+
+  /**
+   * <p>Put back changes that could not be saved</p>
+   *
+   * @param changes The changes taken for the failed save
+   */
+  public synchronized void restore(Changes changes) {
+    transactionInfoHashes.addAll(changes.transactionInfoHashes);
+    mbhdPaymentRequestAddresses.addAll(changes.mbhdPaymentRequestAddresses);
+    paymentRequestUuids.addAll(changes.paymentRequestUuids);
+    deletionCount += changes.deletionCount;
+  }
+
+  /**
+   * <p>Forget all changes (e.g. after the payments have been read from the backing store)</p>
+   */
+  public synchronized void clear() {
+    transactionInfoHashes.clear();
+    mbhdPaymentRequestAddresses.clear();
+    paymentRequestUuids.clear();
+    deletionCount = 0;
+  }
+
+  /**
+   * <p>The changes made between two saves</p>
+   */
+  public static class Changes {
+
+    private final Set<String> transactionInfoHashes;
+    private final Set<Address> mbhdPaymentRequestAddresses;
+    private final Set<UUID> paymentRequestUuids;
+    private final int deletionCount;
+
+    private Changes(Set<String> transactionInfoHashes, Set<Address> mbhdPaymentRequestAddresses, Set<UUID> paymentRequestUuids, int deletionCount) {
+      this.transactionInfoHashes = transactionInfoHashes;
+      this.mbhdPaymentRequestAddresses = mbhdPaymentRequestAddresses;
+      this.paymentRequestUuids = paymentRequestUuids;
+      this.deletionCount = deletionCount;
+    }
+
+    /**
+     * @return The hashes of the changed transaction infos
+     */
+    public Set<String> getTransactionInfoHashes() {
+      return transactionInfoHashes;
+    }
+
+    /**
+     * @return The addresses of the changed MBHD payment requests
+     */
+    public Set<Address> getMBHDPaymentRequestAddresses() {
+      return mbhdPaymentRequestAddresses;
+    }
+
+    /**
+     * @return The UUIDs of the changed BIP70 payment requests
+     */
+    public Set<UUID> getPaymentRequestUuids() {
+      return paymentRequestUuids;
+    }
+
+    /**
+     * @return The number of payment requests deleted
+     */
+    public int getDeletionCount() {
+      return deletionCount;
+    }
+
+    /**
+     * @return True if nothing changed
+     */
+    public boolean isEmpty() {
+      return transactionInfoHashes.isEmpty()
+        && mbhdPaymentRequestAddresses.isEmpty()
+        && paymentRequestUuids.isEmpty()
+        && deletionCount == 0;
+    }
+
+    @Override
+    public String toString() {
+      return "Changes{" +
+        "transactionInfos=" + transactionInfoHashes.size() +
+        ", mbhdPaymentRequests=" + mbhdPaymentRequestAddresses.size() +
+        ", paymentRequests=" + paymentRequestUuids.size() +
+        ", deletions=" + deletionCount +
+        '}';
+    }
+  }
+}
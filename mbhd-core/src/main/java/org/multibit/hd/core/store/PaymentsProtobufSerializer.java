@@ -325,88 +325,98 @@ public class PaymentsProtobufSerializer {
     List<MBHDPaymentsProtos.TransactionInfo> transactionInfoProtos = paymentsProto.getTransactionInfoList();
     if (transactionInfoProtos != null) {
       for (MBHDPaymentsProtos.TransactionInfo transactionInfoProto : transactionInfoProtos) {
-        org.multibit.hd.core.store.TransactionInfo transactionInfo = new TransactionInfo();
+        transactionInfos.add(readTransactionInfo(transactionInfoProto));
+      }
+    }
 
-        transactionInfo.setHash(transactionInfoProto.getHash());
+    payments.setMBHDPaymentRequestDataCollection(mbhdPaymentRequestDataCollection);
+    payments.setTransactionInfoCollection(transactionInfos);
+    payments.setPaymentRequestDataCollection(paymentRequestDataCollection);
+  }
 
-        if (transactionInfoProto.hasNote()) {
-          transactionInfo.setNote(transactionInfoProto.getNote());
-        }
+  /**
+   * @param transactionInfoProto The transaction info protobuf
+   *
+   * @return The transaction info
+   */
+  static TransactionInfo readTransactionInfo(MBHDPaymentsProtos.TransactionInfo transactionInfoProto) {
 
-        if (transactionInfoProto.hasClientFee()) {
-          long clientFee = transactionInfoProto.getClientFee();
-          if (clientFee == ABSENT_VALUE) {
-            transactionInfo.setClientFee(Optional.<Coin>absent());
-          } else {
-            transactionInfo.setClientFee(Optional.of(Coin.valueOf(clientFee)));
-          }
-        } else {
-          transactionInfo.setClientFee(Optional.<Coin>absent());
-        }
+    TransactionInfo transactionInfo = new TransactionInfo();
 
-        if (transactionInfoProto.hasMinerFee()) {
-          long minerFee = transactionInfoProto.getMinerFee();
-          if (minerFee == ABSENT_VALUE) {
-            transactionInfo.setMinerFee(Optional.<Coin>absent());
-          } else {
-            transactionInfo.setMinerFee(Optional.of(Coin.valueOf(minerFee)));
-          }
-        } else {
-          transactionInfo.setMinerFee(Optional.<Coin>absent());
-        }
+    transactionInfo.setHash(transactionInfoProto.getHash());
 
-        if (transactionInfoProto.hasAmountFiat()) {
-          FiatPayment fiatPayment = new FiatPayment();
-          transactionInfo.setAmountFiat(fiatPayment);
-          MBHDPaymentsProtos.FiatPayment fiatPaymentProto = transactionInfoProto.getAmountFiat();
-          if (fiatPaymentProto.hasCurrency()) {
-            final String fiatCurrencyCode = fiatPaymentProto.getCurrency();
-            final Optional<Currency> fiatCurrency;
-            if (ABSENT_STRING.equals(fiatCurrencyCode)) {
-              fiatCurrency = Optional.absent();
-            } else {
-              fiatCurrency = Optional.of(Currency.getInstance(fiatCurrencyCode));
-            }
-            fiatPayment.setCurrency(fiatCurrency);
+    if (transactionInfoProto.hasNote()) {
+      transactionInfo.setNote(transactionInfoProto.getNote());
+    }
 
-            String fiatPaymentAmount = fiatPaymentProto.getAmount();
-            Optional<BigDecimal> amountFiat;
-            if (ABSENT_STRING.equals(fiatPaymentAmount)) {
-              amountFiat = Optional.absent();
-            } else {
-              amountFiat = Optional.of(new BigDecimal(fiatPaymentAmount));
-            }
+    if (transactionInfoProto.hasClientFee()) {
+      long clientFee = transactionInfoProto.getClientFee();
+      if (clientFee == ABSENT_VALUE) {
+        transactionInfo.setClientFee(Optional.<Coin>absent());
+      } else {
+        transactionInfo.setClientFee(Optional.of(Coin.valueOf(clientFee)));
+      }
+    } else {
+      transactionInfo.setClientFee(Optional.<Coin>absent());
+    }
 
-            fiatPayment.setAmount(amountFiat);
-          }
-          if (fiatPaymentProto.hasExchange()) {
-            if (ABSENT_STRING.equals(fiatPaymentProto.getExchange())) {
-              fiatPayment.setExchangeName(Optional.<String>absent());
-            } else {
-              fiatPayment.setExchangeName(Optional.of(fiatPaymentProto.getExchange()));
-            }
-          }
-          if (fiatPaymentProto.hasRate()) {
-            fiatPayment.setRate(Optional.of(fiatPaymentProto.getRate()));
-            if (ABSENT_STRING.equals(fiatPaymentProto.getRate())) {
-              fiatPayment.setRate(Optional.<String>absent());
-            } else {
-              fiatPayment.setRate(Optional.of(fiatPaymentProto.getRate()));
-            }
-          }
+    if (transactionInfoProto.hasMinerFee()) {
+      long minerFee = transactionInfoProto.getMinerFee();
+      if (minerFee == ABSENT_VALUE) {
+        transactionInfo.setMinerFee(Optional.<Coin>absent());
+      } else {
+        transactionInfo.setMinerFee(Optional.of(Coin.valueOf(minerFee)));
+      }
+    } else {
+      transactionInfo.setMinerFee(Optional.<Coin>absent());
+    }
+
+    if (transactionInfoProto.hasAmountFiat()) {
+      FiatPayment fiatPayment = new FiatPayment();
+      transactionInfo.setAmountFiat(fiatPayment);
+      MBHDPaymentsProtos.FiatPayment fiatPaymentProto = transactionInfoProto.getAmountFiat();
+      if (fiatPaymentProto.hasCurrency()) {
+        final String fiatCurrencyCode = fiatPaymentProto.getCurrency();
+        final Optional<Currency> fiatCurrency;
+        if (ABSENT_STRING.equals(fiatCurrencyCode)) {
+          fiatCurrency = Optional.absent();
+        } else {
+          fiatCurrency = Optional.of(Currency.getInstance(fiatCurrencyCode));
         }
+        fiatPayment.setCurrency(fiatCurrency);
 
-        if (transactionInfoProto.hasSentBySelf()) {
-          transactionInfo.setSentBySelf(transactionInfoProto.getSentBySelf());
+        String fiatPaymentAmount = fiatPaymentProto.getAmount();
+        Optional<BigDecimal> amountFiat;
+        if (ABSENT_STRING.equals(fiatPaymentAmount)) {
+          amountFiat = Optional.absent();
+        } else {
+          amountFiat = Optional.of(new BigDecimal(fiatPaymentAmount));
         }
 
-        transactionInfos.add(transactionInfo);
+        fiatPayment.setAmount(amountFiat);
+      }
+      if (fiatPaymentProto.hasExchange()) {
+        if (ABSENT_STRING.equals(fiatPaymentProto.getExchange())) {
+          fiatPayment.setExchangeName(Optional.<String>absent());
+        } else {
+          fiatPayment.setExchangeName(Optional.of(fiatPaymentProto.getExchange()));
+        }
+      }
+      if (fiatPaymentProto.hasRate()) {
+        fiatPayment.setRate(Optional.of(fiatPaymentProto.getRate()));
+        if (ABSENT_STRING.equals(fiatPaymentProto.getRate())) {
+          fiatPayment.setRate(Optional.<String>absent());
+        } else {
+          fiatPayment.setRate(Optional.of(fiatPaymentProto.getRate()));
+        }
       }
     }
 
-    payments.setMBHDPaymentRequestDataCollection(mbhdPaymentRequestDataCollection);
-    payments.setTransactionInfoCollection(transactionInfos);
-    payments.setPaymentRequestDataCollection(paymentRequestDataCollection);
+    if (transactionInfoProto.hasSentBySelf()) {
+      transactionInfo.setSentBySelf(transactionInfoProto.getSentBySelf());
+    }
+
+    return transactionInfo;
   }
 
   /**
@@ -524,7 +534,7 @@ public class PaymentsProtobufSerializer {
     return paymentRequestBuilder.build();
   }
 
-  private static MBHDPaymentsProtos.TransactionInfo makeTransactionInfoProto(TransactionInfo transactionInfo) {
+  static MBHDPaymentsProtos.TransactionInfo makeTransactionInfoProto(TransactionInfo transactionInfo) {
 
     MBHDPaymentsProtos.TransactionInfo.Builder transactionInfoBuilder = MBHDPaymentsProtos.TransactionInfo.newBuilder();
 
@@ -0,0 +1,230 @@
+package org.multibit.hd.core.store;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.io.ByteStreams;
+import org.multibit.hd.core.crypto.EncryptedFileReaderWriter;
+import org.multibit.hd.core.protobuf.MBHDPaymentsProtos;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.spongycastle.crypto.params.KeyParameter;
+
+import java.io.*;
+import java.security.SecureRandom;
+import java.util.List;
+
+/**
+ * <p>Journal to provide the following to WalletService:</p>
+ * <ul>
+ * <li>Durable storage of a changed transaction info by appending a single record</li>
+ * <li>Replay of the changes made since the payments database was last written</li>
+ * </ul>
+ * <p>Each record is a length prefix followed by an AES encrypted transaction info protobuf. A random first
+ * block is encrypted ahead of the protobuf so records with the same contents do not share cipher text.</p>
+ * <p>The journal is truncated once the payments database has been written with every transaction info.
+ * Records are encrypted with the key of the current password so the journal must be empty before the password changes.</p>
+ */
+public class TransactionInfoJournal {
+
+  private static final Logger log = LoggerFactory.getLogger(TransactionInfoJournal.class);
+
+  /**
+   * The length of the random block encrypted ahead of each record (the AES block size)
+   */
+  private static final int RANDOM_BLOCK_LENGTH = 16;
+
+  /**
+   * The upper bound on the length of an encrypted record (larger lengths indicate corruption)
+   */
+  private static final int MAXIMUM_RECORD_LENGTH = 1024 * 1024;
+
+  private final SecureRandom secureRandom = new SecureRandom();
+
+  private final File journalFile;
+
+  /**
+   * The number of records appended since the journal was last truncated (-1 if not yet known)
+   */
+  private int recordCount = -1;
+
+  /**
+   * @param journalFile The journal file (need not exist)
+   */
+  public TransactionInfoJournal(File journalFile) {
+
+    Preconditions.checkNotNull(journalFile, "'journalFile' must be present");
+
+    this.journalFile = journalFile;
+
+  }
+
+  /**
+   * <p>Append a transaction info to the journal</p>
+   *
+   * @param transactionInfo The transaction info to append
+   * @param keyParameter    The AES key of the payments database
+   *
+   * @return The number of records in the journal
+   *
+   * @throws IOException If the record could not be appended
+   */
+  public synchronized int append(TransactionInfo transactionInfo, KeyParameter keyParameter) throws IOException {
+
+    Preconditions.checkNotNull(transactionInfo, "'transactionInfo' must be present");
+    Preconditions.checkNotNull(keyParameter, "'keyParameter' must be present");
+
+    byte[] randomBlock = new byte[RANDOM_BLOCK_LENGTH];
+    secureRandom.nextBytes(randomBlock);
+
+    ByteArrayOutputStream encryptedRecord = new ByteArrayOutputStream();
+    try (OutputStream plainOutputStream = EncryptedFileReaderWriter.newEncryptingOutputStream(encryptedRecord, keyParameter)) {
+      plainOutputStream.write(randomBlock);
+      PaymentsProtobufSerializer.makeTransactionInfoProto(transactionInfo).writeTo(plainOutputStream);
+    }
+
+    if (recordCount < 0) {
+      recordCount = checkRecords();
+    }
+
+    // A single write so a crash leaves at most one truncated record at the end
+    ByteArrayOutputStream record = new ByteArrayOutputStream(4 + encryptedRecord.size());
+    DataOutputStream dataOutputStream = new DataOutputStream(record);
+    dataOutputStream.writeInt(encryptedRecord.size());
+    encryptedRecord.writeTo(dataOutputStream);
+
+    try (FileOutputStream fileOutputStream = new FileOutputStream(journalFile, true)) {
+      record.writeTo(fileOutputStream);
+      // The record is only durable once it (and the new file length) reach the disk
+      fileOutputStream.getChannel().force(true);
+    }
+
+    return ++recordCount;
+  }
+
+  /**
+   * <p>Read the transaction infos in the order they were appended</p>
+   * <p>Reading stops at a truncated or undecryptable record (e.g. after a crash during an append)</p>
+   *
+   * @param keyParameter The AES key of the payments database
+   *
+   * @return The transaction infos (a later entry for the same hash replaces an earlier one)
+   */
+  public synchronized List<TransactionInfo> replay(KeyParameter keyParameter) {
+
+    Preconditions.checkNotNull(keyParameter, "'keyParameter' must be present");
+
+    List<TransactionInfo> transactionInfos = Lists.newArrayList();
+
+    if (!journalFile.exists()) {
+      recordCount = 0;
+      return transactionInfos;
+    }
+
+    try (DataInputStream dataInputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(journalFile)))) {
+      while (true) {
+        byte[] encryptedRecord = readRecord(dataInputStream);
+        if (encryptedRecord == null) {
+          break;
+        }
+        try (InputStream plainInputStream = EncryptedFileReaderWriter.newDecryptingInputStream(new ByteArrayInputStream(encryptedRecord), keyParameter)) {
+          ByteStreams.skipFully(plainInputStream, RANDOM_BLOCK_LENGTH);
+          transactionInfos.add(PaymentsProtobufSerializer.readTransactionInfo(MBHDPaymentsProtos.TransactionInfo.parseFrom(plainInputStream)));
+        }
+      }
+    } catch (IOException | RuntimeException e) {
+      log.warn("Stopped reading the transaction info journal after {} records. Error was '{}'", transactionInfos.size(), e.getMessage());
+    }
+
+    // Appends check the structure of the journal again since reading may have stopped early
+    recordCount = -1;
+
+    log.debug("Replayed {} transaction infos from the journal", transactionInfos.size());
+
+    return transactionInfos;
+  }
+
+  /**
+   * <p>Remove all records (the payments database must already hold them)</p>
+   *
+   * @throws IOException If the journal could not be deleted
+   */
+  public synchronized void truncate() throws IOException {
+
+    if (journalFile.exists() && !journalFile.delete()) {
+      throw new IOException("Could not delete the transaction info journal '" + journalFile.getAbsolutePath() + "'");
+    }
+    recordCount = 0;
+
+  }
+
+  /**
+   * @return True if the journal holds no records
+   */
+  public synchronized boolean isEmpty() {
+    return !journalFile.exists() || journalFile.length() == 0;
+  }
+
+  /**
+   * @return The journal file
+   */
+  public File getJournalFile() {
+    return journalFile;
+  }
+
+  /**
+   * <p>Count the complete records, removing any partial record left at the end by a crash during an append</p>
+   *
+   * @return The number of complete records in the journal file
+   */
+  private int checkRecords() throws IOException {
+
+    if (!journalFile.exists()) {
+      return 0;
+    }
+
+    int count = 0;
+    long validLength = 0;
+    try (DataInputStream dataInputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(journalFile)))) {
+      byte[] encryptedRecord;
+      while ((encryptedRecord = readRecord(dataInputStream)) != null) {
+        count++;
+        validLength += 4 + encryptedRecord.length;
+      }
+    } catch (IOException e) {
+      log.warn("Transaction info journal is corrupt after {} records. Error was '{}'", count, e.getMessage());
+    }
+
+    if (validLength < journalFile.length()) {
+      try (RandomAccessFile randomAccessFile = new RandomAccessFile(journalFile, "rw")) {
+        randomAccessFile.setLength(validLength);
+      }
+    }
+
+    return count;
+  }
+
+  /**
+   * @return The next encrypted record or null at the end of the journal
+   */
+  private byte[] readRecord(DataInputStream dataInputStream) throws IOException {
+
+    int length;
+    try {
+      length = dataInputStream.readInt();
+    } catch (EOFException e) {
+      return null;
+    }
+    if (length <= 0 || length > MAXIMUM_RECORD_LENGTH) {
+      throw new IOException("Corrupt record length " + length);
+    }
+
+    byte[] encryptedRecord = new byte[length];
+    try {
+      dataInputStream.readFully(encryptedRecord);
+    } catch (EOFException e) {
+      log.warn("Ignoring a truncated record at the end of the transaction info journal");
+      return null;
+    }
+    return encryptedRecord;
+  }
+}
@@ -0,0 +1,26 @@
+package org.multibit.hd.core.wallet;
+
+/**
+ * <p>Enum to provide the following to coin selection:</p>
+ * <ul>
+ * <li>The strategy for choosing the outputs to spend</li>
+ * </ul>
+ *
+ * @since 0.3.0
+ */
+public enum CoinSelectionMode {
+
+  /**
+   * Prefer an exact match that needs no change, otherwise the fewest inputs
+   */
+  STANDARD,
+
+  /**
+   * Spend as many small outputs as economical (use with a low fee per Kb when fees are cheap)
+   */
+  CONSOLIDATE,
+
+  // End of enum
+  ;
+
+}
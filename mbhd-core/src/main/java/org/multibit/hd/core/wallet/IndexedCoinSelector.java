@@ -0,0 +1,345 @@
+package org.multibit.hd.core.wallet;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.bitcoinj.core.Coin;
+import org.bitcoinj.core.NetworkParameters;
+import org.bitcoinj.core.Transaction;
+import org.bitcoinj.core.TransactionOutput;
+import org.bitcoinj.core.Wallet;
+import org.bitcoinj.wallet.CoinSelection;
+import org.bitcoinj.wallet.CoinSelector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * <p>Coin selector to provide the following to Bitcoin network service:</p>
+ * <ul>
+ * <li>Selection over a UTXO index built once per set of spend candidates rather than sorted on every call</li>
+ * <li>Branch and bound search for a selection that needs no change output</li>
+ * <li>Fallback to the single smallest output that covers the target, then to the largest outputs first</li>
+ * <li>A consolidation mode that spends as many small outputs as economical</li>
+ * </ul>
+ * <p>Bitcoinj calls the selector several times while it converges on the fee for a transaction so the index
+ * is kept between calls while the candidates are unchanged.</p>
+ * <p>Bitcoinj only adds change to the fee when it is dust, and otherwise prefers a change output to a higher fee.
+ * Once the transaction is complete {@link #foldChangeIntoFee(Wallet.SendRequest, List)} removes a change output
+ * that is not worth the cost of spending so that a branch and bound selection really needs no change.</p>
+ * <p>Outputs worth less than the fee to spend them are only used when nothing else covers the target
+ * (or to empty the wallet).</p>
+ *
+ * @since 0.3.0
+ */
+public class IndexedCoinSelector implements CoinSelector {
+
+  private static final Logger log = LoggerFactory.getLogger(IndexedCoinSelector.class);
+
+  /**
+   * The most branches to try before giving up on an exact match
+   */
+  static final int MAXIMUM_BRANCH_AND_BOUND_TRIES = 100000;
+
+  /**
+   * The most inputs a consolidation spends (keeps the transaction well below the 100Kb standard size)
+   */
+  static final int MAXIMUM_CONSOLIDATION_INPUTS = 500;
+
+  private final Coin feePerKB;
+
+  private final CoinSelectionMode mode;
+
+  private Optional<UtxoIndex> index = Optional.absent();
+
+  /**
+   * @param feePerKB The fee per Kb of the transaction
+   * @param mode     The selection strategy
+   */
+  public IndexedCoinSelector(Coin feePerKB, CoinSelectionMode mode) {
+
+    Preconditions.checkNotNull(feePerKB, "'feePerKB' must be present");
+    Preconditions.checkNotNull(mode, "'mode' must be present");
+
+    this.feePerKB = feePerKB;
+    this.mode = mode;
+  }
+
+  @Override
+  public synchronized CoinSelection select(Coin target, List<TransactionOutput> candidates) {
+
+    UtxoIndex utxoIndex = getIndex(candidates);
+
+    // An empty wallet send asks for everything
+    if (target.equals(NetworkParameters.MAX_MONEY)) {
+      return mode == CoinSelectionMode.CONSOLIDATE ? consolidate(utxoIndex, target.getValue()) : selectAll(utxoIndex);
+    }
+
+    if (mode == CoinSelectionMode.CONSOLIDATE) {
+      return consolidate(utxoIndex, target.getValue());
+    }
+
+    Optional<CoinSelection> exactMatch = branchAndBound(utxoIndex, target.getValue());
+    if (exactMatch.isPresent()) {
+      log.debug("Selected {} outputs with no change", exactMatch.get().gathered.size());
+      return exactMatch.get();
+    }
+
+    return fewestInputs(utxoIndex, target.getValue());
+
+  }
+
+  /**
+   * <p>Add a change output worth less than the cost of change to the fee</p>
+   *
+   * @param sendRequest      The send request after <code>wallet.completeTx</code> (its inputs must not be signed yet)
+   * @param requestedOutputs The outputs of the transaction before it was completed
+   *
+   * @return True if the change output was removed
+   */
+  public boolean foldChangeIntoFee(Wallet.SendRequest sendRequest, List<TransactionOutput> requestedOutputs) {
+
+    Preconditions.checkNotNull(sendRequest, "'sendRequest' must be present");
+    Preconditions.checkNotNull(requestedOutputs, "'requestedOutputs' must be present");
+    Preconditions.checkState(!sendRequest.signInputs, "'sendRequest' must not sign its inputs");
+
+    Set<TransactionOutput> requested = Sets.newIdentityHashSet();
+    requested.addAll(requestedOutputs);
+
+    // Bitcoinj adds at most one output (the change) to those requested
+    Transaction tx = sendRequest.tx;
+    List<TransactionOutput> outputs = Lists.newArrayList(tx.getOutputs());
+    int changeIndex = -1;
+    for (int i = 0; i < outputs.size(); i++) {
+      if (!requested.contains(outputs.get(i))) {
+        if (changeIndex >= 0) {
+          return false;
+        }
+        changeIndex = i;
+      }
+    }
+    if (changeIndex < 0 || outputs.size() == 1) {
+      return false;
+    }
+
+    Coin change = outputs.get(changeIndex).getValue();
+    if (change.getValue() > getCostOfChange()) {
+      return false;
+    }
+
+    outputs.remove(changeIndex);
+    tx.clearOutputs();
+    for (TransactionOutput output : outputs) {
+      tx.addOutput(output);
+    }
+    sendRequest.fee = sendRequest.fee == null ? change : sendRequest.fee.add(change);
+
+    log.debug("Added change of {} to the fee", change);
+
+    return true;
+
+  }
+
+  /**
+   * @param candidates The spend candidates
+   *
+   * @return The index for the candidates (reused if they are unchanged)
+   */
+  UtxoIndex getIndex(List<TransactionOutput> candidates) {
+
+    if (!index.isPresent() || !index.get().matches(candidates)) {
+      index = Optional.of(new UtxoIndex(candidates));
+    }
+    return index.get();
+
+  }
+
+  /**
+   * @return The fee to spend one more input
+   */
+  long getInputFee() {
+    return TransactionSizes.feeFor(TransactionSizes.SIZE_OF_INPUT, feePerKB).getValue();
+  }
+
+  /**
+   * @return The most a selection may exceed the target and still be better than making change
+   * (the fee for the change output now and for spending it later, and at least the dust limit)
+   */
+  long getCostOfChange() {
+    long cost = TransactionSizes.feeFor(TransactionSizes.SIZE_OF_OUTPUT + TransactionSizes.SIZE_OF_INPUT, feePerKB).getValue();
+    return Math.max(cost, Transaction.MIN_NONDUST_OUTPUT.getValue());
+  }
+
+  /**
+   * <p>Depth first search (larger outputs first) for a selection within the cost of change above the target</p>
+   *
+   * @param utxoIndex The index
+   * @param target    The target in satoshis
+   *
+   * @return The selection wasting the least, if one was found
+   */
+  Optional<CoinSelection> branchAndBound(UtxoIndex utxoIndex, long target) {
+
+    // Only economical outputs are worth searching
+    int n = 0;
+    long inputFee = getInputFee();
+    while (n < utxoIndex.size() && utxoIndex.getValue(n) > inputFee) {
+      n++;
+    }
+
+    // remaining[i] is the total of the outputs from i onwards
+    long[] remaining = new long[n + 1];
+    for (int i = n - 1; i >= 0; i--) {
+      remaining[i] = remaining[i + 1] + utxoIndex.getValue(i);
+    }
+    if (remaining[0] < target) {
+      return Optional.absent();
+    }
+
+    long upper = target + getCostOfChange();
+
+    int[] selected = new int[n];
+    int selectedCount = 0;
+    int[] best = null;
+    long bestWaste = Long.MAX_VALUE;
+
+    int next = 0;
+    long sum = 0;
+    for (int tries = 0; tries < MAXIMUM_BRANCH_AND_BOUND_TRIES; tries++) {
+
+      boolean backtrack = false;
+      if (sum + remaining[next] < target || sum > upper) {
+        // Cannot reach the target or already past the window
+        backtrack = true;
+      } else if (sum >= target) {
+        // In the window so adding more only wastes more
+        long waste = sum - target;
+        if (waste < bestWaste) {
+          bestWaste = waste;
+          best = new int[selectedCount];
+          System.arraycopy(selected, 0, best, 0, selectedCount);
+          if (waste == 0) {
+            break;
+          }
+        }
+        backtrack = true;
+      }
+
+      if (backtrack) {
+        if (selectedCount == 0) {
+          // Explored everything
+          break;
+        }
+        // Leave out the last output taken and carry on with the ones after it
+        int last = selected[--selectedCount];
+        sum -= utxoIndex.getValue(last);
+        next = last + 1;
+        // Leaving out an output then taking one of equal value gives the same sums
+        while (next < n && utxoIndex.getValue(next) == utxoIndex.getValue(last)) {
+          next++;
+        }
+      } else {
+        // Take the next output
+        selected[selectedCount++] = next;
+        sum += utxoIndex.getValue(next);
+        next++;
+      }
+    }
+
+    if (best == null) {
+      return Optional.absent();
+    }
+
+    List<TransactionOutput> gathered = Lists.newArrayListWithCapacity(best.length);
+    long total = 0;
+    for (int i : best) {
+      gathered.add(utxoIndex.getOutput(i));
+      total += utxoIndex.getValue(i);
+    }
+    return Optional.of(new CoinSelection(Coin.valueOf(total), gathered));
+
+  }
+
+  /**
+   * @param utxoIndex The index
+   * @param target    The target in satoshis
+   *
+   * @return The smallest single output covering the target, otherwise the largest outputs first
+   */
+  CoinSelection fewestInputs(UtxoIndex utxoIndex, long target) {
+
+    // The index is sorted descending so the last output covering the target is the smallest one
+    int smallestCovering = -1;
+    for (int i = 0; i < utxoIndex.size() && utxoIndex.getValue(i) >= target; i++) {
+      smallestCovering = i;
+    }
+    if (smallestCovering >= 0) {
+      List<TransactionOutput> gathered = Lists.newArrayList(utxoIndex.getOutput(smallestCovering));
+      return new CoinSelection(Coin.valueOf(utxoIndex.getValue(smallestCovering)), gathered);
+    }
+
+    // Largest first (uneconomical outputs come last so are only used if needed)
+    List<TransactionOutput> gathered = Lists.newArrayList();
+    long total = 0;
+    for (int i = 0; i < utxoIndex.size() && total < target; i++) {
+      gathered.add(utxoIndex.getOutput(i));
+      total += utxoIndex.getValue(i);
+    }
+    return new CoinSelection(Coin.valueOf(total), gathered);
+
+  }
+
+  /**
+   * @param utxoIndex The index
+   * @param target    The target in satoshis (MAX_MONEY to gather as much as economical)
+   *
+   * @return The economical outputs smallest first up to the consolidation limit, topped up with the
+   * largest outputs if that does not cover the target
+   */
+  CoinSelection consolidate(UtxoIndex utxoIndex, long target) {
+
+    long inputFee = getInputFee();
+
+    List<TransactionOutput> gathered = Lists.newArrayList();
+    long total = 0;
+    int smallestTaken = utxoIndex.size();
+    for (int i = utxoIndex.size() - 1; i >= 0 && gathered.size() < MAXIMUM_CONSOLIDATION_INPUTS; i--) {
+      if (utxoIndex.getValue(i) <= inputFee) {
+        // Costs more to spend than it is worth
+        continue;
+      }
+      gathered.add(utxoIndex.getOutput(i));
+      total += utxoIndex.getValue(i);
+      smallestTaken = i;
+    }
+
+    // Top up with the largest outputs not already taken
+    for (int i = 0; i < smallestTaken && total < target && target != NetworkParameters.MAX_MONEY.getValue(); i++) {
+      gathered.add(utxoIndex.getOutput(i));
+      total += utxoIndex.getValue(i);
+    }
+
+    log.debug("Consolidating {} outputs", gathered.size());
+
+    return new CoinSelection(Coin.valueOf(total), gathered);
+
+  }
+
+  /**
+   * @param utxoIndex The index
+   *
+   * @return All the spendable outputs
+   */
+  private CoinSelection selectAll(UtxoIndex utxoIndex) {
+
+    List<TransactionOutput> gathered = Lists.newArrayListWithCapacity(utxoIndex.size());
+    for (int i = 0; i < utxoIndex.size(); i++) {
+      gathered.add(utxoIndex.getOutput(i));
+    }
+    return new CoinSelection(Coin.valueOf(utxoIndex.getTotalValue()), gathered);
+
+  }
+}
@@ -0,0 +1,97 @@
+package org.multibit.hd.core.wallet;
+
+import com.google.common.base.Preconditions;
+import org.bitcoinj.core.Coin;
+import org.bitcoinj.core.Transaction;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * <p>Utility to provide the following to coin selection and fee calculation:</p>
+ * <ul>
+ * <li>Size estimates of transactions and their inputs and outputs once signed</li>
+ * <li>The fee for a size at a given fee per Kb</li>
+ * </ul>
+ * <p>Estimates assume pay to address inputs and outputs.</p>
+ *
+ * @since 0.3.0
+ */
+public class TransactionSizes {
+
+  /**
+   * The size of a signature push in a script sig
+   */
+  public static final int SIZE_OF_SIGNATURE = 72; // bytes
+
+  /**
+   * The size of a compressed public key push in a script sig
+   */
+  public static final int SIZE_OF_PUBLIC_KEY = 34; // bytes
+
+  /**
+   * The size of an unsigned input (outpoint, empty script and sequence number)
+   */
+  public static final int SIZE_OF_UNSIGNED_INPUT = 41; // bytes
+
+  /**
+   * The size of a signed pay to address input
+   */
+  public static final int SIZE_OF_INPUT = SIZE_OF_UNSIGNED_INPUT + SIZE_OF_SIGNATURE + SIZE_OF_PUBLIC_KEY;
+
+  /**
+   * The size of a pay to address output
+   */
+  public static final int SIZE_OF_OUTPUT = 34; // bytes
+
+  /**
+   * Utilities have private constructors
+   */
+  private TransactionSizes() {
+  }
+
+  /**
+   * @param transaction The unsigned transaction
+   *
+   * @return The size of the transaction once its inputs are signed
+   *
+   * @throws IOException If the transaction cannot be serialized
+   */
+  public static int calculateSizeWithSignatures(Transaction transaction) throws IOException {
+
+    Preconditions.checkNotNull(transaction, "'transaction' must be present");
+
+    ByteArrayOutputStream byteOutputStream = new ByteArrayOutputStream();
+    transaction.bitcoinSerialize(byteOutputStream);
+
+    int unsignedSize = byteOutputStream.size();
+
+    // Add on size of signatures
+    return unsignedSize + (SIZE_OF_SIGNATURE + SIZE_OF_PUBLIC_KEY) * transaction.getInputs().size();
+  }
+
+  /**
+   * @param transaction The unsigned transaction
+   * @param inputCount  The number of inputs to add
+   *
+   * @return The size of the transaction once the inputs are added and all inputs are signed
+   *
+   * @throws IOException If the transaction cannot be serialized
+   */
+  public static int calculateSizeWithSignatures(Transaction transaction, int inputCount) throws IOException {
+    return calculateSizeWithSignatures(transaction) + SIZE_OF_INPUT * inputCount;
+  }
+
+  /**
+   * @param size     The size in bytes
+   * @param feePerKB The fee per Kb
+   *
+   * @return The fee for the size (pro rata)
+   */
+  public static Coin feeFor(int size, Coin feePerKB) {
+
+    Preconditions.checkNotNull(feePerKB, "'feePerKB' must be present");
+
+    return Coin.valueOf(feePerKB.getValue() * size / 1000);
+  }
+}
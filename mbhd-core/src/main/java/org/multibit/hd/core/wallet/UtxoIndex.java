@@ -0,0 +1,163 @@
+package org.multibit.hd.core.wallet;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.bitcoinj.core.TransactionConfidence;
+import org.bitcoinj.core.TransactionOutput;
+import org.bitcoinj.wallet.DefaultCoinSelector;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * <p>Index to provide the following to coin selection:</p>
+ * <ul>
+ * <li>The spendable outputs of a wallet sorted by value then confirmation depth (both descending)</li>
+ * <li>Values and depths read once rather than on every comparison of every selection</li>
+ * </ul>
+ * <p>Outputs that the default selector would not spend (e.g. unconfirmed transactions from others) are left out.
+ * The index is immutable and can be reused while the candidate outputs are unchanged.</p>
+ *
+ * @since 0.3.0
+ */
+public class UtxoIndex {
+
+  private final List<TransactionOutput> outputs;
+
+  private final long[] values;
+
+  private final int[] depths;
+
+  /**
+   * The candidates the index was built from (by identity)
+   */
+  private final Set<TransactionOutput> candidateSet;
+
+  /**
+   * @param candidates The spend candidates (e.g. from <code>wallet.calculateAllSpendCandidates</code>)
+   */
+  public UtxoIndex(List<TransactionOutput> candidates) {
+
+    Preconditions.checkNotNull(candidates, "'candidates' must be present");
+
+    this.candidateSet = Sets.newIdentityHashSet();
+
+    List<Entry> entries = Lists.newArrayListWithCapacity(candidates.size());
+    for (TransactionOutput candidate : candidates) {
+      candidateSet.add(candidate);
+      if (candidate.getParentTransaction() == null || !DefaultCoinSelector.isSelectable(candidate.getParentTransaction())) {
+        continue;
+      }
+      TransactionConfidence confidence = candidate.getParentTransaction().getConfidence();
+      int depth = confidence.getConfidenceType() == TransactionConfidence.ConfidenceType.BUILDING ? confidence.getDepthInBlocks() : 0;
+      entries.add(new Entry(candidate, candidate.getValue().getValue(), depth));
+    }
+
+    Collections.sort(
+      entries, new Comparator<Entry>() {
+        @Override
+        public int compare(Entry a, Entry b) {
+          if (a.value != b.value) {
+            return a.value > b.value ? -1 : 1;
+          }
+          if (a.depth != b.depth) {
+            return a.depth > b.depth ? -1 : 1;
+          }
+          // Keep the order stable between builds
+          int byHash = a.output.getParentTransaction().getHash().compareTo(b.output.getParentTransaction().getHash());
+          return byHash != 0 ? byHash : Integer.compare(a.output.getIndex(), b.output.getIndex());
+        }
+      });
+
+    this.outputs = Lists.newArrayListWithCapacity(entries.size());
+    this.values = new long[entries.size()];
+    this.depths = new int[entries.size()];
+    for (int i = 0; i < entries.size(); i++) {
+      Entry entry = entries.get(i);
+      outputs.add(entry.output);
+      values[i] = entry.value;
+      depths[i] = entry.depth;
+    }
+
+  }
+
+  /**
+   * @param candidates The spend candidates
+   *
+   * @return True if the index was built from exactly these candidates
+   */
+  public boolean matches(List<TransactionOutput> candidates) {
+
+    if (candidates.size() != candidateSet.size()) {
+      return false;
+    }
+    for (TransactionOutput candidate : candidates) {
+      if (!candidateSet.contains(candidate)) {
+        return false;
+      }
+    }
+    return true;
+
+  }
+
+  /**
+   * @return The number of spendable outputs
+   */
+  public int size() {
+    return outputs.size();
+  }
+
+  /**
+   * @param i The position in the index (0 is the largest)
+   *
+   * @return The output
+   */
+  public TransactionOutput getOutput(int i) {
+    return outputs.get(i);
+  }
+
+  /**
+   * @param i The position in the index (0 is the largest)
+   *
+   * @return The value of the output in satoshis
+   */
+  public long getValue(int i) {
+    return values[i];
+  }
+
+  /**
+   * @param i The position in the index (0 is the largest)
+   *
+   * @return The confirmation depth of the output (0 if unconfirmed)
+   */
+  public int getDepth(int i) {
+    return depths[i];
+  }
+
+  /**
+   * @return The total value of the spendable outputs in satoshis
+   */
+  public long getTotalValue() {
+    long total = 0;
+    for (long value : values) {
+      total += value;
+    }
+    return total;
+  }
+
+  private static class Entry {
+
+    private final TransactionOutput output;
+    private final long value;
+    private final int depth;
+
+    private Entry(TransactionOutput output, long value, int depth) {
+      this.output = output;
+      this.value = value;
+      this.depth = depth;
+    }
+  }
+}
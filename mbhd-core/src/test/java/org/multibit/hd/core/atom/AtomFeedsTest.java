@@ -0,0 +1,142 @@
+package org.multibit.hd.core.atom;
+
+import com.google.common.io.ByteStreams;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.multibit.commons.files.SecureFiles;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class AtomFeedsTest {
+
+  private static final String EXAMPLE_FEED = "/fixtures/atom/example-atom.xml";
+
+  private static final String ETAG = "\"example-etag\"";
+
+  private final AtomicInteger fullResponses = new AtomicInteger();
+  private final AtomicInteger notModifiedResponses = new AtomicInteger();
+
+  private HttpServer server;
+
+  private URL feedUrl;
+
+  @Before
+  public void setUp() throws Exception {
+
+    final byte[] content;
+    try (InputStream inputStream = AtomFeedsTest.class.getResourceAsStream(EXAMPLE_FEED)) {
+      content = ByteStreams.toByteArray(inputStream);
+    }
+
+    // A local stand-in for the MultiBit.org feed
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext(
+      "/atom.xml", new HttpHandler() {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+
+          if (ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+            notModifiedResponses.incrementAndGet();
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+            return;
+          }
+
+          fullResponses.incrementAndGet();
+          exchange.getResponseHeaders().add("ETag", ETAG);
+          exchange.sendResponseHeaders(200, content.length);
+          try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(content);
+          }
+        }
+      });
+    server.start();
+
+    feedUrl = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/atom.xml");
+
+  }
+
+  @After
+  public void tearDown() throws Exception {
+
+    if (server != null) {
+      server.stop(0);
+    }
+
+  }
+
+  @Test
+  public void testParseAtomFeed() throws Exception {
+
+    AtomFeed atomFeed;
+    try (InputStream inputStream = AtomFeedsTest.class.getResourceAsStream(EXAMPLE_FEED)) {
+      atomFeed = AtomFeeds.parseAtomFeed(inputStream, 10);
+    }
+
+    assertThat(atomFeed.getTitle()).isEqualTo("MultiBit");
+    assertThat(atomFeed.getId()).isEqualTo("https://multibit.org/");
+    assertThat(atomFeed.getAtomEntries().size()).isEqualTo(3);
+
+    AtomEntry atomEntry = atomFeed.getAtomEntries().get(0);
+    assertThat(atomEntry.getTitle()).isEqualTo("Third article");
+    assertThat(atomEntry.getLink().getHref()).isEqualTo("https://multibit.org/blog/2015/06/03/third.html");
+    assertThat(atomEntry.getSummary()).isEqualTo("The third article");
+    assertThat(atomEntry.getUpdated().getYear()).isEqualTo(2015);
+
+  }
+
+  @Test
+  public void testParseAtomFeed_NewestEntriesOnly() throws Exception {
+
+    AtomFeed atomFeed;
+    try (InputStream inputStream = AtomFeedsTest.class.getResourceAsStream(EXAMPLE_FEED)) {
+      atomFeed = AtomFeeds.parseAtomFeed(inputStream, 2);
+    }
+
+    assertThat(atomFeed.getAtomEntries().size()).isEqualTo(2);
+    assertThat(atomFeed.getAtomEntries().get(0).getTitle()).isEqualTo("Third article");
+    assertThat(atomFeed.getAtomEntries().get(1).getTitle()).isEqualTo("Second article");
+
+  }
+
+  @Test
+  public void testFetchAtomFeed_Conditional() throws Exception {
+
+    File cacheDirectory = SecureFiles.createTemporaryDirectory();
+    File feedFile = new File(cacheDirectory, AtomFeeds.FEED_CACHE_NAME);
+
+    assertThat(AtomFeeds.fetchAtomFeed(feedUrl, cacheDirectory, 10).getAtomEntries().size()).isEqualTo(3);
+    assertThat(feedFile.exists()).isTrue();
+
+    // A recent local copy is used without contacting the server
+    assertThat(AtomFeeds.fetchAtomFeed(feedUrl, cacheDirectory, 10).getAtomEntries().size()).isEqualTo(3);
+    assertThat(fullResponses.get()).isEqualTo(1);
+    assertThat(notModifiedResponses.get()).isEqualTo(0);
+
+    // An older local copy is revalidated
+    assertThat(feedFile.setLastModified(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(2))).isTrue();
+    assertThat(AtomFeeds.fetchAtomFeed(feedUrl, cacheDirectory, 10).getAtomEntries().size()).isEqualTo(3);
+    assertThat(fullResponses.get()).isEqualTo(1);
+    assertThat(notModifiedResponses.get()).isEqualTo(1);
+
+    // The local copy is used when the server cannot be reached
+    server.stop(0);
+    server = null;
+    assertThat(feedFile.setLastModified(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(2))).isTrue();
+    assertThat(AtomFeeds.fetchAtomFeed(feedUrl, cacheDirectory, 1).getAtomEntries().size()).isEqualTo(1);
+
+  }
+}
@@ -0,0 +1,201 @@
+package org.multibit.hd.core.concurrent;
+
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.ListeningScheduledExecutorService;
+import com.google.common.util.concurrent.Uninterruptibles;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class ExecutorRegistryTest {
+
+  @Test
+  public void testSingleThreadExecutorPreservesOrder() throws Exception {
+
+    ListeningExecutorService testObject = ExecutorRegistry.INSTANCE.newSingleThreadExecutor("test-order", Workload.IO);
+
+    final List<Integer> order = Collections.synchronizedList(Lists.<Integer>newArrayList());
+    final AtomicInteger concurrent = new AtomicInteger();
+    final AtomicInteger peakConcurrent = new AtomicInteger();
+
+    for (int i = 0; i < 50; i++) {
+      final int value = i;
+      testObject.submit(
+        new Runnable() {
+          @Override
+          public void run() {
+            peakConcurrent.set(Math.max(peakConcurrent.get(), concurrent.incrementAndGet()));
+            order.add(value);
+            concurrent.decrementAndGet();
+          }
+        });
+    }
+
+    testObject.shutdown();
+    assertThat(testObject.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+
+    assertThat(order.size()).isEqualTo(50);
+    for (int i = 0; i < 50; i++) {
+      assertThat(order.get(i)).isEqualTo(i);
+    }
+    assertThat(peakConcurrent.get()).isEqualTo(1);
+
+  }
+
+  @Test
+  public void testFixedThreadPoolIsBounded() throws Exception {
+
+    ListeningExecutorService testObject = ExecutorRegistry.INSTANCE.newFixedThreadPool(2, "test-bounded", Workload.NETWORK);
+
+    final AtomicInteger concurrent = new AtomicInteger();
+    final AtomicInteger peakConcurrent = new AtomicInteger();
+    final CountDownLatch completed = new CountDownLatch(10);
+
+    for (int i = 0; i < 10; i++) {
+      testObject.submit(
+        new Runnable() {
+          @Override
+          public void run() {
+            int now = concurrent.incrementAndGet();
+            synchronized (peakConcurrent) {
+              peakConcurrent.set(Math.max(peakConcurrent.get(), now));
+            }
+            Uninterruptibles.sleepUninterruptibly(20, TimeUnit.MILLISECONDS);
+            concurrent.decrementAndGet();
+            completed.countDown();
+          }
+        });
+    }
+
+    assertThat(completed.await(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(peakConcurrent.get()).isEqualTo(2);
+
+    testObject.shutdownNow();
+
+  }
+
+  @Test
+  public void testShutdownNowReturnsPendingTasks() throws Exception {
+
+    ListeningExecutorService testObject = ExecutorRegistry.INSTANCE.newSingleThreadExecutor("test-shutdown", Workload.IO);
+
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch interrupted = new CountDownLatch(1);
+
+    testObject.submit(
+      new Runnable() {
+        @Override
+        public void run() {
+          started.countDown();
+          try {
+            Thread.sleep(10000);
+          } catch (InterruptedException e) {
+            interrupted.countDown();
+          }
+        }
+      });
+    testObject.submit(
+      new Runnable() {
+        @Override
+        public void run() {
+        }
+      });
+
+    assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+    assertThat(testObject.shutdownNow().size()).isEqualTo(1);
+    assertThat(interrupted.await(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(testObject.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+
+  }
+
+  @Test
+  public void testScheduledExecutor() throws Exception {
+
+    ListeningScheduledExecutorService testObject = ExecutorRegistry.INSTANCE.newSingleThreadScheduledExecutor("test-scheduled", Workload.IO);
+
+    final CountDownLatch delayed = new CountDownLatch(1);
+    final CountDownLatch periodic = new CountDownLatch(3);
+    final AtomicInteger cancelledRuns = new AtomicInteger();
+
+    testObject.schedule(
+      new Runnable() {
+        @Override
+        public void run() {
+          delayed.countDown();
+        }
+      }, 20, TimeUnit.MILLISECONDS);
+
+    ScheduledFuture<?> periodicFuture = testObject.scheduleAtFixedRate(
+      new Runnable() {
+        @Override
+        public void run() {
+          periodic.countDown();
+        }
+      }, 0, 10, TimeUnit.MILLISECONDS);
+
+    ScheduledFuture<?> cancelledFuture = testObject.schedule(
+      new Runnable() {
+        @Override
+        public void run() {
+          cancelledRuns.incrementAndGet();
+        }
+      }, 50, TimeUnit.MILLISECONDS);
+    assertThat(cancelledFuture.cancel(false)).isTrue();
+
+    assertThat(delayed.await(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(periodic.await(5, TimeUnit.SECONDS)).isTrue();
+
+    periodicFuture.cancel(false);
+    Uninterruptibles.sleepUninterruptibly(100, TimeUnit.MILLISECONDS);
+
+    assertThat(cancelledRuns.get()).isEqualTo(0);
+    assertThat(periodicFuture.isCancelled()).isTrue();
+
+    testObject.shutdownNow();
+
+  }
+
+  @Test
+  public void testMetrics() throws Exception {
+
+    ListeningExecutorService testObject = ExecutorRegistry.INSTANCE.newSingleThreadExecutor("test-metrics", Workload.CPU);
+
+    final CountDownLatch release = new CountDownLatch(1);
+    for (int i = 0; i < 3; i++) {
+      testObject.submit(
+        new Runnable() {
+          @Override
+          public void run() {
+            Uninterruptibles.awaitUninterruptibly(release);
+          }
+        });
+    }
+
+    ExecutorMetrics metrics = null;
+    for (ExecutorMetrics executorMetrics : ExecutorRegistry.INSTANCE.getExecutorMetrics()) {
+      if ("test-metrics".equals(executorMetrics.getName())) {
+        metrics = executorMetrics;
+      }
+    }
+
+    assertThat(metrics).isNotNull();
+    assertThat(metrics.getMaximumThreads()).isEqualTo(1);
+    assertThat(metrics.getPeakQueueDepth()).isGreaterThanOrEqualTo(2);
+
+    assertThat(ExecutorRegistry.INSTANCE.getPoolMetrics(Workload.CPU).getMaximumThreads()).isGreaterThanOrEqualTo(2);
+
+    release.countDown();
+    testObject.shutdown();
+    assertThat(testObject.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+
+  }
+}
@@ -0,0 +1,105 @@
+package org.multibit.hd.core.concurrent;
+
+import com.google.common.util.concurrent.ListeningScheduledExecutorService;
+import com.google.common.util.concurrent.Uninterruptibles;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class ScheduledCheckRegistryTest {
+
+  private ListeningScheduledExecutorService executorService;
+
+  private ScheduledCheckRegistry<String> testObject;
+
+  @Before
+  public void setUp() throws Exception {
+
+    executorService = ExecutorRegistry.INSTANCE.newSingleThreadScheduledExecutor("test-checks", Workload.IO);
+    testObject = new ScheduledCheckRegistry<>(executorService);
+
+  }
+
+  @After
+  public void tearDown() throws Exception {
+
+    executorService.shutdownNow();
+
+  }
+
+  @Test
+  public void testDuplicateChecksMerge() throws Exception {
+
+    final AtomicInteger runs = new AtomicInteger();
+    final CountDownLatch ran = new CountDownLatch(1);
+    Runnable check = new Runnable() {
+      @Override
+      public void run() {
+        runs.incrementAndGet();
+        ran.countDown();
+      }
+    };
+
+    assertThat(testObject.schedule("tx1", check, 50, TimeUnit.MILLISECONDS)).isTrue();
+    assertThat(testObject.schedule("tx1", check, 50, TimeUnit.MILLISECONDS)).isFalse();
+    assertThat(testObject.size()).isEqualTo(1);
+
+    assertThat(ran.await(5, TimeUnit.SECONDS)).isTrue();
+    Uninterruptibles.sleepUninterruptibly(100, TimeUnit.MILLISECONDS);
+
+    assertThat(runs.get()).isEqualTo(1);
+    assertThat(testObject.isPending("tx1")).isFalse();
+
+  }
+
+  @Test
+  public void testCancelDropsPendingCheck() throws Exception {
+
+    final AtomicInteger runs = new AtomicInteger();
+    Runnable check = new Runnable() {
+      @Override
+      public void run() {
+        runs.incrementAndGet();
+      }
+    };
+
+    testObject.schedule("tx1", check, 50, TimeUnit.MILLISECONDS);
+    testObject.schedule("tx2", check, 50, TimeUnit.MILLISECONDS);
+
+    assertThat(testObject.cancel("tx1")).isTrue();
+    assertThat(testObject.cancel("tx1")).isFalse();
+    testObject.cancelAll();
+
+    assertThat(testObject.size()).isEqualTo(0);
+
+    Uninterruptibles.sleepUninterruptibly(150, TimeUnit.MILLISECONDS);
+    assertThat(runs.get()).isEqualTo(0);
+
+  }
+
+  @Test
+  public void testManyChecksDoNotHoldThreads() throws Exception {
+
+    final CountDownLatch ran = new CountDownLatch(100);
+    Runnable check = new Runnable() {
+      @Override
+      public void run() {
+        ran.countDown();
+      }
+    };
+
+    for (int i = 0; i < 100; i++) {
+      testObject.schedule("tx" + i, check, 20, TimeUnit.MILLISECONDS);
+    }
+
+    // All checks fall due together rather than in batches of the pool size
+    assertThat(ran.await(2, TimeUnit.SECONDS)).isTrue();
+
+  }
+}
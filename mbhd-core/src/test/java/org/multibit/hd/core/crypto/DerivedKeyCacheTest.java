@@ -0,0 +1,104 @@
+package org.multibit.hd.core.crypto;
+
+/**
+ * Copyright 2015 multibit.org
+ *
+ * Licensed under the MIT license (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://opensource.org/licenses/mit-license.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.bitcoinj.crypto.KeyCrypterScrypt;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.multibit.hd.core.dto.WalletId;
+import org.multibit.hd.core.managers.WalletManager;
+import org.spongycastle.crypto.params.KeyParameter;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class DerivedKeyCacheTest {
+
+  private static final String WALLET_ID = "5c81964a-030c3b65-9dc56fe6-3dbe27ae-f3370750";
+
+  private static final CharSequence PASSWORD1 = "aTestPassword";
+
+  private static final CharSequence PASSWORD2 = "flim flam bim bam jim jam";
+
+  @Before
+  public void setUp() throws Exception {
+
+    DerivedKeyCache.INSTANCE.close();
+    DerivedKeyCache.INSTANCE.resetCounters();
+
+  }
+
+  @After
+  public void tearDown() throws Exception {
+
+    DerivedKeyCache.INSTANCE.close();
+
+  }
+
+  @Test
+  public void testHitMatchesDirectDerivation() throws Exception {
+
+    WalletId walletId = new WalletId(WALLET_ID);
+    DerivedKeyCache.INSTANCE.open(walletId, PASSWORD1, WalletManager.scryptSalt());
+
+    assertThat(DerivedKeyCache.INSTANCE.isOpenFor(walletId)).isTrue();
+
+    KeyParameter cached = DerivedKeyCache.INSTANCE.getOrDeriveKey(PASSWORD1, WalletManager.scryptSalt());
+    KeyParameter direct = new KeyCrypterScrypt(EncryptedFileReaderWriter.makeScryptParameters(WalletManager.scryptSalt())).deriveKey(PASSWORD1);
+
+    assertThat(cached.getKey()).isEqualTo(direct.getKey());
+    assertThat(DerivedKeyCache.INSTANCE.getHitCount()).isEqualTo(1);
+    assertThat(DerivedKeyCache.INSTANCE.getMissCount()).isEqualTo(0);
+    assertThat(DerivedKeyCache.INSTANCE.getScryptCount()).isEqualTo(1);
+
+  }
+
+  @Test
+  public void testDifferentPasswordMisses() throws Exception {
+
+    DerivedKeyCache.INSTANCE.open(new WalletId(WALLET_ID), PASSWORD1, WalletManager.scryptSalt());
+
+    KeyParameter other = DerivedKeyCache.INSTANCE.getOrDeriveKey(PASSWORD2, WalletManager.scryptSalt());
+    KeyParameter cached = DerivedKeyCache.INSTANCE.getOrDeriveKey(PASSWORD1, WalletManager.scryptSalt());
+
+    assertThat(other.getKey()).isNotEqualTo(cached.getKey());
+    assertThat(DerivedKeyCache.INSTANCE.getHitCount()).isEqualTo(1);
+    assertThat(DerivedKeyCache.INSTANCE.getMissCount()).isEqualTo(1);
+    assertThat(DerivedKeyCache.INSTANCE.getScryptCount()).isEqualTo(2);
+
+  }
+
+  @Test
+  public void testCloseWipesSessionButNotIssuedKeys() throws Exception {
+
+    WalletId walletId = new WalletId(WALLET_ID);
+    DerivedKeyCache.INSTANCE.open(walletId, PASSWORD1, WalletManager.scryptSalt());
+
+    KeyParameter issued = DerivedKeyCache.INSTANCE.getOrDeriveKey(PASSWORD1, WalletManager.scryptSalt());
+    byte[] issuedBytes = issued.getKey().clone();
+
+    DerivedKeyCache.INSTANCE.close();
+
+    assertThat(DerivedKeyCache.INSTANCE.isOpenFor(walletId)).isFalse();
+    assertThat(issued.getKey()).isEqualTo(issuedBytes);
+
+    // A lookup after close must derive again
+    DerivedKeyCache.INSTANCE.getOrDeriveKey(PASSWORD1, WalletManager.scryptSalt());
+    assertThat(DerivedKeyCache.INSTANCE.getMissCount()).isEqualTo(1);
+
+  }
+}
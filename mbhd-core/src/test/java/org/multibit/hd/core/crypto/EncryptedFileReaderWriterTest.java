@@ -16,7 +16,9 @@ package org.multibit.hd.core.crypto;
  * limitations under the License.
  */
 
+import com.google.common.base.Optional;
 import com.google.common.collect.Lists;
+import com.google.common.io.Files;
 import org.bitcoinj.core.Utils;
 import org.bitcoinj.utils.BriefLogFormatter;
 import org.junit.After;
@@ -25,16 +27,22 @@ import org.junit.Test;
 import org.multibit.commons.crypto.AESUtils;
 import org.multibit.hd.core.config.Configurations;
 import org.multibit.commons.files.SecureFiles;
+import org.multibit.hd.core.exceptions.EncryptedFileReaderWriterException;
 import org.multibit.hd.core.managers.InstallationManager;
+import org.multibit.hd.core.managers.WalletManager;
+import org.spongycastle.crypto.params.KeyParameter;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.security.SecureRandom;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.fest.assertions.Assertions.assertThat;
+import static org.fest.assertions.Fail.fail;
 
 public class EncryptedFileReaderWriterTest {
 
@@ -93,6 +101,58 @@ public class EncryptedFileReaderWriterTest {
     decryptedInputStream.close();
   }
 
+  @Test
+  public void testStreamingWriteMatchesByteArrayWrite() throws Exception {
+    // Create a random temporary directory
+    File temporaryDirectory = SecureFiles.createTemporaryDirectory();
+
+    File byteArrayFile = new File(temporaryDirectory + File.separator + "byteArray.aes");
+    File streamedFile = new File(temporaryDirectory + File.separator + "streamed.aes");
+
+    // Larger than the stream buffers and not a multiple of the block size
+    final byte[] plainBytes = new byte[100003];
+    new SecureRandom().nextBytes(plainBytes);
+
+    EncryptedFileReaderWriter.encryptAndWrite(plainBytes, PASSWORD1, byteArrayFile);
+    long bytesWritten = EncryptedFileReaderWriter.encryptAndWrite(
+      new EncryptedFileReaderWriter.StreamWriter() {
+        @Override
+        public void writeTo(OutputStream outputStream) throws IOException {
+          // Write in uneven chunks
+          for (int offset = 0; offset < plainBytes.length; offset += 1000) {
+            outputStream.write(plainBytes, offset, Math.min(1000, plainBytes.length - offset));
+          }
+        }
+      }, PASSWORD1, streamedFile);
+
+    // Same on-disk format and no temporary file left behind
+    assertThat(Files.toByteArray(streamedFile)).isEqualTo(Files.toByteArray(byteArrayFile));
+    assertThat(bytesWritten).isEqualTo(streamedFile.length());
+    assertThat(new File(streamedFile.getAbsolutePath() + ".tmp").exists()).isFalse();
+
+    byte[] rebornBytes = EncryptedFileReaderWriter.readAndDecryptToByteArray(streamedFile, PASSWORD1);
+    assertThat(rebornBytes).isEqualTo(plainBytes);
+  }
+
+  @Test
+  public void testReadAndDecryptStream() throws Exception {
+    // Create a random temporary directory
+    File temporaryDirectory = SecureFiles.createTemporaryDirectory();
+
+    File outputFile = new File(temporaryDirectory + File.separator + "outputFile.aes");
+
+    byte[] plainBytes = new byte[100003];
+    new SecureRandom().nextBytes(plainBytes);
+
+    EncryptedFileReaderWriter.encryptAndWrite(plainBytes, PASSWORD1, outputFile);
+
+    byte[] rebornBytes;
+    try (InputStream decryptedInputStream = EncryptedFileReaderWriter.readAndDecryptStream(outputFile, PASSWORD1)) {
+      rebornBytes = readBytes(decryptedInputStream);
+    }
+    assertThat(rebornBytes).isEqualTo(plainBytes);
+  }
+
   @Test
   public void testChangeEncryption() throws Exception {
     // Create a random temporary directory
@@ -131,6 +191,78 @@ public class EncryptedFileReaderWriterTest {
     }
   }
 
+  @Test
+  public void testChangeEncryptionInParallel() throws Exception {
+    // Create a random temporary directory
+    File temporaryDirectory = SecureFiles.createTemporaryDirectory();
+
+    KeyParameter oldKeyParameter = DerivedKeyCache.INSTANCE.getOrDeriveKey(PASSWORD1, WalletManager.scryptSalt());
+    KeyParameter newKeyParameter = DerivedKeyCache.INSTANCE.getOrDeriveKey(PASSWORD2, WalletManager.scryptSalt());
+
+    // More files than threads
+    List<File> filesToChange = Lists.newArrayList();
+    List<byte[]> plainBytesList = Lists.newArrayList();
+    for (int i = 0; i < 20; i++) {
+      File outputFile = new File(temporaryDirectory + File.separator + "outputFile" + i + ".aes");
+      byte[] plainBytes = new byte[1000 * i + 1];
+      new SecureRandom().nextBytes(plainBytes);
+
+      EncryptedFileReaderWriter.encryptAndWrite(plainBytes, PASSWORD1, outputFile);
+      filesToChange.add(outputFile);
+      plainBytesList.add(plainBytes);
+    }
+
+    final AtomicInteger progressCount = new AtomicInteger();
+    final AtomicInteger lastTotalFiles = new AtomicInteger();
+    List<File> newFiles = EncryptedFileReaderWriter.changeEncryptionPrepare(
+      filesToChange,
+      oldKeyParameter,
+      newKeyParameter,
+      Optional.<EncryptedFileReaderWriter.ProgressListener>of(
+        new EncryptedFileReaderWriter.ProgressListener() {
+          @Override
+          public void onProgress(int filesDone, int totalFiles) {
+            progressCount.incrementAndGet();
+            lastTotalFiles.set(totalFiles);
+          }
+        }));
+
+    assertThat(progressCount.get()).isEqualTo(20);
+    assertThat(lastTotalFiles.get()).isEqualTo(20);
+
+    EncryptedFileReaderWriter.changeEncryptionCommit(filesToChange, newFiles);
+
+    for (int i = 0; i < filesToChange.size(); i++) {
+      assertThat(EncryptedFileReaderWriter.readAndDecryptToByteArray(filesToChange.get(i), PASSWORD2)).isEqualTo(plainBytesList.get(i));
+      assertThat(newFiles.get(i).exists()).isFalse();
+    }
+  }
+
+  @Test
+  public void testChangeEncryptionFailureLeavesNoNewFiles() throws Exception {
+    // Create a random temporary directory
+    File temporaryDirectory = SecureFiles.createTemporaryDirectory();
+
+    File goodFile = new File(temporaryDirectory + File.separator + "good.aes");
+    File corruptFile = new File(temporaryDirectory + File.separator + "corrupt.aes");
+
+    EncryptedFileReaderWriter.encryptAndWrite(TEST_BYTES1, PASSWORD1, goodFile);
+    // Not a whole number of cipher blocks so it can never decrypt
+    Files.write(new byte[AESUtils.BLOCK_LENGTH + 1], corruptFile);
+
+    try {
+      EncryptedFileReaderWriter.changeEncryptionPrepare(Lists.newArrayList(goodFile, corruptFile), PASSWORD1, PASSWORD2);
+      fail("Expected an EncryptedFileReaderWriterException");
+    } catch (EncryptedFileReaderWriterException e) {
+      // Expected
+    }
+
+    // Nothing to commit and the originals are untouched
+    assertThat(new File(goodFile.getAbsolutePath() + ".new").exists()).isFalse();
+    assertThat(new File(corruptFile.getAbsolutePath() + ".new").exists()).isFalse();
+    assertThat(EncryptedFileReaderWriter.readAndDecryptToByteArray(goodFile, PASSWORD1)).isEqualTo(TEST_BYTES1);
+  }
+
   private byte[] readBytes(InputStream inputStream) throws IOException {
     ByteArrayOutputStream buffer = new ByteArrayOutputStream();
 
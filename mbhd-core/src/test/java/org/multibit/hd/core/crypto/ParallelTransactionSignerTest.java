@@ -0,0 +1,112 @@
+package org.multibit.hd.core.crypto;
+
+import com.google.common.collect.Lists;
+import org.bitcoinj.core.*;
+import org.bitcoinj.crypto.KeyCrypterException;
+import org.bitcoinj.params.MainNetParams;
+import org.bitcoinj.testing.FakeTxBuilder;
+import org.bitcoinj.wallet.KeyChain;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class ParallelTransactionSignerTest {
+
+  private static final String PASSWORD = "throwing pounds";
+
+  private static final NetworkParameters networkParameters = MainNetParams.get();
+
+  private Wallet wallet;
+
+  private List<TransactionOutput> unspentOutputs;
+
+  private Address destinationAddress;
+
+  @Before
+  public void setUp() throws Exception {
+
+    Context.propagate(new Context(networkParameters));
+
+    wallet = new Wallet(networkParameters);
+
+    // Several small outputs per receiving address, as seen in a wallet that needs consolidating
+    List<Address> addresses = Lists.newArrayList();
+    for (int i = 0; i < 10; i++) {
+      addresses.add(wallet.freshKey(KeyChain.KeyPurpose.RECEIVE_FUNDS).toAddress(networkParameters));
+    }
+    unspentOutputs = Lists.newArrayList();
+    for (int i = 0; i < 30; i++) {
+      Transaction fakeTx = FakeTxBuilder.createFakeTx(networkParameters, Coin.valueOf(100000 + i), addresses.get(i % addresses.size()));
+      unspentOutputs.add(fakeTx.getOutput(0));
+    }
+
+    destinationAddress = new ECKey().toAddress(networkParameters);
+
+    wallet.encrypt(PASSWORD);
+
+  }
+
+  @Test
+  public void testSignTransaction_MatchesSequentialSigner() throws Exception {
+
+    Wallet.SendRequest sequential = newSendRequest(unspentOutputs);
+    sequential.aesKey = wallet.getKeyCrypter().deriveKey(PASSWORD);
+    wallet.signTransaction(sequential);
+
+    Wallet.SendRequest testObject = newSendRequest(unspentOutputs);
+    testObject.aesKey = wallet.getKeyCrypter().deriveKey(PASSWORD);
+    ParallelTransactionSigner.signTransaction(wallet, testObject);
+
+    assertThat(testObject.tx.bitcoinSerialize()).isEqualTo(sequential.tx.bitcoinSerialize());
+
+    for (TransactionInput input : testObject.tx.getInputs()) {
+      input.verify();
+    }
+
+  }
+
+  @Test
+  public void testSignTransaction_FewInputs() throws Exception {
+
+    Wallet.SendRequest sequential = newSendRequest(unspentOutputs.subList(0, 2));
+    sequential.aesKey = wallet.getKeyCrypter().deriveKey(PASSWORD);
+    wallet.signTransaction(sequential);
+
+    Wallet.SendRequest testObject = newSendRequest(unspentOutputs.subList(0, 2));
+    testObject.aesKey = wallet.getKeyCrypter().deriveKey(PASSWORD);
+    ParallelTransactionSigner.signTransaction(wallet, testObject);
+
+    assertThat(testObject.tx.bitcoinSerialize()).isEqualTo(sequential.tx.bitcoinSerialize());
+
+  }
+
+  @Test(expected = KeyCrypterException.class)
+  public void testSignTransaction_WrongPassword() throws Exception {
+
+    Wallet.SendRequest testObject = newSendRequest(unspentOutputs);
+    testObject.aesKey = wallet.getKeyCrypter().deriveKey("wrong password");
+    ParallelTransactionSigner.signTransaction(wallet, testObject);
+
+  }
+
+  /**
+   * @param outputs The outputs to spend
+   *
+   * @return A send request spending all the outputs to a single address
+   */
+  private Wallet.SendRequest newSendRequest(List<TransactionOutput> outputs) {
+
+    Transaction tx = new Transaction(networkParameters);
+    Coin total = Coin.ZERO;
+    for (TransactionOutput output : outputs) {
+      tx.addInput(output);
+      total = total.add(output.getValue());
+    }
+    tx.addOutput(total.subtract(Coin.valueOf(10000)), destinationAddress);
+
+    return Wallet.SendRequest.forTx(tx);
+  }
+}
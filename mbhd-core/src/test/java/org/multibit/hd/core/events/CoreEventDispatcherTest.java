@@ -0,0 +1,123 @@
+package org.multibit.hd.core.events;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.Lists;
+import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
+import com.google.common.util.concurrent.Uninterruptibles;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class CoreEventDispatcherTest {
+
+  private ExecutorService executorService;
+
+  private CoreEventDispatcher testObject;
+
+  private final List<Object> received = Collections.synchronizedList(Lists.newArrayList());
+
+  /**
+   * Holds up delivery of the first event so that later events queue behind it
+   */
+  private final CountDownLatch firstEventReleased = new CountDownLatch(1);
+
+  private final CountDownLatch allEventsReceived = new CountDownLatch(1);
+
+  private int expectedEvents;
+
+  @Before
+  public void setUp() throws Exception {
+
+    EventBus eventBus = new EventBus();
+    eventBus.register(this);
+
+    executorService = Executors.newFixedThreadPool(4);
+    testObject = new CoreEventDispatcher(eventBus, executorService);
+
+  }
+
+  @After
+  public void tearDown() throws Exception {
+
+    executorService.shutdownNow();
+
+  }
+
+  @Test
+  public void testOrderedPerType() throws Exception {
+
+    expectedEvents = 1000;
+
+    for (int i = 0; i < expectedEvents; i++) {
+      testObject.dispatch(Integer.valueOf(i));
+    }
+    firstEventReleased.countDown();
+
+    assertThat(allEventsReceived.await(5, TimeUnit.SECONDS)).isTrue();
+
+    for (int i = 0; i < expectedEvents; i++) {
+      assertThat(received.get(i)).isEqualTo(i);
+    }
+    assertThat(testObject.getDispatchedCount()).isEqualTo(expectedEvents);
+    assertThat(testObject.getCoalescedCount()).isEqualTo(0);
+    assertThat(testObject.getQueueDepth()).isEqualTo(0);
+
+  }
+
+  @Test
+  public void testCoalesceLatestValue() throws Exception {
+
+    // The first event is delivered and blocks, progress 1 to 98 are superseded by 99
+    expectedEvents = 3;
+
+    for (int i = 0; i < 100; i++) {
+      testObject.dispatch(Integer.valueOf(i), Optional.of("progress"));
+      if (i == 0) {
+        // Wait for the first event to be taken from the queue
+        while (received.isEmpty()) {
+          Uninterruptibles.sleepUninterruptibly(1, TimeUnit.MILLISECONDS);
+        }
+      }
+      if (i == 50) {
+        // Never coalesced
+        testObject.dispatch(Integer.valueOf(-1));
+      }
+    }
+
+    assertThat(testObject.getQueueDepth()).isEqualTo(2);
+    assertThat(testObject.getMaximumQueueDepth()).isGreaterThanOrEqualTo(2);
+
+    firstEventReleased.countDown();
+
+    assertThat(allEventsReceived.await(5, TimeUnit.SECONDS)).isTrue();
+
+    assertThat(received).containsExactly(0, -1, 99);
+    assertThat(testObject.getCoalescedCount()).isEqualTo(98);
+    assertThat(testObject.getQueueDepth()).isEqualTo(0);
+
+  }
+
+  @Subscribe
+  public void onInteger(Integer event) {
+
+    received.add(event);
+
+    if (received.size() == 1) {
+      Uninterruptibles.awaitUninterruptibly(firstEventReleased);
+    }
+    if (received.size() == expectedEvents) {
+      allEventsReceived.countDown();
+    }
+
+  }
+}
@@ -0,0 +1,82 @@
+package org.multibit.hd.core.files;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Maps;
+import com.google.common.io.Files;
+import org.junit.Before;
+import org.junit.Test;
+import org.multibit.commons.files.SecureFiles;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.SortedMap;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class BackupManifestTest {
+
+  private File temporaryDirectory;
+
+  @Before
+  public void setUp() throws Exception {
+
+    temporaryDirectory = SecureFiles.createTemporaryDirectory();
+
+  }
+
+  @Test
+  public void testWriteAndRead() throws Exception {
+
+    SortedMap<String, File> entries = newEntries("alpha", "beta");
+
+    BackupManifest testObject = BackupManifest.newFullManifest(entries).asDeltaOf("mbhd-base.zip.aes", 3);
+
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    testObject.writeTo(outputStream);
+
+    BackupManifest readManifest = BackupManifest.readFrom(new ByteArrayInputStream(outputStream.toByteArray()));
+
+    assertThat(readManifest.hasSameContent(testObject)).isTrue();
+    assertThat(readManifest.isFull()).isFalse();
+    assertThat(readManifest.getBaseBackupName().get()).isEqualTo("mbhd-base.zip.aes");
+    assertThat(readManifest.getDeltaCount()).isEqualTo(3);
+    assertThat(readManifest.getEntryNames()).containsOnly("wallet file.aes", "contacts" + File.separator + "contacts.aes");
+
+  }
+
+  @Test
+  public void testChangedEntryNames() throws Exception {
+
+    BackupManifest base = BackupManifest.newFullManifest(newEntries("alpha", "beta"));
+    BackupManifest testObject = BackupManifest.newFullManifest(newEntries("alpha", "gamma"));
+
+    assertThat(base.isFull()).isTrue();
+    assertThat(testObject.hasSameContent(base)).isFalse();
+    assertThat(testObject.getChangedEntryNames(base)).containsOnly("contacts" + File.separator + "contacts.aes");
+
+    BackupManifest unchanged = BackupManifest.newFullManifest(newEntries("alpha", "gamma"));
+    assertThat(unchanged.hasSameContent(testObject)).isTrue();
+    assertThat(unchanged.getChangedEntryNames(testObject)).isEmpty();
+
+  }
+
+  /**
+   * @return Two files (one with a space in its name and one in a sub-directory) with the given content
+   */
+  private SortedMap<String, File> newEntries(String walletContent, String contactsContent) throws Exception {
+
+    File walletFile = new File(temporaryDirectory, "wallet file.aes");
+    File contactsFile = new File(temporaryDirectory, "contacts" + File.separator + "contacts.aes");
+    SecureFiles.verifyOrCreateDirectory(contactsFile.getParentFile());
+
+    Files.write(walletContent, walletFile, Charsets.UTF_8);
+    Files.write(contactsContent, contactsFile, Charsets.UTF_8);
+
+    SortedMap<String, File> entries = Maps.newTreeMap();
+    entries.put("wallet file.aes", walletFile);
+    entries.put("contacts" + File.separator + "contacts.aes", contactsFile);
+
+    return entries;
+  }
+}
@@ -32,6 +32,7 @@ import org.multibit.hd.core.dto.WalletId;
 import org.multibit.hd.core.dto.WalletIdTest;
 import org.multibit.hd.core.dto.WalletSummary;
 import org.multibit.hd.core.events.ShutdownEvent;
+import org.multibit.hd.core.exceptions.EncryptedFileReaderWriterException;
 import org.multibit.hd.core.services.CoreServices;
 
 import java.io.File;
@@ -39,6 +40,7 @@ import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.fail;
 
 public class BackupManagerTest {
 
@@ -115,10 +117,19 @@ public class BackupManagerTest {
     assertThat(cloudBackups).isNotNull();
     assertThat(cloudBackups.size()).isEqualTo(1);
 
+    // An unchanged wallet directory does not create another backup
+    File unchangedBackupFile = BackupManager.INSTANCE.createLocalBackup(walletSummary.getWalletId(), password);
+    assertThat(unchangedBackupFile.getName()).isEqualTo(localBackups.get(0).getFile().getName());
+    assertThat(BackupManager.INSTANCE.getLocalZipBackups(walletSummary.getWalletId()).size()).isEqualTo(1);
+
     Uninterruptibles.sleepUninterruptibly(1, TimeUnit.SECONDS);
 
+    // Change the wallet directory with another rolling backup
+    BackupManager.INSTANCE.createRollingBackup(walletSummary, password);
+
     // Backup the wallet.
-    // This zips the wallet root directory and adds a timestamp, then saves the file in both the local and cloud backup directories
+    // This zips the changed files in the wallet root directory as a delta of the first backup and adds a timestamp,
+    // then saves the file in both the local and cloud backup directories
     File localBackupFile = BackupManager.INSTANCE.createLocalBackup(walletSummary.getWalletId(), password);
     BackupManager.INSTANCE.createCloudBackup(walletSummary.getWalletId(), password);
 
@@ -133,7 +144,7 @@ public class BackupManagerTest {
     assertThat(cloudBackups).isNotNull();
     assertThat(cloudBackups.size()).isEqualTo(2);
 
-    // Load in the wallet backup and compare the wallets
+    // Load in the wallet backup (delta and base) and compare the wallets
     WalletId recreatedWalletId= BackupManager.INSTANCE.loadZipBackup(localBackupFile, Bip39SeedPhraseGenerator.split(WalletIdTest.SEED_PHRASE_1));
     assertThat(walletSummary.getWalletId()).isEqualTo(recreatedWalletId);
 
@@ -148,4 +159,46 @@ public class BackupManagerTest {
     Wallet wallet = BackupManager.INSTANCE.loadRollingBackup(walletSummary.getWalletId(), password);
     assertThat(wallet).isNotNull();
   }
-}
\ No newline at end of file
+
+  @Test
+  public void testLoadZipBackup_WrongSeedPhrase() throws Exception {
+
+    File applicationDirectory = InstallationManager.getOrCreateApplicationDataDirectory();
+    BackupManager.INSTANCE.initialise(applicationDirectory, Optional.<File>absent());
+
+    SeedPhraseGenerator seedGenerator = new Bip39SeedPhraseGenerator();
+    List<String> seedPhraseList = Bip39SeedPhraseGenerator.split(WalletIdTest.SEED_PHRASE_1);
+    byte[] entropy = MnemonicCode.INSTANCE.toEntropy(seedPhraseList);
+    byte[] seed = seedGenerator.convertToSeed(seedPhraseList);
+    String password = "credentials";
+
+    WalletSummary walletSummary = WalletManager
+      .INSTANCE
+      .getOrCreateMBHDSoftWalletSummaryFromEntropy(
+              applicationDirectory,
+              entropy,
+              seed,
+              Dates.nowInSeconds(),
+              password,
+              "Example",
+              "Example",
+              true);
+
+    File localBackupFile = BackupManager.INSTANCE.createLocalBackup(walletSummary.getWalletId(), password);
+
+    File walletDirectory = WalletManager.getOrCreateWalletDirectory(applicationDirectory, WalletManager.createWalletRoot(walletSummary.getWalletId()));
+    String[] walletFileNames = walletDirectory.list();
+
+    try {
+      BackupManager.INSTANCE.loadZipBackup(localBackupFile, Bip39SeedPhraseGenerator.split(WalletIdTest.SEED_PHRASE_2));
+      fail("Expected an EncryptedFileReaderWriterException");
+    } catch (EncryptedFileReaderWriterException e) {
+      // Expected
+    }
+
+    // The wallet directory is untouched and still opens
+    assertThat(walletDirectory.list()).containsOnly((Object[]) walletFileNames);
+    assertThat(WalletManager.INSTANCE.loadFromWalletDirectory(walletDirectory, password).getWallet()).isNotNull();
+
+  }
+}
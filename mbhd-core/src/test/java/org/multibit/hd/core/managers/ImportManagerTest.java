@@ -0,0 +1,77 @@
+package org.multibit.hd.core.managers;
+
+import org.bitcoinj.core.Coin;
+import org.junit.Test;
+import org.multibit.hd.core.dto.SendOutput;
+import org.multibit.hd.core.exceptions.SendOutputsImportException;
+
+import java.io.StringReader;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class ImportManagerTest {
+
+  private static final String ADDRESS_1 = "1AhN6rPdrMuKBGFDKR1k9A8SCLYaNgXhty";
+  private static final String ADDRESS_2 = "1MkTpZN4TpLwJjZt9zHBXREJA8avUHXB3q";
+
+  @Test
+  public void testImportSendOutputs() throws Exception {
+
+    String csv = "address,amount\n" +
+      ADDRESS_1 + ",0.0015\n" +
+      "\n" +
+      "# Second payee\n" +
+      " " + ADDRESS_2 + " , 1.5 \n";
+
+    List<SendOutput> testObject = ImportManager.importSendOutputs(new StringReader(csv));
+
+    assertThat(testObject.size()).isEqualTo(2);
+    assertThat(testObject.get(0).getAddress().toString()).isEqualTo(ADDRESS_1);
+    assertThat(testObject.get(0).getAmount()).isEqualTo(Coin.valueOf(150000));
+    assertThat(testObject.get(1).getAddress().toString()).isEqualTo(ADDRESS_2);
+    assertThat(testObject.get(1).getAmount()).isEqualTo(Coin.valueOf(150000000));
+
+  }
+
+  @Test(expected = SendOutputsImportException.class)
+  public void testImportSendOutputs_InvalidAddress() throws Exception {
+
+    ImportManager.importSendOutputs(new StringReader(ADDRESS_1 + ",0.1\nnot-an-address,0.1\n"));
+
+  }
+
+  @Test
+  public void testImportSendOutputs_ErrorLineNumber() throws Exception {
+
+    // The error is on line 5 of the file although it is only the third row read
+    String csv = "# Payroll\n" +
+      "address,amount\n" +
+      "\n" +
+      ADDRESS_1 + ",0.0015\n" +
+      "not-an-address,0.1\n";
+
+    try {
+      ImportManager.importSendOutputs(new StringReader(csv));
+      fail("Expected the invalid address to be rejected");
+    } catch (SendOutputsImportException e) {
+      assertThat(e.getMessage()).startsWith("Line 5 ");
+    }
+
+  }
+
+  @Test(expected = SendOutputsImportException.class)
+  public void testImportSendOutputs_InvalidAmount() throws Exception {
+
+    ImportManager.importSendOutputs(new StringReader(ADDRESS_1 + ",0.000000001\n"));
+
+  }
+
+  @Test(expected = SendOutputsImportException.class)
+  public void testImportSendOutputs_MissingAmount() throws Exception {
+
+    ImportManager.importSendOutputs(new StringReader(ADDRESS_1 + "\n"));
+
+  }
+}
@@ -0,0 +1,125 @@
+package org.multibit.hd.core.managers;
+
+import com.google.common.collect.Lists;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.multibit.commons.files.SecureFiles;
+import org.multibit.hd.core.config.Yaml;
+import org.multibit.hd.core.dto.WalletId;
+import org.multibit.hd.core.dto.WalletSummary;
+import org.multibit.hd.core.dto.WalletType;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class WalletCatalogTest {
+
+  private final static String WALLET_DIRECTORY_1 = "mbhd-11111111-22222222-33333333-44444444-55555555";
+  private final static String WALLET_DIRECTORY_2 = "mbhd-66666666-77777777-88888888-99999999-aaaaaaaa";
+  private final static String WALLET_DIRECTORY_3 = "mbhd-bbbbbbbb-cccccccc-dddddddd-eeeeeeee-ffffffff";
+
+  private final static String EXPECTED_WALLET_ID_2 = "66666666-77777777-88888888-99999999-aaaaaaaa";
+
+  private final WalletCatalog testObject = WalletCatalog.INSTANCE;
+
+  private File temporaryDirectory;
+
+  private List<File> walletDirectories;
+
+  @Before
+  public void setUp() throws Exception {
+
+    temporaryDirectory = SecureFiles.createTemporaryDirectory();
+
+    walletDirectories = Lists.newArrayList(
+      SecureFiles.verifyOrCreateDirectory(temporaryDirectory, WALLET_DIRECTORY_1),
+      SecureFiles.verifyOrCreateDirectory(temporaryDirectory, WALLET_DIRECTORY_2),
+      SecureFiles.verifyOrCreateDirectory(temporaryDirectory, WALLET_DIRECTORY_3)
+    );
+
+    writeSummary(walletDirectories.get(0), "Alice", WalletType.MBHD_SOFT_WALLET_BIP32);
+    writeSummary(walletDirectories.get(1), "Bob", WalletType.TREZOR_SOFT_WALLET);
+    // The third wallet has no summary
+
+  }
+
+  @After
+  public void tearDown() throws Exception {
+
+    testObject.clear();
+
+  }
+
+  @Test
+  public void testGetWalletSummaries() throws Exception {
+
+    List<WalletSummary> walletSummaries = testObject.getWalletSummaries(walletDirectories);
+
+    assertThat(walletSummaries.size()).isEqualTo(3);
+    assertThat(walletSummaries.get(0).getName()).isEqualTo("Alice");
+    assertThat(walletSummaries.get(0).getWalletType()).isEqualTo(WalletType.MBHD_SOFT_WALLET_BIP32);
+    assertThat(walletSummaries.get(1).getName()).isEqualTo("Bob");
+    assertThat(walletSummaries.get(1).getWalletId().toFormattedString()).isEqualTo(EXPECTED_WALLET_ID_2);
+    assertThat(walletSummaries.get(2).getName()).startsWith("Wallet (mbhd-bbbbbbbb");
+
+    assertThat(new File(temporaryDirectory, WalletCatalog.CATALOG_NAME).exists()).isTrue();
+
+  }
+
+  @Test
+  public void testCatalogIsReadFromFile() throws Exception {
+
+    testObject.getWalletSummaries(walletDirectories);
+    testObject.clear();
+
+    // Change the summary without changing its length or modified time to show it is not parsed again
+    File summaryFile = new File(walletDirectories.get(1), WalletManager.MBHD_SUMMARY_NAME);
+    long lastModified = summaryFile.lastModified();
+    writeSummary(walletDirectories.get(1), "Rob", WalletType.TREZOR_SOFT_WALLET);
+    assertThat(summaryFile.setLastModified(lastModified)).isTrue();
+
+    assertThat(testObject.getWalletSummaries(walletDirectories).get(1).getName()).isEqualTo("Bob");
+
+    // A changed modified time makes the entry stale
+    assertThat(summaryFile.setLastModified(lastModified - 10000)).isTrue();
+
+    assertThat(testObject.getWalletSummaries(walletDirectories).get(1).getName()).isEqualTo("Rob");
+
+  }
+
+  @Test
+  public void testInvalidate() throws Exception {
+
+    testObject.getWalletSummaries(walletDirectories);
+
+    File summaryFile = new File(walletDirectories.get(0), WalletManager.MBHD_SUMMARY_NAME);
+    long lastModified = summaryFile.lastModified();
+    writeSummary(walletDirectories.get(0), "Carol", WalletType.MBHD_SOFT_WALLET_BIP32);
+    assertThat(summaryFile.setLastModified(lastModified)).isTrue();
+
+    testObject.invalidate(walletDirectories.get(0));
+
+    assertThat(testObject.getWalletSummaries(walletDirectories).get(0).getName()).isEqualTo("Carol");
+
+  }
+
+  private void writeSummary(File walletDirectory, String name, WalletType walletType) throws Exception {
+
+    WalletSummary walletSummary = new WalletSummary();
+    walletSummary.setWalletId(new WalletId(walletDirectory.getName().substring(WalletManager.MBHD_WALLET_PREFIX.length() + 1)));
+    walletSummary.setName(name);
+    walletSummary.setNotes("Notes");
+    walletSummary.setWalletType(walletType);
+    walletSummary.setEncryptedPassword(new byte[16]);
+    walletSummary.setEncryptedBackupKey(new byte[16]);
+
+    try (FileOutputStream fos = new FileOutputStream(new File(walletDirectory, WalletManager.MBHD_SUMMARY_NAME))) {
+      Yaml.writeYaml(fos, walletSummary);
+    }
+
+  }
+}
@@ -0,0 +1,60 @@
+package org.multibit.hd.core.services;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class BackupServiceTest {
+
+  private static final long DEBOUNCE = 30;
+  private static final long MAXIMUM_DELAY = 300;
+  private static final long MINIMUM_INTERVAL = 120;
+
+  private BackupService.BackupPolicy testObject;
+
+  @Before
+  public void setUp() throws Exception {
+
+    testObject = new BackupService.BackupPolicy(DEBOUNCE, MAXIMUM_DELAY, MINIMUM_INTERVAL);
+
+  }
+
+  @Test
+  public void testNextBackupMillis_Debounce() throws Exception {
+
+    // A single change is backed up after the quiet period
+    assertThat(testObject.nextBackupMillis(1000, 1000, 0, 0)).isEqualTo(1000 + DEBOUNCE);
+
+    // A later change postpones the backup
+    assertThat(testObject.nextBackupMillis(1000, 1100, 0, 0)).isEqualTo(1100 + DEBOUNCE);
+
+  }
+
+  @Test
+  public void testNextBackupMillis_MaximumDelay() throws Exception {
+
+    // Continual changes cannot postpone the backup beyond the maximum delay
+    assertThat(testObject.nextBackupMillis(1000, 1290, 0, 0)).isEqualTo(1000 + MAXIMUM_DELAY);
+
+  }
+
+  @Test
+  public void testNextBackupMillis_MinimumInterval() throws Exception {
+
+    // A change soon after a backup waits for the minimum interval
+    assertThat(testObject.nextBackupMillis(1010, 1010, 1000, 0)).isEqualTo(1000 + MINIMUM_INTERVAL);
+
+    // Nothing is backed up before the earliest time
+    assertThat(testObject.nextBackupMillis(1000, 1000, 0, 5000)).isEqualTo(5000);
+
+  }
+
+  @Test
+  public void testNextBackupMillis_RetryAfterFailure() throws Exception {
+
+    // A failed backup leaves the store dirty since before it started so the retry waits only for the minimum interval
+    assertThat(testObject.nextBackupMillis(1000, 1000, 2000, 0)).isEqualTo(2000 + MINIMUM_INTERVAL);
+
+  }
+}
@@ -156,6 +156,39 @@ public class WalletServiceTest {
     assertThat(rebornMBHDPaymentRequestDataList.size()).isEqualTo(1);
   }
 
+  @Test
+  public void testSearchFindsEditedNote() throws Exception {
+    // Clear the payment requests at start
+    for (MBHDPaymentRequestData exist : walletService.getMBHDPaymentRequestDataList()) {
+      walletService.deleteMBHDPaymentRequest(exist);
+    }
+
+    // Create an unpaid payment request so that it appears in the payments
+    MBHDPaymentRequestData mbhdPaymentRequestData = new MBHDPaymentRequestData();
+    mbhdPaymentRequestData.setAddress(Addresses.parse("1AhN6rPdrMuKBGFDKR1k9A8SCLYaNgXhty").get());
+    mbhdPaymentRequestData.setAmountCoin(Optional.of(Coin.valueOf(245)));
+    mbhdPaymentRequestData.setDate(new DateTime());
+    mbhdPaymentRequestData.setLabel("label1");
+    mbhdPaymentRequestData.setNote("note1");
+
+    walletService.addMBHDPaymentRequestData(mbhdPaymentRequestData);
+    walletService.getPaymentDataSet();
+
+    assertThat(walletService.filterPaymentsByContent("note1")).containsOnly(mbhdPaymentRequestData);
+
+    // Edit the note in place and save it as the edit payment request wizard does
+    mbhdPaymentRequestData.setNote("rewritten");
+    walletService.addMBHDPaymentRequestData(mbhdPaymentRequestData);
+
+    // Searchable before and after the next refresh of the payments
+    assertThat(walletService.filterPaymentsByContent("rewritten")).containsOnly(mbhdPaymentRequestData);
+    assertThat(walletService.filterPaymentsByContent("note1")).isEmpty();
+
+    walletService.getPaymentDataSet();
+
+    assertThat(walletService.filterPaymentsByContent("rewritten")).containsOnly(mbhdPaymentRequestData);
+  }
+
   private void checkMBHDPaymentRequestData(MBHDPaymentRequestData MBHDPaymentRequestData, MBHDPaymentRequestData other) {
     assertThat(other.getAddress()).isEqualTo(MBHDPaymentRequestData.getAddress());
     assertThat(other.getLabel()).isEqualTo(MBHDPaymentRequestData.getLabel());
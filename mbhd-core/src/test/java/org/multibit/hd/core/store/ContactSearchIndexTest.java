@@ -0,0 +1,100 @@
+package org.multibit.hd.core.store;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.Lists;
+import org.bitcoinj.core.Address;
+import org.bitcoinj.core.ECKey;
+import org.bitcoinj.params.MainNetParams;
+import org.junit.Before;
+import org.junit.Test;
+import org.multibit.hd.core.dto.Contact;
+
+import java.util.Set;
+import java.util.UUID;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class ContactSearchIndexTest {
+
+  private ContactSearchIndex testObject;
+
+  private Contact alice;
+  private Contact bob;
+
+  private Address address;
+
+  @Before
+  public void setUp() throws Exception {
+
+    address = new ECKey().toAddress(MainNetParams.get());
+
+    alice = new Contact(UUID.randomUUID(), "Alice Capital");
+    alice.setEmail("alice.capital@example.org");
+    alice.setNotes("Met at the conference in 2015");
+    alice.getTags().add("VIP");
+    alice.setBitcoinAddress(address);
+
+    bob = new Contact(UUID.randomUUID(), "Bob Capital");
+    bob.setNotes("aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa");
+    bob.getTags().add("Merchandise");
+
+    testObject = new ContactSearchIndex();
+    testObject.addAll(Lists.newArrayList(alice, bob));
+
+  }
+
+  @Test
+  public void testFindCandidates() throws Exception {
+
+    // Mid-word and across word boundaries
+    assertThat(candidates("lic")).containsOnly(alice);
+    assertThat(candidates("e cap")).containsOnly(alice, bob);
+    assertThat(candidates("capital@exa")).containsOnly(alice);
+    assertThat(candidates("chand")).containsOnly(bob);
+    assertThat(candidates("2015")).containsOnly(alice);
+
+    // Query words longer than the maximum suffix length
+    assertThat(candidates("aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa")).containsOnly(bob);
+
+    assertThat(candidates("zebra")).isEmpty();
+
+    // No letters or digits so the caller must scan
+    assertThat(testObject.findCandidates("@").isPresent()).isFalse();
+
+  }
+
+  @Test
+  public void testFindByAddressAndName() throws Exception {
+
+    assertThat(testObject.findByBitcoinAddress(address)).containsOnly(alice);
+    assertThat(testObject.findByName("bob capital")).containsOnly(bob);
+    assertThat(testObject.findByName("bob")).isEmpty();
+
+  }
+
+  @Test
+  public void testReindexAfterEdit() throws Exception {
+
+    alice.setName("Alicia Lower");
+    alice.setBitcoinAddress(null);
+    testObject.add(alice);
+
+    assertThat(testObject.findByBitcoinAddress(address)).isEmpty();
+    assertThat(testObject.findByName("alice capital")).isEmpty();
+    assertThat(candidates("lower")).containsOnly(alice);
+
+    testObject.remove(bob);
+
+    assertThat(testObject.size()).isEqualTo(1);
+    assertThat(candidates("chand")).isEmpty();
+
+  }
+
+  private Set<Contact> candidates(String lowerQuery) {
+
+    Optional<Set<Contact>> candidates = testObject.findCandidates(lowerQuery);
+    assertThat(candidates.isPresent()).isTrue();
+
+    return candidates.get();
+  }
+}
@@ -0,0 +1,117 @@
+package org.multibit.hd.core.store;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.Lists;
+import org.bitcoinj.core.Block;
+import org.bitcoinj.core.NetworkParameters;
+import org.bitcoinj.core.StoredBlock;
+import org.bitcoinj.params.UnitTestParams;
+import org.bitcoinj.store.BlockStore;
+import org.bitcoinj.store.MemoryBlockStore;
+import org.junit.Before;
+import org.junit.Test;
+import org.multibit.commons.files.SecureFiles;
+
+import java.io.File;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class HeaderArchiveTest {
+
+  /**
+   * Kept short since the unit test genesis block is mined "now" and blocks are rejected more than 2 hours ahead
+   */
+  private static final long BLOCK_INTERVAL_SECONDS = 60;
+
+  private static final long WEEK_SECONDS = 7 * 24 * 60 * 60;
+
+  private final NetworkParameters networkParameters = UnitTestParams.get();
+
+  private HeaderArchive testObject;
+
+  private long genesisTimeSeconds;
+
+  @Before
+  public void setUp() throws Exception {
+
+    File archiveFile = new File(SecureFiles.createTemporaryDirectory(), "mbhd.headers");
+    testObject = new HeaderArchive(networkParameters, archiveFile);
+    genesisTimeSeconds = networkParameters.getGenesisBlock().getTimeSeconds();
+
+  }
+
+  @Test
+  public void testUpdateAndSeed() throws Exception {
+
+    // A synced wallet
+    BlockStore syncedBlockStore = new MemoryBlockStore(networkParameters);
+    List<StoredBlock> chain = extend(syncedBlockStore, syncedBlockStore.getChainHead(), 35);
+
+    // Includes the genesis block
+    assertThat(testObject.update(syncedBlockStore)).isEqualTo(36);
+
+    // Nothing new to add
+    assertThat(testObject.update(syncedBlockStore)).isEqualTo(0);
+
+    // A new wallet with a birthday just after block 25 was mined
+    BlockStore newBlockStore = new MemoryBlockStore(networkParameters);
+    Optional<StoredBlock> seedBlock = testObject.seed(newBlockStore, timeOfHeight(25) + WEEK_SECONDS + 1);
+
+    assertThat(seedBlock.isPresent()).isTrue();
+    assertThat(newBlockStore.getChainHead()).isEqualTo(chain.get(24));
+
+    // Blocks from the last difficulty transition (an interval of 10) are present but no earlier ones
+    int interval = networkParameters.getInterval();
+    StoredBlock transitionBlock = chain.get(25 - (25 % interval) - 1);
+    assertThat(newBlockStore.get(transitionBlock.getHeader().getHash())).isEqualTo(transitionBlock);
+    assertThat(newBlockStore.get(chain.get(0).getHeader().getHash())).isNull();
+
+    // Already seeded
+    assertThat(testObject.seed(newBlockStore, timeOfHeight(25) + WEEK_SECONDS + 1).isPresent()).isFalse();
+
+    // The synced wallet downloads some more headers
+    extend(syncedBlockStore, syncedBlockStore.getChainHead(), 5);
+    assertThat(testObject.update(syncedBlockStore)).isEqualTo(5);
+
+    // The new wallet has not synced and must not replace the archive
+    assertThat(testObject.update(newBlockStore)).isEqualTo(0);
+
+    BlockStore laterBlockStore = new MemoryBlockStore(networkParameters);
+    testObject.seed(laterBlockStore, timeOfHeight(40) + WEEK_SECONDS);
+    assertThat(laterBlockStore.getChainHead().getHeight()).isEqualTo(40);
+
+  }
+
+  @Test
+  public void testSeedWithoutArchive() throws Exception {
+
+    BlockStore blockStore = new MemoryBlockStore(networkParameters);
+
+    assertThat(testObject.seed(blockStore, timeOfHeight(100)).isPresent()).isFalse();
+    assertThat(blockStore.getChainHead().getHeight()).isEqualTo(0);
+
+  }
+
+  /**
+   * @return The new blocks in height order after connecting them as the chain head
+   */
+  private List<StoredBlock> extend(BlockStore blockStore, StoredBlock from, int length) throws Exception {
+
+    List<StoredBlock> blocks = Lists.newArrayList();
+    StoredBlock previous = from;
+    for (int i = 0; i < length; i++) {
+      Block block = previous.getHeader().createNextBlock(null, timeOfHeight(previous.getHeight() + 1));
+      StoredBlock storedBlock = previous.build(block);
+      blockStore.put(storedBlock);
+      blockStore.setChainHead(storedBlock);
+      blocks.add(storedBlock);
+      previous = storedBlock;
+    }
+    return blocks;
+  }
+
+  private long timeOfHeight(int height) {
+    return genesisTimeSeconds + height * BLOCK_INTERVAL_SECONDS;
+  }
+}
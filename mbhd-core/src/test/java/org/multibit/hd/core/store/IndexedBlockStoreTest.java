@@ -0,0 +1,179 @@
+package org.multibit.hd.core.store;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.bitcoinj.core.Block;
+import org.bitcoinj.core.NetworkParameters;
+import org.bitcoinj.core.Sha256Hash;
+import org.bitcoinj.core.StoredBlock;
+import org.bitcoinj.params.UnitTestParams;
+import org.bitcoinj.store.BlockStore;
+import org.bitcoinj.store.BlockStoreException;
+import org.bitcoinj.store.MemoryBlockStore;
+import org.junit.Before;
+import org.junit.Test;
+import org.multibit.commons.files.SecureFiles;
+
+import java.io.File;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class IndexedBlockStoreTest {
+
+  /**
+   * Kept short since the unit test genesis block is mined "now" and blocks are rejected more than 2 hours ahead
+   */
+  private static final long BLOCK_INTERVAL_SECONDS = 60;
+
+  private final NetworkParameters networkParameters = UnitTestParams.get();
+
+  private File indexFile;
+
+  private long genesisTimeSeconds;
+
+  @Before
+  public void setUp() throws Exception {
+
+    indexFile = new File(SecureFiles.createTemporaryDirectory(), "mbhd.spvindex");
+    genesisTimeSeconds = networkParameters.getGenesisBlock().getTimeSeconds();
+
+  }
+
+  @Test
+  public void testFindStoredBlockBefore() throws Exception {
+
+    IndexedBlockStore testObject = new IndexedBlockStore(new MemoryBlockStore(networkParameters), indexFile);
+    assertThat(testObject.getIndexSize()).isEqualTo(1);
+
+    List<StoredBlock> chain = extend(testObject, testObject.getChainHead(), 50, 0);
+    assertThat(testObject.getIndexSize()).isEqualTo(51);
+
+    // Just after block 20 was mined
+    StoredBlock found = testObject.findStoredBlockBefore(dateOfHeight(20, 1)).get();
+    assertThat(found).isEqualTo(chain.get(19));
+
+    // Before the genesis block
+    assertThat(testObject.findStoredBlockBefore(new Date(0)).isPresent()).isFalse();
+
+    // After the chain head
+    assertThat(testObject.findStoredBlockBefore(dateOfHeight(100, 0)).get()).isEqualTo(chain.get(49));
+
+    testObject.close();
+
+  }
+
+  @Test
+  public void testReorganiseAndReopen() throws Exception {
+
+    IndexedBlockStore testObject = new IndexedBlockStore(new MemoryBlockStore(networkParameters), indexFile);
+    List<StoredBlock> chain = extend(testObject, testObject.getChainHead(), 50, 0);
+
+    // Fork from height 40 with a longer chain that is mined 5 seconds later each block
+    List<StoredBlock> fork = extend(testObject, chain.get(39), 13, 5);
+    assertThat(testObject.getIndexSize()).isEqualTo(54);
+    assertThat(testObject.findStoredBlockBefore(dateOfHeight(42, 6)).get()).isEqualTo(fork.get(1));
+    assertThat(testObject.findStoredBlockBefore(dateOfHeight(38, 1)).get()).isEqualTo(chain.get(37));
+
+    testObject.close();
+
+    // Reopen over a block store with the same best chain and check the index is read back rather than rebuilt
+    BlockStore blockStore = new MemoryBlockStore(networkParameters);
+    for (StoredBlock storedBlock : chain.subList(0, 40)) {
+      blockStore.put(storedBlock);
+    }
+    for (StoredBlock storedBlock : fork) {
+      blockStore.put(storedBlock);
+    }
+    blockStore.setChainHead(fork.get(fork.size() - 1));
+
+    testObject = new IndexedBlockStore(blockStore, indexFile);
+    assertThat(testObject.getIndexSize()).isEqualTo(54);
+    assertThat(testObject.findStoredBlockBefore(dateOfHeight(45, 6)).get()).isEqualTo(fork.get(4));
+
+    testObject.close();
+
+  }
+
+  @Test
+  public void testFindStoredBlockBefore_Evicted() throws Exception {
+
+    // Simulate the SPV block store ring overwriting the oldest headers
+    final Set<Sha256Hash> evicted = Sets.newHashSet();
+    BlockStore blockStore = new MemoryBlockStore(networkParameters) {
+      @Override
+      public synchronized StoredBlock get(Sha256Hash hash) throws BlockStoreException {
+        return evicted.contains(hash) ? null : super.get(hash);
+      }
+    };
+
+    IndexedBlockStore testObject = new IndexedBlockStore(blockStore, indexFile);
+    List<StoredBlock> chain = extend(testObject, testObject.getChainHead(), 39, 0);
+
+    // Block 40 has a timestamp out of order (earlier than block 20) so it is the first found walking back
+    Block outOfOrder = chain.get(38).getHeader().createNextBlock(null);
+    outOfOrder.setTime(genesisTimeSeconds + 19 * BLOCK_INTERVAL_SECONDS);
+    outOfOrder.solve();
+    StoredBlock outOfOrderStoredBlock = chain.get(38).build(outOfOrder);
+    testObject.put(outOfOrderStoredBlock);
+    testObject.setChainHead(outOfOrderStoredBlock);
+    chain.add(outOfOrderStoredBlock);
+    chain.addAll(extend(testObject, outOfOrderStoredBlock, 10, 0));
+
+    assertThat(testObject.findStoredBlockBefore(dateOfHeight(20, 1)).get()).isEqualTo(chain.get(19));
+
+    // Evict everything below height 30 including the indexed block
+    evicted.add(networkParameters.getGenesisBlock().getHash());
+    for (StoredBlock storedBlock : chain.subList(0, 29)) {
+      evicted.add(storedBlock.getHeader().getHash());
+    }
+
+    assertThat(testObject.findStoredBlockBefore(dateOfHeight(20, 1)).get()).isEqualTo(chain.get(39));
+
+    // Nothing left in the block store is early enough
+    assertThat(testObject.findStoredBlockBefore(dateOfHeight(10, 1)).isPresent()).isFalse();
+
+    testObject.close();
+
+  }
+
+  @Test
+  public void testDifficultyTransition() throws Exception {
+
+    IndexedBlockStore testObject = new IndexedBlockStore(new MemoryBlockStore(networkParameters), indexFile);
+    extend(testObject, testObject.getChainHead(), 30, 0);
+
+    // The index starts at the genesis block so heights 10 and 20 are transitions for an interval of 10
+    assertThat(testObject.mayHaveDifficultyTransitionBelow(25, 10)).isTrue();
+    assertThat(testObject.mayHaveDifficultyTransitionBelow(9, 10)).isFalse();
+    assertThat(testObject.mayHaveDifficultyTransitionBelow(30, 2016)).isFalse();
+
+    testObject.close();
+
+  }
+
+  /**
+   * @return The new blocks in height order after connecting them as the chain head
+   */
+  private List<StoredBlock> extend(BlockStore blockStore, StoredBlock from, int length, long offsetSeconds) throws Exception {
+
+    List<StoredBlock> blocks = Lists.newArrayList();
+    StoredBlock previous = from;
+    for (int i = 0; i < length; i++) {
+      int height = previous.getHeight() + 1;
+      Block block = previous.getHeader().createNextBlock(null, genesisTimeSeconds + height * BLOCK_INTERVAL_SECONDS + offsetSeconds);
+      StoredBlock storedBlock = previous.build(block);
+      blockStore.put(storedBlock);
+      blockStore.setChainHead(storedBlock);
+      blocks.add(storedBlock);
+      previous = storedBlock;
+    }
+    return blocks;
+  }
+
+  private Date dateOfHeight(int height, long offsetSeconds) {
+    return new Date((genesisTimeSeconds + height * BLOCK_INTERVAL_SECONDS + offsetSeconds) * 1000);
+  }
+}
@@ -0,0 +1,133 @@
+package org.multibit.hd.core.store;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.bitcoinj.core.Address;
+import org.bitcoinj.core.Coin;
+import org.bitcoinj.core.TransactionConfidence;
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.Test;
+import org.multibit.hd.core.dto.*;
+import org.multibit.hd.core.utils.Addresses;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class PaymentDataIndexTest {
+
+  private static final String HASH_1 = "0101010101010101010101010101010101010101010101010101010101010101";
+  private static final String HASH_2 = "0202020202020202020202020202020202020202020202020202020202020202";
+
+  private PaymentDataIndex testObject;
+
+  private Address address1;
+  private Address address2;
+
+  @Before
+  public void setUp() throws Exception {
+
+    testObject = new PaymentDataIndex();
+
+    address1 = Addresses.parse("1AhN6rPdrMuKBGFDKR1k9A8SCLYaNgXhty").get();
+    address2 = Addresses.parse("12QxtuyEM8KBG3ngNRe2CZE28hFw3b1KMJ").get();
+
+  }
+
+  @Test
+  public void testPutClearsDirtyAndPending() throws Exception {
+
+    assertThat(testObject.isFullAdaptRequired(HASH_1)).isTrue();
+
+    testObject.markDirty(HASH_1);
+    testObject.put(newTransactionData(HASH_1, address1), TransactionConfidence.ConfidenceType.PENDING, 0, 1, true);
+
+    assertThat(testObject.isFullAdaptRequired(HASH_1)).isFalse();
+    assertThat(testObject.size()).isEqualTo(1);
+    assertThat(testObject.getFullAdaptCount()).isEqualTo(1);
+
+    // Marking dirty made it pending as well
+    assertThat(testObject.drainPendingHashes()).containsOnly(HASH_1);
+    assertThat(testObject.drainPendingHashes()).isEmpty();
+
+  }
+
+  @Test
+  public void testConfidenceChange() throws Exception {
+
+    testObject.put(newTransactionData(HASH_1, address1), TransactionConfidence.ConfidenceType.BUILDING, 1, 0, true);
+
+    assertThat(testObject.isConfidenceChanged(HASH_1, TransactionConfidence.ConfidenceType.BUILDING, 1, 0)).isFalse();
+    assertThat(testObject.isConfidenceChanged(HASH_1, TransactionConfidence.ConfidenceType.BUILDING, 2, 0)).isTrue();
+
+    testObject.put(newTransactionData(HASH_1, address1), TransactionConfidence.ConfidenceType.BUILDING, 2, 0, false);
+
+    assertThat(testObject.isConfidenceChanged(HASH_1, TransactionConfidence.ConfidenceType.BUILDING, 2, 0)).isFalse();
+    assertThat(testObject.getStatusRefreshCount()).isEqualTo(1);
+
+  }
+
+  @Test
+  public void testMarkDirtyByOutputAddress() throws Exception {
+
+    testObject.put(newTransactionData(HASH_1, address1), TransactionConfidence.ConfidenceType.PENDING, 0, 1, true);
+    testObject.put(newTransactionData(HASH_2, address2), TransactionConfidence.ConfidenceType.PENDING, 0, 1, true);
+
+    testObject.markDirtyByOutputAddress(address2);
+
+    assertThat(testObject.isFullAdaptRequired(HASH_1)).isFalse();
+    assertThat(testObject.isFullAdaptRequired(HASH_2)).isTrue();
+
+    // Removal drops the address lookup
+    testObject.remove(HASH_2);
+    testObject.markDirtyByOutputAddress(address2);
+    assertThat(testObject.drainPendingHashes()).isEmpty();
+
+  }
+
+  @Test
+  public void testReconcileAndRetain() throws Exception {
+
+    assertThat(testObject.isReconcileRequired(null, 0)).isTrue();
+
+    testObject.put(newTransactionData(HASH_1, address1), TransactionConfidence.ConfidenceType.PENDING, 0, 1, true);
+    testObject.put(newTransactionData(HASH_2, address2), TransactionConfidence.ConfidenceType.PENDING, 0, 1, true);
+    testObject.markReconciled(null, 2);
+
+    assertThat(testObject.isReconcileRequired(null, 2)).isFalse();
+    assertThat(testObject.isReconcileRequired(null, 3)).isTrue();
+
+    testObject.retainAll(Sets.newHashSet(HASH_1));
+    assertThat(testObject.snapshotTransactionData()).hasSize(1);
+    assertThat(testObject.get(HASH_2)).isNull();
+
+    testObject.invalidateAll();
+    assertThat(testObject.isFullAdaptRequired(HASH_1)).isTrue();
+    assertThat(testObject.isReconcileRequired(null, 2)).isTrue();
+
+  }
+
+  private TransactionData newTransactionData(String hash, Address outputAddress) {
+
+    TransactionData transactionData = new TransactionData(
+      hash,
+      new DateTime(),
+      new PaymentStatus(RAGStatus.AMBER, CoreMessageKey.UNKNOWN),
+      Optional.of(Coin.valueOf(1000)),
+      new FiatPayment(),
+      Optional.<Coin>absent(),
+      Optional.<Coin>absent(),
+      TransactionConfidence.ConfidenceType.PENDING,
+      PaymentType.RECEIVING,
+      "description",
+      false,
+      Lists.newArrayList(outputAddress),
+      "",
+      100,
+      false
+    );
+    transactionData.setNote("");
+
+    return transactionData;
+  }
+}
@@ -0,0 +1,85 @@
+package org.multibit.hd.core.store;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import org.multibit.hd.core.dto.PaymentData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+/**
+ * <p>Benchmark to provide the following to developers:</p>
+ * <ul>
+ * <li>Comparison of the payment search index against the original linear scan at 1k, 10k and 100k payments</li>
+ * <li>A check that the index is faster than the scan at 10k payments and above</li>
+ * </ul>
+ * <p>Enable this test if you want to manually benchmark the search (timings depend on the machine so it is not
+ * run with the build). Both approaches are warmed up before timing.</p>
+ */
+@Ignore
+public class PaymentSearchIndexBenchmark {
+
+  private static final Logger log = LoggerFactory.getLogger(PaymentSearchIndexBenchmark.class);
+
+  private static final String[] QUERIES = {"co", "pizza", "invoice 4", "zzzz", "1a", "OP_DUP", "hosting domain"};
+
+  private static final int WARMUP_ITERATIONS = 5;
+  private static final int MEASURED_ITERATIONS = 20;
+
+  @Test
+  public void testIndexBeatsScan() throws Exception {
+
+    for (int size : new int[]{1000, 10000, 100000}) {
+
+      List<PaymentData> payments = PaymentSearchIndexTest.newPayments(size, new Random(size));
+
+      long start = System.nanoTime();
+      PaymentSearchIndex index = new PaymentSearchIndex();
+      index.update(payments);
+      long buildMillis = (System.nanoTime() - start) / 1000000;
+
+      log.info(String.format("%d payments, index built in %d ms", size, buildMillis));
+      log.info(String.format("%-16s %12s %12s %10s", "query", "scan (us)", "index (us)", "matches"));
+
+      long totalScanMicros = 0;
+      long totalIndexMicros = 0;
+
+      for (String query : QUERIES) {
+
+        int matches = 0;
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+          matches = PaymentSearchIndexTest.scan(payments, query).size();
+          assertThat(index.search(query, PaymentSearchIndex.Mode.SUBSTRING).size()).as("Query '" + query + "'").isEqualTo(matches);
+        }
+
+        start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+          PaymentSearchIndexTest.scan(payments, query);
+        }
+        long scanMicros = (System.nanoTime() - start) / 1000 / MEASURED_ITERATIONS;
+
+        start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+          index.search(query, PaymentSearchIndex.Mode.SUBSTRING);
+        }
+        long indexMicros = (System.nanoTime() - start) / 1000 / MEASURED_ITERATIONS;
+
+        log.info(String.format("%-16s %12d %12d %10d", "'" + query + "'", scanMicros, indexMicros, matches));
+
+        totalScanMicros += scanMicros;
+        totalIndexMicros += indexMicros;
+      }
+
+      log.info(String.format("%-16s %12d %12d", "total", totalScanMicros, totalIndexMicros));
+
+      // Small wallets may go either way but the index must pay off as the history grows
+      if (size >= 10000) {
+        assertThat(totalIndexMicros).as(size + " payments").isLessThan(totalScanMicros);
+      }
+    }
+  }
+}
@@ -0,0 +1,276 @@
+package org.multibit.hd.core.store;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Optional;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.bitcoinj.core.Address;
+import org.bitcoinj.core.Coin;
+import org.bitcoinj.core.ECKey;
+import org.bitcoinj.core.NetworkParameters;
+import org.bitcoinj.core.TransactionConfidence;
+import org.bitcoinj.params.MainNetParams;
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.Test;
+import org.multibit.hd.core.dto.*;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class PaymentSearchIndexTest {
+
+  private static final String[] WORDS = {
+    "coffee", "rent", "salary", "gift", "refund", "invoice", "donation", "pizza", "books", "travel",
+    "exchange", "savings", "loan", "hardware", "trezor", "birthday", "lunch", "taxi", "hosting", "domain"
+  };
+
+  private List<PaymentData> payments;
+
+  private PaymentSearchIndex testObject;
+
+  @Before
+  public void setUp() throws Exception {
+
+    payments = newPayments(500, new Random(42));
+
+    testObject = new PaymentSearchIndex();
+    testObject.update(payments);
+
+  }
+
+  @Test
+  public void testSubstringMatchesScan() throws Exception {
+
+    MBHDPaymentRequestData paymentRequestData = (MBHDPaymentRequestData) payments.get(10);
+    TransactionData transactionData = (TransactionData) payments.get(11);
+
+    String[] queries = {
+      "", "c", "co", "COF", "pizza", "invoice 4", "zzzz", " 1", "Rent", "ing", "checksig",
+      paymentRequestData.getAddress().toString(),
+      paymentRequestData.getAddress().toString().toLowerCase(),
+      transactionData.getTransactionId().substring(20, 40)
+    };
+
+    for (String query : queries) {
+      assertThat(Sets.newHashSet(testObject.search(query, PaymentSearchIndex.Mode.SUBSTRING)))
+        .as("Query '" + query + "'")
+        .isEqualTo(Sets.newHashSet(scan(payments, query)));
+    }
+
+    // The raw transaction text is only covered by substring search
+    assertThat(testObject.search("pushdata", PaymentSearchIndex.Mode.PREFIX)).isEmpty();
+
+  }
+
+  @Test
+  public void testSubstringMatchesInputOutpoint() throws Exception {
+
+    TransactionData transactionData = (TransactionData) payments.get(11);
+
+    // The spent outpoint only appears in the raw transaction text
+    String rawTransaction = transactionData.getRawTransaction();
+    int start = rawTransaction.indexOf("outpoint:") + "outpoint:".length();
+    String outpoint = rawTransaction.substring(start, rawTransaction.indexOf('\n', start));
+
+    assertThat(testObject.search(outpoint, PaymentSearchIndex.Mode.SUBSTRING)).containsOnly(transactionData);
+    assertThat(testObject.search(outpoint.substring(10, 30).toUpperCase(), PaymentSearchIndex.Mode.SUBSTRING)).containsOnly(transactionData);
+
+  }
+
+  @Test
+  public void testPrefix() throws Exception {
+
+    for (PaymentData paymentData : testObject.search("piz", PaymentSearchIndex.Mode.PREFIX)) {
+      assertThat(paymentData.getDescription().toLowerCase().contains("pizza")
+        || paymentData.getNote().toLowerCase().contains("pizza")).isTrue();
+    }
+
+    // Word prefixes do not match inside words
+    assertThat(testObject.search("izza", PaymentSearchIndex.Mode.PREFIX)).isEmpty();
+    assertThat(testObject.search("izza", PaymentSearchIndex.Mode.SUBSTRING)).isNotEmpty();
+
+    // All words must match
+    assertThat(testObject.search("pizza zzzz", PaymentSearchIndex.Mode.PREFIX)).isEmpty();
+
+  }
+
+  @Test
+  public void testUpdateRemovesAndReindexes() throws Exception {
+
+    MBHDPaymentRequestData paymentRequestData = (MBHDPaymentRequestData) payments.get(10);
+
+    // Edit in place then remove to force a re-index
+    paymentRequestData.setLabel("unique label xyzzy");
+    testObject.remove(paymentRequestData);
+    testObject.update(payments);
+
+    assertThat(testObject.search("xyzzy", PaymentSearchIndex.Mode.SUBSTRING)).containsOnly(paymentRequestData);
+
+    // Dropping most payments triggers compaction and keeps results consistent
+    List<PaymentData> remaining = payments.subList(0, 100);
+    testObject.update(remaining);
+
+    assertThat(testObject.size()).isEqualTo(100);
+    assertThat(Sets.newHashSet(testObject.search("pizza", PaymentSearchIndex.Mode.SUBSTRING)))
+      .isEqualTo(Sets.newHashSet(scan(remaining, "pizza")));
+    assertThat(testObject.search("xyzzy", PaymentSearchIndex.Mode.SUBSTRING)).containsOnly(paymentRequestData);
+
+  }
+
+  @Test
+  public void testReplaceReindexesEditedNote() throws Exception {
+
+    MBHDPaymentRequestData paymentRequestData = (MBHDPaymentRequestData) payments.get(10);
+    String oldNote = paymentRequestData.getNote();
+
+    // Edit in place as the request wizard does
+    paymentRequestData.setNote("rewritten plugh");
+    testObject.replace(paymentRequestData, paymentRequestData);
+
+    assertThat(testObject.search("plugh", PaymentSearchIndex.Mode.SUBSTRING)).containsOnly(paymentRequestData);
+    assertThat(testObject.search("plugh", PaymentSearchIndex.Mode.PREFIX)).containsOnly(paymentRequestData);
+    assertThat(testObject.search(oldNote, PaymentSearchIndex.Mode.SUBSTRING)).excludes(paymentRequestData);
+
+    // Payments that were never indexed are left for the next update
+    MBHDPaymentRequestData unindexed = new MBHDPaymentRequestData();
+    unindexed.setNote("unindexed plugh");
+    testObject.replace(null, unindexed);
+
+    assertThat(testObject.search("plugh", PaymentSearchIndex.Mode.SUBSTRING)).containsOnly(paymentRequestData);
+
+  }
+
+  /**
+   * <p>A linear scan over the searchable fields as the wallet service used to filter payments, the reference for
+   * the index results and the benchmark timings</p>
+   *
+   * @param paymentDataCollection The payments to scan
+   * @param query                 The query
+   *
+   * @return The matching payments
+   */
+  static List<PaymentData> scan(Collection<PaymentData> paymentDataCollection, String query) {
+
+    String lowerQuery = query.toLowerCase();
+
+    List<PaymentData> filteredPayments = Lists.newArrayList();
+
+    for (PaymentData paymentData : paymentDataCollection) {
+
+      boolean isDescriptionMatched = paymentData.getDescription().toLowerCase().contains(lowerQuery);
+      boolean isNoteMatched = paymentData.getNote().toLowerCase().contains(lowerQuery);
+
+      boolean isQrCodeLabelMatched = false;
+      boolean isPaymentAddressMatched = false;
+      boolean isOutputAddressMatched = false;
+      boolean isTransactionIdMatched = false;
+      boolean isRawTransactionMatched = false;
+
+      if (paymentData instanceof MBHDPaymentRequestData) {
+
+        MBHDPaymentRequestData mbhdPaymentRequestData = (MBHDPaymentRequestData) paymentData;
+        isQrCodeLabelMatched = mbhdPaymentRequestData.getLabel().toLowerCase().contains(lowerQuery);
+
+        // Exact match only
+        isPaymentAddressMatched = mbhdPaymentRequestData.getAddress().toString().equals(query);
+
+      } else if (paymentData instanceof TransactionData) {
+
+        TransactionData transactionData = (TransactionData) paymentData;
+        isOutputAddressMatched = Joiner.on(" ").join(transactionData.getOutputAddresses()).toLowerCase().contains(lowerQuery);
+        isTransactionIdMatched = transactionData.getTransactionId().toLowerCase().contains(lowerQuery);
+        isRawTransactionMatched = transactionData.getRawTransaction().toLowerCase().contains(lowerQuery);
+
+      }
+      if (isDescriptionMatched
+        || isNoteMatched
+        || isQrCodeLabelMatched
+        || isPaymentAddressMatched
+        || isOutputAddressMatched
+        || isTransactionIdMatched
+        || isRawTransactionMatched
+        ) {
+        filteredPayments.add(paymentData);
+      }
+    }
+
+    return filteredPayments;
+  }
+
+  /**
+   * @param count  The number of payments (roughly one in ten is a payment request)
+   * @param random The source of randomness (seed it for repeatable fixtures)
+   *
+   * @return Synthetic transactions and payment requests with varied text
+   */
+  static List<PaymentData> newPayments(int count, Random random) {
+
+    NetworkParameters networkParameters = MainNetParams.get();
+
+    // Key generation is slow so use a small pool of addresses
+    List<Address> addresses = Lists.newArrayList();
+    for (int i = 0; i < 50; i++) {
+      addresses.add(new ECKey().toAddress(networkParameters));
+    }
+
+    List<PaymentData> payments = Lists.newArrayListWithCapacity(count);
+    for (int i = 0; i < count; i++) {
+
+      Address address = addresses.get(random.nextInt(addresses.size()));
+      String text = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)] + " " + i;
+
+      if (i % 10 == 0) {
+        MBHDPaymentRequestData paymentRequestData = new MBHDPaymentRequestData();
+        paymentRequestData.setAddress(address);
+        paymentRequestData.setLabel(text);
+        paymentRequestData.setNote(i % 20 == 0 ? "" : WORDS[random.nextInt(WORDS.length)]);
+        payments.add(paymentRequestData);
+      } else {
+        TransactionData transactionData = new TransactionData(
+          String.format("%064x", i),
+          new DateTime(),
+          new PaymentStatus(RAGStatus.GREEN, CoreMessageKey.CONFIRMED_BY_ONE_BLOCK),
+          Optional.of(Coin.valueOf(random.nextInt(1000000))),
+          new FiatPayment(),
+          Optional.<Coin>absent(),
+          Optional.<Coin>absent(),
+          TransactionConfidence.ConfidenceType.BUILDING,
+          i % 2 == 0 ? PaymentType.RECEIVED : PaymentType.SENT,
+          text,
+          false,
+          Lists.newArrayList(address),
+          newRawTransaction(i, address, random),
+          226,
+          false
+        );
+        transactionData.setNote(i % 3 == 0 ? WORDS[random.nextInt(WORDS.length)] : "");
+        payments.add(transactionData);
+      }
+    }
+
+    return payments;
+  }
+
+  private static String newRawTransaction(int i, Address address, Random random) {
+
+    StringBuilder hex = new StringBuilder();
+    for (int j = 0; j < 226; j++) {
+      hex.append(String.format("%02x", random.nextInt(256)));
+    }
+
+    StringBuilder outpointHash = new StringBuilder();
+    for (int j = 0; j < 32; j++) {
+      outpointHash.append(String.format("%02x", random.nextInt(256)));
+    }
+
+    return String.format("%064x", i) + "\n" +
+      "     in   PUSHDATA(72)[3045...01] PUSHDATA(33)[02...]\n" +
+      "          outpoint:" + outpointHash + ":" + random.nextInt(4) + "\n" +
+      "     out  DUP HASH160 PUSHDATA(20)[" + address.toString() + "] EQUALVERIFY CHECKSIG " + random.nextInt(1000000) + "\n" +
+      hex + "\n";
+  }
+}
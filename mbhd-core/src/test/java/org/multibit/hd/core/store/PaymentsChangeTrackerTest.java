@@ -0,0 +1,84 @@
+package org.multibit.hd.core.store;
+
+import org.bitcoinj.core.Address;
+import org.bitcoinj.core.ECKey;
+import org.bitcoinj.params.UnitTestParams;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.UUID;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class PaymentsChangeTrackerTest {
+
+  private static final String TRANSACTION_HASH = "0123456789abcdef0123456789abcdef0123456789abcdef0123456789abcdef";
+
+  private PaymentsChangeTracker testObject;
+
+  @Before
+  public void setUp() throws Exception {
+
+    testObject = new PaymentsChangeTracker();
+
+  }
+
+  @Test
+  public void testTakeChanges() throws Exception {
+
+    assertThat(testObject.isClean()).isTrue();
+
+    Address address = new ECKey().toAddress(UnitTestParams.get());
+    UUID uuid = UUID.randomUUID();
+
+    testObject.markTransactionInfo(TRANSACTION_HASH);
+    testObject.markTransactionInfo(TRANSACTION_HASH);
+    testObject.markMBHDPaymentRequest(address);
+    testObject.markPaymentRequest(uuid);
+    testObject.markDeleted();
+
+    assertThat(testObject.isClean()).isFalse();
+
+    PaymentsChangeTracker.Changes changes = testObject.takeChanges();
+
+    assertThat(changes.getTransactionInfoHashes()).containsOnly(TRANSACTION_HASH);
+    assertThat(changes.getMBHDPaymentRequestAddresses()).containsOnly(address);
+    assertThat(changes.getPaymentRequestUuids()).containsOnly(uuid);
+    assertThat(changes.getDeletionCount()).isEqualTo(1);
+
+    // Taking the changes leaves the tracker clean
+    assertThat(testObject.isClean()).isTrue();
+    assertThat(testObject.takeChanges().isEmpty()).isTrue();
+
+  }
+
+  @Test
+  public void testRestore() throws Exception {
+
+    UUID uuid1 = UUID.randomUUID();
+    UUID uuid2 = UUID.randomUUID();
+
+    testObject.markPaymentRequest(uuid1);
+    PaymentsChangeTracker.Changes failedChanges = testObject.takeChanges();
+
+    // A change made during the failed save
+    testObject.markPaymentRequest(uuid2);
+
+    testObject.restore(failedChanges);
+
+    assertThat(testObject.takeChanges().getPaymentRequestUuids()).containsOnly(uuid1, uuid2);
+
+  }
+
+  @Test
+  public void testClear() throws Exception {
+
+    testObject.markTransactionInfo(TRANSACTION_HASH);
+    testObject.markDeleted();
+
+    testObject.clear();
+
+    assertThat(testObject.isClean()).isTrue();
+
+  }
+}
@@ -0,0 +1,103 @@
+package org.multibit.hd.core.store;
+
+import com.google.common.base.Optional;
+import org.bitcoinj.core.Coin;
+import org.junit.Before;
+import org.junit.Test;
+import org.multibit.commons.files.SecureFiles;
+import org.spongycastle.crypto.params.KeyParameter;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.security.SecureRandom;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class TransactionInfoJournalTest {
+
+  private static final String TRANSACTION_HASH_1 = "1111111111111111111111111111111111111111111111111111111111111111";
+  private static final String TRANSACTION_HASH_2 = "2222222222222222222222222222222222222222222222222222222222222222";
+
+  private KeyParameter keyParameter;
+
+  private File journalFile;
+
+  private TransactionInfoJournal testObject;
+
+  @Before
+  public void setUp() throws Exception {
+
+    byte[] key = new byte[32];
+    new SecureRandom().nextBytes(key);
+    keyParameter = new KeyParameter(key);
+
+    journalFile = new File(SecureFiles.createTemporaryDirectory(), "payments.journal");
+    testObject = new TransactionInfoJournal(journalFile);
+
+  }
+
+  @Test
+  public void testAppendAndReplay() throws Exception {
+
+    assertThat(testObject.isEmpty()).isTrue();
+    assertThat(testObject.replay(keyParameter)).isEmpty();
+
+    assertThat(testObject.append(newTransactionInfo(TRANSACTION_HASH_1, "First note"), keyParameter)).isEqualTo(1);
+    assertThat(testObject.append(newTransactionInfo(TRANSACTION_HASH_2, "Second note"), keyParameter)).isEqualTo(2);
+    assertThat(testObject.append(newTransactionInfo(TRANSACTION_HASH_1, "Edited note"), keyParameter)).isEqualTo(3);
+
+    assertThat(testObject.isEmpty()).isFalse();
+
+    // A new journal reads the same file
+    List<TransactionInfo> transactionInfos = new TransactionInfoJournal(journalFile).replay(keyParameter);
+
+    assertThat(transactionInfos.size()).isEqualTo(3);
+    assertThat(transactionInfos.get(0).getNote()).isEqualTo("First note");
+    assertThat(transactionInfos.get(1).getHash()).isEqualTo(TRANSACTION_HASH_2);
+    assertThat(transactionInfos.get(2).getNote()).isEqualTo("Edited note");
+    assertThat(transactionInfos.get(2).getMinerFee()).isEqualTo(Optional.of(Coin.valueOf(1000)));
+    assertThat(transactionInfos.get(2).isSentBySelf()).isTrue();
+
+    testObject.truncate();
+
+    assertThat(testObject.isEmpty()).isTrue();
+    assertThat(testObject.replay(keyParameter)).isEmpty();
+
+  }
+
+  @Test
+  public void testTruncatedRecordIsIgnored() throws Exception {
+
+    testObject.append(newTransactionInfo(TRANSACTION_HASH_1, "First note"), keyParameter);
+    long validLength = journalFile.length();
+    testObject.append(newTransactionInfo(TRANSACTION_HASH_2, "Second note"), keyParameter);
+
+    // Simulate a crash part way through the second append
+    try (RandomAccessFile randomAccessFile = new RandomAccessFile(journalFile, "rw")) {
+      randomAccessFile.setLength(validLength + 7);
+    }
+
+    TransactionInfoJournal reopened = new TransactionInfoJournal(journalFile);
+    assertThat(reopened.replay(keyParameter).size()).isEqualTo(1);
+
+    // The partial record is removed before the next append
+    assertThat(reopened.append(newTransactionInfo(TRANSACTION_HASH_2, "Second note again"), keyParameter)).isEqualTo(2);
+
+    List<TransactionInfo> transactionInfos = reopened.replay(keyParameter);
+    assertThat(transactionInfos.size()).isEqualTo(2);
+    assertThat(transactionInfos.get(1).getNote()).isEqualTo("Second note again");
+
+  }
+
+  private TransactionInfo newTransactionInfo(String hash, String note) {
+
+    TransactionInfo transactionInfo = new TransactionInfo();
+    transactionInfo.setHash(hash);
+    transactionInfo.setNote(note);
+    transactionInfo.setMinerFee(Optional.of(Coin.valueOf(1000)));
+    transactionInfo.setSentBySelf(true);
+
+    return transactionInfo;
+  }
+}
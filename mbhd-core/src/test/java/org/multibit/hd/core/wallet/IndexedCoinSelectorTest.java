@@ -0,0 +1,286 @@
+package org.multibit.hd.core.wallet;
+
+import com.google.common.collect.Lists;
+import org.bitcoinj.core.*;
+import org.bitcoinj.params.MainNetParams;
+import org.bitcoinj.testing.FakeTxBuilder;
+import org.bitcoinj.wallet.CoinSelection;
+import org.bitcoinj.wallet.WalletTransaction;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class IndexedCoinSelectorTest {
+
+  private static final NetworkParameters networkParameters = MainNetParams.get();
+
+  private static final Coin FEE_PER_KB = Coin.valueOf(10000);
+
+  private Address address;
+
+  @Before
+  public void setUp() throws Exception {
+
+    Context.propagate(new Context(networkParameters));
+
+    address = new ECKey().toAddress(networkParameters);
+
+  }
+
+  @Test
+  public void testIndex_SortedByValueThenDepth() throws Exception {
+
+    List<TransactionOutput> candidates = Lists.newArrayList(
+      newOutput(20000, 1),
+      newOutput(50000, 1),
+      newOutput(20000, 6),
+      newUnconfirmedOutput(90000)
+    );
+
+    UtxoIndex testObject = new UtxoIndex(candidates);
+
+    // Unconfirmed outputs from others are not spendable
+    assertThat(testObject.size()).isEqualTo(3);
+    assertThat(testObject.getValue(0)).isEqualTo(50000);
+    assertThat(testObject.getValue(1)).isEqualTo(20000);
+    assertThat(testObject.getDepth(1)).isEqualTo(6);
+    assertThat(testObject.getDepth(2)).isEqualTo(1);
+    assertThat(testObject.getTotalValue()).isEqualTo(90000);
+
+    assertThat(testObject.matches(Lists.newArrayList(candidates))).isTrue();
+    assertThat(testObject.matches(candidates.subList(0, 2))).isFalse();
+
+  }
+
+  @Test
+  public void testSelect_ReusesIndex() throws Exception {
+
+    List<TransactionOutput> candidates = Lists.newArrayList(newOutput(20000, 1), newOutput(50000, 1));
+
+    IndexedCoinSelector testObject = new IndexedCoinSelector(FEE_PER_KB, CoinSelectionMode.STANDARD);
+
+    UtxoIndex first = testObject.getIndex(candidates);
+    assertThat(testObject.getIndex(Lists.newArrayList(candidates))).isSameAs(first);
+    assertThat(testObject.getIndex(candidates.subList(0, 1))).isNotSameAs(first);
+
+  }
+
+  @Test
+  public void testSelect_ExactMatchNeedsNoChange() throws Exception {
+
+    TransactionOutput output30 = newOutput(30000, 1);
+    TransactionOutput output70 = newOutput(70000, 1);
+    List<TransactionOutput> candidates = Lists.newArrayList(
+      newOutput(500000, 1),
+      newOutput(200000, 1),
+      output70,
+      newOutput(45000, 1),
+      output30
+    );
+
+    IndexedCoinSelector testObject = new IndexedCoinSelector(FEE_PER_KB, CoinSelectionMode.STANDARD);
+
+    CoinSelection selection = testObject.select(Coin.valueOf(100000), candidates);
+
+    assertThat(selection.valueGathered).isEqualTo(Coin.valueOf(100000));
+    assertThat(selection.gathered).containsOnly(output30, output70);
+
+  }
+
+  @Test
+  public void testSelect_SmallestCoveringOutput() throws Exception {
+
+    TransactionOutput output200 = newOutput(200000, 1);
+    List<TransactionOutput> candidates = Lists.newArrayList(
+      newOutput(500000, 1),
+      output200,
+      newOutput(30000, 1)
+    );
+
+    IndexedCoinSelector testObject = new IndexedCoinSelector(FEE_PER_KB, CoinSelectionMode.STANDARD);
+
+    CoinSelection selection = testObject.select(Coin.valueOf(150000), candidates);
+
+    assertThat(selection.gathered).containsOnly(output200);
+
+  }
+
+  @Test
+  public void testSelect_LargestFirst() throws Exception {
+
+    List<TransactionOutput> candidates = Lists.newArrayList(
+      newOutput(50000, 1),
+      newOutput(40000, 1),
+      newOutput(30000, 1)
+    );
+
+    IndexedCoinSelector testObject = new IndexedCoinSelector(FEE_PER_KB, CoinSelectionMode.STANDARD);
+
+    CoinSelection selection = testObject.select(Coin.valueOf(110000), candidates);
+
+    assertThat(selection.valueGathered).isEqualTo(Coin.valueOf(120000));
+    assertThat(selection.gathered).hasSize(3);
+
+  }
+
+  @Test
+  public void testSelect_Consolidate() throws Exception {
+
+    // Costs more to spend than it is worth at this fee rate
+    TransactionOutput dust = newOutput(1000, 1);
+    TransactionOutput output10 = newOutput(10000, 1);
+    TransactionOutput output20 = newOutput(20000, 1);
+    TransactionOutput output500 = newOutput(500000, 1);
+    List<TransactionOutput> candidates = Lists.newArrayList(output500, output20, output10, dust);
+
+    IndexedCoinSelector testObject = new IndexedCoinSelector(FEE_PER_KB, CoinSelectionMode.CONSOLIDATE);
+
+    CoinSelection selection = testObject.select(Coin.valueOf(15000), candidates);
+    assertThat(selection.gathered).containsOnly(output10, output20, output500);
+
+    selection = testObject.select(NetworkParameters.MAX_MONEY, candidates);
+    assertThat(selection.gathered).containsOnly(output10, output20, output500);
+
+  }
+
+  @Test
+  public void testSelect_EmptyWallet() throws Exception {
+
+    List<TransactionOutput> candidates = Lists.newArrayList(
+      newOutput(1000, 1),
+      newOutput(10000, 1),
+      newOutput(500000, 1)
+    );
+
+    IndexedCoinSelector testObject = new IndexedCoinSelector(FEE_PER_KB, CoinSelectionMode.STANDARD);
+
+    CoinSelection selection = testObject.select(NetworkParameters.MAX_MONEY, candidates);
+
+    assertThat(selection.valueGathered).isEqualTo(Coin.valueOf(511000));
+    assertThat(selection.gathered).hasSize(3);
+
+  }
+
+  @Test
+  public void testCompleteTx_ExcessAddedToFee() throws Exception {
+
+    Wallet wallet = newWallet(500000, 200000, 70000, 45000, 31500);
+
+    // The selection exceeds the amount and fee by 1,500 which is less than the cost of change
+    Wallet.SendRequest sendRequest = newSendRequest(90000);
+    IndexedCoinSelector testObject = (IndexedCoinSelector) sendRequest.coinSelector;
+    List<TransactionOutput> requestedOutputs = Lists.newArrayList(sendRequest.tx.getOutputs());
+    wallet.completeTx(sendRequest);
+
+    assertThat(sendRequest.tx.getOutputs()).hasSize(2);
+
+    assertThat(testObject.foldChangeIntoFee(sendRequest, requestedOutputs)).isTrue();
+
+    Transaction tx = sendRequest.tx;
+    assertThat(tx.getOutputs()).hasSize(1);
+    assertThat(tx.getOutput(0).getValue()).isEqualTo(Coin.valueOf(90000));
+    assertThat(tx.getValueSentFromMe(wallet)).isEqualTo(Coin.valueOf(101500));
+    assertThat(tx.getFee()).isEqualTo(sendRequest.fee);
+    assertThat(sendRequest.fee).isEqualTo(Coin.valueOf(11500));
+
+  }
+
+  @Test
+  public void testCompleteTx_ChangeKept() throws Exception {
+
+    Wallet wallet = newWallet(500000, 200000);
+
+    Wallet.SendRequest sendRequest = newSendRequest(90000);
+    IndexedCoinSelector testObject = (IndexedCoinSelector) sendRequest.coinSelector;
+    List<TransactionOutput> requestedOutputs = Lists.newArrayList(sendRequest.tx.getOutputs());
+    wallet.completeTx(sendRequest);
+
+    Coin fee = sendRequest.fee;
+
+    assertThat(testObject.foldChangeIntoFee(sendRequest, requestedOutputs)).isFalse();
+    assertThat(sendRequest.tx.getOutputs()).hasSize(2);
+    assertThat(sendRequest.fee).isEqualTo(fee);
+
+  }
+
+  @Test
+  public void testTransactionSizes() throws Exception {
+
+    Transaction tx = new Transaction(networkParameters);
+    tx.addInput(newOutput(10000, 1));
+    tx.addOutput(Coin.valueOf(5000), address);
+
+    int size = TransactionSizes.calculateSizeWithSignatures(tx);
+
+    assertThat(size).isEqualTo(tx.bitcoinSerialize().length + TransactionSizes.SIZE_OF_SIGNATURE + TransactionSizes.SIZE_OF_PUBLIC_KEY);
+    assertThat(TransactionSizes.calculateSizeWithSignatures(tx, 2)).isEqualTo(size + 2 * TransactionSizes.SIZE_OF_INPUT);
+    assertThat(TransactionSizes.feeFor(500, FEE_PER_KB)).isEqualTo(Coin.valueOf(5000));
+
+  }
+
+  /**
+   * @param values The values of the confirmed outputs in satoshis
+   *
+   * @return A wallet holding the outputs
+   */
+  private Wallet newWallet(long... values) {
+
+    Wallet wallet = new Wallet(networkParameters);
+    Address receivingAddress = wallet.freshReceiveAddress();
+    for (long value : values) {
+      Transaction tx = FakeTxBuilder.createFakeTx(networkParameters, Coin.valueOf(value), receivingAddress);
+      tx.getConfidence().setAppearedAtChainHeight(1000);
+      tx.getConfidence().setDepthInBlocks(3);
+      wallet.addWalletTransaction(new WalletTransaction(WalletTransaction.Pool.UNSPENT, tx));
+    }
+
+    return wallet;
+  }
+
+  /**
+   * @param amount The amount to send in satoshis
+   *
+   * @return An unsigned send request using the indexed coin selector
+   */
+  private Wallet.SendRequest newSendRequest(long amount) {
+
+    Wallet.SendRequest sendRequest = Wallet.SendRequest.to(address, Coin.valueOf(amount));
+    sendRequest.fee = Coin.ZERO;
+    sendRequest.feePerKb = FEE_PER_KB;
+    sendRequest.signInputs = false;
+    sendRequest.coinSelector = new IndexedCoinSelector(FEE_PER_KB, CoinSelectionMode.STANDARD);
+
+    return sendRequest;
+  }
+
+  /**
+   * @param value The value in satoshis
+   * @param depth The confirmation depth
+   *
+   * @return A confirmed output
+   */
+  private TransactionOutput newOutput(long value, int depth) {
+
+    Transaction tx = FakeTxBuilder.createFakeTx(networkParameters, Coin.valueOf(value), address);
+    tx.getConfidence().setAppearedAtChainHeight(1000);
+    tx.getConfidence().setDepthInBlocks(depth);
+
+    return tx.getOutput(0);
+  }
+
+  /**
+   * @param value The value in satoshis
+   *
+   * @return An unconfirmed output from someone else
+   */
+  private TransactionOutput newUnconfirmedOutput(long value) {
+
+    Transaction tx = FakeTxBuilder.createFakeTx(networkParameters, Coin.valueOf(value), address);
+    tx.getConfidence().setConfidenceType(TransactionConfidence.ConfidenceType.PENDING);
+
+    return tx.getOutput(0);
+  }
+}
@@ -4,7 +4,8 @@ import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.util.concurrent.Uninterruptibles;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
-import org.multibit.commons.concurrent.SafeExecutors;
+import org.multibit.hd.core.concurrent.ExecutorRegistry;
+import org.multibit.hd.core.concurrent.Workload;
 import org.multibit.hd.core.config.Configurations;
 import org.multibit.hd.core.dto.WalletSummary;
 import org.multibit.hd.core.events.CoreEvents;
@@ -210,7 +211,7 @@ public class MultiBitHD {
 
       // Execute the CA certificates download on a separate thread to avoid slowing
       // the startup time
-      SafeExecutors.newSingleThreadExecutor("install-cacerts").submit(
+      ExecutorRegistry.INSTANCE.newSingleThreadExecutor("install-cacerts", Workload.NETWORK).submit(
         new Runnable() {
           @Override
           public void run() {
@@ -2,7 +2,8 @@ package org.multibit.hd.ui.audio;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Maps;
-import org.multibit.commons.concurrent.SafeExecutors;
+import org.multibit.hd.core.concurrent.ExecutorRegistry;
+import org.multibit.hd.core.concurrent.Workload;
 import org.multibit.hd.core.config.SoundConfiguration;
 import org.spongycastle.util.io.Streams;
 
@@ -33,7 +34,7 @@ public class Sounds {
    */
   private static final String PAYMENT_RECEIVED = "receive-bitcoin";
 
-  private static final ExecutorService executorService = SafeExecutors.newSingleThreadExecutor("play-received");
+  private static final ExecutorService executorService = ExecutorRegistry.INSTANCE.newSingleThreadExecutor("play-received", Workload.IO);
 
   /**
    * Utilities have no public constructor
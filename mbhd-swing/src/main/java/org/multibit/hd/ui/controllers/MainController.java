@@ -8,18 +8,19 @@ import org.bitcoinj.core.Coin;
 import org.bitcoinj.core.Transaction;
 import org.bitcoinj.core.Wallet;
 import org.joda.time.DateTime;
-import org.multibit.commons.concurrent.SafeExecutors;
 import org.multibit.commons.utils.Dates;
 import org.multibit.hd.core.atom.AscendingAtomEntryComparator;
 import org.multibit.hd.core.atom.AtomEntry;
 import org.multibit.hd.core.atom.AtomFeed;
 import org.multibit.hd.core.atom.AtomFeeds;
+import org.multibit.hd.core.concurrent.ExecutorRegistry;
+import org.multibit.hd.core.concurrent.ScheduledCheckRegistry;
+import org.multibit.hd.core.concurrent.Workload;
 import org.multibit.hd.core.config.BitcoinConfiguration;
 import org.multibit.hd.core.config.Configurations;
 import org.multibit.hd.core.dto.*;
 import org.multibit.hd.core.error_reporting.ExceptionHandler;
 import org.multibit.hd.core.events.*;
-import org.multibit.hd.core.exceptions.PaymentsSaveException;
 import org.multibit.hd.core.exchanges.ExchangeKey;
 import org.multibit.hd.core.managers.BackupManager;
 import org.multibit.hd.core.managers.InstallationManager;
@@ -98,13 +99,15 @@ public class MainController extends AbstractController implements
 
   private Optional<ExchangeTickerService> exchangeTickerService = Optional.absent();
 
-  private final ListeningExecutorService handoverExecutorService = SafeExecutors.newSingleThreadExecutor("wizard-handover");
+  private final ListeningExecutorService handoverExecutorService = ExecutorRegistry.INSTANCE.newSingleThreadExecutor("wizard-handover", Workload.UI_HANDOFF);
 
-  // Keep a thread pool for transaction status checking
-  private static final ListeningExecutorService transactionCheckingExecutorService = SafeExecutors.newFixedThreadPool(10, "transaction-checking");
+  // Keep delayed transaction status checks keyed by transaction hash (timed rather than sleeping on a thread)
+  private static final ScheduledCheckRegistry<String> transactionStatusChecks = new ScheduledCheckRegistry<>(
+    ExecutorRegistry.INSTANCE.newSingleThreadScheduledExecutor("transaction-checking", Workload.NETWORK)
+  );
 
   // Provide a separate executor service for wallet operations
-  private static final ListeningExecutorService walletExecutorService = SafeExecutors.newFixedThreadPool(10, "wallet-services");
+  private static final ListeningExecutorService walletExecutorService = ExecutorRegistry.INSTANCE.newFixedThreadPool(10, "wallet-services", Workload.IO);
 
   private static final int NUMBER_OF_SECONDS_TO_WAIT_BEFORE_TRANSACTION_CHECKING = 60;
 
@@ -715,6 +718,9 @@ public class MainController extends AbstractController implements
       shutdownMainView();
     }
 
+    // Pending transaction status checks refer to the current wallet
+    transactionStatusChecks.cancelAll();
+
     // Provide a graceful shutdown of the relevant core services in the correct order
     CoreServices.shutdownNow(shutdownType);
 
@@ -893,6 +899,12 @@ public class MainController extends AbstractController implements
    */
   @Subscribe
   public void onTransactionSeenEvent(TransactionSeenEvent transactionSeenEvent) {
+
+    // A transaction confirmed before its status check is due no longer needs checking
+    if (transactionSeenEvent.getDepthInBlocks() > 0 && transactionSeenEvent.getTransactionId() != null) {
+      transactionStatusChecks.cancel(transactionSeenEvent.getTransactionId());
+    }
+
     if (transactionSeenEvent.isFirstAppearanceInWallet() && isFireTransactionAlerts()) {
       log.debug("Firing an alert for a new transaction");
       transactionSeenEvent.setFirstAppearanceInWallet(false);
@@ -936,15 +948,8 @@ public class MainController extends AbstractController implements
 
     WalletService walletService = CoreServices.getCurrentWalletService().get();
     walletService.addTransactionInfo(transactionInfo);
+    // The transaction info is made durable by the payments journal
     log.debug("Added transactionInfo {} to walletService {}", transactionInfo, walletService);
-    try {
-      CharSequence password = WalletManager.INSTANCE.getCurrentWalletSummary().get().getWalletPassword().getPassword();
-      if (password != null) {
-        walletService.writePayments(password);
-      }
-    } catch (PaymentsSaveException pse) {
-      ExceptionHandler.handleThrowable(pse);
-    }
   }
 
   /**
@@ -1729,27 +1734,35 @@ public class MainController extends AbstractController implements
   }
 
   /**
-   * When a transaction is created, fire off a delayed check of the transaction confidence/ network status
+   * <p>When a transaction is created, schedule a delayed check of the transaction confidence/ network status</p>
+   * <p>Checks are keyed by transaction hash so a duplicate creation event merges with the pending check and
+   * a confirmation before the check is due cancels it</p>
    *
    * @param transactionCreationEvent The transaction creation event from the EventBus
    */
   private void initiateDelayedTransactionStatusCheck(final TransactionCreationEvent transactionCreationEvent) {
-    transactionCheckingExecutorService.submit(
+
+    final String transactionId = transactionCreationEvent.getTransactionId();
+    if (transactionId == null) {
+      // Nothing was sent so there is nothing to check
+      return;
+    }
+
+    // Allow a while for the Bitcoin network to respond to the tx being sent
+    transactionStatusChecks.schedule(
+      transactionId,
       new Runnable() {
 
         @Override
         public void run() {
-          log.debug("Performing delayed status check on transaction '" + transactionCreationEvent.getTransactionId() + "'");
-
-          // Wait for a while to let the Bitcoin network respond to the tx being sent
-          Uninterruptibles.sleepUninterruptibly(NUMBER_OF_SECONDS_TO_WAIT_BEFORE_TRANSACTION_CHECKING, TimeUnit.SECONDS);
+          log.debug("Performing delayed status check on transaction '" + transactionId + "'");
 
           // See if the transaction has a RAGStatus if red.
           // This could be the tx has not been transmitted ok or is only seen by zero or one peers.
           // In this case the user will not have access to the tx change and notify them with a warning alert
-          WalletService currentWalletService = CoreServices.getCurrentWalletService().get();
-          if (currentWalletService != null) {
-            TransactionData transactionData = currentWalletService.getTransactionDataByHash(transactionCreationEvent.getTransactionId());
+          Optional<WalletService> currentWalletService = CoreServices.getCurrentWalletService();
+          if (currentWalletService.isPresent()) {
+            TransactionData transactionData = currentWalletService.get().getTransactionDataByHash(transactionId);
             if (transactionData != null) {
               PaymentStatus status = transactionData.getStatus();
               if (status.getStatus().equals(RAGStatus.RED)) {
@@ -1779,7 +1792,7 @@ public class MainController extends AbstractController implements
             }
           }
         }
-      });
+      }, NUMBER_OF_SECONDS_TO_WAIT_BEFORE_TRANSACTION_CHECKING, TimeUnit.SECONDS);
 
   }
 
@@ -6,9 +6,10 @@ import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import net.miginfocom.swing.MigLayout;
-import org.multibit.commons.concurrent.SafeExecutors;
 import org.multibit.hd.common.error_reporting.ErrorReportResult;
 import org.multibit.hd.common.error_reporting.ErrorReportStatus;
+import org.multibit.hd.core.concurrent.ExecutorRegistry;
+import org.multibit.hd.core.concurrent.Workload;
 import org.multibit.hd.core.error_reporting.ExceptionHandler;
 import org.multibit.hd.core.events.CoreEvents;
 import org.multibit.hd.core.events.ShutdownEvent;
@@ -300,7 +301,7 @@ public class ErrorReportingDialog extends JFrame {
         final String finalTruncatedMessage = truncatedUserMessage;
 
         // Upload off the EDT
-        final ListenableFuture<ErrorReportResult> future = SafeExecutors.newSingleThreadExecutor("error-reporting").submit(
+        final ListenableFuture<ErrorReportResult> future = ExecutorRegistry.INSTANCE.newSingleThreadExecutor("error-reporting", Workload.NETWORK).submit(
           new Callable<ErrorReportResult>() {
             @Override
             public ErrorReportResult call() throws Exception {
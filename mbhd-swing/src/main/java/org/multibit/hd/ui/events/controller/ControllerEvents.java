@@ -4,7 +4,8 @@ import com.google.common.base.Preconditions;
 import com.google.common.collect.Sets;
 import com.google.common.eventbus.EventBus;
 import com.google.common.util.concurrent.ListeningExecutorService;
-import org.multibit.commons.concurrent.SafeExecutors;
+import org.multibit.hd.core.concurrent.ExecutorRegistry;
+import org.multibit.hd.core.concurrent.Workload;
 import org.multibit.hd.core.error_reporting.ExceptionHandler;
 import org.multibit.hd.core.managers.WalletManager;
 import org.multibit.hd.ui.models.AlertModel;
@@ -27,7 +28,7 @@ public class ControllerEvents {
   private static final Logger log = LoggerFactory.getLogger(ControllerEvents.class);
 
   // Provide a ControllerEvent thread pool to ensure non-AWT events are isolated from the EDT
-  private static ListeningExecutorService eventExecutor = SafeExecutors.newFixedThreadPool(10, "controller-events");
+  private static ListeningExecutorService eventExecutor = ExecutorRegistry.INSTANCE.newFixedThreadPool(10, "controller-events", Workload.UI_HANDOFF);
 
   /**
    * Use Guava to handle subscribers to events
@@ -10,8 +10,9 @@ import com.google.common.hash.Hashing;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import org.joda.time.DateTime;
-import org.multibit.commons.concurrent.SafeExecutors;
 import org.multibit.commons.utils.Dates;
+import org.multibit.hd.core.concurrent.ExecutorRegistry;
+import org.multibit.hd.core.concurrent.Workload;
 import org.multibit.hd.core.dto.RAGStatus;
 import org.multibit.hd.ui.MultiBitUI;
 import org.multibit.hd.ui.events.controller.ControllerEvents;
@@ -56,7 +57,7 @@ public class Gravatars {
   private static AtomicReference<Optional<DateTime>> lastFailedDownload = new AtomicReference<>(Optional.<DateTime>absent());
 
   // Keep an image thread pool
-  private static final ListeningExecutorService gravatarExecutorService = SafeExecutors.newFixedThreadPool(10, "gravatar");
+  private static final ListeningExecutorService gravatarExecutorService = ExecutorRegistry.INSTANCE.newFixedThreadPool(10, "gravatar", Workload.NETWORK);
 
   // Maintain an image cache
   private static LoadingCache<String, Optional<BufferedImage>> cache = CacheBuilder
@@ -99,8 +99,8 @@ public class ExternalDataListeningService extends AbstractService {
   @Override
   public boolean startInternal() {
 
-    // This service will run a single background thread
-    requireFixedThreadPoolExecutor(1, "uri-listener");
+    // This service will run a single background thread (the accept loop blocks so it has its own)
+    requireDedicatedExecutor("uri-listener");
 
     try {
 
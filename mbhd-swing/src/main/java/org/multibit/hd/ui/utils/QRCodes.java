@@ -3,6 +3,9 @@ package org.multibit.hd.ui.utils;
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
 import com.google.zxing.WriterException;
 import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
 import com.google.zxing.qrcode.encoder.ByteMatrix;
@@ -10,12 +13,14 @@ import com.google.zxing.qrcode.encoder.Encoder;
 import com.google.zxing.qrcode.encoder.QRCode;
 
 import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
 
 
 /**
  * <p>Utilities to provide the following to UI:</p>
  * <ul>
  * <li>Generation of QR codes for Bitcoin URIs</li>
+ * <li>Caching of recently generated QR code images</li>
  * </ul>
  *
  * @since 0.0.1
@@ -25,8 +30,34 @@ public class QRCodes {
 
   private static final int QUIET_ZONE_SIZE = 4;
 
+  private static final int BLACK = 0x000000;
+  private static final int WHITE = 0xffffff;
+
+  /**
+   * The number of recently generated images to keep (a few per payment request being edited)
+   */
+  private static final int MAXIMUM_CACHED_IMAGES = 20;
+
+  // Maintain an image cache keyed by scale factor and contents
+  private static final LoadingCache<QRCodeKey, Optional<BufferedImage>> cache = CacheBuilder
+    .newBuilder()
+    .maximumSize(MAXIMUM_CACHED_IMAGES)
+    .build(new CacheLoader<QRCodeKey, Optional<BufferedImage>>() {
+      @Override
+      public Optional<BufferedImage> load(QRCodeKey key) throws Exception {
+        return rasterize(key.contents, key.scaleFactor);
+      }
+    });
+
+  /**
+   * Utilities have private constructors
+   */
+  private QRCodes() {
+  }
+
   /**
    * <p>Generate a QR code encoding the given contents</p>
+   * <p>Recently generated images are shared so they must not be modified by the caller</p>
    *
    * @param contents    The text to be encoded into the QR code (e.g. a canonical Bitcoin URI)
    * @param scaleFactor The scaling factor providing number of pixels per QR element
@@ -35,6 +66,21 @@ public class QRCodes {
    */
   public static Optional<BufferedImage> generateQRCode(String contents, int scaleFactor) {
 
+    Preconditions.checkState(!Strings.isNullOrEmpty(contents), "'contents' must be present");
+
+    return cache.getUnchecked(new QRCodeKey(contents, scaleFactor));
+  }
+
+  /**
+   * <p>Encode the contents and draw the matrix into a new image a row at a time</p>
+   *
+   * @param contents    The text to be encoded into the QR code
+   * @param scaleFactor The scaling factor providing number of pixels per QR element
+   *
+   * @return A buffered image containing a QR code
+   */
+  private static Optional<BufferedImage> rasterize(String contents, int scaleFactor) {
+
     // Build the input matrix
     final ByteMatrix matrix;
     try {
@@ -56,17 +102,23 @@ public class QRCodes {
 
     // Create buffered image for drawing
     BufferedImage image = new BufferedImage(swatchWidth, swatchHeight, BufferedImage.TYPE_INT_RGB);
+    WritableRaster raster = image.getRaster();
 
-    // Iterate through the matrix and draw the pixels to the image
+    // Expand each matrix row into a scaled pixel row then write it once per scaled line
+    byte[][] matrixArray = matrix.getArray();
+    int[] pixelRow = new int[swatchWidth];
     for (int y = 0; y < matrixHeight; y++) {
+      byte[] matrixRow = matrixArray[y];
+      int offset = 0;
       for (int x = 0; x < matrixWidth; x++) {
-        byte imageValue = matrix.get(x, y);
+        int pixel = (matrixRow[x] == 0) ? BLACK : WHITE;
         for (int scaleX = 0; scaleX < scaleFactor; scaleX++) {
-          for (int scaleY = 0; scaleY < scaleFactor; scaleY++) {
-            image.setRGB(x * scaleFactor + scaleX, y * scaleFactor + scaleY, imageValue);
-          }
+          pixelRow[offset++] = pixel;
         }
       }
+      for (int scaleY = 0; scaleY < scaleFactor; scaleY++) {
+        raster.setDataElements(0, y * scaleFactor + scaleY, swatchWidth, 1, pixelRow);
+      }
     }
 
     return Optional.of(image);
@@ -163,4 +215,37 @@ public class QRCodes {
       row[x] = value;
     }
   }
+
+  /**
+   * <p>Cache key for a QR code image</p>
+   */
+  private static class QRCodeKey {
+
+    private final String contents;
+    private final int scaleFactor;
+
+    private QRCodeKey(String contents, int scaleFactor) {
+      this.contents = contents;
+      this.scaleFactor = scaleFactor;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+
+      QRCodeKey that = (QRCodeKey) o;
+
+      return scaleFactor == that.scaleFactor && contents.equals(that.contents);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * contents.hashCode() + scaleFactor;
+    }
+  }
 }
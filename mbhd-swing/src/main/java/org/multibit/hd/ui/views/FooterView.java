@@ -5,7 +5,8 @@ import com.google.common.collect.Range;
 import com.google.common.eventbus.Subscribe;
 import com.google.common.util.concurrent.ListeningScheduledExecutorService;
 import net.miginfocom.swing.MigLayout;
-import org.multibit.commons.concurrent.SafeExecutors;
+import org.multibit.hd.core.concurrent.ExecutorRegistry;
+import org.multibit.hd.core.concurrent.Workload;
 import org.multibit.hd.core.dto.CoreMessageKey;
 import org.multibit.hd.core.managers.WalletManager;
 import org.multibit.hd.core.services.CoreServices;
@@ -49,7 +50,7 @@ public class FooterView extends AbstractView {
   private final JLabel statusLabel;
   private final JLabel statusIcon;
 
-  private final ListeningScheduledExecutorService scheduledExecutorService = SafeExecutors.newScheduledThreadPool(3, "hide-progress");
+  private final ListeningScheduledExecutorService scheduledExecutorService = ExecutorRegistry.INSTANCE.newScheduledThreadPool(3, "hide-progress", Workload.UI_HANDOFF);
   private final List<Future> hideProgressFutures = Lists.newArrayList();
 
   public FooterView() {
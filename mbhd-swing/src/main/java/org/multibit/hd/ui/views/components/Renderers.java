@@ -26,8 +26,8 @@ public class Renderers {
     return new RAGStatusTableCellRenderer(paymentTableModel);
   }
 
-  public static DefaultTableCellRenderer newTrailingJustifiedDateRenderer() {
-    return new TrailingJustifiedDateTableCellRenderer();
+  public static DefaultTableCellRenderer newTrailingJustifiedDateRenderer(PaymentTableModel paymentTableModel) {
+    return new TrailingJustifiedDateTableCellRenderer(paymentTableModel);
   }
 
   public static DefaultTableCellRenderer newImageIconRenderer() {
@@ -38,12 +38,12 @@ public class Renderers {
     return new LeadingJustifiedStringTableCellRenderer();
   }
 
-  public static DefaultTableCellRenderer newTrailingJustifiedNumericRenderer() {
-    return new AmountBTCTableCellRenderer();
+  public static DefaultTableCellRenderer newTrailingJustifiedNumericRenderer(PaymentTableModel paymentTableModel) {
+    return new AmountBTCTableCellRenderer(paymentTableModel);
   }
 
-  public static DefaultTableCellRenderer newTrailingJustifiedFiatRenderer() {
-    return new AmountFiatTableCellRenderer();
+  public static DefaultTableCellRenderer newTrailingJustifiedFiatRenderer(PaymentTableModel paymentTableModel) {
+    return new AmountFiatTableCellRenderer(paymentTableModel);
   }
 
   public static DefaultTableCellRenderer newPaymentTypeRenderer() {
@@ -111,7 +111,7 @@ public class Tables {
 
     // Date column
     TableColumn dateTableColumn = table.getColumnModel().getColumn(PaymentTableModel.DATE_COLUMN_INDEX);
-    dateTableColumn.setCellRenderer(Renderers.newTrailingJustifiedDateRenderer());
+    dateTableColumn.setCellRenderer(Renderers.newTrailingJustifiedDateRenderer(model));
     resizeColumn(table, PaymentTableModel.DATE_COLUMN_INDEX, 150, 200);
 
     // Status column
@@ -132,7 +132,7 @@ public class Tables {
     ));
 
     TableColumn amountBTCTableColumn = table.getColumnModel().getColumn(PaymentTableModel.AMOUNT_BTC_COLUMN_INDEX);
-    amountBTCTableColumn.setCellRenderer(Renderers.newTrailingJustifiedNumericRenderer());
+    amountBTCTableColumn.setCellRenderer(Renderers.newTrailingJustifiedNumericRenderer(model));
     resizeColumn(table, PaymentTableModel.AMOUNT_BTC_COLUMN_INDEX, 120, 180);
 
     // Description
@@ -141,13 +141,16 @@ public class Tables {
 
     // Amount Fiat column
     TableColumn amountFiatTableColumn = table.getColumnModel().getColumn(PaymentTableModel.AMOUNT_FIAT_COLUMN_INDEX);
-    amountFiatTableColumn.setCellRenderer(Renderers.newTrailingJustifiedFiatRenderer());
+    amountFiatTableColumn.setCellRenderer(Renderers.newTrailingJustifiedFiatRenderer(model));
     resizeColumn(table, PaymentTableModel.AMOUNT_FIAT_COLUMN_INDEX, 120, 180);
 
     // Row sorter for date
     TableRowSorter<TableModel> rowSorter = new TableRowSorter<>(table.getModel());
     table.setRowSorter(rowSorter);
 
+    // The model reports changed payments as row updates so keep them in order
+    rowSorter.setSortsOnUpdates(true);
+
     // Sort by date descending
     List<TableRowSorter.SortKey> sortKeys = Lists.newArrayList();
     sortKeys.add(new TableRowSorter.SortKey(PaymentTableModel.DATE_COLUMN_INDEX, SortOrder.DESCENDING));
@@ -8,6 +8,7 @@ import org.multibit.hd.core.config.LanguageConfiguration;
 import org.multibit.hd.ui.MultiBitUI;
 import org.multibit.hd.ui.languages.Formats;
 import org.multibit.hd.ui.views.components.Labels;
+import org.multibit.hd.ui.views.components.tables.PaymentTableModel;
 import org.multibit.hd.ui.views.themes.Themes;
 
 import javax.swing.*;
@@ -25,29 +26,40 @@ import java.awt.*;
 public class AmountBTCTableCellRenderer extends DefaultTableCellRenderer {
   JLabel label;
 
-  public AmountBTCTableCellRenderer() {
-    label = Labels.newBlankLabel();
-  }
+  private final PaymentTableModel paymentTableModel;
 
-  public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected, boolean hasFocus, int row,
-                                                 int column) {
+  public AmountBTCTableCellRenderer(PaymentTableModel paymentTableModel) {
+    this.paymentTableModel = paymentTableModel;
+
+    label = Labels.newBlankLabel();
     label.setHorizontalAlignment(SwingConstants.TRAILING);
     label.setOpaque(true);
     label.setBorder(new EmptyBorder(new Insets(0, TrailingJustifiedDateTableCellRenderer.TABLE_BORDER, 1, TrailingJustifiedDateTableCellRenderer.TABLE_BORDER)));
     label.setFont(label.getFont().deriveFont(MultiBitUI.TABLE_TEXT_FONT_SIZE));
+  }
+
+  public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected, boolean hasFocus, int row,
+                                                 int column) {
 
     if (value instanceof Optional) {
 
       // Do the Bitcoin processing
 
       Optional<Coin> valueCoin = (Optional<Coin>) value;
-      LanguageConfiguration languageConfiguration = Configurations.currentConfiguration.getLanguage();
-      BitcoinConfiguration bitcoinConfiguration = Configurations.currentConfiguration.getBitcoin();
 
-      String[] balanceArray = Formats.formatCoinAsSymbolic(valueCoin.or(Coin.ZERO), languageConfiguration, bitcoinConfiguration, true);
-      String balanceString = balanceArray[0] + balanceArray[1];
+      // Formatting is only repeated when the payment or configuration changes
+      int modelRow = table.convertRowIndexToModel(row);
+      String balanceText = paymentTableModel.getFormattedValue(modelRow, PaymentTableModel.AMOUNT_BTC_COLUMN_INDEX);
+      if (balanceText == null) {
+        LanguageConfiguration languageConfiguration = Configurations.currentConfiguration.getLanguage();
+        BitcoinConfiguration bitcoinConfiguration = Configurations.currentConfiguration.getBitcoin();
+
+        String[] balanceArray = Formats.formatCoinAsSymbolic(valueCoin.or(Coin.ZERO), languageConfiguration, bitcoinConfiguration, true);
+        balanceText = balanceArray[0] + balanceArray[1] + TrailingJustifiedDateTableCellRenderer.SPACER;
+        paymentTableModel.setFormattedValue(modelRow, PaymentTableModel.AMOUNT_BTC_COLUMN_INDEX, balanceText);
+      }
 
-      label.setText(balanceString + TrailingJustifiedDateTableCellRenderer.SPACER);
+      label.setText(balanceText);
 
       if ((valueCoin.or(Coin.ZERO).compareTo(Coin.ZERO) < 0)) {
         // Debit
@@ -7,6 +7,7 @@ import org.multibit.hd.core.dto.FiatPayment;
 import org.multibit.hd.ui.MultiBitUI;
 import org.multibit.hd.ui.languages.Formats;
 import org.multibit.hd.ui.views.components.Labels;
+import org.multibit.hd.ui.views.components.tables.PaymentTableModel;
 import org.multibit.hd.ui.views.themes.Themes;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -29,16 +30,20 @@ public class AmountFiatTableCellRenderer extends DefaultTableCellRenderer {
 
   private static final Logger log = LoggerFactory.getLogger(AmountFiatTableCellRenderer.class);
 
-  public AmountFiatTableCellRenderer() {
-    label = Labels.newBlankLabel();
-  }
+  private final PaymentTableModel paymentTableModel;
 
-  public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected, boolean hasFocus, int row,
-                                                 int column) {
+  public AmountFiatTableCellRenderer(PaymentTableModel paymentTableModel) {
+    this.paymentTableModel = paymentTableModel;
+
+    label = Labels.newBlankLabel();
     label.setHorizontalAlignment(SwingConstants.TRAILING);
     label.setOpaque(true);
     label.setBorder(new EmptyBorder(new Insets(0, TrailingJustifiedDateTableCellRenderer.TABLE_BORDER, 1, TrailingJustifiedDateTableCellRenderer.TABLE_BORDER)));
     label.setFont(label.getFont().deriveFont(MultiBitUI.TABLE_TEXT_FONT_SIZE));
+  }
+
+  public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected, boolean hasFocus, int row,
+                                                 int column) {
 
     if (value instanceof FiatPayment) {
 
@@ -47,20 +52,27 @@ public class AmountFiatTableCellRenderer extends DefaultTableCellRenderer {
       if (!(fiatPayment.getAmount() == null) && fiatPayment.getAmount().isPresent() && fiatPayment.getCurrency().isPresent()) {
         BigDecimal amount = fiatPayment.getAmount().get();
         try {
-          LanguageConfiguration languageConfiguration = Configurations.currentConfiguration.getLanguage();
-          BitcoinConfiguration bitcoinConfiguration = Configurations.currentConfiguration.getBitcoin();
+          // Formatting is only repeated when the payment or configuration changes
+          int modelRow = table.convertRowIndexToModel(row);
+          String balanceText = paymentTableModel.getFormattedValue(modelRow, PaymentTableModel.AMOUNT_FIAT_COLUMN_INDEX);
+          if (balanceText == null) {
+            LanguageConfiguration languageConfiguration = Configurations.currentConfiguration.getLanguage();
+            BitcoinConfiguration bitcoinConfiguration = Configurations.currentConfiguration.getBitcoin();
 
-          String balance = Formats.formatLocalAmount(amount, languageConfiguration.getLocale(), bitcoinConfiguration, true);
-          if (!bitcoinConfiguration.getLocalCurrencyCode().equals(fiatPayment.getCurrency().get().getCurrencyCode())) {
-            // Fiat payment is in a different currency to the main UI
-            if (bitcoinConfiguration.isCurrencySymbolLeading()) {
-              balance = fiatPayment.getCurrency().get().getSymbol() + "\u00a0" + balance;
-            } else {
-              balance = balance + "\u00a0" + fiatPayment.getCurrency().get().getSymbol();
+            String balance = Formats.formatLocalAmount(amount, languageConfiguration.getLocale(), bitcoinConfiguration, true);
+            if (!bitcoinConfiguration.getLocalCurrencyCode().equals(fiatPayment.getCurrency().get().getCurrencyCode())) {
+              // Fiat payment is in a different currency to the main UI
+              if (bitcoinConfiguration.isCurrencySymbolLeading()) {
+                balance = fiatPayment.getCurrency().get().getSymbol() + "\u00a0" + balance;
+              } else {
+                balance = balance + "\u00a0" + fiatPayment.getCurrency().get().getSymbol();
+              }
             }
+            balanceText = balance + TrailingJustifiedDateTableCellRenderer.SPACER;
+            paymentTableModel.setFormattedValue(modelRow, PaymentTableModel.AMOUNT_FIAT_COLUMN_INDEX, balanceText);
           }
 
-          label.setText(balance + TrailingJustifiedDateTableCellRenderer.SPACER);
+          label.setText(balanceText);
 
           if (amount.signum() == -1) {
             // Debit
@@ -26,6 +26,9 @@ public class LeadingJustifiedStringTableCellRenderer extends DefaultTableCellRen
   public LeadingJustifiedStringTableCellRenderer() {
 
     label = Labels.newBlankLabel();
+    label.setHorizontalAlignment(SwingConstants.LEADING);
+    label.setOpaque(true);
+    label.setFont(label.getFont().deriveFont(MultiBitUI.TABLE_TEXT_FONT_SIZE));
 
   }
 
@@ -33,10 +36,6 @@ public class LeadingJustifiedStringTableCellRenderer extends DefaultTableCellRen
   public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected, boolean hasFocus, int row,
                                                  int column) {
 
-    label.setHorizontalAlignment(SwingConstants.LEADING);
-    label.setOpaque(true);
-    label.setFont(label.getFont().deriveFont(MultiBitUI.TABLE_TEXT_FONT_SIZE));
-
     if (value != null) {
       label.setText(value.toString());
     }
@@ -17,14 +17,17 @@ public class PaymentTypeTableCellRenderer extends DefaultTableCellRenderer {
 
   private JLabel label = Labels.newBlankLabel();
 
-  @Override
-  public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected, boolean hasFocus, int row,
-                                                 int column) {
+  public PaymentTypeTableCellRenderer() {
 
     label.setHorizontalAlignment(SwingConstants.LEADING);
     label.setOpaque(true);
     label.setFont(label.getFont().deriveFont(MultiBitUI.TABLE_TEXT_FONT_SIZE));
 
+  }
+
+  @Override
+  public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected, boolean hasFocus, int row,
+                                                 int column) {
 
     if (value instanceof PaymentType) {
       PaymentType type = (PaymentType) value;
@@ -4,6 +4,7 @@ import org.joda.time.DateTime;
 import org.multibit.hd.ui.MultiBitUI;
 import org.multibit.hd.ui.utils.LocalisedDateUtils;
 import org.multibit.hd.ui.views.components.Labels;
+import org.multibit.hd.ui.views.components.tables.PaymentTableModel;
 import org.multibit.hd.ui.views.themes.Themes;
 
 import javax.swing.*;
@@ -25,9 +26,16 @@ public class TrailingJustifiedDateTableCellRenderer extends DefaultTableCellRend
 
   public static final String SPACER = "   "; // 3 spaces
 
-  public TrailingJustifiedDateTableCellRenderer() {
+  private final PaymentTableModel paymentTableModel;
+
+  public TrailingJustifiedDateTableCellRenderer(PaymentTableModel paymentTableModel) {
+
+    this.paymentTableModel = paymentTableModel;
 
     label = Labels.newBlankLabel();
+    label.setHorizontalAlignment(SwingConstants.TRAILING);
+    label.setOpaque(true);
+    label.setFont(label.getFont().deriveFont(MultiBitUI.TABLE_TEXT_FONT_SIZE));
 
   }
 
@@ -35,20 +43,21 @@ public class TrailingJustifiedDateTableCellRenderer extends DefaultTableCellRend
   public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected, boolean hasFocus, int row,
                                                  int column) {
 
-    label.setHorizontalAlignment(SwingConstants.TRAILING);
-    label.setOpaque(true);
-    label.setFont(label.getFont().deriveFont(MultiBitUI.TABLE_TEXT_FONT_SIZE));
-
-    String formattedDate;
-    if (value != null && value instanceof DateTime) {
-      DateTime date = (DateTime) value;
-      // Display in the system timezone
-      formattedDate = LocalisedDateUtils.formatFriendlyDateLocal(date);
-    } else {
-      formattedDate = "";
+    // Formatting is only repeated when the payment or configuration changes
+    int modelRow = table.convertRowIndexToModel(row);
+    String formattedDate = paymentTableModel.getFormattedValue(modelRow, PaymentTableModel.DATE_COLUMN_INDEX);
+    if (formattedDate == null) {
+      if (value != null && value instanceof DateTime) {
+        DateTime date = (DateTime) value;
+        // Display in the system timezone
+        formattedDate = LocalisedDateUtils.formatFriendlyDateLocal(date) + SPACER;
+      } else {
+        formattedDate = SPACER;
+      }
+      paymentTableModel.setFormattedValue(modelRow, PaymentTableModel.DATE_COLUMN_INDEX, formattedDate);
     }
 
-    label.setText(formattedDate + SPACER);
+    label.setText(formattedDate);
 
     if (isSelected) {
       label.setBackground(Themes.currentTheme.tableRowSelectedBackground());
@@ -1,10 +1,14 @@
 package org.multibit.hd.ui.views.components.tables;
 
+import com.google.common.base.Objects;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import org.joda.time.DateTime;
+import org.multibit.hd.core.config.Configuration;
 import org.multibit.hd.core.config.Configurations;
 import org.multibit.hd.core.dto.FiatPayment;
 import org.multibit.hd.core.dto.PaymentData;
+import org.multibit.hd.core.dto.PaymentStatus;
 import org.multibit.hd.core.dto.RAGStatus;
 import org.multibit.hd.ui.languages.Languages;
 import org.multibit.hd.ui.languages.MessageKey;
@@ -12,13 +16,16 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.swing.table.AbstractTableModel;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
  * <p>TableModel to provide the following to contact JTable:</p>
  * <ul>
  * <li>Adapts a list of payments into a table model</li>
+ * <li>Caches the formatted text of each row until its payment, the configuration or the day changes</li>
  * </ul>
  *
  * @since 0.0.1
@@ -44,10 +51,28 @@ public class PaymentTableModel extends AbstractTableModel {
           Languages.safeText(MessageKey.LOCAL_AMOUNT) + " " + Configurations.currentConfiguration.getBitcoin().getLocalCurrencySymbol()
   };
 
-  private Object[][] data;
+  /**
+   * The rows in model order (a row is kept across updates while its payment shows the same values)
+   */
+  private List<PaymentRow> rows = Lists.newArrayList();
 
   private List<PaymentData> paymentDataList;
 
+  /**
+   * The generation of formatted text that is current (rows formatted in earlier generations are formatted again)
+   */
+  private int formatGeneration = 0;
+
+  /**
+   * The configuration (language, units etc) of the current format generation
+   */
+  private Configuration formatConfiguration;
+
+  /**
+   * The end of the current format generation since dates are shown relative to today (the next local midnight)
+   */
+  private long formatExpiryMillis = 0;
+
   public PaymentTableModel(Set<PaymentData> paymentDataList) {
     setPaymentData(paymentDataList, false);
   }
@@ -62,14 +87,25 @@ public class PaymentTableModel extends AbstractTableModel {
   }
 
   /**
-   * Set the payment data into the table
+   * <p>Set the payment data into the table</p>
+   * <p>If only some payments in the same positions have changed then just their rows are reported as updated</p>
    *
-   * @param paymentData The paymentData to show in the table as a List
+   * @param paymentData          The paymentData to show in the table as a List
+   * @param fireTableDataChanged True if the table should be notified of the changes
    */
   public void setPaymentData(List<PaymentData> paymentData, boolean fireTableDataChanged) {
-    this.paymentDataList = paymentData;
 
-    data = new Object[paymentData.size()][];
+    List<PaymentRow> previousRows = rows;
+
+    // Index the previous rows so unchanged payments keep their formatted text wherever they move to
+    Map<PaymentData, PaymentRow> previousRowMap = Maps.newHashMapWithExpectedSize(previousRows.size());
+    for (PaymentRow previousRow : previousRows) {
+      previousRowMap.put(previousRow.paymentData, previousRow);
+    }
+
+    List<PaymentRow> newRows = Lists.newArrayListWithCapacity(paymentData.size());
+    boolean sameLayout = previousRows.size() == paymentData.size();
+    boolean[] updatedRows = new boolean[paymentData.size()];
 
     int row = 0;
     for (PaymentData payment : paymentData) {
@@ -83,12 +119,107 @@ public class PaymentTableModel extends AbstractTableModel {
               payment.getAmountFiat()
       };
 
-      data[row] = rowData;
+      // Prefer the row in the same position, otherwise the row of the same payment wherever it was
+      PaymentRow previousRow = sameLayout ? previousRows.get(row) : null;
+      boolean moved = false;
+      if (previousRow == null || !previousRow.hasSameValues(rowData)) {
+        previousRow = previousRowMap.get(payment);
+        moved = true;
+      }
+
+      if (previousRow != null && previousRow.hasSameValues(rowData)) {
+        // Keep the formatted text but refer to the latest payment
+        previousRow.paymentData = payment;
+        previousRow.values = rowData;
+        newRows.add(previousRow);
+        updatedRows[row] = moved;
+      } else {
+        newRows.add(new PaymentRow(payment, rowData));
+        updatedRows[row] = true;
+      }
 
       row++;
     }
+
+    this.rows = newRows;
+    this.paymentDataList = paymentData;
+
     if (fireTableDataChanged) {
-      fireTableDataChanged();
+      if (sameLayout) {
+        fireTableRowsUpdated(updatedRows);
+      } else {
+        fireTableDataChanged();
+      }
+    }
+  }
+
+  /**
+   * @param modelRow    The row in the model
+   * @param modelColumn The column in the model
+   *
+   * @return The text formatted by a renderer for this cell or null if it must be formatted again
+   */
+  public String getFormattedValue(int modelRow, int modelColumn) {
+
+    if (modelRow < 0 || modelRow >= rows.size()) {
+      return null;
+    }
+
+    PaymentRow paymentRow = rows.get(modelRow);
+    if (paymentRow.formatGeneration != checkFormatGeneration()) {
+      return null;
+    }
+    return paymentRow.formattedValues[modelColumn];
+  }
+
+  /**
+   * @param modelRow       The row in the model
+   * @param modelColumn    The column in the model
+   * @param formattedValue The text formatted by a renderer for this cell
+   */
+  public void setFormattedValue(int modelRow, int modelColumn, String formattedValue) {
+
+    if (modelRow < 0 || modelRow >= rows.size()) {
+      return;
+    }
+
+    PaymentRow paymentRow = rows.get(modelRow);
+    int currentGeneration = checkFormatGeneration();
+    if (paymentRow.formatGeneration != currentGeneration) {
+      Arrays.fill(paymentRow.formattedValues, null);
+      paymentRow.formatGeneration = currentGeneration;
+    }
+    paymentRow.formattedValues[modelColumn] = formattedValue;
+  }
+
+  /**
+   * @return The current format generation, starting a new one if the configuration or day has changed
+   */
+  private int checkFormatGeneration() {
+
+    if (formatConfiguration != Configurations.currentConfiguration || System.currentTimeMillis() >= formatExpiryMillis) {
+      formatGeneration++;
+      formatConfiguration = Configurations.currentConfiguration;
+      formatExpiryMillis = DateTime.now().plusDays(1).withTimeAtStartOfDay().getMillis();
+    }
+    return formatGeneration;
+  }
+
+  /**
+   * @param updatedRows True for each row that has changed
+   */
+  private void fireTableRowsUpdated(boolean[] updatedRows) {
+
+    // Report each run of consecutive updated rows as one event
+    int firstRow = -1;
+    for (int row = 0; row <= updatedRows.length; row++) {
+      boolean updated = row < updatedRows.length && updatedRows[row];
+      if (updated && firstRow == -1) {
+        firstRow = row;
+      } else if (!updated && firstRow != -1) {
+        fireTableRowsUpdated(firstRow, row - 1);
+        firstRow = -1;
+      }
     }
   }
 
@@ -97,7 +228,7 @@ public class PaymentTableModel extends AbstractTableModel {
   }
 
   public int getRowCount() {
-    return data.length;
+    return rows.size();
   }
 
   public String getColumnName(int col) {
@@ -105,11 +236,11 @@ public class PaymentTableModel extends AbstractTableModel {
   }
 
   public Object getValueAt(int row, int col) {
-    if (data.length == 0) {
+    if (rows.isEmpty()) {
       return "";
     }
     try {
-      return data[row][col];
+      return rows.get(row).values[col];
     } catch (NullPointerException npe) {
       log.error("NullPointerException reading row = " + row + ", column = " + col);
       return "";
@@ -145,4 +276,59 @@ public class PaymentTableModel extends AbstractTableModel {
     return paymentDataList;
   }
 
+  /**
+   * <p>A payment with its cell values and the text its renderers formatted</p>
+   */
+  private static class PaymentRow {
+
+    private PaymentData paymentData;
+
+    private Object[] values;
+
+    /**
+     * The format generation of the formatted values (zero if never formatted)
+     */
+    private int formatGeneration = 0;
+
+    private final String[] formattedValues;
+
+    private PaymentRow(PaymentData paymentData, Object[] values) {
+      this.paymentData = paymentData;
+      this.values = values;
+      this.formattedValues = new String[values.length];
+    }
+
+    /**
+     * @param otherValues The cell values of a payment
+     *
+     * @return True if the payment would be shown the same as this row
+     */
+    private boolean hasSameValues(Object[] otherValues) {
+
+      for (int column = 0; column < values.length; column++) {
+        if (column == STATUS_COLUMN_INDEX) {
+          if (!isSameStatus((PaymentStatus) values[column], (PaymentStatus) otherValues[column])) {
+            return false;
+          }
+        } else if (!Objects.equal(values[column], otherValues[column])) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /**
+     * Payment statuses are often created on demand so are compared by content
+     */
+    private static boolean isSameStatus(PaymentStatus status, PaymentStatus otherStatus) {
+
+      if (status == null || otherStatus == null) {
+        return status == otherStatus;
+      }
+      return status.getStatus() == otherStatus.getStatus()
+        && status.getStatusKey() == otherStatus.getStatusKey()
+        && status.getDepth() == otherStatus.getDepth()
+        && Arrays.equals(status.getStatusData(), otherStatus.getStatusData());
+    }
+  }
 }
@@ -0,0 +1,340 @@
+package org.multibit.hd.ui.views.screens.help;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.common.io.ByteStreams;
+import org.multibit.hd.core.managers.InstallationManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.*;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * <p>Cache to provide the following to the help screen:</p>
+ * <ul>
+ * <li>In-memory copies of help pages and images so back/forward navigation does not fetch them again</li>
+ * <li>Revalidation of remote content using ETag and Last-Modified once it is older than the revalidation period</li>
+ * <li>Fall back to a stale copy or the bundled internal help if the remote content cannot be fetched</li>
+ * </ul>
+ * <p>The cache is limited by the total size of the content it holds and evicts the least recently used entries first.</p>
+ *
+ * @since 0.3.0
+ */
+public class HelpContentCache {
+
+  private static final Logger log = LoggerFactory.getLogger(HelpContentCache.class);
+
+  /**
+   * The classpath root of the bundled internal help
+   */
+  public static final String INTERNAL_HELP_ROOT = "/assets/html/en/help";
+
+  /**
+   * The upper bound on the total size of the cached content
+   */
+  private static final long MAXIMUM_CACHE_BYTES = 8 * 1024 * 1024;
+
+  /**
+   * The period after which remote content is revalidated before use
+   */
+  private static final long REVALIDATE_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+  /**
+   * The connect and read timeout for remote content
+   */
+  private static final int TIMEOUT_MILLIS = 10000;
+
+  /**
+   * Matches the source of an image in a help page (the tag may span lines)
+   */
+  private static final Pattern IMAGE_SOURCE_PATTERN = Pattern.compile("<img[^>]*?\\ssrc\\s*=\\s*[\"']([^\"']+)[\"']", Pattern.CASE_INSENSITIVE);
+
+  private final String internalHelpRoot;
+
+  private final long revalidateMillis;
+
+  /**
+   * Content keyed by external URL form (remote) or classpath (internal)
+   */
+  private final Cache<String, CachedContent> contentCache;
+
+  /**
+   * Decoded images keyed in the same way as their content
+   */
+  private final Cache<String, Image> imageCache = CacheBuilder
+    .newBuilder()
+    .maximumSize(100)
+    .build();
+
+  /**
+   * Creates a cache over the bundled internal help using the default limits
+   */
+  public HelpContentCache() {
+    this(INTERNAL_HELP_ROOT, MAXIMUM_CACHE_BYTES, REVALIDATE_MILLIS);
+  }
+
+  /**
+   * @param internalHelpRoot The classpath root of the bundled internal help
+   * @param maximumBytes     The upper bound on the total size of the cached content
+   * @param revalidateMillis The period after which remote content is revalidated before use
+   */
+  HelpContentCache(String internalHelpRoot, long maximumBytes, long revalidateMillis) {
+
+    Preconditions.checkNotNull(internalHelpRoot, "'internalHelpRoot' must be present");
+
+    this.internalHelpRoot = internalHelpRoot;
+    this.revalidateMillis = revalidateMillis;
+
+    this.contentCache = CacheBuilder
+      .newBuilder()
+      .maximumWeight(maximumBytes)
+      .weigher(
+        new Weigher<String, CachedContent>() {
+          @Override
+          public int weigh(String key, CachedContent value) {
+            return value.content.length;
+          }
+        })
+      .build();
+
+  }
+
+  /**
+   * <p>Get the content of a help page or image, blocking if it must be fetched</p>
+   *
+   * @param url             The URL of the help page or image
+   * @param useInternalHelp True if only the bundled internal help should be used
+   *
+   * @return The content
+   *
+   * @throws IOException If the content is not cached and could not be fetched or found in the internal help
+   */
+  public byte[] getContent(URL url, boolean useInternalHelp) throws IOException {
+
+    Preconditions.checkNotNull(url, "'url' must be present");
+
+    if (!useInternalHelp) {
+      try {
+        return getRemoteContent(url);
+      } catch (IOException e) {
+        Optional<byte[]> internalContent = getInternalContent(url);
+        if (internalContent.isPresent()) {
+          log.warn("Using internal help for '{}'. Error was '{}'", url, e.getMessage());
+          return internalContent.get();
+        }
+        throw e;
+      }
+    }
+
+    Optional<byte[]> internalContent = getInternalContent(url);
+    if (internalContent.isPresent()) {
+      return internalContent.get();
+    }
+
+    throw new FileNotFoundException("No internal help for '" + url + "'");
+  }
+
+  /**
+   * <p>Fetch the images referenced by a help page so they can be rendered from memory</p>
+   *
+   * @param pageUrl         The URL of the help page (relative image sources are resolved against it)
+   * @param pageContent     The content of the help page
+   * @param useInternalHelp True if only the bundled internal help should be used
+   */
+  public void prefetchImages(URL pageUrl, byte[] pageContent, boolean useInternalHelp) {
+
+    Matcher matcher = IMAGE_SOURCE_PATTERN.matcher(new String(pageContent, Charsets.UTF_8));
+    while (matcher.find()) {
+      try {
+        getContent(new URL(pageUrl, matcher.group(1)), useInternalHelp);
+      } catch (MalformedURLException e) {
+        log.debug("Ignoring image '{}' in '{}'", matcher.group(1), pageUrl);
+      } catch (IOException e) {
+        log.debug("Unable to prefetch image '{}'. Error was '{}'", matcher.group(1), e.getMessage());
+      }
+    }
+
+  }
+
+  /**
+   * <p>Get a decoded image without blocking on the network (suitable for the EDT)</p>
+   *
+   * @param url             The URL of the image
+   * @param useInternalHelp True if only the bundled internal help should be used
+   *
+   * @return The image if its content is cached or bundled
+   */
+  public Optional<Image> getImage(URL url, boolean useInternalHelp) {
+
+    String key = url.toExternalForm();
+    CachedContent cachedContent = useInternalHelp ? null : contentCache.getIfPresent(key);
+
+    byte[] content;
+    if (cachedContent != null) {
+      content = cachedContent.content;
+    } else {
+      // Bundled content is always available locally
+      Optional<byte[]> internalContent = getInternalContent(url);
+      if (!internalContent.isPresent()) {
+        return Optional.absent();
+      }
+      key = toInternalPath(url);
+      content = internalContent.get();
+    }
+
+    Image image = imageCache.getIfPresent(key);
+    if (image == null) {
+      image = Toolkit.getDefaultToolkit().createImage(content);
+      imageCache.put(key, image);
+    }
+
+    return Optional.of(image);
+  }
+
+  /**
+   * <p>Get remote content, revalidating the cached copy if it is older than the revalidation period</p>
+   *
+   * @param url The URL of the content
+   *
+   * @return The content (a stale copy if revalidation fails)
+   *
+   * @throws IOException If the content is not cached and could not be fetched
+   */
+  byte[] getRemoteContent(URL url) throws IOException {
+
+    String key = url.toExternalForm();
+    CachedContent cachedContent = contentCache.getIfPresent(key);
+
+    long now = System.currentTimeMillis();
+    if (cachedContent != null && now - cachedContent.validatedMillis < revalidateMillis) {
+      return cachedContent.content;
+    }
+
+    try {
+      URLConnection connection = url.openConnection();
+      connection.setConnectTimeout(TIMEOUT_MILLIS);
+      connection.setReadTimeout(TIMEOUT_MILLIS);
+
+      if (cachedContent != null) {
+        if (cachedContent.eTag != null) {
+          connection.setRequestProperty("If-None-Match", cachedContent.eTag);
+        }
+        if (cachedContent.lastModified > 0) {
+          connection.setIfModifiedSince(cachedContent.lastModified);
+        }
+      }
+
+      if (connection instanceof HttpURLConnection) {
+        int responseCode = ((HttpURLConnection) connection).getResponseCode();
+        if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED && cachedContent != null) {
+          log.debug("Help content '{}' is not modified", url);
+          contentCache.put(key, cachedContent.revalidated(now));
+          return cachedContent.content;
+        }
+        if (responseCode != HttpURLConnection.HTTP_OK) {
+          throw new IOException("Unexpected response code " + responseCode + " for '" + url + "'");
+        }
+      }
+
+      byte[] content;
+      try (InputStream inputStream = connection.getInputStream()) {
+        content = ByteStreams.toByteArray(inputStream);
+      }
+
+      contentCache.put(key, new CachedContent(content, connection.getHeaderField("ETag"), connection.getLastModified(), now));
+      imageCache.invalidate(key);
+
+      return content;
+
+    } catch (IOException e) {
+      if (cachedContent != null) {
+        log.warn("Using cached help content for '{}'. Error was '{}'", url, e.getMessage());
+        return cachedContent.content;
+      }
+      throw e;
+    }
+
+  }
+
+  /**
+   * @param url The URL of the help page or image
+   *
+   * @return The bundled content if present
+   */
+  Optional<byte[]> getInternalContent(URL url) {
+
+    String internalPath = toInternalPath(url);
+
+    CachedContent cachedContent = contentCache.getIfPresent(internalPath);
+    if (cachedContent != null) {
+      return Optional.of(cachedContent.content);
+    }
+
+    try (InputStream inputStream = HelpContentCache.class.getResourceAsStream(internalPath)) {
+      if (inputStream == null) {
+        return Optional.absent();
+      }
+      byte[] content = ByteStreams.toByteArray(inputStream);
+      contentCache.put(internalPath, new CachedContent(content, null, 0, System.currentTimeMillis()));
+      return Optional.of(content);
+    } catch (IOException e) {
+      log.warn("Unable to read internal help '{}'. Error was '{}'", internalPath, e.getMessage());
+      return Optional.absent();
+    }
+
+  }
+
+  /**
+   * @param url The URL of the help page or image
+   *
+   * @return The classpath of the equivalent internal help
+   */
+  private String toInternalPath(URL url) {
+
+    // Remove the host
+    String replacedPath = url.getPath().replace(InstallationManager.MBHD_WEBSITE_HELP_DOMAIN, "");
+
+    return internalHelpRoot + replacedPath;
+  }
+
+  /**
+   * <p>Content with the validators supplied by the server</p>
+   */
+  private static class CachedContent {
+
+    private final byte[] content;
+    private final String eTag;
+    private final long lastModified;
+    private final long validatedMillis;
+
+    private CachedContent(byte[] content, String eTag, long lastModified, long validatedMillis) {
+      this.content = content;
+      this.eTag = eTag;
+      this.lastModified = lastModified;
+      this.validatedMillis = validatedMillis;
+    }
+
+    /**
+     * @param now The time the content was confirmed as current
+     *
+     * @return A copy with the new validation time
+     */
+    private CachedContent revalidated(long now) {
+      return new CachedContent(content, eTag, lastModified, now);
+    }
+  }
+}
@@ -0,0 +1,88 @@
+package org.multibit.hd.ui.views.screens.help;
+
+import com.google.common.base.Optional;
+
+import java.awt.*;
+import java.net.URL;
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.Enumeration;
+
+/**
+ * <p>Image cache to provide the following to the help HTML documents:</p>
+ * <ul>
+ * <li>Images from the help content cache so they are not fetched again on each page load</li>
+ * <li>Images from the internal help when it is in use</li>
+ * </ul>
+ * <p>Swing image views look up their image in the "imageCache" document property before loading it from the URL.
+ * Images that are neither cached nor bundled are loaded asynchronously by the toolkit as before.</p>
+ *
+ * @since 0.3.0
+ */
+class HelpImageDictionary extends Dictionary<URL, Image> {
+
+  /**
+   * The document property consulted by the Swing image view
+   */
+  static final String IMAGE_CACHE_PROPERTY = "imageCache";
+
+  private final HelpContentCache helpContentCache;
+
+  private final boolean useInternalHelp;
+
+  /**
+   * @param helpContentCache The help content cache
+   * @param useInternalHelp  True if only the bundled internal help should be used
+   */
+  HelpImageDictionary(HelpContentCache helpContentCache, boolean useInternalHelp) {
+    this.helpContentCache = helpContentCache;
+    this.useInternalHelp = useInternalHelp;
+  }
+
+  @Override
+  public Image get(Object key) {
+
+    if (!(key instanceof URL)) {
+      return null;
+    }
+
+    URL url = (URL) key;
+    Optional<Image> image = helpContentCache.getImage(url, useInternalHelp);
+    if (image.isPresent()) {
+      return image.get();
+    }
+
+    return Toolkit.getDefaultToolkit().createImage(url);
+  }
+
+  @Override
+  public Image put(URL key, Image value) {
+    // The content cache is the only source of images
+    return null;
+  }
+
+  @Override
+  public Image remove(Object key) {
+    return null;
+  }
+
+  @Override
+  public int size() {
+    return 0;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return true;
+  }
+
+  @Override
+  public Enumeration<URL> keys() {
+    return Collections.emptyEnumeration();
+  }
+
+  @Override
+  public Enumeration<Image> elements() {
+    return Collections.emptyEnumeration();
+  }
+}
@@ -1,14 +1,15 @@
 package org.multibit.hd.ui.views.screens.help;
 
+import com.google.common.base.Charsets;
 import com.google.common.collect.Lists;
-import com.google.common.io.Resources;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import net.miginfocom.swing.MigLayout;
-import org.multibit.commons.concurrent.SafeExecutors;
+import org.multibit.hd.core.concurrent.ExecutorRegistry;
+import org.multibit.hd.core.concurrent.Workload;
 import org.multibit.hd.core.config.Configurations;
 import org.multibit.hd.core.dto.RAGStatus;
 import org.multibit.hd.core.error_reporting.ExceptionHandler;
@@ -42,6 +43,7 @@ import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
@@ -87,7 +89,12 @@ public class HelpScreenView extends AbstractScreenView<HelpScreenModel> implemen
   /**
    * Handles the loading of the internal images (lazy initialisation to avoid delays on start)
    */
-  private ListeningExecutorService listeningExecutorService = SafeExecutors.newSingleThreadExecutor("load-internal-help");
+  private ListeningExecutorService listeningExecutorService = ExecutorRegistry.INSTANCE.newSingleThreadExecutor("load-internal-help", Workload.NETWORK);
+
+  /**
+   * Holds the help pages and images so navigation renders from memory
+   */
+  private final HelpContentCache helpContentCache = new HelpContentCache();
 
   private URL homeUrl;
 
@@ -99,7 +106,7 @@ public class HelpScreenView extends AbstractScreenView<HelpScreenModel> implemen
   private final Color linkColor = Themes.currentTheme.sidebarSelectedText();
   private final String linkHexColor = String.format("#%02x%02x%02x", linkColor.getRed(), linkColor.getGreen(), linkColor.getBlue());
 
-  private final ListeningExecutorService cacertsExecutorService = SafeExecutors.newSingleThreadExecutor("help-repair-cacerts");
+  private final ListeningExecutorService cacertsExecutorService = ExecutorRegistry.INSTANCE.newSingleThreadExecutor("help-repair-cacerts", Workload.NETWORK);
 
 
   /**
@@ -193,12 +200,8 @@ public class HelpScreenView extends AbstractScreenView<HelpScreenModel> implemen
       new Runnable() {
         @Override
         public void run() {
-          // Load the current page
-          try {
-            editorPane.setPage(currentPage());
-          } catch (IOException e) {
-            log.warn("Unable to load current page ", e);
-          }
+          // Load the current page (usually from the cache primed by the availability check)
+          browse(currentPage());
         }
       });
 
@@ -233,7 +236,8 @@ public class HelpScreenView extends AbstractScreenView<HelpScreenModel> implemen
       homeUrl = URI.create(InstallationManager.MBHD_WEBSITE_HELP_BASE + "/contents.html").toURL();
       addPage(homeUrl);
 
-      String content = HttpsManager.getContentAsString(homeUrl);
+      // Keep the content so the home page does not have to be fetched again
+      String content = new String(helpContentCache.getRemoteContent(homeUrl), Charsets.UTF_8);
       if (!content.contains("<li>")) {
         // Something is wrong at the server end so switch to internal mode
         log.warn("Content from MultiBit.org does not contain <li> so switching to internal help");
@@ -260,24 +264,23 @@ public class HelpScreenView extends AbstractScreenView<HelpScreenModel> implemen
     editorPane = new JEditorPane() {
 
       @Override
-      protected InputStream getStream(URL page) throws IOException {
+      protected InputStream getStream(final URL page) throws IOException {
 
-        // This method only works for pages, not elements within pages
+        // This method only works for pages, not elements within pages (see HelpImageDictionary)
 
-        if (useInternalHelp) {
+        final boolean internal = useInternalHelp;
+        final byte[] content = helpContentCache.getContent(page, internal);
 
-          // Remove the host
-          String replacedPath = page.getPath().replace(InstallationManager.MBHD_WEBSITE_HELP_DOMAIN, "");
-
-          // Replace with a classpath
-          replacedPath = "/assets/html/en/help" + replacedPath;
-
-          // Read from the classpath
-          return HelpScreenView.class.getResourceAsStream(replacedPath);
-        }
+        // Fetch the images after the page so they render from memory next time
+        listeningExecutorService.submit(
+          new Runnable() {
+            @Override
+            public void run() {
+              helpContentCache.prefetchImages(page, content, internal);
+            }
+          });
 
-        // Fall back to standard reader
-        return Resources.asByteSource(page).openBufferedStream();
+        return new ByteArrayInputStream(content);
       }
 
     };
@@ -424,7 +427,12 @@ public class HelpScreenView extends AbstractScreenView<HelpScreenModel> implemen
       @Override
       public Document createDefaultDocument() {
 
-        return super.createDefaultDocument();
+        Document document = super.createDefaultDocument();
+
+        // Serve images from the help content cache
+        document.putProperty(HelpImageDictionary.IMAGE_CACHE_PROPERTY, new HelpImageDictionary(helpContentCache, useInternalHelp));
+
+        return document;
       }
 
     };
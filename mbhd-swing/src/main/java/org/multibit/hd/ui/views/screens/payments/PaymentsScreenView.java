@@ -2,7 +2,8 @@ package org.multibit.hd.ui.views.screens.payments;
 
 import com.google.common.eventbus.Subscribe;
 import net.miginfocom.swing.MigLayout;
-import org.multibit.commons.concurrent.SafeExecutors;
+import org.multibit.hd.core.concurrent.ExecutorRegistry;
+import org.multibit.hd.core.concurrent.Workload;
 import org.multibit.hd.core.dto.*;
 import org.multibit.hd.core.events.SlowTransactionSeenEvent;
 import org.multibit.hd.core.events.TransactionCreationEvent;
@@ -62,7 +63,7 @@ public class PaymentsScreenView extends AbstractScreenView<PaymentsScreenModel>
   /**
    * Handles update operations
    */
-  private static final ExecutorService executorService = SafeExecutors.newSingleThreadExecutor("payment-update-service");
+  private static final ExecutorService executorService = ExecutorRegistry.INSTANCE.newSingleThreadExecutor("payment-update-service", Workload.IO);
 
   // View components
   private ModelAndView<EnterSearchModel, EnterSearchView> enterSearchMaV;
@@ -218,10 +219,9 @@ public class PaymentsScreenView extends AbstractScreenView<PaymentsScreenModel>
             int selectedTableRow = paymentsTable.getSelectedRow();
 
             // Update the table with the new data
+            // Only the rows of changed payments are reported unless the list has changed size
             ((PaymentTableModel) paymentsTable.getModel()).setPaymentData(filteredPaymentDataList, true);
 
-            ((PaymentTableModel) paymentsTable.getModel()).fireTableDataChanged();
-
             // Reselect the selected row if possible
             if (selectedTableRow != -1 && selectedTableRow < paymentsTable.getModel().getRowCount()) {
               paymentsTable.changeSelection(selectedTableRow, 0, false, false);
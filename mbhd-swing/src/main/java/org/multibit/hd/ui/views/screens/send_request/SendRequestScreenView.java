@@ -5,7 +5,8 @@ import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
 import com.google.common.eventbus.Subscribe;
 import net.miginfocom.swing.MigLayout;
-import org.multibit.commons.concurrent.SafeExecutors;
+import org.multibit.hd.core.concurrent.ExecutorRegistry;
+import org.multibit.hd.core.concurrent.Workload;
 import org.multibit.hd.core.dto.BitcoinNetworkSummary;
 import org.multibit.hd.core.dto.PaymentData;
 import org.multibit.hd.core.dto.PaymentType;
@@ -58,7 +59,7 @@ public class SendRequestScreenView extends AbstractScreenView<SendRequestScreenM
   /**
    * Handles update operations
    */
-  private static final ExecutorService executorService = SafeExecutors.newSingleThreadExecutor("send-request-update-service");
+  private static final ExecutorService executorService = ExecutorRegistry.INSTANCE.newSingleThreadExecutor("send-request-update-service", Workload.IO);
 
   /**
    * @param panelModel The model backing this panel view
@@ -5,8 +5,9 @@ import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
-import org.multibit.commons.concurrent.SafeExecutors;
 import org.multibit.commons.utils.Dates;
+import org.multibit.hd.core.concurrent.ExecutorRegistry;
+import org.multibit.hd.core.concurrent.Workload;
 import org.multibit.hd.core.dto.WalletMode;
 import org.multibit.hd.core.services.ApplicationEventService;
 import org.multibit.hd.core.services.CoreServices;
@@ -36,7 +37,7 @@ public abstract class AbstractHardwareWalletWizardModel<S> extends AbstractWizar
   /**
    * Hardware wallet requests have their own executor service which is shared across all hardware wizards
    */
-  protected static final ListeningExecutorService hardwareWalletRequestService = SafeExecutors.newSingleThreadExecutor("hardware-requests");
+  protected static final ListeningExecutorService hardwareWalletRequestService = ExecutorRegistry.INSTANCE.newSingleThreadExecutor("hardware-requests", Workload.IO);
 
   /**
    * The current wallet mode (e.g. TREZOR, KEEP_KEY etc)
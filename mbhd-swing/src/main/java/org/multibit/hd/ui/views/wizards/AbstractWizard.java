@@ -6,7 +6,8 @@ import com.google.common.collect.Maps;
 import com.google.common.eventbus.Subscribe;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.Uninterruptibles;
-import org.multibit.commons.concurrent.SafeExecutors;
+import org.multibit.hd.core.concurrent.ExecutorRegistry;
+import org.multibit.hd.core.concurrent.Workload;
 import org.multibit.hd.core.events.CoreEvents;
 import org.multibit.hd.core.events.ShutdownEvent;
 import org.multibit.hd.ui.MultiBitUI;
@@ -69,7 +70,7 @@ public abstract class AbstractWizard<M extends AbstractWizardModel> {
   /**
    * Ensures we only have a single thread managing the wizard hide operation
    */
-  private final static ListeningExecutorService wizardHideExecutorService = SafeExecutors.newSingleThreadExecutor("wizard-hide");
+  private final static ListeningExecutorService wizardHideExecutorService = ExecutorRegistry.INSTANCE.newSingleThreadExecutor("wizard-hide", Workload.UI_HANDOFF);
 
   /**
    * @param wizardModel     The overall wizard data model containing the aggregate information of all components in the wizard
@@ -4,7 +4,8 @@ import com.google.common.base.Optional;
 import com.google.common.base.Strings;
 import com.google.common.util.concurrent.*;
 import net.miginfocom.swing.MigLayout;
-import org.multibit.commons.concurrent.SafeExecutors;
+import org.multibit.hd.core.concurrent.ExecutorRegistry;
+import org.multibit.hd.core.concurrent.Workload;
 import org.multibit.hd.core.config.Configurations;
 import org.multibit.hd.core.dto.WalletId;
 import org.multibit.hd.core.dto.WalletPassword;
@@ -92,7 +93,7 @@ public class ChangePasswordPanelView extends AbstractWizardPanelView<ChangePassw
   public void initialiseContent(JPanel contentPanel) {
 
     // Postpone initialisation until first showing
-    executorService = SafeExecutors.newSingleThreadExecutor("change-credentials");
+    executorService = ExecutorRegistry.INSTANCE.newSingleThreadExecutor("change-credentials", Workload.CPU);
 
     contentPanel.setLayout(new MigLayout(
       Panels.migXYLayout(),
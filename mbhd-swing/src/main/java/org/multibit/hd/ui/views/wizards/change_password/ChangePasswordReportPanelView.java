@@ -4,6 +4,7 @@ import com.google.common.base.Optional;
 import com.google.common.eventbus.Subscribe;
 import net.miginfocom.swing.MigLayout;
 import org.multibit.hd.core.dto.CoreMessageKey;
+import org.multibit.hd.core.events.ChangePasswordProgressEvent;
 import org.multibit.hd.core.events.ChangePasswordResultEvent;
 import org.multibit.hd.core.services.WalletService;
 import org.multibit.hd.ui.events.view.ViewEvents;
@@ -36,6 +37,12 @@ public class ChangePasswordReportPanelView extends AbstractWizardPanelView<Chang
   // View
   private JLabel passwordChangedStatusLabel;
 
+  /**
+   * True once the result is shown (progress and result events arrive independently so a late progress
+   * event must not overwrite the result). Only accessed on the EDT.
+   */
+  private boolean resultShown = false;
+
   /**
    * @param wizard    The wizard managing the states
    * @param panelName The panel name to filter events from components
@@ -101,6 +108,7 @@ public class ChangePasswordReportPanelView extends AbstractWizardPanelView<Chang
     String oldPassword = model.getEnteredPassword();
     String newPassword = model.getConfirmedPassword();
 
+    resultShown = false;
     passwordChangedStatusLabel.setText(Languages.safeText(CoreMessageKey.CHANGE_PASSWORD_WORKING));
 
     // Change the wallet credentials.
@@ -110,11 +118,30 @@ public class ChangePasswordReportPanelView extends AbstractWizardPanelView<Chang
     return true;
   }
 
+  @Subscribe
+  public void onChangePasswordProgressEvent(final ChangePasswordProgressEvent changePasswordProgressEvent) {
+    SwingUtilities.invokeLater(new Runnable() {
+      @Override
+      public void run() {
+        if (resultShown) {
+          return;
+        }
+        passwordChangedStatusLabel.setText(Languages.safeText(
+          CoreMessageKey.CHANGE_PASSWORD_PROGRESS,
+          changePasswordProgressEvent.getFilesDone(),
+          changePasswordProgressEvent.getTotalFiles()));
+      }
+    });
+
+  }
+
   @Subscribe
   public void onChangePasswordResultEvent(final ChangePasswordResultEvent changePasswordResultEvent) {
     SwingUtilities.invokeLater(new Runnable() {
       @Override
       public void run() {
+        resultShown = true;
+
         // Enable and focus the finish button
         ViewEvents.fireWizardButtonEnabledEvent(getPanelName(), WizardButton.FINISH, true);
 
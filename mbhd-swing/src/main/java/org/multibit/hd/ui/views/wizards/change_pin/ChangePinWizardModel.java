@@ -6,8 +6,9 @@ import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
-import org.multibit.commons.concurrent.SafeExecutors;
 import org.multibit.commons.utils.Dates;
+import org.multibit.hd.core.concurrent.ExecutorRegistry;
+import org.multibit.hd.core.concurrent.Workload;
 import org.multibit.hd.core.services.ApplicationEventService;
 import org.multibit.hd.core.services.CoreServices;
 import org.multibit.hd.hardware.core.HardwareWalletService;
@@ -42,7 +43,7 @@ public class ChangePinWizardModel extends AbstractHardwareWalletWizardModel<Chan
   /**
    * Change PIN requires a separate executor
    */
-  private final ListeningExecutorService trezorRequestService = SafeExecutors.newSingleThreadExecutor("trezor-requests-change-pin");
+  private final ListeningExecutorService trezorRequestService = ExecutorRegistry.INSTANCE.newSingleThreadExecutor("trezor-requests-change-pin", Workload.IO);
 
   /**
    * True if the PIN should be removed
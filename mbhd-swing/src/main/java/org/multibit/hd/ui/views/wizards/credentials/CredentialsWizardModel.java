@@ -13,8 +13,9 @@ import org.bitcoinj.crypto.DeterministicKey;
 import org.bitcoinj.params.MainNetParams;
 import org.bitcoinj.wallet.KeyChain;
 import org.joda.time.DateTime;
-import org.multibit.commons.concurrent.SafeExecutors;
 import org.multibit.commons.utils.Dates;
+import org.multibit.hd.core.concurrent.ExecutorRegistry;
+import org.multibit.hd.core.concurrent.Workload;
 import org.multibit.hd.core.config.Configurations;
 import org.multibit.hd.core.dto.*;
 import org.multibit.hd.core.events.CoreEvents;
@@ -86,7 +87,7 @@ public class CredentialsWizardModel extends AbstractHardwareWalletWizardModel<Cr
   /**
    * The unlock wallet executor service
    */
-  private ListeningExecutorService unlockWalletService = SafeExecutors.newSingleThreadExecutor("unlock-wallet");
+  private ListeningExecutorService unlockWalletService = ExecutorRegistry.INSTANCE.newSingleThreadExecutor("unlock-wallet", Workload.CPU);
 
   /**
    * The entropy to be used for the wallet ID (result of encryption by the Trezor of fixed text)
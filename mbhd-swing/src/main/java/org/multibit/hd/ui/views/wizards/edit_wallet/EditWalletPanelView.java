@@ -147,11 +147,11 @@ public class EditWalletPanelView extends AbstractWizardPanelView<EditWalletWizar
     log.debug("selectFileMaV.getModel().getValue() = '" + selectFileMaV.getModel().getValue() + "', isSelected = " + selectFileMaV.getModel().isSelected());
     if (Configurations.currentConfiguration != null) {
       if (selectFileMaV.getModel().isSelected()) {
-        // The user has selected a cloud backup location - set it into the configuration and perform a cloud backup at the next backup tick
+        // The user has selected a cloud backup location - set it into the configuration and perform a cloud backup as soon as possible
         Configurations.currentConfiguration.getAppearance().setCloudBackupLocation(selectFileMaV.getModel().getValue());
-        log.debug("Performing cloud backup at next backup tick as user has just set cloud backup location");
+        log.debug("Requesting cloud backup as user has just set cloud backup location");
         BackupManager.INSTANCE.setCloudBackupDirectory(Optional.of(new File(selectFileMaV.getModel().getValue())));
-        CoreServices.getOrCreateBackupService().setPerformCloudBackupAtNextTick(true);
+        CoreServices.getOrCreateBackupService().requestCloudBackup();
       }
       log.debug("Cloud backup location:\n{}", Configurations.currentConfiguration.getAppearance().getCloudBackupLocation());
     }
@@ -4,7 +4,8 @@ import com.google.common.base.Optional;
 import com.google.common.util.concurrent.*;
 import org.bitcoinj.core.Wallet;
 import org.joda.time.DateTime;
-import org.multibit.commons.concurrent.SafeExecutors;
+import org.multibit.hd.core.concurrent.ExecutorRegistry;
+import org.multibit.hd.core.concurrent.Workload;
 import org.multibit.hd.core.dto.WalletSummary;
 import org.multibit.hd.core.dto.WalletType;
 import org.multibit.hd.core.managers.HttpsManager;
@@ -39,8 +40,8 @@ public class RepairWalletWizardModel extends AbstractWizardModel<RepairWalletSta
   /**
    * Repair wallet requires a separate executor
    */
-  private final ListeningExecutorService walletExecutorService = SafeExecutors.newSingleThreadExecutor("repair-wallet");
-  private final ListeningExecutorService cacertsExecutorService = SafeExecutors.newSingleThreadExecutor("repair-cacerts");
+  private final ListeningExecutorService walletExecutorService = ExecutorRegistry.INSTANCE.newSingleThreadExecutor("repair-wallet", Workload.NETWORK);
+  private final ListeningExecutorService cacertsExecutorService = ExecutorRegistry.INSTANCE.newSingleThreadExecutor("repair-cacerts", Workload.NETWORK);
 
   private Optional<Boolean> walletRepaired = Optional.absent();
   private Optional<Boolean> cacertsRepaired = Optional.absent();
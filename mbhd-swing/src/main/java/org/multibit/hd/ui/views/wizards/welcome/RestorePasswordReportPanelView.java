@@ -6,8 +6,9 @@ import com.google.common.util.concurrent.ListeningExecutorService;
 import net.miginfocom.swing.MigLayout;
 import org.multibit.hd.brit.core.seed_phrase.Bip39SeedPhraseGenerator;
 import org.multibit.hd.brit.core.seed_phrase.SeedPhraseGenerator;
-import org.multibit.commons.concurrent.SafeExecutors;
 import org.multibit.commons.crypto.AESUtils;
+import org.multibit.hd.core.concurrent.ExecutorRegistry;
+import org.multibit.hd.core.concurrent.Workload;
 import org.multibit.hd.core.dto.WalletId;
 import org.multibit.hd.core.dto.WalletSummary;
 import org.multibit.hd.core.managers.InstallationManager;
@@ -89,7 +90,7 @@ public class RestorePasswordReportPanelView extends AbstractWizardPanelView<Welc
     contentPanel.add(working, "wrap");
     contentPanel.add(passwordRecoveryStatus, "wrap");
 
-    listeningExecutorService = SafeExecutors.newSingleThreadExecutor("restore-password");
+    listeningExecutorService = ExecutorRegistry.INSTANCE.newSingleThreadExecutor("restore-password", Workload.CPU);
 
   }
 
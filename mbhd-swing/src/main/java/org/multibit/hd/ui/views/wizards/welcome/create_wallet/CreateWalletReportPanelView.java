@@ -7,9 +7,10 @@ import com.google.common.util.concurrent.Uninterruptibles;
 import net.miginfocom.swing.MigLayout;
 import org.bitcoinj.crypto.MnemonicCode;
 import org.bitcoinj.crypto.MnemonicException;
-import org.multibit.commons.concurrent.SafeExecutors;
 import org.multibit.commons.utils.Dates;
 import org.multibit.hd.brit.core.seed_phrase.SeedPhraseGenerator;
+import org.multibit.hd.core.concurrent.ExecutorRegistry;
+import org.multibit.hd.core.concurrent.Workload;
 import org.multibit.hd.core.config.Configurations;
 import org.multibit.hd.core.dto.WalletSummary;
 import org.multibit.hd.core.error_reporting.ExceptionHandler;
@@ -91,7 +92,7 @@ public class CreateWalletReportPanelView extends AbstractWizardPanelView<Welcome
   public void initialiseContent(JPanel contentPanel) {
 
     // Postpone the creation of the executor service to the last moment
-    createWalletExecutorService = SafeExecutors.newSingleThreadExecutor("create-wallet");
+    createWalletExecutorService = ExecutorRegistry.INSTANCE.newSingleThreadExecutor("create-wallet", Workload.IO);
 
     contentPanel.setLayout(new MigLayout(
       Panels.migXYLayout(),
@@ -7,11 +7,12 @@ import com.google.common.util.concurrent.Uninterruptibles;
 import net.miginfocom.swing.MigLayout;
 import org.bitcoinj.crypto.MnemonicCode;
 import org.joda.time.DateTime;
-import org.multibit.commons.concurrent.SafeExecutors;
 import org.multibit.commons.crypto.AESUtils;
 import org.multibit.commons.utils.Dates;
 import org.multibit.hd.brit.core.seed_phrase.Bip39SeedPhraseGenerator;
 import org.multibit.hd.brit.core.seed_phrase.SeedPhraseGenerator;
+import org.multibit.hd.core.concurrent.ExecutorRegistry;
+import org.multibit.hd.core.concurrent.Workload;
 import org.multibit.hd.core.config.Configurations;
 import org.multibit.hd.core.dto.*;
 import org.multibit.hd.core.events.BitcoinNetworkChangedEvent;
@@ -100,7 +101,7 @@ public class RestoreWalletReportPanelView extends AbstractWizardPanelView<Welcom
   public void initialiseContent(JPanel contentPanel) {
 
     // Postpone the creation of the executor service to the last moment
-    restoreWalletExecutorService = SafeExecutors.newSingleThreadExecutor("restore-wallet");
+    restoreWalletExecutorService = ExecutorRegistry.INSTANCE.newSingleThreadExecutor("restore-wallet", Workload.IO);
 
     contentPanel.setLayout(
       new MigLayout(
@@ -0,0 +1,62 @@
+package org.multibit.hd.ui.utils;
+
+import com.google.common.base.Optional;
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class QRCodesTest {
+
+  private static final String BITCOIN_URI = "bitcoin:1AhN6rPdrMuKBGFDKR1k9A8SCLYaNgXhty?amount=0.01&label=Test";
+
+  private static final int BLACK = 0xff000000;
+  private static final int WHITE = 0xffffffff;
+
+  @Test
+  public void testGenerateQRCode() throws Exception {
+
+    Optional<BufferedImage> unscaled = QRCodes.generateQRCode(BITCOIN_URI, 1);
+    Optional<BufferedImage> scaled = QRCodes.generateQRCode(BITCOIN_URI, 3);
+
+    assertThat(unscaled.isPresent()).isTrue();
+    assertThat(scaled.isPresent()).isTrue();
+
+    BufferedImage unscaledImage = unscaled.get();
+    BufferedImage scaledImage = scaled.get();
+
+    assertThat(scaledImage.getWidth()).isEqualTo(unscaledImage.getWidth() * 3);
+    assertThat(scaledImage.getHeight()).isEqualTo(unscaledImage.getHeight() * 3);
+
+    // The quiet zone is white
+    assertThat(unscaledImage.getRGB(0, 0)).isEqualTo(WHITE);
+
+    // Every scaled pixel matches the element it was expanded from
+    int blackPixels = 0;
+    for (int y = 0; y < scaledImage.getHeight(); y++) {
+      for (int x = 0; x < scaledImage.getWidth(); x++) {
+        int pixel = scaledImage.getRGB(x, y);
+        assertThat(pixel).isEqualTo(unscaledImage.getRGB(x / 3, y / 3));
+        if (pixel == BLACK) {
+          blackPixels++;
+        } else {
+          assertThat(pixel).isEqualTo(WHITE);
+        }
+      }
+    }
+    assertThat(blackPixels).isGreaterThan(0);
+
+  }
+
+  @Test
+  public void testGenerateQRCodeIsCached() throws Exception {
+
+    Optional<BufferedImage> first = QRCodes.generateQRCode(BITCOIN_URI, 2);
+
+    assertThat(QRCodes.generateQRCode(BITCOIN_URI, 2).get()).isSameAs(first.get());
+    assertThat(QRCodes.generateQRCode(BITCOIN_URI, 4).get()).isNotSameAs(first.get());
+    assertThat(QRCodes.generateQRCode(BITCOIN_URI + "&message=Other", 2).get()).isNotSameAs(first.get());
+
+  }
+}
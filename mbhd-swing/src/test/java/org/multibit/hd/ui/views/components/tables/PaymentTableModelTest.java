@@ -0,0 +1,189 @@
+package org.multibit.hd.ui.views.components.tables;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.bitcoinj.core.Coin;
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.Test;
+import org.multibit.hd.core.config.Configuration;
+import org.multibit.hd.core.config.Configurations;
+import org.multibit.hd.core.dto.FiatPayment;
+import org.multibit.hd.core.dto.MBHDPaymentRequestData;
+import org.multibit.hd.core.dto.PaymentData;
+
+import javax.swing.event.TableModelEvent;
+import javax.swing.event.TableModelListener;
+import java.util.List;
+import java.util.Locale;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class PaymentTableModelTest {
+
+  private static final DateTime DATE = new DateTime(2015, 6, 1, 12, 0);
+
+  private PaymentTableModel testObject;
+
+  private List<TableModelEvent> events;
+
+  @Before
+  public void setUp() throws Exception {
+
+    Configurations.currentConfiguration = Configurations.newDefaultConfiguration();
+
+    testObject = new PaymentTableModel(Sets.<PaymentData>newHashSet());
+    testObject.setPaymentData(newPayments(6), false);
+
+    events = Lists.newArrayList();
+    testObject.addTableModelListener(new TableModelListener() {
+      @Override
+      public void tableChanged(TableModelEvent e) {
+        events.add(e);
+      }
+    });
+
+  }
+
+  @Test
+  public void testSetPaymentData_OnlyChangedRowsUpdated() throws Exception {
+
+    List<PaymentData> payments = newPayments(6);
+    payments.set(1, newPayment(1, "edited"));
+    payments.set(2, newPayment(2, "edited"));
+    payments.set(4, newPayment(4, "edited"));
+
+    testObject.setPaymentData(payments, true);
+
+    // Consecutive updated rows are merged into one event
+    assertThat(events).hasSize(2);
+    assertRowsUpdated(events.get(0), 1, 2);
+    assertRowsUpdated(events.get(1), 4, 4);
+    assertThat(testObject.getValueAt(4, PaymentTableModel.DESCRIPTION_COLUMN_INDEX)).isEqualTo("payment 4. edited");
+
+    // Unchanged payments (even as new instances) are not reported
+    events.clear();
+    testObject.setPaymentData(payments, true);
+    testObject.setPaymentData(Lists.newArrayList(payments), true);
+
+    assertThat(events).isEmpty();
+
+  }
+
+  @Test
+  public void testSetPaymentData_LayoutChange() throws Exception {
+
+    testObject.setPaymentData(newPayments(7), true);
+
+    assertThat(events).hasSize(1);
+    assertThat(events.get(0).getFirstRow()).isEqualTo(0);
+    assertThat(events.get(0).getLastRow()).isEqualTo(Integer.MAX_VALUE);
+    assertThat(testObject.getRowCount()).isEqualTo(7);
+
+  }
+
+  @Test
+  public void testSetPaymentData_KeepsFormattedValues() throws Exception {
+
+    for (int row = 0; row < testObject.getRowCount(); row++) {
+      testObject.setFormattedValue(row, PaymentTableModel.DATE_COLUMN_INDEX, "date " + row);
+    }
+
+    List<PaymentData> payments = newPayments(6);
+    payments.set(3, newPayment(3, "edited"));
+    testObject.setPaymentData(payments, true);
+
+    // Unchanged rows keep their cached row and its text, the changed row is formatted again
+    assertThat(testObject.getFormattedValue(0, PaymentTableModel.DATE_COLUMN_INDEX)).isEqualTo("date 0");
+    assertThat(testObject.getFormattedValue(5, PaymentTableModel.DATE_COLUMN_INDEX)).isEqualTo("date 5");
+    assertThat(testObject.getFormattedValue(3, PaymentTableModel.DATE_COLUMN_INDEX)).isNull();
+
+    // Cached rows follow their payments when the order changes (the moved rows are reported as updated)
+    events.clear();
+    testObject.setPaymentData(Lists.reverse(payments), true);
+
+    assertThat(events).hasSize(1);
+    assertRowsUpdated(events.get(0), 0, 5);
+
+    assertThat(testObject.getFormattedValue(5, PaymentTableModel.DATE_COLUMN_INDEX)).isEqualTo("date 0");
+    assertThat(testObject.getFormattedValue(0, PaymentTableModel.DATE_COLUMN_INDEX)).isEqualTo("date 5");
+
+  }
+
+  @Test
+  public void testFormatGeneration_Language() throws Exception {
+
+    testObject.setFormattedValue(0, PaymentTableModel.AMOUNT_BTC_COLUMN_INDEX, "1.00");
+
+    Configuration configuration = Configurations.currentConfiguration.deepCopy();
+    configuration.getLanguage().setLocale(Locale.FRENCH);
+    Configurations.currentConfiguration = configuration;
+
+    assertThat(testObject.getFormattedValue(0, PaymentTableModel.AMOUNT_BTC_COLUMN_INDEX)).isNull();
+
+  }
+
+  @Test
+  public void testFormatGeneration_Unit() throws Exception {
+
+    testObject.setFormattedValue(0, PaymentTableModel.AMOUNT_BTC_COLUMN_INDEX, "1.00");
+
+    Configuration configuration = Configurations.currentConfiguration.deepCopy();
+    configuration.getBitcoin().setBitcoinSymbol("MICON");
+    Configurations.currentConfiguration = configuration;
+
+    assertThat(testObject.getFormattedValue(0, PaymentTableModel.AMOUNT_BTC_COLUMN_INDEX)).isNull();
+
+    // Formatted again under the new configuration so it is kept
+    testObject.setFormattedValue(0, PaymentTableModel.AMOUNT_BTC_COLUMN_INDEX, "1,000,000");
+    assertThat(testObject.getFormattedValue(0, PaymentTableModel.AMOUNT_BTC_COLUMN_INDEX)).isEqualTo("1,000,000");
+
+  }
+
+  @Test
+  public void testFormatGeneration_Theme() throws Exception {
+
+    testObject.setFormattedValue(0, PaymentTableModel.AMOUNT_FIAT_COLUMN_INDEX, "2.00");
+
+    Configuration configuration = Configurations.currentConfiguration.deepCopy();
+    configuration.getAppearance().setCurrentTheme("DARK");
+    Configurations.currentConfiguration = configuration;
+
+    assertThat(testObject.getFormattedValue(0, PaymentTableModel.AMOUNT_FIAT_COLUMN_INDEX)).isNull();
+
+  }
+
+  private void assertRowsUpdated(TableModelEvent event, int firstRow, int lastRow) {
+
+    assertThat(event.getType()).isEqualTo(TableModelEvent.UPDATE);
+    assertThat(event.getFirstRow()).isEqualTo(firstRow);
+    assertThat(event.getLastRow()).isEqualTo(lastRow);
+
+  }
+
+  /**
+   * @return New instances of the same payments each time
+   */
+  private List<PaymentData> newPayments(int count) {
+
+    List<PaymentData> payments = Lists.newArrayList();
+    for (int i = 0; i < count; i++) {
+      payments.add(newPayment(i, null));
+    }
+    return payments;
+
+  }
+
+  private PaymentData newPayment(int i, String note) {
+
+    MBHDPaymentRequestData paymentRequestData = new MBHDPaymentRequestData();
+    paymentRequestData.setDate(DATE.plusMinutes(i));
+    paymentRequestData.setLabel("payment " + i);
+    paymentRequestData.setNote(note);
+    paymentRequestData.setAmountCoin(Optional.of(Coin.valueOf(1000 * (i + 1))));
+    paymentRequestData.setAmountFiat(new FiatPayment());
+    return paymentRequestData;
+
+  }
+}
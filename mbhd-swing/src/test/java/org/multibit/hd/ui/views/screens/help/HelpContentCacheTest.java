@@ -0,0 +1,127 @@
+package org.multibit.hd.ui.views.screens.help;
+
+import com.google.common.base.Charsets;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class HelpContentCacheTest {
+
+  private static final String PAGE_CONTENT = "<html><body><ul><li>Test page</li></ul></body></html>";
+
+  private static final String ETAG = "\"test-etag\"";
+
+  private final AtomicInteger fullResponses = new AtomicInteger();
+  private final AtomicInteger notModifiedResponses = new AtomicInteger();
+
+  private HttpServer server;
+
+  private String baseUrl;
+
+  @Before
+  public void setUp() throws Exception {
+
+    // A local stand-in for the MultiBit help server
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext(
+      "/hd0.3/", new HttpHandler() {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+
+          if (ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+            notModifiedResponses.incrementAndGet();
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+            return;
+          }
+
+          fullResponses.incrementAndGet();
+          byte[] content = PAGE_CONTENT.getBytes(Charsets.UTF_8);
+          exchange.getResponseHeaders().add("ETag", ETAG);
+          exchange.sendResponseHeaders(200, content.length);
+          try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(content);
+          }
+        }
+      });
+    server.start();
+
+    baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+
+  }
+
+  @After
+  public void tearDown() throws Exception {
+
+    if (server != null) {
+      server.stop(0);
+    }
+
+  }
+
+  @Test
+  public void testCachedContentIsNotFetchedAgain() throws Exception {
+
+    HelpContentCache testObject = new HelpContentCache(HelpContentCache.INTERNAL_HELP_ROOT, 1024 * 1024, 60000);
+
+    URL url = new URL(baseUrl + "/hd0.3/test.html");
+
+    assertThat(new String(testObject.getContent(url, false), Charsets.UTF_8)).isEqualTo(PAGE_CONTENT);
+    assertThat(new String(testObject.getContent(url, false), Charsets.UTF_8)).isEqualTo(PAGE_CONTENT);
+
+    assertThat(fullResponses.get()).isEqualTo(1);
+    assertThat(notModifiedResponses.get()).isEqualTo(0);
+
+  }
+
+  @Test
+  public void testRevalidation() throws Exception {
+
+    // Revalidate on every request
+    HelpContentCache testObject = new HelpContentCache(HelpContentCache.INTERNAL_HELP_ROOT, 1024 * 1024, 0);
+
+    URL url = new URL(baseUrl + "/hd0.3/test.html");
+
+    testObject.getContent(url, false);
+    assertThat(new String(testObject.getContent(url, false), Charsets.UTF_8)).isEqualTo(PAGE_CONTENT);
+
+    assertThat(fullResponses.get()).isEqualTo(1);
+    assertThat(notModifiedResponses.get()).isEqualTo(1);
+
+    // A stale copy is used when the server cannot be reached
+    server.stop(0);
+    server = null;
+
+    assertThat(new String(testObject.getContent(url, false), Charsets.UTF_8)).isEqualTo(PAGE_CONTENT);
+
+  }
+
+  @Test
+  public void testInternalHelpFallback() throws Exception {
+
+    HelpContentCache testObject = new HelpContentCache(HelpContentCache.INTERNAL_HELP_ROOT, 1024 * 1024, 0);
+
+    // The contents page is bundled but not served
+    server.stop(0);
+    server = null;
+
+    URL url = new URL(baseUrl + "/hd0.3/contents.html");
+
+    byte[] content = testObject.getContent(url, false);
+
+    assertThat(content).isEqualTo(testObject.getContent(url, true));
+    assertThat(new String(content, Charsets.UTF_8)).contains("<li>");
+
+  }
+}